@@ -79,6 +79,7 @@ enum {
     OPT_AUDIO_SOURCE,
     OPT_KILL_ADB_ON_CLOSE,
     OPT_TIME_LIMIT,
+    OPT_TEXT_PASTE_THRESHOLD,
 };
 
 struct sc_option {
@@ -405,7 +406,8 @@ static const struct sc_option options[] = {
         .longopt_id = OPT_NO_DOWNSIZE_ON_ERROR,
         .longopt = "no-downsize-on-error",
         .text = "By default, on MediaCodec error, scrcpy automatically tries "
-                "again with a lower definition.\n"
+                "again with a lower definition or frame rate (and steps back "
+                "up once the encoding has recovered).\n"
                 "This option disables this behavior.",
     },
     {
@@ -581,6 +583,18 @@ static const struct sc_option options[] = {
                 "connected over USB), enables TCP/IP mode, then connects to "
                 "this address before starting.",
     },
+    {
+        .longopt_id = OPT_TEXT_PASTE_THRESHOLD,
+        .longopt = "text-paste-threshold",
+        .argdesc = "value",
+        .text = "Paste the injected texts of at least this number of "
+                "characters through the device clipboard, rather than typing "
+                "them as key events (Android >= 7).\n"
+                "If set to 0, texts are always typed, and the clipboard "
+                "text injected by MOD+Shift+v (or Ctrl+v with "
+                "--legacy-paste) is truncated to 300 characters.\n"
+                "Default is 300.",
+    },
     {
         .longopt_id = OPT_TIME_LIMIT,
         .longopt = "time-limit",
@@ -1247,6 +1261,19 @@ parse_max_fps(const char *s, uint16_t *max_fps) {
     return true;
 }
 
+static bool
+parse_text_paste_threshold(const char *s, uint32_t *threshold) {
+    long value;
+    bool ok = parse_integer_arg(s, &value, false, 0, 0x7FFFFFFF,
+                                "text paste threshold");
+    if (!ok) {
+        return false;
+    }
+
+    *threshold = (uint32_t) value;
+    return true;
+}
+
 static bool
 parse_buffering_time(const char *s, sc_tick *tick) {
     long value;
@@ -1977,6 +2004,12 @@ parse_args_with_getopt(struct scrcpy_cli_args *args, int argc, char *argv[],
                     return false;
                 }
                 break;
+            case OPT_TEXT_PASTE_THRESHOLD:
+                if (!parse_text_paste_threshold(optarg,
+                                                &opts->text_paste_threshold)) {
+                    return false;
+                }
+                break;
             default:
                 // getopt prints the error message on stderr
                 return false;
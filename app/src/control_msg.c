@@ -105,9 +105,11 @@ sc_control_msg_serialize(const struct sc_control_msg *msg, unsigned char *buf) {
             sc_write32be(&buf[10], msg->inject_keycode.metastate);
             return 14;
         case SC_CONTROL_MSG_TYPE_INJECT_TEXT: {
+            size_t max_len = msg->inject_text.bulk
+                           ? SC_CONTROL_MSG_INJECT_TEXT_BULK_MAX_LENGTH
+                           : SC_CONTROL_MSG_INJECT_TEXT_MAX_LENGTH;
             size_t len =
-                write_string(msg->inject_text.text,
-                             SC_CONTROL_MSG_INJECT_TEXT_MAX_LENGTH, &buf[1]);
+                write_string(msg->inject_text.text, max_len, &buf[1]);
             return 1 + len;
         }
         case SC_CONTROL_MSG_TYPE_INJECT_TOUCH_EVENT:
@@ -150,8 +152,15 @@ sc_control_msg_serialize(const struct sc_control_msg *msg, unsigned char *buf) {
         case SC_CONTROL_MSG_TYPE_EXPAND_SETTINGS_PANEL:
         case SC_CONTROL_MSG_TYPE_COLLAPSE_PANELS:
         case SC_CONTROL_MSG_TYPE_ROTATE_DEVICE:
+        case SC_CONTROL_MSG_TYPE_REQUEST_KEY_FRAME:
             // no additional data
             return 1;
+        case SC_CONTROL_MSG_TYPE_SET_VIDEO_SETTINGS:
+            sc_write64be(&buf[1], msg->set_video_settings.sequence);
+            sc_write32be(&buf[9], msg->set_video_settings.bit_rate);
+            sc_write16be(&buf[13], msg->set_video_settings.max_fps);
+            sc_write16be(&buf[15], msg->set_video_settings.i_frame_interval);
+            return 17;
         default:
             LOGW("Unknown message type: %u", (unsigned) msg->type);
             return 0;
@@ -242,6 +251,17 @@ sc_control_msg_log(const struct sc_control_msg *msg) {
         case SC_CONTROL_MSG_TYPE_ROTATE_DEVICE:
             LOG_CMSG("rotate device");
             break;
+        case SC_CONTROL_MSG_TYPE_REQUEST_KEY_FRAME:
+            LOG_CMSG("request key frame");
+            break;
+        case SC_CONTROL_MSG_TYPE_SET_VIDEO_SETTINGS:
+            LOG_CMSG("video settings %" PRIu64_ " bitrate=%" PRIu32
+                     " max_fps=%" PRIu16 " i_frame_interval=%" PRIu16,
+                     msg->set_video_settings.sequence,
+                     msg->set_video_settings.bit_rate,
+                     msg->set_video_settings.max_fps,
+                     msg->set_video_settings.i_frame_interval);
+            break;
         default:
             LOG_CMSG("unknown type: %u", (unsigned) msg->type);
             break;
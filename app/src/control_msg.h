@@ -14,6 +14,8 @@
 #define SC_CONTROL_MSG_MAX_SIZE (1 << 18) // 256k
 
 #define SC_CONTROL_MSG_INJECT_TEXT_MAX_LENGTH 300
+// type: 1 byte; length: 4 bytes
+#define SC_CONTROL_MSG_INJECT_TEXT_BULK_MAX_LENGTH (SC_CONTROL_MSG_MAX_SIZE - 5)
 // type: 1 byte; sequence: 8 bytes; paste flag: 1 byte; length: 4 bytes
 #define SC_CONTROL_MSG_CLIPBOARD_TEXT_MAX_LENGTH (SC_CONTROL_MSG_MAX_SIZE - 14)
 
@@ -37,6 +39,8 @@ enum sc_control_msg_type {
     SC_CONTROL_MSG_TYPE_SET_CLIPBOARD,
     SC_CONTROL_MSG_TYPE_SET_SCREEN_POWER_MODE,
     SC_CONTROL_MSG_TYPE_ROTATE_DEVICE,
+    SC_CONTROL_MSG_TYPE_REQUEST_KEY_FRAME,
+    SC_CONTROL_MSG_TYPE_SET_VIDEO_SETTINGS,
 };
 
 enum sc_screen_power_mode {
@@ -62,6 +66,9 @@ struct sc_control_msg {
         } inject_keycode;
         struct {
             char *text; // owned, to be freed by free()
+            // if set, the text is not truncated to
+            // SC_CONTROL_MSG_INJECT_TEXT_MAX_LENGTH (e.g. for pasting)
+            bool bulk;
         } inject_text;
         struct {
             enum android_motionevent_action action;
@@ -92,6 +99,12 @@ struct sc_control_msg {
         struct {
             enum sc_screen_power_mode mode;
         } set_screen_power_mode;
+        struct {
+            uint64_t sequence;
+            uint32_t bit_rate; // 0 to keep the current value
+            uint16_t max_fps; // 0 to keep the current value
+            uint16_t i_frame_interval; // in seconds, 0 to keep the current value
+        } set_video_settings;
     };
 };
 
@@ -3,6 +3,7 @@
 #include <assert.h>
 #include <libavutil/channel_layout.h>
 #include <libavutil/time.h>
+#include <string.h>
 #include <unistd.h>
 
 #include "decoder.h"
@@ -16,8 +17,14 @@
 
 #define SC_PACKET_FLAG_CONFIG    (UINT64_C(1) << 63)
 #define SC_PACKET_FLAG_KEY_FRAME (UINT64_C(1) << 62)
+#define SC_PACKET_FLAG_SILENCE   (UINT64_C(1) << 61)
 
-#define SC_PACKET_PTS_MASK (SC_PACKET_FLAG_KEY_FRAME - 1)
+#define SC_PACKET_PTS_MASK (SC_PACKET_FLAG_SILENCE - 1)
+
+// 16-bit stereo
+#define SC_AUDIO_RAW_BYTES_PER_FRAME 4
+// 1 second at 48kHz
+#define SC_SILENCE_MAX_FRAMES 48000
 
 static enum AVCodecID
 sc_demuxer_to_avcodec_id(uint32_t codec_id) {
@@ -77,6 +84,39 @@ sc_demuxer_recv_video_size(struct sc_demuxer *demuxer, uint32_t *width,
     return true;
 }
 
+static bool
+sc_demuxer_recv_silence(struct sc_demuxer *demuxer, uint32_t len,
+                        AVPacket *packet) {
+    uint8_t data[4];
+    if (len != 4) {
+        LOGE("Demuxer '%s': invalid silence packet size: %" PRIu32,
+             demuxer->name, len);
+        return false;
+    }
+
+    ssize_t r = net_recv_all(demuxer->socket, data, 4);
+    if (r < 4) {
+        return false;
+    }
+
+    uint32_t frames = sc_read32be(data);
+    if (!frames || frames > SC_SILENCE_MAX_FRAMES) {
+        LOGE("Demuxer '%s': invalid silence length: %" PRIu32 " frames",
+             demuxer->name, frames);
+        return false;
+    }
+
+    int size = frames * SC_AUDIO_RAW_BYTES_PER_FRAME;
+    if (av_new_packet(packet, size)) {
+        LOG_OOM();
+        return false;
+    }
+
+    // the decoder and the recorder receive the equivalent raw audio packet
+    memset(packet->data, 0, size);
+    return true;
+}
+
 static bool
 sc_demuxer_recv_packet(struct sc_demuxer *demuxer, AVPacket *packet) {
     // The video and audio streams contain a sequence of raw packets (as
@@ -93,11 +133,15 @@ sc_demuxer_recv_packet(struct sc_demuxer *demuxer, AVPacket *packet) {
     // The most significant bits of the PTS are used for packet flags:
     //
     //  byte 7   byte 6   byte 5   byte 4   byte 3   byte 2   byte 1   byte 0
-    // CK...... ........ ........ ........ ........ ........ ........ ........
-    // ^^<------------------------------------------------------------------->
-    // ||                                PTS
-    // | `- key frame
-    //  `-- config packet
+    // CKS..... ........ ........ ........ ........ ........ ........ ........
+    // ^^^<------------------------------------------------------------------>
+    // |||                               PTS
+    // || `- silence (raw audio only)
+    // | `-- key frame
+    //  `--- config packet
+    //
+    // The payload of a silence packet is the number of frames of silence, as
+    // a 32-bit integer: it is expanded to the equivalent raw audio packet.
 
     uint8_t header[SC_PACKET_HEADER_SIZE];
     ssize_t r = net_recv_all(demuxer->socket, header, SC_PACKET_HEADER_SIZE);
@@ -109,15 +153,21 @@ sc_demuxer_recv_packet(struct sc_demuxer *demuxer, AVPacket *packet) {
     uint32_t len = sc_read32be(&header[8]);
     assert(len);
 
-    if (av_new_packet(packet, len)) {
-        LOG_OOM();
-        return false;
-    }
+    if (pts_flags & SC_PACKET_FLAG_SILENCE) {
+        if (!sc_demuxer_recv_silence(demuxer, len, packet)) {
+            return false;
+        }
+    } else {
+        if (av_new_packet(packet, len)) {
+            LOG_OOM();
+            return false;
+        }
 
-    r = net_recv_all(demuxer->socket, packet->data, len);
-    if (r < 0 || ((uint32_t) r) < len) {
-        av_packet_unref(packet);
-        return false;
+        r = net_recv_all(demuxer->socket, packet->data, len);
+        if (r < 0 || ((uint32_t) r) < len) {
+            av_packet_unref(packet);
+            return false;
+        }
     }
 
     if (pts_flags & SC_PACKET_FLAG_CONFIG) {
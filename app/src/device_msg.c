@@ -40,6 +40,14 @@ device_msg_deserialize(const unsigned char *buf, size_t len,
             msg->ack_clipboard.sequence = sequence;
             return 9;
         }
+        case DEVICE_MSG_TYPE_ACK_VIDEO_SETTINGS: {
+            if (len < 10) {
+                return 0; // not available
+            }
+            msg->ack_video_settings.sequence = sc_read64be(&buf[1]);
+            msg->ack_video_settings.status = buf[9];
+            return 10;
+        }
         default:
             LOGW("Unknown device message type: %d", (int) msg->type);
             return -1; // error, we cannot recover
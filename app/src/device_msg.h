@@ -14,6 +14,13 @@
 enum device_msg_type {
     DEVICE_MSG_TYPE_CLIPBOARD,
     DEVICE_MSG_TYPE_ACK_CLIPBOARD,
+    DEVICE_MSG_TYPE_ACK_VIDEO_SETTINGS,
+};
+
+enum device_msg_video_settings_status {
+    DEVICE_MSG_VIDEO_SETTINGS_APPLIED,
+    DEVICE_MSG_VIDEO_SETTINGS_RESTARTED, // the encoder has been restarted
+    DEVICE_MSG_VIDEO_SETTINGS_FAILED,
 };
 
 struct device_msg {
@@ -25,6 +32,10 @@ struct device_msg {
         struct {
             uint64_t sequence;
         } ack_clipboard;
+        struct {
+            uint64_t sequence;
+            enum device_msg_video_settings_status status;
+        } ack_video_settings;
     };
 };
 
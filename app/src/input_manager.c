@@ -63,6 +63,7 @@ sc_input_manager_init(struct sc_input_manager *im,
 
     im->forward_all_clicks = params->forward_all_clicks;
     im->legacy_paste = params->legacy_paste;
+    im->text_paste_threshold = params->text_paste_threshold;
     im->clipboard_autosync = params->clipboard_autosync;
 
     const struct sc_shortcut_mods *shortcut_mods = params->shortcut_mods;
@@ -254,7 +255,7 @@ switch_fps_counter_state(struct sc_fps_counter *fps_counter) {
 }
 
 static void
-clipboard_paste(struct sc_controller *controller) {
+clipboard_paste(struct sc_controller *controller, bool bulk) {
     char *text = SDL_GetClipboardText();
     if (!text) {
         LOGW("Could not get clipboard text: %s", SDL_GetError());
@@ -276,6 +277,9 @@ clipboard_paste(struct sc_controller *controller) {
     struct sc_control_msg msg;
     msg.type = SC_CONTROL_MSG_TYPE_INJECT_TEXT;
     msg.inject_text.text = text_dup;
+    // only send a long text if the server pastes it through the device
+    // clipboard (typing it would block the injection of the other events)
+    msg.inject_text.bulk = bulk;
     if (!sc_controller_push_msg(controller, &msg)) {
         free(text_dup);
         LOGW("Could not request 'paste clipboard'");
@@ -456,7 +460,8 @@ sc_input_manager_process_key(struct sc_input_manager *im,
                 if (controller && !repeat && down) {
                     if (shift || im->legacy_paste) {
                         // inject the text as input events
-                        clipboard_paste(controller);
+                        bool bulk = im->text_paste_threshold != 0;
+                        clipboard_paste(controller, bulk);
                     } else {
                         // store the text in the device clipboard and paste,
                         // without requesting an acknowledgment
@@ -515,7 +520,8 @@ sc_input_manager_process_key(struct sc_input_manager *im,
     if (im->clipboard_autosync && is_ctrl_v) {
         if (im->legacy_paste) {
             // inject the text as input events
-            clipboard_paste(controller);
+            bool bulk = im->text_paste_threshold != 0;
+            clipboard_paste(controller, bulk);
             return;
         }
 
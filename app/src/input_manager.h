@@ -24,6 +24,7 @@ struct sc_input_manager {
 
     bool forward_all_clicks;
     bool legacy_paste;
+    uint32_t text_paste_threshold;
     bool clipboard_autosync;
 
     struct {
@@ -52,6 +53,7 @@ struct sc_input_manager_params {
 
     bool forward_all_clicks;
     bool legacy_paste;
+    uint32_t text_paste_threshold;
     bool clipboard_autosync;
     const struct sc_shortcut_mods *shortcut_mods;
 };
@@ -312,6 +312,7 @@ sc_key_processor_process_text(struct sc_key_processor *kp,
     struct sc_control_msg msg;
     msg.type = SC_CONTROL_MSG_TYPE_INJECT_TEXT;
     msg.inject_text.text = strdup(event->text);
+    msg.inject_text.bulk = false;
     if (!msg.inject_text.text) {
         LOGW("Could not strdup input text");
         return;
@@ -66,6 +66,7 @@ const struct scrcpy_options scrcpy_options_default = {
     .forward_key_repeat = true,
     .forward_all_clicks = false,
     .legacy_paste = false,
+    .text_paste_threshold = 300,
     .power_off_on_close = false,
     .clipboard_autosync = true,
     .downsize_on_error = true,
@@ -166,6 +166,7 @@ struct scrcpy_options {
     bool forward_key_repeat;
     bool forward_all_clicks;
     bool legacy_paste;
+    uint32_t text_paste_threshold;
     bool power_off_on_close;
     bool clipboard_autosync;
     bool downsize_on_error;
@@ -47,6 +47,11 @@ process_msg(struct sc_receiver *receiver, struct device_msg *msg) {
                  msg->ack_clipboard.sequence);
             sc_acksync_ack(receiver->acksync, msg->ack_clipboard.sequence);
             break;
+        case DEVICE_MSG_TYPE_ACK_VIDEO_SETTINGS:
+            LOGD("Ack video settings sequence=%" PRIu64_ " status=%d",
+                 msg->ack_video_settings.sequence,
+                 (int) msg->ack_video_settings.status);
+            break;
     }
 }
 
@@ -372,6 +372,7 @@ scrcpy(struct scrcpy_options *options) {
         .force_adb_forward = options->force_adb_forward,
         .power_off_on_close = options->power_off_on_close,
         .clipboard_autosync = options->clipboard_autosync,
+        .text_paste_threshold = options->text_paste_threshold,
         .downsize_on_error = options->downsize_on_error,
         .tcpip = options->tcpip,
         .tcpip_dst = options->tcpip_dst,
@@ -672,6 +673,7 @@ aoa_hid_end:
             .mp = mp,
             .forward_all_clicks = options->forward_all_clicks,
             .legacy_paste = options->legacy_paste,
+            .text_paste_threshold = options->text_paste_threshold,
             .clipboard_autosync = options->clipboard_autosync,
             .shortcut_mods = &options->shortcut_mods,
             .window_title = window_title,
@@ -429,6 +429,7 @@ sc_screen_init(struct sc_screen *screen,
         .mp = params->mp,
         .forward_all_clicks = params->forward_all_clicks,
         .legacy_paste = params->legacy_paste,
+        .text_paste_threshold = params->text_paste_threshold,
         .clipboard_autosync = params->clipboard_autosync,
         .shortcut_mods = params->shortcut_mods,
     };
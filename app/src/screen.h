@@ -73,6 +73,7 @@ struct sc_screen_params {
 
     bool forward_all_clicks;
     bool legacy_paste;
+    uint32_t text_paste_threshold;
     bool clipboard_autosync;
     const struct sc_shortcut_mods *shortcut_mods;
 
@@ -298,6 +298,11 @@ execute_server(struct sc_server *server,
         // By default, clipboard_autosync is true
         ADD_PARAM("clipboard_autosync=false");
     }
+    if (params->text_paste_threshold != 300) {
+        // By default, text_paste_threshold is 300
+        ADD_PARAM("text_paste_threshold=%" PRIu32,
+                  params->text_paste_threshold);
+    }
     if (!params->downsize_on_error) {
         // By default, downsize_on_error is true
         ADD_PARAM("downsize_on_error=false");
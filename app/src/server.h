@@ -49,6 +49,7 @@ struct sc_server_params {
     bool force_adb_forward;
     bool power_off_on_close;
     bool clipboard_autosync;
+    uint32_t text_paste_threshold;
     bool downsize_on_error;
     bool tcpip;
     const char *tcpip_dst;
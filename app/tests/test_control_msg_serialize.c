@@ -57,6 +57,7 @@ static void test_serialize_inject_text_long(void) {
     memset(text, 'a', SC_CONTROL_MSG_INJECT_TEXT_MAX_LENGTH);
     text[SC_CONTROL_MSG_INJECT_TEXT_MAX_LENGTH] = '\0';
     msg.inject_text.text = text;
+    msg.inject_text.bulk = false;
 
     unsigned char buf[SC_CONTROL_MSG_MAX_SIZE];
     size_t size = sc_control_msg_serialize(&msg, buf);
@@ -73,6 +74,30 @@ static void test_serialize_inject_text_long(void) {
     assert(!memcmp(buf, expected, sizeof(expected)));
 }
 
+static void test_serialize_inject_text_bulk(void) {
+    struct sc_control_msg msg;
+    msg.type = SC_CONTROL_MSG_TYPE_INJECT_TEXT;
+    char text[1000 + 1];
+    memset(text, 'a', 1000);
+    text[1000] = '\0';
+    msg.inject_text.text = text;
+    msg.inject_text.bulk = true;
+
+    unsigned char buf[SC_CONTROL_MSG_MAX_SIZE];
+    size_t size = sc_control_msg_serialize(&msg, buf);
+    assert(size == 5 + 1000);
+
+    unsigned char expected[5 + 1000];
+    expected[0] = SC_CONTROL_MSG_TYPE_INJECT_TEXT;
+    expected[1] = 0x00;
+    expected[2] = 0x00;
+    expected[3] = 0x03;
+    expected[4] = 0xe8; // text length (32 bits)
+    memset(&expected[5], 'a', 1000);
+
+    assert(!memcmp(buf, expected, sizeof(expected)));
+}
+
 static void test_serialize_inject_touch_event(void) {
     struct sc_control_msg msg = {
         .type = SC_CONTROL_MSG_TYPE_INJECT_TOUCH_EVENT,
@@ -322,6 +347,46 @@ static void test_serialize_rotate_device(void) {
     assert(!memcmp(buf, expected, sizeof(expected)));
 }
 
+static void test_serialize_request_key_frame(void) {
+    struct sc_control_msg msg = {
+        .type = SC_CONTROL_MSG_TYPE_REQUEST_KEY_FRAME,
+    };
+
+    unsigned char buf[SC_CONTROL_MSG_MAX_SIZE];
+    size_t size = sc_control_msg_serialize(&msg, buf);
+    assert(size == 1);
+
+    const unsigned char expected[] = {
+        SC_CONTROL_MSG_TYPE_REQUEST_KEY_FRAME,
+    };
+    assert(!memcmp(buf, expected, sizeof(expected)));
+}
+
+static void test_serialize_set_video_settings(void) {
+    struct sc_control_msg msg = {
+        .type = SC_CONTROL_MSG_TYPE_SET_VIDEO_SETTINGS,
+        .set_video_settings = {
+            .sequence = UINT64_C(0x0102030405060708),
+            .bit_rate = 4000000,
+            .max_fps = 30,
+            .i_frame_interval = 0,
+        },
+    };
+
+    unsigned char buf[SC_CONTROL_MSG_MAX_SIZE];
+    size_t size = sc_control_msg_serialize(&msg, buf);
+    assert(size == 17);
+
+    const unsigned char expected[] = {
+        SC_CONTROL_MSG_TYPE_SET_VIDEO_SETTINGS,
+        0x01, 0x02, 0x03, 0x04, 0x05, 0x06, 0x07, 0x08, // sequence
+        0x00, 0x3d, 0x09, 0x00, // bit_rate
+        0x00, 0x1e, // max_fps
+        0x00, 0x00, // i_frame_interval
+    };
+    assert(!memcmp(buf, expected, sizeof(expected)));
+}
+
 int main(int argc, char *argv[]) {
     (void) argc;
     (void) argv;
@@ -329,6 +394,7 @@ int main(int argc, char *argv[]) {
     test_serialize_inject_keycode();
     test_serialize_inject_text();
     test_serialize_inject_text_long();
+    test_serialize_inject_text_bulk();
     test_serialize_inject_touch_event();
     test_serialize_inject_scroll_event();
     test_serialize_back_or_screen_on();
@@ -340,5 +406,7 @@ int main(int argc, char *argv[]) {
     test_serialize_set_clipboard_long();
     test_serialize_set_screen_power_mode();
     test_serialize_rotate_device();
+    test_serialize_request_key_frame();
+    test_serialize_set_video_settings();
     return 0;
 }
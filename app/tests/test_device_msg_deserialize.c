@@ -61,6 +61,27 @@ static void test_deserialize_ack_set_clipboard(void) {
     assert(msg.ack_clipboard.sequence == UINT64_C(0x0102030405060708));
 }
 
+static void test_deserialize_ack_video_settings(void) {
+    const unsigned char input[] = {
+        DEVICE_MSG_TYPE_ACK_VIDEO_SETTINGS,
+        0x01, 0x02, 0x03, 0x04, 0x05, 0x06, 0x07, 0x08, // sequence
+        DEVICE_MSG_VIDEO_SETTINGS_RESTARTED,
+    };
+
+    struct device_msg msg;
+    ssize_t r = device_msg_deserialize(input, sizeof(input), &msg);
+    assert(r == 10);
+
+    assert(msg.type == DEVICE_MSG_TYPE_ACK_VIDEO_SETTINGS);
+    assert(msg.ack_video_settings.sequence == UINT64_C(0x0102030405060708));
+    assert(msg.ack_video_settings.status
+            == DEVICE_MSG_VIDEO_SETTINGS_RESTARTED);
+
+    // incomplete
+    r = device_msg_deserialize(input, sizeof(input) - 1, &msg);
+    assert(r == 0);
+}
+
 int main(int argc, char *argv[]) {
     (void) argc;
     (void) argv;
@@ -68,5 +89,6 @@ int main(int argc, char *argv[]) {
     test_deserialize_clipboard();
     test_deserialize_clipboard_big();
     test_deserialize_ack_set_clipboard();
+    test_deserialize_ack_video_settings();
     return 0;
 }
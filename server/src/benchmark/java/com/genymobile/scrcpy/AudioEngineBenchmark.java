@@ -0,0 +1,182 @@
+package com.genymobile.scrcpy;
+
+import android.media.MediaCodec;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Microbenchmark of the buffer handoff of the audio encoder engines: the threaded engine (a codec callback thread handing off the buffers
+ * to an input thread and an output thread through blocking queues of new tasks) and the single-thread engine.
+ * <p>
+ * This is not a unit test: it is compiled with the unit tests (from {@code src/benchmark/java}), but not run by them. Run it on a Linux
+ * JVM with the test classpath:
+ * <pre>
+ * java -cp &lt;test classes&gt;:&lt;main classes&gt;:&lt;android.jar&gt; com.genymobile.scrcpy.AudioEngineBenchmark
+ * </pre>
+ * <p>
+ * MediaCodec is not available on a JVM, so only the handoff is modeled: the codec is a thread which makes each input buffer available, then
+ * produces an output buffer once the input is queued; reading the capture and writing the packet do nothing. The internal threads of a real
+ * codec (present with both engines) are not modeled. The context switches and the allocations are those of the threads of the engine, read
+ * from {@code /proc/thread-self/status} (Linux only) and from HotSpot.
+ */
+public final class AudioEngineBenchmark {
+
+    private static final int WARMUP_BUFFERS = 50_000;
+    private static final int BUFFERS = 200_000;
+
+    private static final class InputTask {
+        private final int index;
+
+        InputTask(int index) {
+            this.index = index;
+        }
+    }
+
+    private static final class OutputTask {
+        private final int index;
+        private final MediaCodec.BufferInfo bufferInfo;
+
+        OutputTask(int index, MediaCodec.BufferInfo bufferInfo) {
+            this.index = index;
+            this.bufferInfo = bufferInfo;
+        }
+    }
+
+    private static volatile long checksum;
+
+    // accumulated by each thread of the engine being measured
+    private static final AtomicLong TOTAL_BYTES = new AtomicLong();
+    private static final AtomicLong TOTAL_SWITCHES = new AtomicLong();
+
+    private AudioEngineBenchmark() {
+        // not instantiable
+    }
+
+    private static void runThreaded(int buffers) throws InterruptedException {
+        BlockingQueue<InputTask> inputTasks = new ArrayBlockingQueue<>(64);
+        BlockingQueue<OutputTask> outputTasks = new ArrayBlockingQueue<>(64);
+        // the input buffers queued to the codec
+        BlockingQueue<MediaCodec.BufferInfo> queuedInputs = new ArrayBlockingQueue<>(64);
+
+        Thread codecThread = new Thread(() -> measure(() -> {
+            try {
+                for (int i = 0; i < buffers; ++i) {
+                    inputTasks.put(new InputTask(i & 3));
+                    MediaCodec.BufferInfo input = queuedInputs.take();
+                    // like the framework, a new BufferInfo per output callback
+                    MediaCodec.BufferInfo output = new MediaCodec.BufferInfo();
+                    output.set(0, input.size / 8, input.presentationTimeUs, 0);
+                    outputTasks.put(new OutputTask(i & 3, output));
+                }
+            } catch (InterruptedException e) {
+                // stopped
+            }
+        }), "media-codec");
+
+        Thread inputThread = new Thread(() -> measure(() -> {
+            MediaCodec.BufferInfo bufferInfo = new MediaCodec.BufferInfo();
+            try {
+                for (int i = 0; i < buffers; ++i) {
+                    InputTask task = inputTasks.take();
+                    bufferInfo.set(0, 960, i * 5000L + task.index, 0);
+                    // the codec copies the input buffer info on queueInputBuffer()
+                    MediaCodec.BufferInfo queued = new MediaCodec.BufferInfo();
+                    queued.set(bufferInfo.offset, bufferInfo.size, bufferInfo.presentationTimeUs, bufferInfo.flags);
+                    queuedInputs.put(queued);
+                }
+            } catch (InterruptedException e) {
+                // stopped
+            }
+        }), "audio-in");
+
+        Thread outputThread = new Thread(() -> measure(() -> {
+            long sum = 0;
+            try {
+                for (int i = 0; i < buffers; ++i) {
+                    OutputTask task = outputTasks.take();
+                    sum += task.index + task.bufferInfo.size;
+                }
+            } catch (InterruptedException e) {
+                // stopped
+            }
+            checksum += sum;
+        }), "audio-out");
+
+        codecThread.start();
+        inputThread.start();
+        outputThread.start();
+        codecThread.join();
+        inputThread.join();
+        outputThread.join();
+    }
+
+    private static void runSingleThread(int buffers) {
+        MediaCodec.BufferInfo inputInfo = new MediaCodec.BufferInfo();
+        MediaCodec.BufferInfo outputInfo = new MediaCodec.BufferInfo();
+        long sum = 0;
+        for (int i = 0; i < buffers; ++i) {
+            int index = i & 3;
+            inputInfo.set(0, 960, i * 5000L + index, 0);
+            outputInfo.set(0, inputInfo.size / 8, inputInfo.presentationTimeUs, 0);
+            sum += index + outputInfo.size;
+        }
+        checksum += sum;
+    }
+
+    private static long getAllocatedBytes() {
+        // not part of the standard API, but available on HotSpot
+        com.sun.management.ThreadMXBean bean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        return bean.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    private static long getContextSwitches() {
+        try (InputStream input = new FileInputStream("/proc/thread-self/status")) {
+            return ProcStats.parseContextSwitches(IO.toString(input));
+        } catch (IOException e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    // run the task, then add its context switches and allocated bytes (on the current thread) to the totals
+    private static void measure(Runnable task) {
+        long startSwitches = getContextSwitches();
+        long startBytes = getAllocatedBytes();
+        task.run();
+        long bytes = getAllocatedBytes() - startBytes;
+        long switches = getContextSwitches() - startSwitches;
+        TOTAL_BYTES.addAndGet(bytes);
+        TOTAL_SWITCHES.addAndGet(switches);
+    }
+
+    private static void run(String name, boolean singleThread) throws InterruptedException {
+        if (singleThread) {
+            measure(() -> runSingleThread(WARMUP_BUFFERS));
+        } else {
+            runThreaded(WARMUP_BUFFERS);
+        }
+
+        TOTAL_BYTES.set(0);
+        TOTAL_SWITCHES.set(0);
+        long startNs = System.nanoTime();
+        if (singleThread) {
+            measure(() -> runSingleThread(BUFFERS));
+        } else {
+            runThreaded(BUFFERS);
+        }
+        long durationNs = System.nanoTime() - startNs;
+
+        System.out.printf("%-13s %8.2f context switches/buffer %8.1f bytes/buffer %8.1f ns/buffer (checksum %d)%n", name,
+                (double) TOTAL_SWITCHES.get() / BUFFERS, (double) TOTAL_BYTES.get() / BUFFERS, (double) durationNs / BUFFERS, checksum);
+    }
+
+    public static void main(String... args) throws InterruptedException {
+        run("threaded", false);
+        run("single-thread", true);
+    }
+}
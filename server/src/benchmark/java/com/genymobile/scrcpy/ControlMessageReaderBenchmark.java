@@ -0,0 +1,112 @@
+package com.genymobile.scrcpy;
+
+import android.view.MotionEvent;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+
+/**
+ * Microbenchmark of the decoding of touch events, comparing the allocating path and the flyweight path.
+ * <p>
+ * This is not a unit test: it is compiled with the unit tests (from {@code src/benchmark/java}), but not run by them. Run it on a JVM
+ * with the test classpath:
+ * <pre>
+ * java -cp &lt;test classes&gt;:&lt;main classes&gt;:&lt;android.jar&gt; com.genymobile.scrcpy.ControlMessageReaderBenchmark
+ * </pre>
+ * <p>
+ * The "allocating" path decodes like before the flyweight mode: a new message and position per event, then the position rotated and
+ * converted to a new point, as {@code Device.getPhysicalPoint(Position)} does. The "flyweight" path reuses the message and only reads the
+ * primitive coordinates, as the controller now does.
+ */
+public final class ControlMessageReaderBenchmark {
+
+    private static final int EVENTS_PER_BATCH = 4096;
+    private static final int WARMUP_ITERATIONS = 500;
+    private static final int ITERATIONS = 2000;
+
+    private ControlMessageReaderBenchmark() {
+        // not instantiable
+    }
+
+    private static byte[] createTouchEvents() throws IOException {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        DataOutputStream dos = new DataOutputStream(bos);
+        for (int i = 0; i < EVENTS_PER_BATCH; ++i) {
+            dos.writeByte(ControlMessage.TYPE_INJECT_TOUCH_EVENT);
+            dos.writeByte(MotionEvent.ACTION_MOVE);
+            dos.writeLong(i % 5); // pointerId (5 fingers)
+            dos.writeInt(i % 1080);
+            dos.writeInt(i % 1920);
+            dos.writeShort(1080);
+            dos.writeShort(1920);
+            dos.writeShort(0xffff); // pressure
+            dos.writeInt(0); // action button
+            dos.writeInt(0); // buttons
+        }
+        return bos.toByteArray();
+    }
+
+    private static long decodeAllocating(ControlMessageReader reader, ByteArrayInputStream input) throws IOException {
+        input.reset();
+        reader.readFrom(input);
+        long checksum = 0;
+        ControlMessage msg;
+        while ((msg = reader.next()) != null) {
+            Position position = msg.getPosition().rotate(1);
+            Point point = new Point(position.getPoint().getX(), position.getPoint().getY());
+            checksum += point.getX() + point.getY();
+        }
+        return checksum;
+    }
+
+    private static long decodeFlyweight(ControlMessageReader reader, ByteArrayInputStream input) throws IOException {
+        input.reset();
+        reader.readFrom(input);
+        long checksum = 0;
+        ControlMessage msg;
+        while ((msg = reader.next()) != null) {
+            // rotation 1, as above
+            int x = msg.getScreenHeight() - msg.getY();
+            int y = msg.getX();
+            checksum += x + y;
+        }
+        return checksum;
+    }
+
+    private static long getAllocatedBytes() {
+        // not part of the standard API, but available on HotSpot
+        com.sun.management.ThreadMXBean bean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        return bean.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    private static void run(String name, boolean flyweight, byte[] data) throws IOException {
+        ControlMessageReader reader = new ControlMessageReader(flyweight);
+        ByteArrayInputStream input = new ByteArrayInputStream(data);
+
+        long checksum = 0;
+        for (int i = 0; i < WARMUP_ITERATIONS; ++i) {
+            checksum += flyweight ? decodeFlyweight(reader, input) : decodeAllocating(reader, input);
+        }
+
+        long startBytes = getAllocatedBytes();
+        long startNs = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; ++i) {
+            checksum += flyweight ? decodeFlyweight(reader, input) : decodeAllocating(reader, input);
+        }
+        long durationNs = System.nanoTime() - startNs;
+        long allocatedBytes = getAllocatedBytes() - startBytes;
+
+        long events = (long) ITERATIONS * EVENTS_PER_BATCH;
+        System.out.printf("%-10s %8.1f ns/event %12.0f events/s %8.2f bytes/event (checksum %d)%n", name, (double) durationNs / events,
+                events * 1e9 / durationNs, (double) allocatedBytes / events, checksum);
+    }
+
+    public static void main(String... args) throws IOException {
+        byte[] data = createTouchEvents();
+        run("allocating", false, data);
+        run("flyweight", true, data);
+    }
+}
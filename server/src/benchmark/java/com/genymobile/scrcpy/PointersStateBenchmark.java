@@ -0,0 +1,216 @@
+package com.genymobile.scrcpy;
+
+import android.view.MotionEvent;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Microbenchmark of the pointers tracking for 10-finger gestures, comparing the previous list-based implementation and the array-based
+ * {@link PointersState}.
+ * <p>
+ * This is not a unit test: it is compiled with the unit tests (from {@code src/benchmark/java}), but not run by them. Run it on a JVM
+ * with the test classpath:
+ * <pre>
+ * java -cp &lt;test classes&gt;:&lt;main classes&gt;:&lt;android.jar&gt; com.genymobile.scrcpy.PointersStateBenchmark [array|list]
+ * </pre>
+ * <p>
+ * Each gesture puts 10 fingers down one by one, moves each of them 50 times, then releases them in the reverse order of a rotation (so
+ * that pointers are removed from the middle), with an update of the motion event parameters after each event, as the controller does.
+ */
+public final class PointersStateBenchmark {
+
+    private static final int FINGERS = 10;
+    private static final int MOVES = 50;
+    private static final int EVENTS_PER_GESTURE = FINGERS * (MOVES + 2);
+    private static final int WARMUP_GESTURES = 20_000;
+    private static final int GESTURES = 100_000;
+
+    private interface State {
+        int getPointerIndex(long id);
+
+        void set(int index, int x, int y, float pressure, boolean up);
+
+        int update(MotionEvent.PointerProperties[] props, MotionEvent.PointerCoords[] coords);
+    }
+
+    private static final class ArrayState implements State {
+        private final PointersState state = new PointersState(FINGERS);
+
+        @Override
+        public int getPointerIndex(long id) {
+            return state.getPointerIndex(id);
+        }
+
+        @Override
+        public void set(int index, int x, int y, float pressure, boolean up) {
+            state.setPoint(index, x, y);
+            state.setPressure(index, pressure);
+            state.setUp(index, up);
+        }
+
+        @Override
+        public int update(MotionEvent.PointerProperties[] props, MotionEvent.PointerCoords[] coords) {
+            return state.update(props, coords);
+        }
+    }
+
+    // the previous implementation: a list of pointer objects, linear scans
+    private static final class ListState implements State {
+        private static final class Pointer {
+            private final long id;
+            private final int localId;
+            private int x;
+            private int y;
+            private float pressure;
+            private boolean up;
+
+            Pointer(long id, int localId) {
+                this.id = id;
+                this.localId = localId;
+            }
+        }
+
+        private final List<Pointer> pointers = new ArrayList<>();
+
+        private int indexOf(long id) {
+            for (int i = 0; i < pointers.size(); ++i) {
+                if (pointers.get(i).id == id) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        private boolean isLocalIdAvailable(int localId) {
+            for (int i = 0; i < pointers.size(); ++i) {
+                if (pointers.get(i).localId == localId) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private int nextUnusedLocalId() {
+            for (int localId = 0; localId < FINGERS; ++localId) {
+                if (isLocalIdAvailable(localId)) {
+                    return localId;
+                }
+            }
+            return -1;
+        }
+
+        @Override
+        public int getPointerIndex(long id) {
+            int index = indexOf(id);
+            if (index != -1) {
+                return index;
+            }
+            if (pointers.size() >= FINGERS) {
+                return -1;
+            }
+            pointers.add(new Pointer(id, nextUnusedLocalId()));
+            return pointers.size() - 1;
+        }
+
+        @Override
+        public void set(int index, int x, int y, float pressure, boolean up) {
+            Pointer pointer = pointers.get(index);
+            pointer.x = x;
+            pointer.y = y;
+            pointer.pressure = pressure;
+            pointer.up = up;
+        }
+
+        @Override
+        public int update(MotionEvent.PointerProperties[] props, MotionEvent.PointerCoords[] coords) {
+            int count = pointers.size();
+            for (int i = 0; i < count; ++i) {
+                Pointer pointer = pointers.get(i);
+                props[i].id = pointer.localId;
+                coords[i].x = pointer.x;
+                coords[i].y = pointer.y;
+                coords[i].pressure = pointer.pressure;
+            }
+            for (int i = pointers.size() - 1; i >= 0; --i) {
+                if (pointers.get(i).up) {
+                    pointers.remove(i);
+                }
+            }
+            return count;
+        }
+    }
+
+    private PointersStateBenchmark() {
+        // not instantiable
+    }
+
+    private static long event(State state, MotionEvent.PointerProperties[] props, MotionEvent.PointerCoords[] coords, long id, int x, int y,
+            boolean up) {
+        int index = state.getPointerIndex(id);
+        state.set(index, x, y, 1f, up);
+        return state.update(props, coords) + props[0].id;
+    }
+
+    private static long gesture(State state, MotionEvent.PointerProperties[] props, MotionEvent.PointerCoords[] coords, int g) {
+        long checksum = 0;
+        // client ids of real touches are arbitrary
+        long baseId = (g & 0xff) * 100;
+        for (int f = 0; f < FINGERS; ++f) {
+            checksum += event(state, props, coords, baseId + f, f * 100, f * 100, false);
+        }
+        for (int m = 0; m < MOVES; ++m) {
+            for (int f = 0; f < FINGERS; ++f) {
+                checksum += event(state, props, coords, baseId + f, f * 100 + m, f * 100 + m, false);
+            }
+        }
+        for (int f = 0; f < FINGERS; ++f) {
+            int finger = (f * 3 + g) % FINGERS;
+            checksum += event(state, props, coords, baseId + finger, 0, 0, true);
+        }
+        return checksum;
+    }
+
+    private static long getAllocatedBytes() {
+        // not part of the standard API, but available on HotSpot
+        com.sun.management.ThreadMXBean bean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        return bean.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    private static void run(String name, State state) {
+        MotionEvent.PointerProperties[] props = new MotionEvent.PointerProperties[FINGERS];
+        MotionEvent.PointerCoords[] coords = new MotionEvent.PointerCoords[FINGERS];
+        for (int i = 0; i < FINGERS; ++i) {
+            props[i] = new MotionEvent.PointerProperties();
+            coords[i] = new MotionEvent.PointerCoords();
+        }
+
+        long checksum = 0;
+        for (int g = 0; g < WARMUP_GESTURES; ++g) {
+            checksum += gesture(state, props, coords, g);
+        }
+
+        long startBytes = getAllocatedBytes();
+        long startNs = System.nanoTime();
+        for (int g = 0; g < GESTURES; ++g) {
+            checksum += gesture(state, props, coords, g);
+        }
+        long durationNs = System.nanoTime() - startNs;
+        long allocatedBytes = getAllocatedBytes() - startBytes;
+
+        long events = (long) GESTURES * EVENTS_PER_GESTURE;
+        System.out.printf("%-6s %8.1f ns/event %8.2f bytes/event %10.1f ns/gesture (checksum %d)%n", name, (double) durationNs / events,
+                (double) allocatedBytes / events, (double) durationNs / GESTURES, checksum);
+    }
+
+    public static void main(String... args) {
+        // run a single implementation per JVM (the call sites would become polymorphic otherwise)
+        String impl = args.length > 0 ? args[0] : "array";
+        if ("list".equals(impl)) {
+            run("list", new ListState());
+        } else {
+            run("array", new ArrayState());
+        }
+    }
+}
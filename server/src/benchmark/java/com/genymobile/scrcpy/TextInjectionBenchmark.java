@@ -0,0 +1,142 @@
+package com.genymobile.scrcpy;
+
+import java.lang.management.ManagementFactory;
+
+/**
+ * Microbenchmark of the preparation of the key events to type a 10k-char text, comparing the per-char path and the cached path.
+ * <p>
+ * This is not a unit test: it is compiled with the unit tests (from {@code src/benchmark/java}), but not run by them. Run it on a JVM
+ * with the test classpath:
+ * <pre>
+ * java -cp &lt;test classes&gt;:&lt;main classes&gt;:&lt;android.jar&gt; com.genymobile.scrcpy.TextInjectionBenchmark
+ * </pre>
+ * <p>
+ * {@code KeyCharacterMap.getEvents()} is native, so it is simulated by {@link #getEvents(char[])}, which only allocates its result like
+ * the real one does: the measure excludes the JNI call. The injection itself (one binder call per key event) is replaced by a counter: the
+ * number of injected events is reported, to compare with the clipboard path (one clipboard change and 2 key events, whatever the length).
+ */
+public final class TextInjectionBenchmark {
+
+    private static final int TEXT_LENGTH = 10_000;
+    private static final int WARMUP_ITERATIONS = 200;
+    private static final int ITERATIONS = 1000;
+
+    private static final int KEYCODE_SHIFT_LEFT = 59;
+
+    private static long injectedEvents;
+    private static long checksum;
+
+    private TextInjectionBenchmark() {
+        // not instantiable
+    }
+
+    private static String createText() {
+        String sample = "The quick brown fox jumps over the lazy dog. Héllo, wörld! 0123456789\n";
+        StringBuilder builder = new StringBuilder(TEXT_LENGTH);
+        while (builder.length() < TEXT_LENGTH) {
+            builder.append(sample);
+        }
+        builder.setLength(TEXT_LENGTH);
+        return builder.toString();
+    }
+
+    // like KeyCharacterMap.getEvents(): a new array of (action, keycode, metaState) per call, shift pressed for the upper case chars
+    private static int[] getEvents(char[] chars) {
+        int count = 0;
+        for (char c : chars) {
+            count += Character.isUpperCase(c) ? 4 : 2;
+        }
+        int[] events = new int[count * KeyStrokeCache.STROKE_SIZE];
+        int i = 0;
+        for (char c : chars) {
+            boolean shift = Character.isUpperCase(c);
+            int metaState = shift ? 1 : 0;
+            if (shift) {
+                i = put(events, i, 0, KEYCODE_SHIFT_LEFT, metaState);
+            }
+            i = put(events, i, 0, c, metaState);
+            i = put(events, i, 1, c, metaState);
+            if (shift) {
+                i = put(events, i, 1, KEYCODE_SHIFT_LEFT, 0);
+            }
+        }
+        return events;
+    }
+
+    private static int put(int[] events, int i, int action, int keycode, int metaState) {
+        events[i] = action;
+        events[i + 1] = keycode;
+        events[i + 2] = metaState;
+        return i + KeyStrokeCache.STROKE_SIZE;
+    }
+
+    private static int[] loadKeyStrokes(char c) {
+        // as Controller does
+        String decomposed = KeyComposition.decompose(c);
+        char[] chars = decomposed != null ? decomposed.toCharArray() : new char[]{c};
+        return getEvents(chars);
+    }
+
+    private static void inject(int action, int keycode, int metaState) {
+        ++injectedEvents;
+        checksum += action + keycode + metaState;
+    }
+
+    private static void typePerChar(String text) {
+        for (char c : text.toCharArray()) {
+            int[] strokes = loadKeyStrokes(c);
+            for (int i = 0; i < strokes.length; i += KeyStrokeCache.STROKE_SIZE) {
+                inject(strokes[i], strokes[i + 1], strokes[i + 2]);
+            }
+        }
+    }
+
+    private static void typeCached(KeyStrokeCache cache, String text) {
+        for (int j = 0; j < text.length(); ++j) {
+            int[] strokes = cache.get(text.charAt(j));
+            for (int i = 0; i < strokes.length; i += KeyStrokeCache.STROKE_SIZE) {
+                inject(strokes[i], strokes[i + 1], strokes[i + 2]);
+            }
+        }
+    }
+
+    private static long getAllocatedBytes() {
+        // not part of the standard API, but available on HotSpot
+        com.sun.management.ThreadMXBean bean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        return bean.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    private static void run(String name, boolean cached, String text) {
+        KeyStrokeCache cache = new KeyStrokeCache(TextInjectionBenchmark::loadKeyStrokes);
+        for (int i = 0; i < WARMUP_ITERATIONS; ++i) {
+            if (cached) {
+                typeCached(cache, text);
+            } else {
+                typePerChar(text);
+            }
+        }
+
+        injectedEvents = 0;
+        long startBytes = getAllocatedBytes();
+        long startNs = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; ++i) {
+            if (cached) {
+                typeCached(cache, text);
+            } else {
+                typePerChar(text);
+            }
+        }
+        long durationNs = System.nanoTime() - startNs;
+        long allocatedBytes = getAllocatedBytes() - startBytes;
+
+        System.out.printf("%-9s %10.1f us/text %8.1f ns/char %10.0f bytes/text %8d events/text (checksum %d)%n", name,
+                durationNs / 1e3 / ITERATIONS, (double) durationNs / ITERATIONS / text.length(), (double) allocatedBytes / ITERATIONS,
+                injectedEvents / ITERATIONS, checksum);
+    }
+
+    public static void main(String... args) {
+        String text = createText();
+        run("per-char", false, text);
+        run("cached", true, text);
+    }
+}
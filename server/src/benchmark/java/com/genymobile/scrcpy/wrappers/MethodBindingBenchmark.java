@@ -0,0 +1,81 @@
+package com.genymobile.scrcpy.wrappers;
+
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.Method;
+
+/**
+ * Microbenchmark of the per-call overhead of {@link MethodBinding}, against a stand-in for {@code InputManager.injectInputEvent()}.
+ * <p>
+ * This is not a unit test: it is compiled with the unit tests (from {@code src/benchmark/java}), but not run by them. Run it on a JVM
+ * with the test classpath:
+ * <pre>
+ * java -cp &lt;test classes&gt;:&lt;main classes&gt;:&lt;android.jar&gt; com.genymobile.scrcpy.wrappers.MethodBindingBenchmark
+ * </pre>
+ * The numbers on a desktop JVM are only indicative: HotSpot inlines {@code Method.invoke()} and removes its varargs array and boxing by
+ * escape analysis, while ART allocates them on every call. The allocated bytes per call are reported for that reason; run it with
+ * {@code -XX:-DoEscapeAnalysis} to get closer to the ART behavior.
+ */
+public final class MethodBindingBenchmark {
+
+    private static final int WARMUP_CALLS = 5_000_000;
+    private static final int CALLS = 20_000_000;
+
+    // stand-in for the binder proxy (not public, like the real one)
+    static final class FakeInputManager {
+        private long count;
+
+        public boolean injectInputEvent(Object event, int mode) {
+            count += mode;
+            return true;
+        }
+    }
+
+    private interface Call {
+        boolean call(Object event, int mode) throws Exception;
+    }
+
+    private MethodBindingBenchmark() {
+        // not instantiable
+    }
+
+    private static long getAllocatedBytes() {
+        // not part of the standard API, but available on HotSpot
+        com.sun.management.ThreadMXBean bean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        return bean.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    private static void run(String name, Call call) throws Exception {
+        Object event = new Object();
+        int ok = 0;
+        for (int i = 0; i < WARMUP_CALLS; ++i) {
+            if (call.call(event, i & 1)) {
+                ++ok;
+            }
+        }
+        long startBytes = getAllocatedBytes();
+        long startNs = System.nanoTime();
+        for (int i = 0; i < CALLS; ++i) {
+            if (call.call(event, i & 1)) {
+                ++ok;
+            }
+        }
+        long durationNs = System.nanoTime() - startNs;
+        long allocatedBytes = getAllocatedBytes() - startBytes;
+        System.out.printf("%-22s %6.2f ns/call %6.2f bytes/call (%d)%n", name, (double) durationNs / CALLS, (double) allocatedBytes / CALLS,
+                ok);
+    }
+
+    public static void main(String... args) throws Exception {
+        FakeInputManager manager = new FakeInputManager();
+        Method method = FakeInputManager.class.getMethod("injectInputEvent", Object.class, int.class);
+        method.setAccessible(true);
+
+        run("direct", manager::injectInputEvent);
+        // the previous implementation: cached Method, boxed arguments and result
+        run("Method.invoke", (event, mode) -> (boolean) method.invoke(manager, event, mode));
+        MethodBinding reflect = MethodBinding.bind(method, false);
+        run("binding (reflection)", (event, mode) -> reflect.invokeBoolean(manager, event, mode));
+        MethodBinding handle = MethodBinding.bind(method, true);
+        run("binding (MethodHandle)", (event, mode) -> handle.invokeBoolean(manager, event, mode));
+    }
+}
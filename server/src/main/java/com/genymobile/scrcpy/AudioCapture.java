@@ -23,6 +23,7 @@ public final class AudioCapture {
     public static final int CHANNEL_MASK = AudioFormat.CHANNEL_IN_LEFT | AudioFormat.CHANNEL_IN_RIGHT;
     public static final int ENCODING = AudioFormat.ENCODING_PCM_16BIT;
     public static final int BYTES_PER_SAMPLE = 2;
+    public static final int BYTES_PER_FRAME = CHANNELS * BYTES_PER_SAMPLE;
 
     private final int audioSource;
 
@@ -31,13 +32,27 @@ public final class AudioCapture {
     private final AudioTimestamp timestamp = new AudioTimestamp();
     private long previousPts = 0;
     private long nextPts = 0;
+    // number of frames read since the start, i.e. the position of the first frame of the next read
+    private long framesRead;
 
     public AudioCapture(AudioSource audioSource) {
         this.audioSource = audioSource.value();
     }
 
     public static int millisToBytes(int millis) {
-        return SAMPLE_RATE * CHANNELS * BYTES_PER_SAMPLE * millis / 1000;
+        return SAMPLE_RATE * BYTES_PER_FRAME * millis / 1000;
+    }
+
+    /**
+     * Compute the capture time of a frame, from a timestamp of another frame.
+     *
+     * @param timestampNs            the capture time of the frame at {@code timestampFramePosition} (in nanoseconds)
+     * @param timestampFramePosition the position of the frame of the timestamp
+     * @param framePosition          the position of the frame
+     * @return the capture time of the frame at {@code framePosition} (in microseconds)
+     */
+    static long computePtsUs(long timestampNs, long timestampFramePosition, long framePosition) {
+        return timestampNs / 1000 + (framePosition - timestampFramePosition) * 1_000_000 / SAMPLE_RATE;
     }
 
     private static AudioFormat createAudioFormat() {
@@ -112,6 +127,7 @@ public final class AudioCapture {
             recorder = Workarounds.createAudioRecord(audioSource, SAMPLE_RATE, CHANNEL_CONFIG, CHANNELS, CHANNEL_MASK, ENCODING);
         }
         recorder.startRecording();
+        framesRead = 0;
     }
 
     public void start() throws AudioCaptureForegroundException {
@@ -143,9 +159,20 @@ public final class AudioCapture {
 
         long pts;
 
+        long firstFrame = framesRead;
+        int frames = r / BYTES_PER_FRAME;
+        framesRead += frames;
+
         int ret = recorder.getTimestamp(timestamp, AudioTimestamp.TIMEBASE_MONOTONIC);
         if (ret == AudioRecord.SUCCESS) {
-            pts = timestamp.nanoTime / 1000;
+            if (Math.abs(timestamp.framePosition - framesRead) > SAMPLE_RATE) {
+                // more than 1 second apart (frames lost on overrun?), assume that the timestamp is the last frame read
+                Ln.d("Audio frame position resynchronized: " + framesRead + " -> " + timestamp.framePosition);
+                framesRead = timestamp.framePosition;
+                firstFrame = framesRead - frames;
+            }
+            // the timestamp is the capture time of a recent frame, not of the first frame of this read (the whole buffer may be large)
+            pts = computePtsUs(timestamp.nanoTime, timestamp.framePosition, firstFrame);
         } else {
             if (nextPts == 0) {
                 Ln.w("Could not get any audio timestamp");
@@ -154,7 +181,7 @@ public final class AudioCapture {
             pts = nextPts;
         }
 
-        long durationUs = r * 1000000 / (CHANNELS * BYTES_PER_SAMPLE * SAMPLE_RATE);
+        long durationUs = (long) frames * 1000000 / SAMPLE_RATE;
         nextPts = pts + durationUs;
 
         if (previousPts != 0 && pts < previousPts) {
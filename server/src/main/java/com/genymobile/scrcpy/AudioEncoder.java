@@ -37,14 +37,27 @@ public final class AudioEncoder implements AsyncProcessor {
     private static final int SAMPLE_RATE = AudioCapture.SAMPLE_RATE;
     private static final int CHANNELS = AudioCapture.CHANNELS;
 
-    private static final int READ_MS = 5; // milliseconds
-    private static final int READ_SIZE = AudioCapture.millisToBytes(READ_MS);
+    public static final int DEFAULT_BATCH_MS = 5; // milliseconds
+    public static final int MAX_BATCH_MS = 100; // milliseconds
+
+    // in single-thread mode, the max time to wait for a free input buffer before draining the output
+    private static final long DEQUEUE_INPUT_TIMEOUT_US = 2000;
+
+    // from the capture timestamp to the output of the encoded packet
+    private static final Metrics.Histogram ENCODE_LATENCY = Metrics.histogram("audio.encode_latency_us");
+    // one per wakeup of the input thread
+    private static final Metrics.Counter INPUT_BUFFERS = Metrics.counter("audio.input_buffers");
 
     private final AudioCapture capture;
     private final Streamer streamer;
     private final int bitRate;
     private final List<CodecOption> codecOptions;
     private final String encoderName;
+    // the duration of audio captured into each codec input buffer, as a number of bytes
+    private final int batchSize;
+    // if true, the input and output buffers are serviced from a single thread, with the synchronous MediaCodec API
+    private final boolean singleThread;
+    private final EncoderPreloader encoderPreloader; // may be null
 
     // Capacity of 64 is in practice "infinite" (it is limited by the number of available MediaCodec buffers, typically 4).
     // So many pending tasks would lead to an unacceptable delay anyway.
@@ -59,12 +72,36 @@ public final class AudioEncoder implements AsyncProcessor {
 
     private boolean ended;
 
-    public AudioEncoder(AudioCapture capture, Streamer streamer, int bitRate, List<CodecOption> codecOptions, String encoderName) {
+    /**
+     * @param batchMs the duration of audio to capture into each codec input buffer (in milliseconds): a larger batch means fewer wakeups
+     *                per second (1000 / batchMs) but adds up to {@code batchMs} of latency
+     * @param singleThread if {@code true}, use a single thread calling the synchronous MediaCodec API, instead of a MediaCodec callback
+     *                     thread handing off the buffers to an input thread and an output thread
+     */
+    public AudioEncoder(AudioCapture capture, Streamer streamer, int bitRate, List<CodecOption> codecOptions, String encoderName, int batchMs,
+            boolean singleThread, EncoderPreloader encoderPreloader) {
         this.capture = capture;
         this.streamer = streamer;
         this.bitRate = bitRate;
         this.codecOptions = codecOptions;
         this.encoderName = encoderName;
+        this.batchSize = AudioCapture.millisToBytes(batchMs);
+        this.singleThread = singleThread;
+        this.encoderPreloader = encoderPreloader;
+    }
+
+    /**
+     * Return the number of bytes to read into a codec input buffer.
+     *
+     * @param batchSize the requested size
+     * @param available the remaining capacity of the buffer
+     * @return the requested size, limited to the available capacity (rounded down to whole frames)
+     */
+    static int getReadSize(int batchSize, int available) {
+        if (available >= batchSize) {
+            return batchSize;
+        }
+        return available - available % AudioCapture.BYTES_PER_FRAME;
     }
 
     private static MediaFormat createFormat(String mimeType, int bitRate, List<CodecOption> codecOptions) {
@@ -94,12 +131,14 @@ public final class AudioEncoder implements AsyncProcessor {
         while (!Thread.currentThread().isInterrupted()) {
             InputTask task = inputTasks.take();
             ByteBuffer buffer = mediaCodec.getInputBuffer(task.index);
-            int r = capture.read(buffer, READ_SIZE, bufferInfo);
+            // a single blocking read fills the whole batch, the PTS is the capture time of its first frame
+            int r = capture.read(buffer, getReadSize(batchSize, buffer.remaining()), bufferInfo);
             if (r <= 0) {
                 throw new IOException("Could not read audio: " + r);
             }
 
             mediaCodec.queueInputBuffer(task.index, bufferInfo.offset, bufferInfo.size, bufferInfo.presentationTimeUs, bufferInfo.flags);
+            INPUT_BUFFERS.increment();
         }
     }
 
@@ -108,11 +147,48 @@ public final class AudioEncoder implements AsyncProcessor {
 
         while (!Thread.currentThread().isInterrupted()) {
             OutputTask task = outputTasks.take();
-            ByteBuffer buffer = mediaCodec.getOutputBuffer(task.index);
-            try {
-                streamer.writePacket(buffer, task.bufferInfo);
-            } finally {
-                mediaCodec.releaseOutputBuffer(task.index, false);
+            writeOutput(mediaCodec, task.index, task.bufferInfo);
+        }
+    }
+
+    private void writeOutput(MediaCodec mediaCodec, int index, MediaCodec.BufferInfo bufferInfo) throws IOException {
+        ByteBuffer buffer = mediaCodec.getOutputBuffer(index);
+        try {
+            if ((bufferInfo.flags & MediaCodec.BUFFER_FLAG_CODEC_CONFIG) == 0) {
+                // the PTS are on the monotonic time base (see AudioCapture)
+                ENCODE_LATENCY.record(System.nanoTime() / 1000 - bufferInfo.presentationTimeUs);
+            }
+            streamer.writePacket(buffer, bufferInfo);
+        } finally {
+            mediaCodec.releaseOutputBuffer(index, false);
+        }
+    }
+
+    @TargetApi(Build.VERSION_CODES.N)
+    private void singleThreadLoop(MediaCodec mediaCodec) throws IOException {
+        streamer.writeAudioHeader();
+
+        // reused for every buffer, nothing is allocated per buffer
+        final MediaCodec.BufferInfo inputInfo = new MediaCodec.BufferInfo();
+        final MediaCodec.BufferInfo outputInfo = new MediaCodec.BufferInfo();
+
+        while (!isEnded()) {
+            int inputIndex = mediaCodec.dequeueInputBuffer(DEQUEUE_INPUT_TIMEOUT_US);
+            if (inputIndex >= 0) {
+                ByteBuffer buffer = mediaCodec.getInputBuffer(inputIndex);
+                int r = capture.read(buffer, getReadSize(batchSize, buffer.remaining()), inputInfo);
+                if (r <= 0) {
+                    throw new IOException("Could not read audio: " + r);
+                }
+                mediaCodec.queueInputBuffer(inputIndex, inputInfo.offset, inputInfo.size, inputInfo.presentationTimeUs, inputInfo.flags);
+                INPUT_BUFFERS.increment();
+            }
+
+            // drain the available output without waiting: the next blocking read paces the loop, so a packet may be written up to one
+            // batch later than with the threaded engine
+            int outputIndex;
+            while ((outputIndex = mediaCodec.dequeueOutputBuffer(outputInfo, 0)) >= 0) {
+                writeOutput(mediaCodec, outputIndex, outputInfo);
             }
         }
     }
@@ -159,6 +235,10 @@ public final class AudioEncoder implements AsyncProcessor {
         notify();
     }
 
+    private synchronized boolean isEnded() {
+        return ended;
+    }
+
     private synchronized void waitEnded() {
         try {
             while (!ended) {
@@ -182,16 +262,34 @@ public final class AudioEncoder implements AsyncProcessor {
         boolean mediaCodecStarted = false;
         try {
             Codec codec = streamer.getCodec();
-            mediaCodec = createMediaCodec(codec, encoderName);
+            mediaCodec = encoderPreloader != null ? encoderPreloader.takeAudioCodec() : null;
+            if (mediaCodec != null) {
+                Ln.d("Using preloaded audio encoder: '" + mediaCodec.getName() + "'");
+            } else {
+                mediaCodec = createMediaCodec(codec, encoderName);
+            }
+
+            MediaFormat format = createFormat(codec.getMimeType(), bitRate, codecOptions);
+
+            if (singleThread) {
+                mediaCodec.configure(format, null, null, MediaCodec.CONFIGURE_FLAG_ENCODE);
+                capture.start();
+                logCaptureBatch();
+
+                mediaCodec.start();
+                mediaCodecStarted = true;
+                runSingleThreadLoop(mediaCodec);
+                return;
+            }
 
             mediaCodecThread = new HandlerThread("media-codec");
             mediaCodecThread.start();
 
-            MediaFormat format = createFormat(codec.getMimeType(), bitRate, codecOptions);
             mediaCodec.setCallback(new EncoderCallback(), new Handler(mediaCodecThread.getLooper()));
             mediaCodec.configure(format, null, null, MediaCodec.CONFIGURE_FLAG_ENCODE);
 
             capture.start();
+            logCaptureBatch();
 
             final MediaCodec mediaCodecRef = mediaCodec;
             inputThread = new Thread(() -> {
@@ -275,6 +373,26 @@ public final class AudioEncoder implements AsyncProcessor {
         }
     }
 
+    private void logCaptureBatch() {
+        int batchMs = batchSize * 1000 / AudioCapture.millisToBytes(1000);
+        Ln.d("Audio capture: " + batchMs + " ms per input buffer (" + 1000 / batchMs + " wakeups/s), "
+                + (singleThread ? "single-thread" : "threaded") + " engine");
+    }
+
+    private void runSingleThreadLoop(MediaCodec mediaCodec) {
+        try {
+            singleThreadLoop(mediaCodec);
+        } catch (IOException e) {
+            // Broken pipe is expected on close, because the socket is closed by the client
+            if (!IO.isBrokenPipe(e)) {
+                Ln.e("Audio encoding error", e);
+            }
+        } catch (IllegalStateException e) {
+            // including MediaCodec.CodecException
+            Ln.e("MediaCodec error", e);
+        }
+    }
+
     private static MediaCodec createMediaCodec(Codec codec, String encoderName) throws IOException, ConfigurationException {
         if (encoderName != null) {
             Ln.d("Creating audio encoder by name: '" + encoderName + "'");
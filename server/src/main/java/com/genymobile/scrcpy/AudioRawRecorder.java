@@ -5,20 +5,35 @@ import android.os.Build;
 
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 
 public final class AudioRawRecorder implements AsyncProcessor {
 
+    public static final int MAX_SILENCE_THRESHOLD = Short.MAX_VALUE;
+
+    private static final Metrics.Counter SILENT_PACKETS = Metrics.counter("audio.silent_packets");
+    private static final Metrics.Counter SILENCE_SAVED_BYTES = Metrics.counter("audio.silence_saved_bytes");
+
     private final AudioCapture capture;
     private final Streamer streamer;
+    private final boolean silenceGate;
+    private final int silenceThreshold;
 
     private Thread thread;
 
     private static final int READ_MS = 5; // milliseconds
     private static final int READ_SIZE = AudioCapture.millisToBytes(READ_MS);
 
-    public AudioRawRecorder(AudioCapture capture, Streamer streamer) {
+    /**
+     * @param silenceGate      replace the reads where all the samples are within {@code [-silenceThreshold, silenceThreshold]} by silence
+     *                         packets (a few bytes instead of the PCM samples)
+     * @param silenceThreshold the max amplitude considered as silence (0 for digital silence only)
+     */
+    public AudioRawRecorder(AudioCapture capture, Streamer streamer, boolean silenceGate, int silenceThreshold) {
         this.capture = capture;
         this.streamer = streamer;
+        this.silenceGate = silenceGate;
+        this.silenceThreshold = silenceThreshold;
     }
 
     private void record() throws IOException, AudioCaptureForegroundException {
@@ -28,9 +43,16 @@ public final class AudioRawRecorder implements AsyncProcessor {
             return;
         }
 
-        final ByteBuffer buffer = ByteBuffer.allocateDirect(READ_SIZE);
+        // the captured PCM is little-endian
+        final ByteBuffer buffer = ByteBuffer.allocateDirect(READ_SIZE).order(ByteOrder.LITTLE_ENDIAN);
         final MediaCodec.BufferInfo bufferInfo = new MediaCodec.BufferInfo();
 
+        boolean gate = silenceGate;
+        if (gate && !streamer.canWriteSilence()) {
+            Ln.w("Audio silence gate disabled: it requires the frame meta");
+            gate = false;
+        }
+
         try {
             capture.start();
 
@@ -43,7 +65,14 @@ public final class AudioRawRecorder implements AsyncProcessor {
                 }
                 buffer.limit(r);
 
-                streamer.writePacket(buffer, bufferInfo);
+                if (gate && SilenceDetector.isSilent(buffer, silenceThreshold)) {
+                    // same PTS, so that the client timeline is unchanged: only the payload is shrunk
+                    streamer.writeSilencePacket(bufferInfo.presentationTimeUs, r / AudioCapture.BYTES_PER_FRAME);
+                    SILENT_PACKETS.increment();
+                    SILENCE_SAVED_BYTES.add(r - 4);
+                } else {
+                    streamer.writePacket(buffer, bufferInfo);
+                }
             }
         } catch (Throwable e) {
             // Notify the client that the audio could not be captured
@@ -0,0 +1,164 @@
+package com.genymobile.scrcpy;
+
+/**
+ * Control law of the adaptive bitrate mode.
+ * <p>
+ * The input is the socket backpressure: the time spent blocked in the writes of the video socket, and the number of bytes written. They
+ * are aggregated over fixed windows:
+ * <ul>
+ *     <li>if the writes were blocked during a large part of the window, the link is saturated: the bitrate is decreased immediately, below
+ *     the throughput actually delivered by the link;</li>
+ *     <li>if the writes did (almost) never block for several consecutive windows, the bitrate is increased progressively.</li>
+ * </ul>
+ * The bitrate always stays within the configured bounds.
+ * <p>
+ * This class does not read any clock and does not touch the encoder, so that it can be tested against simulated link traces.
+ */
+public final class BitrateController {
+
+    public static final int NO_CHANGE = 0;
+
+    private static final long WINDOW_NS = 500_000_000; // 500ms
+
+    // a window is congested if the writes were blocked more than 25% of the time
+    private static final int CONGESTED_STALL_PERCENT = 25;
+    // a window is clear if the writes were blocked less than 5% of the time
+    private static final int CLEAR_STALL_PERCENT = 5;
+
+    // on congestion, target this percentage of the measured throughput...
+    private static final int DECREASE_THROUGHPUT_PERCENT = 85;
+    // ...and decrease by at least this percentage of the current bitrate
+    private static final int DECREASE_MIN_PERCENT = 20;
+
+    // number of consecutive clear windows before increasing the bitrate
+    private static final int CLEAR_WINDOWS_BEFORE_INCREASE = 3;
+    // after a decrease, wait longer before probing a higher bitrate again
+    private static final int CLEAR_WINDOWS_AFTER_DECREASE = 8;
+    private static final int INCREASE_PERCENT = 10;
+    private static final int INCREASE_MIN_STEP = 100_000; // bps
+
+    private final int minBitRate;
+    private int maxBitRate;
+
+    private int bitRate;
+
+    private boolean windowStarted;
+    private long windowStartNs;
+    private long windowStartBytes;
+    private long windowStartWriteTimeNs;
+    private int clearWindows;
+    private int requiredClearWindows = CLEAR_WINDOWS_BEFORE_INCREASE;
+
+    /**
+     * @param initialBitRate the bitrate the encoder is configured with (clamped to the bounds)
+     * @param minBitRate     the lower bound, in bps
+     * @param maxBitRate     the upper bound, in bps
+     */
+    public BitrateController(int initialBitRate, int minBitRate, int maxBitRate) {
+        if (minBitRate <= 0 || maxBitRate < minBitRate) {
+            throw new IllegalArgumentException("Invalid bitrate bounds: [" + minBitRate + ", " + maxBitRate + "]");
+        }
+        this.minBitRate = minBitRate;
+        this.maxBitRate = maxBitRate;
+        this.bitRate = clamp(initialBitRate);
+    }
+
+    public int getBitRate() {
+        return bitRate;
+    }
+
+    public int getMinBitRate() {
+        return minBitRate;
+    }
+
+    public int getMaxBitRate() {
+        return maxBitRate;
+    }
+
+    /**
+     * Change the upper bound (on a request from the client or on a change of the degradation level).
+     * <p>
+     * The current bitrate is only lowered if it exceeds the new bound: it is never raised, so that a change of the bound does not undo a
+     * decrease caused by congestion (a higher bound is reached progressively, if the link allows it).
+     *
+     * @param value the new upper bound, in bps (raised to the lower bound if necessary)
+     * @return the new bitrate to apply
+     */
+    public int setMaxBitRate(int value) {
+        maxBitRate = Math.max(minBitRate, value);
+        bitRate = clamp(bitRate);
+        reset();
+        return bitRate;
+    }
+
+    private int clamp(long value) {
+        return (int) Math.max(minBitRate, Math.min(maxBitRate, value));
+    }
+
+    /**
+     * Restart the measurement (for example when the encoder is restarted), keeping the current bitrate.
+     */
+    public void reset() {
+        windowStarted = false;
+        clearWindows = 0;
+    }
+
+    /**
+     * Update the controller with the cumulative counters of the socket writes.
+     *
+     * @param nowNs       the current time, in nanoseconds
+     * @param totalBytes  the total number of bytes written so far
+     * @param writeTimeNs the total time spent in the writes so far, in nanoseconds
+     * @return the new bitrate to apply, or {@link #NO_CHANGE}
+     */
+    public int update(long nowNs, long totalBytes, long writeTimeNs) {
+        if (!windowStarted) {
+            startWindow(nowNs, totalBytes, writeTimeNs);
+            return NO_CHANGE;
+        }
+
+        long durationNs = nowNs - windowStartNs;
+        if (durationNs < WINDOW_NS) {
+            return NO_CHANGE;
+        }
+
+        long bytes = totalBytes - windowStartBytes;
+        long stallNs = writeTimeNs - windowStartWriteTimeNs;
+        startWindow(nowNs, totalBytes, writeTimeNs);
+
+        long stallPercent = stallNs * 100 / durationNs;
+        int newBitRate;
+        if (stallPercent > CONGESTED_STALL_PERCENT) {
+            clearWindows = 0;
+            long throughput = bytes * 8 * 1_000_000_000L / durationNs;
+            long target = Math.min(throughput * DECREASE_THROUGHPUT_PERCENT / 100, (long) bitRate * (100 - DECREASE_MIN_PERCENT) / 100);
+            newBitRate = clamp(target);
+            requiredClearWindows = CLEAR_WINDOWS_AFTER_DECREASE;
+        } else if (stallPercent < CLEAR_STALL_PERCENT) {
+            if (++clearWindows < requiredClearWindows) {
+                return NO_CHANGE;
+            }
+            clearWindows = 0;
+            requiredClearWindows = CLEAR_WINDOWS_BEFORE_INCREASE;
+            long step = Math.max((long) bitRate * INCREASE_PERCENT / 100, INCREASE_MIN_STEP);
+            newBitRate = clamp(bitRate + step);
+        } else {
+            // neither congested nor clear, keep the current bitrate
+            clearWindows = 0;
+            return NO_CHANGE;
+        }
+
+        if (newBitRate == bitRate) {
+            return NO_CHANGE;
+        }
+        bitRate = newBitRate;
+        return newBitRate;
+    }
+
+    private void startWindow(long nowNs, long totalBytes, long writeTimeNs) {
+        windowStarted = true;
+        windowStartNs = nowNs;
+        windowStartBytes = totalBytes;
+        windowStartWriteTimeNs = writeTimeNs;
+    }
+}
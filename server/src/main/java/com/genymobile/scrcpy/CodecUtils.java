@@ -1,30 +1,27 @@
 package com.genymobile.scrcpy;
 
-import android.media.MediaCodecInfo;
-import android.media.MediaCodecList;
 import android.media.MediaFormat;
 
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.List;
 
 public final class CodecUtils {
 
     public static final class DeviceEncoder {
         private final Codec codec;
-        private final MediaCodecInfo info;
+        private final EncoderCapabilities.Encoder encoder;
 
-        DeviceEncoder(Codec codec, MediaCodecInfo info) {
+        DeviceEncoder(Codec codec, EncoderCapabilities.Encoder encoder) {
             this.codec = codec;
-            this.info = info;
+            this.encoder = encoder;
         }
 
         public Codec getCodec() {
             return codec;
         }
 
-        public MediaCodecInfo getInfo() {
-            return info;
+        public EncoderCapabilities.Encoder getEncoder() {
+            return encoder;
         }
     }
 
@@ -44,35 +41,23 @@ public final class CodecUtils {
         }
     }
 
-    private static MediaCodecInfo[] getEncoders(MediaCodecList codecs, String mimeType) {
-        List<MediaCodecInfo> result = new ArrayList<>();
-        for (MediaCodecInfo codecInfo : codecs.getCodecInfos()) {
-            if (codecInfo.isEncoder() && Arrays.asList(codecInfo.getSupportedTypes()).contains(mimeType)) {
-                result.add(codecInfo);
+    private static List<DeviceEncoder> listEncoders(Codec[] codecs) {
+        // from the capabilities cache, the codec list is not queried on every launch
+        EncoderCapabilities capabilities = EncoderCapabilities.get();
+        List<DeviceEncoder> encoders = new ArrayList<>();
+        for (Codec codec : codecs) {
+            for (EncoderCapabilities.Encoder encoder : capabilities.getEncoders(codec.getMimeType())) {
+                encoders.add(new DeviceEncoder(codec, encoder));
             }
         }
-        return result.toArray(new MediaCodecInfo[result.size()]);
+        return encoders;
     }
 
     public static List<DeviceEncoder> listVideoEncoders() {
-        List<DeviceEncoder> encoders = new ArrayList<>();
-        MediaCodecList codecs = new MediaCodecList(MediaCodecList.REGULAR_CODECS);
-        for (VideoCodec codec : VideoCodec.values()) {
-            for (MediaCodecInfo info : getEncoders(codecs, codec.getMimeType())) {
-                encoders.add(new DeviceEncoder(codec, info));
-            }
-        }
-        return encoders;
+        return listEncoders(VideoCodec.values());
     }
 
     public static List<DeviceEncoder> listAudioEncoders() {
-        List<DeviceEncoder> encoders = new ArrayList<>();
-        MediaCodecList codecs = new MediaCodecList(MediaCodecList.REGULAR_CODECS);
-        for (AudioCodec codec : AudioCodec.values()) {
-            for (MediaCodecInfo info : getEncoders(codecs, codec.getMimeType())) {
-                encoders.add(new DeviceEncoder(codec, info));
-            }
-        }
-        return encoders;
+        return listEncoders(AudioCodec.values());
     }
 }
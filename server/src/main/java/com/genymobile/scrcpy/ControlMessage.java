@@ -2,6 +2,9 @@ package com.genymobile.scrcpy;
 
 /**
  * Union of all supported event types, identified by their {@code type}.
+ * <p>
+ * A message returned by a {@link ControlMessageReader} in flyweight mode is reused: it is only valid until the next call to
+ * {@link ControlMessageReader#next()}.
  */
 public final class ControlMessage {
 
@@ -17,6 +20,8 @@ public final class ControlMessage {
     public static final int TYPE_SET_CLIPBOARD = 9;
     public static final int TYPE_SET_SCREEN_POWER_MODE = 10;
     public static final int TYPE_ROTATE_DEVICE = 11;
+    public static final int TYPE_REQUEST_KEY_FRAME = 12;
+    public static final int TYPE_SET_VIDEO_SETTINGS = 13;
 
     public static final long SEQUENCE_INVALID = 0;
 
@@ -33,77 +38,76 @@ public final class ControlMessage {
     private int buttons; // MotionEvent.BUTTON_*
     private long pointerId;
     private float pressure;
-    private Position position;
+    // position, stored as primitives so that a reused message does not allocate
+    private int x;
+    private int y;
+    private int screenWidth;
+    private int screenHeight;
     private float hScroll;
     private float vScroll;
     private int copyKey;
     private boolean paste;
     private int repeat;
     private long sequence;
+    private int bitRate; // 0 means unchanged
+    private int maxFps; // 0 means unchanged
+    private int iFrameInterval; // seconds, 0 means unchanged
+
+    /**
+     * Create a message to be filled (and refilled) by a {@link ControlMessageReader} in flyweight mode.
+     */
+    static ControlMessage createReusable() {
+        return new ControlMessage();
+    }
 
     private ControlMessage() {
     }
 
     public static ControlMessage createInjectKeycode(int action, int keycode, int repeat, int metaState) {
         ControlMessage msg = new ControlMessage();
-        msg.type = TYPE_INJECT_KEYCODE;
-        msg.action = action;
-        msg.keycode = keycode;
-        msg.repeat = repeat;
-        msg.metaState = metaState;
+        msg.setInjectKeycode(action, keycode, repeat, metaState);
         return msg;
     }
 
     public static ControlMessage createInjectText(String text) {
         ControlMessage msg = new ControlMessage();
-        msg.type = TYPE_INJECT_TEXT;
-        msg.text = text;
+        msg.setInjectText(text);
         return msg;
     }
 
     public static ControlMessage createInjectTouchEvent(int action, long pointerId, Position position, float pressure, int actionButton,
             int buttons) {
+        Point point = position.getPoint();
+        Size screenSize = position.getScreenSize();
         ControlMessage msg = new ControlMessage();
-        msg.type = TYPE_INJECT_TOUCH_EVENT;
-        msg.action = action;
-        msg.pointerId = pointerId;
-        msg.pressure = pressure;
-        msg.position = position;
-        msg.actionButton = actionButton;
-        msg.buttons = buttons;
+        msg.setInjectTouchEvent(action, pointerId, point.getX(), point.getY(), screenSize.getWidth(), screenSize.getHeight(), pressure,
+                actionButton, buttons);
         return msg;
     }
 
     public static ControlMessage createInjectScrollEvent(Position position, float hScroll, float vScroll, int buttons) {
+        Point point = position.getPoint();
+        Size screenSize = position.getScreenSize();
         ControlMessage msg = new ControlMessage();
-        msg.type = TYPE_INJECT_SCROLL_EVENT;
-        msg.position = position;
-        msg.hScroll = hScroll;
-        msg.vScroll = vScroll;
-        msg.buttons = buttons;
+        msg.setInjectScrollEvent(point.getX(), point.getY(), screenSize.getWidth(), screenSize.getHeight(), hScroll, vScroll, buttons);
         return msg;
     }
 
     public static ControlMessage createBackOrScreenOn(int action) {
         ControlMessage msg = new ControlMessage();
-        msg.type = TYPE_BACK_OR_SCREEN_ON;
-        msg.action = action;
+        msg.setBackOrScreenOn(action);
         return msg;
     }
 
     public static ControlMessage createGetClipboard(int copyKey) {
         ControlMessage msg = new ControlMessage();
-        msg.type = TYPE_GET_CLIPBOARD;
-        msg.copyKey = copyKey;
+        msg.setGetClipboard(copyKey);
         return msg;
     }
 
     public static ControlMessage createSetClipboard(long sequence, String text, boolean paste) {
         ControlMessage msg = new ControlMessage();
-        msg.type = TYPE_SET_CLIPBOARD;
-        msg.sequence = sequence;
-        msg.text = text;
-        msg.paste = paste;
+        msg.setSetClipboard(sequence, text, paste);
         return msg;
     }
 
@@ -112,17 +116,149 @@ public final class ControlMessage {
      */
     public static ControlMessage createSetScreenPowerMode(int mode) {
         ControlMessage msg = new ControlMessage();
-        msg.type = TYPE_SET_SCREEN_POWER_MODE;
-        msg.action = mode;
+        msg.setSetScreenPowerMode(mode);
+        return msg;
+    }
+
+    public static ControlMessage createSetVideoSettings(long sequence, int bitRate, int maxFps, int iFrameInterval) {
+        ControlMessage msg = new ControlMessage();
+        msg.setSetVideoSettings(sequence, bitRate, maxFps, iFrameInterval);
         return msg;
     }
 
     public static ControlMessage createEmpty(int type) {
         ControlMessage msg = new ControlMessage();
-        msg.type = type;
+        msg.setEmpty(type);
         return msg;
     }
 
+    // The setters below reset all the fields, so that nothing leaks from the previous content of a reused message.
+
+    private void reset(int newType) {
+        type = newType;
+        text = null;
+        metaState = 0;
+        action = 0;
+        keycode = 0;
+        actionButton = 0;
+        buttons = 0;
+        pointerId = 0;
+        pressure = 0;
+        x = 0;
+        y = 0;
+        screenWidth = 0;
+        screenHeight = 0;
+        hScroll = 0;
+        vScroll = 0;
+        copyKey = 0;
+        paste = false;
+        repeat = 0;
+        sequence = 0;
+        bitRate = 0;
+        maxFps = 0;
+        iFrameInterval = 0;
+    }
+
+    /**
+     * Copy the content of another message into this one (to store a message which is reused by its producer).
+     */
+    void copyFrom(ControlMessage other) {
+        type = other.type;
+        text = other.text;
+        metaState = other.metaState;
+        action = other.action;
+        keycode = other.keycode;
+        actionButton = other.actionButton;
+        buttons = other.buttons;
+        pointerId = other.pointerId;
+        pressure = other.pressure;
+        x = other.x;
+        y = other.y;
+        screenWidth = other.screenWidth;
+        screenHeight = other.screenHeight;
+        hScroll = other.hScroll;
+        vScroll = other.vScroll;
+        copyKey = other.copyKey;
+        paste = other.paste;
+        repeat = other.repeat;
+        sequence = other.sequence;
+        bitRate = other.bitRate;
+        maxFps = other.maxFps;
+        iFrameInterval = other.iFrameInterval;
+    }
+
+    void setInjectKeycode(int action, int keycode, int repeat, int metaState) {
+        reset(TYPE_INJECT_KEYCODE);
+        this.action = action;
+        this.keycode = keycode;
+        this.repeat = repeat;
+        this.metaState = metaState;
+    }
+
+    void setInjectText(String text) {
+        reset(TYPE_INJECT_TEXT);
+        this.text = text;
+    }
+
+    void setInjectTouchEvent(int action, long pointerId, int x, int y, int screenWidth, int screenHeight, float pressure, int actionButton,
+            int buttons) {
+        reset(TYPE_INJECT_TOUCH_EVENT);
+        this.action = action;
+        this.pointerId = pointerId;
+        this.x = x;
+        this.y = y;
+        this.screenWidth = screenWidth;
+        this.screenHeight = screenHeight;
+        this.pressure = pressure;
+        this.actionButton = actionButton;
+        this.buttons = buttons;
+    }
+
+    void setInjectScrollEvent(int x, int y, int screenWidth, int screenHeight, float hScroll, float vScroll, int buttons) {
+        reset(TYPE_INJECT_SCROLL_EVENT);
+        this.x = x;
+        this.y = y;
+        this.screenWidth = screenWidth;
+        this.screenHeight = screenHeight;
+        this.hScroll = hScroll;
+        this.vScroll = vScroll;
+        this.buttons = buttons;
+    }
+
+    void setBackOrScreenOn(int action) {
+        reset(TYPE_BACK_OR_SCREEN_ON);
+        this.action = action;
+    }
+
+    void setGetClipboard(int copyKey) {
+        reset(TYPE_GET_CLIPBOARD);
+        this.copyKey = copyKey;
+    }
+
+    void setSetClipboard(long sequence, String text, boolean paste) {
+        reset(TYPE_SET_CLIPBOARD);
+        this.sequence = sequence;
+        this.text = text;
+        this.paste = paste;
+    }
+
+    void setSetScreenPowerMode(int mode) {
+        reset(TYPE_SET_SCREEN_POWER_MODE);
+        this.action = mode;
+    }
+
+    void setSetVideoSettings(long sequence, int bitRate, int maxFps, int iFrameInterval) {
+        reset(TYPE_SET_VIDEO_SETTINGS);
+        this.sequence = sequence;
+        this.bitRate = bitRate;
+        this.maxFps = maxFps;
+        this.iFrameInterval = iFrameInterval;
+    }
+
+    void setEmpty(int type) {
+        reset(type);
+    }
+
     public int getType() {
         return type;
     }
@@ -159,8 +295,29 @@ public final class ControlMessage {
         return pressure;
     }
 
+    /**
+     * Return the position as a new object.
+     * <p>
+     * To avoid the allocation, use {@link #getX()}, {@link #getY()}, {@link #getScreenWidth()} and {@link #getScreenHeight()}.
+     */
     public Position getPosition() {
-        return position;
+        return new Position(x, y, screenWidth, screenHeight);
+    }
+
+    public int getX() {
+        return x;
+    }
+
+    public int getY() {
+        return y;
+    }
+
+    public int getScreenWidth() {
+        return screenWidth;
+    }
+
+    public int getScreenHeight() {
+        return screenHeight;
     }
 
     public float getHScroll() {
@@ -186,4 +343,16 @@ public final class ControlMessage {
     public long getSequence() {
         return sequence;
     }
+
+    public int getBitRate() {
+        return bitRate;
+    }
+
+    public int getMaxFps() {
+        return maxFps;
+    }
+
+    public int getIFrameInterval() {
+        return iFrameInterval;
+    }
 }
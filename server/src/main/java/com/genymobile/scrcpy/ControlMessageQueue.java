@@ -0,0 +1,271 @@
+package com.genymobile.scrcpy;
+
+import android.view.MotionEvent;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Bounded queue of control messages, between the thread reading the control socket (the single producer) and the thread injecting the
+ * events (the single consumer).
+ * <p>
+ * It is made of two lock-free ring buffers ("lanes") of preallocated messages. The input events (keys, text, touch, scroll) are consumed
+ * before the other commands (clipboard, panels, power mode...), so that a slow command never delays the input events queued behind it. The
+ * order is preserved within each lane.
+ * <p>
+ * Some commands must however be executed before the input events received after them: the client sets the clipboard (without waiting for
+ * an ack), then immediately injects Ctrl+V to paste it. Such a command is a barrier: the input events received after it are not consumed
+ * before it (the input events received before it are still consumed first).
+ * <p>
+ * When the input lane is full, the touch moves and the scroll events are dropped (the following ones supersede them). Any other message
+ * waits for a free slot, which applies backpressure to the socket.
+ */
+public final class ControlMessageQueue {
+
+    public static final int DEFAULT_CAPACITY = 256;
+
+    // when a lane is full, the producer polls it at this interval
+    private static final long FULL_WAIT_NS = 100_000; // 100µs
+
+    private static final Metrics.Gauge DEPTH = Metrics.gauge("control.queue_depth");
+    private static final Metrics.Counter DROPS = Metrics.counter("control.queue_drops");
+    private static final Metrics.Histogram QUEUE_LATENCY = Metrics.histogram("control.queue_latency_us");
+
+    private static final class Lane {
+        private final ControlMessage[] slots;
+        private final long[] enqueueTimesNs;
+        // for each input event, the number of commands which must be consumed before it (the position after the last barrier)
+        private final long[] fences;
+        private final int mask;
+
+        // written by the producer only
+        private final AtomicLong tail = new AtomicLong();
+        // written by the consumer only
+        private final AtomicLong head = new AtomicLong();
+
+        Lane(int capacity) {
+            slots = new ControlMessage[capacity];
+            for (int i = 0; i < capacity; ++i) {
+                slots[i] = ControlMessage.createReusable();
+            }
+            enqueueTimesNs = new long[capacity];
+            fences = new long[capacity];
+            mask = capacity - 1;
+        }
+
+        int size() {
+            return (int) (tail.get() - head.get());
+        }
+
+        boolean isFull() {
+            return size() == slots.length;
+        }
+
+        void push(ControlMessage msg, long nowNs, long fence) {
+            long t = tail.get();
+            int index = (int) t & mask;
+            slots[index].copyFrom(msg);
+            enqueueTimesNs[index] = nowNs;
+            fences[index] = fence;
+            // publish the slot
+            tail.set(t + 1);
+        }
+
+        int peekIndex() {
+            long h = head.get();
+            return h == tail.get() ? -1 : (int) h & mask;
+        }
+
+        void release() {
+            head.set(head.get() + 1);
+        }
+    }
+
+    private final Lane inputLane;
+    private final Lane commandLane;
+
+    // the position in the command lane after the last barrier, written by the producer only
+    private long barrierFence;
+
+    // the lane of the message currently held by the consumer, released on the next take() or poll()
+    private Lane heldLane;
+
+    private volatile Thread consumer;
+    private volatile boolean consumerWaiting;
+
+    private volatile long drops; // written by the producer only
+
+    /**
+     * @param capacity the capacity of each lane (a power of 2)
+     */
+    public ControlMessageQueue(int capacity) {
+        if (capacity <= 0 || (capacity & (capacity - 1)) != 0) {
+            throw new IllegalArgumentException("Capacity must be a power of 2: " + capacity);
+        }
+        inputLane = new Lane(capacity);
+        commandLane = new Lane(capacity);
+    }
+
+    private static boolean isInput(ControlMessage msg) {
+        switch (msg.getType()) {
+            case ControlMessage.TYPE_INJECT_KEYCODE:
+            case ControlMessage.TYPE_INJECT_TEXT:
+            case ControlMessage.TYPE_INJECT_TOUCH_EVENT:
+            case ControlMessage.TYPE_INJECT_SCROLL_EVENT:
+            case ControlMessage.TYPE_BACK_OR_SCREEN_ON:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Return whether the input events received after the command may depend on it.
+     */
+    private static boolean isBarrier(ControlMessage msg) {
+        switch (msg.getType()) {
+            case ControlMessage.TYPE_SET_CLIPBOARD:
+                // the following input events may paste it
+                return true;
+            case ControlMessage.TYPE_GET_CLIPBOARD:
+                // the copy or cut key it injects applies to the selection, which the following input events may change
+                return msg.getCopyKey() != ControlMessage.COPY_KEY_NONE;
+            default:
+                return false;
+        }
+    }
+
+    private static boolean isDroppable(ControlMessage msg) {
+        switch (msg.getType()) {
+            case ControlMessage.TYPE_INJECT_TOUCH_EVENT:
+                int action = msg.getAction();
+                return action == MotionEvent.ACTION_MOVE || action == MotionEvent.ACTION_HOVER_MOVE;
+            case ControlMessage.TYPE_INJECT_SCROLL_EVENT:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Add a copy of the message (so the caller may reuse it).
+     * <p>
+     * Must only be called from the producer thread.
+     *
+     * @return {@code false} if the message has been dropped because the queue is full
+     * @throws InterruptedException if interrupted while waiting for a free slot
+     */
+    public boolean offer(ControlMessage msg) throws InterruptedException {
+        boolean input = isInput(msg);
+        Lane lane = input ? inputLane : commandLane;
+        if (lane.isFull()) {
+            if (isDroppable(msg)) {
+                ++drops;
+                DROPS.increment();
+                return false;
+            }
+            do {
+                LockSupport.parkNanos(this, FULL_WAIT_NS);
+                if (Thread.interrupted()) {
+                    throw new InterruptedException();
+                }
+            } while (lane.isFull());
+        }
+
+        if (input) {
+            lane.push(msg, System.nanoTime(), barrierFence);
+        } else {
+            lane.push(msg, System.nanoTime(), 0);
+            if (isBarrier(msg)) {
+                // the input events received from now on must wait until this command is consumed
+                barrierFence = commandLane.tail.get();
+            }
+        }
+        DEPTH.set(getDepth());
+
+        if (consumerWaiting) {
+            LockSupport.unpark(consumer);
+        }
+        return true;
+    }
+
+    private void releaseHeld() {
+        if (heldLane != null) {
+            heldLane.release();
+            heldLane = null;
+            DEPTH.set(getDepth());
+        }
+    }
+
+    private ControlMessage next(Lane lane, int index) {
+        heldLane = lane;
+        QUEUE_LATENCY.recordSince(lane.enqueueTimesNs[index]);
+        return lane.slots[index];
+    }
+
+    /**
+     * Return the next message if any, without blocking.
+     * <p>
+     * Must only be called from the consumer thread. The returned message is only valid until the next call to {@link #poll()} or
+     * {@link #take()}.
+     *
+     * @return the next message (input events first, unless they follow a barrier), or {@code null} if the queue is empty
+     */
+    public ControlMessage poll() {
+        releaseHeld();
+        int inputIndex = inputLane.peekIndex();
+        // the command lane is read after the input lane: if the input event follows a barrier, the barrier is visible
+        int commandIndex = commandLane.peekIndex();
+        if (inputIndex != -1 && (commandIndex == -1 || inputLane.fences[inputIndex] <= commandLane.head.get())) {
+            return next(inputLane, inputIndex);
+        }
+        if (commandIndex != -1) {
+            return next(commandLane, commandIndex);
+        }
+        return null;
+    }
+
+    /**
+     * Return the next message, waiting for it if necessary.
+     * <p>
+     * Must only be called from the consumer thread. The returned message is only valid until the next call to {@link #poll()} or
+     * {@link #take()}.
+     *
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public ControlMessage take() throws InterruptedException {
+        if (consumer == null) {
+            consumer = Thread.currentThread();
+        }
+        while (true) {
+            ControlMessage msg = poll();
+            if (msg != null) {
+                return msg;
+            }
+
+            // publish that the consumer is waiting, then check again: either this check sees the new message, or the producer sees the flag
+            consumerWaiting = true;
+            if (getDepth() == 0) {
+                LockSupport.park(this);
+            }
+            consumerWaiting = false;
+            if (Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+        }
+    }
+
+    /**
+     * Return the number of messages in the queue (including the one held by the consumer, if any).
+     */
+    public int getDepth() {
+        return inputLane.size() + commandLane.size();
+    }
+
+    /**
+     * Return the number of messages dropped because the queue was full.
+     */
+    public long getDrops() {
+        return drops;
+    }
+}
@@ -15,18 +15,33 @@ public class ControlMessageReader {
     static final int SET_SCREEN_POWER_MODE_PAYLOAD_LENGTH = 1;
     static final int GET_CLIPBOARD_LENGTH = 1;
     static final int SET_CLIPBOARD_FIXED_PAYLOAD_LENGTH = 9;
+    static final int SET_VIDEO_SETTINGS_PAYLOAD_LENGTH = 16;
 
     private static final int MESSAGE_MAX_SIZE = 1 << 18; // 256k
 
     public static final int CLIPBOARD_TEXT_MAX_LENGTH = MESSAGE_MAX_SIZE - 14; // type: 1 byte; sequence: 8 bytes; paste flag: 1 byte; length: 4 bytes
+    // the client truncates the typed texts to INJECT_TEXT_MAX_LENGTH, but may send longer texts (up to the message size) in bulk mode
     public static final int INJECT_TEXT_MAX_LENGTH = 300;
+    public static final int INJECT_TEXT_BULK_MAX_LENGTH = MESSAGE_MAX_SIZE - 5; // type: 1 byte; length: 4 bytes
 
     private final byte[] rawBuffer = new byte[MESSAGE_MAX_SIZE];
     private final ByteBuffer buffer = ByteBuffer.wrap(rawBuffer);
 
+    // in flyweight mode, the single message returned by every call to next()
+    private final ControlMessage reusableMessage;
+
     public ControlMessageReader() {
+        this(false);
+    }
+
+    /**
+     * @param flyweight if {@code true}, {@link #next()} always returns the same message instance, refilled on each call, so that decoding
+     *                  events (for example touch and scroll events) does not allocate; the caller must not keep a reference to it
+     */
+    public ControlMessageReader(boolean flyweight) {
         // invariant: the buffer is always in "get" mode
         buffer.limit(0);
+        reusableMessage = flyweight ? ControlMessage.createReusable() : null;
     }
 
     public boolean isFull() {
@@ -54,60 +69,68 @@ public class ControlMessageReader {
         int savedPosition = buffer.position();
 
         int type = buffer.get();
-        ControlMessage msg;
+        ControlMessage msg = reusableMessage != null ? reusableMessage : ControlMessage.createReusable();
+        boolean ok;
         switch (type) {
             case ControlMessage.TYPE_INJECT_KEYCODE:
-                msg = parseInjectKeycode();
+                ok = parseInjectKeycode(msg);
                 break;
             case ControlMessage.TYPE_INJECT_TEXT:
-                msg = parseInjectText();
+                ok = parseInjectText(msg);
                 break;
             case ControlMessage.TYPE_INJECT_TOUCH_EVENT:
-                msg = parseInjectTouchEvent();
+                ok = parseInjectTouchEvent(msg);
                 break;
             case ControlMessage.TYPE_INJECT_SCROLL_EVENT:
-                msg = parseInjectScrollEvent();
+                ok = parseInjectScrollEvent(msg);
                 break;
             case ControlMessage.TYPE_BACK_OR_SCREEN_ON:
-                msg = parseBackOrScreenOnEvent();
+                ok = parseBackOrScreenOnEvent(msg);
                 break;
             case ControlMessage.TYPE_GET_CLIPBOARD:
-                msg = parseGetClipboard();
+                ok = parseGetClipboard(msg);
                 break;
             case ControlMessage.TYPE_SET_CLIPBOARD:
-                msg = parseSetClipboard();
+                ok = parseSetClipboard(msg);
                 break;
             case ControlMessage.TYPE_SET_SCREEN_POWER_MODE:
-                msg = parseSetScreenPowerMode();
+                ok = parseSetScreenPowerMode(msg);
+                break;
+            case ControlMessage.TYPE_SET_VIDEO_SETTINGS:
+                ok = parseSetVideoSettings(msg);
                 break;
             case ControlMessage.TYPE_EXPAND_NOTIFICATION_PANEL:
             case ControlMessage.TYPE_EXPAND_SETTINGS_PANEL:
             case ControlMessage.TYPE_COLLAPSE_PANELS:
             case ControlMessage.TYPE_ROTATE_DEVICE:
-                msg = ControlMessage.createEmpty(type);
+            case ControlMessage.TYPE_REQUEST_KEY_FRAME:
+                msg.setEmpty(type);
+                ok = true;
                 break;
             default:
                 Ln.w("Unknown event type: " + type);
-                msg = null;
+                ok = false;
                 break;
         }
 
-        if (msg == null) {
+        if (!ok) {
             // failure, reset savedPosition
             buffer.position(savedPosition);
+            return null;
         }
         return msg;
     }
 
-    private ControlMessage parseInjectKeycode() {
+    private boolean parseInjectKeycode(ControlMessage msg) {
         if (buffer.remaining() < INJECT_KEYCODE_PAYLOAD_LENGTH) {
-            return null;
+            return false;
         }
         int action = Binary.toUnsigned(buffer.get());
         int keycode = buffer.getInt();
         int repeat = buffer.getInt();
         int metaState = buffer.getInt();
-        return ControlMessage.createInjectKeycode(action, keycode, repeat, metaState);
+        msg.setInjectKeycode(action, keycode, repeat, metaState);
+        return true;
     }
 
     private String parseString() {
@@ -124,80 +147,98 @@ public class ControlMessageReader {
         return new String(rawBuffer, position, len, StandardCharsets.UTF_8);
     }
 
-    private ControlMessage parseInjectText() {
+    private boolean parseInjectText(ControlMessage msg) {
         String text = parseString();
         if (text == null) {
-            return null;
+            return false;
         }
-        return ControlMessage.createInjectText(text);
+        msg.setInjectText(text);
+        return true;
     }
 
-    private ControlMessage parseInjectTouchEvent() {
+    private boolean parseInjectTouchEvent(ControlMessage msg) {
         if (buffer.remaining() < INJECT_TOUCH_EVENT_PAYLOAD_LENGTH) {
-            return null;
+            return false;
         }
         int action = Binary.toUnsigned(buffer.get());
         long pointerId = buffer.getLong();
-        Position position = readPosition(buffer);
+        int x = buffer.getInt();
+        int y = buffer.getInt();
+        int screenWidth = Binary.toUnsigned(buffer.getShort());
+        int screenHeight = Binary.toUnsigned(buffer.getShort());
         float pressure = Binary.u16FixedPointToFloat(buffer.getShort());
         int actionButton = buffer.getInt();
         int buttons = buffer.getInt();
-        return ControlMessage.createInjectTouchEvent(action, pointerId, position, pressure, actionButton, buttons);
+        msg.setInjectTouchEvent(action, pointerId, x, y, screenWidth, screenHeight, pressure, actionButton, buttons);
+        return true;
     }
 
-    private ControlMessage parseInjectScrollEvent() {
+    private boolean parseInjectScrollEvent(ControlMessage msg) {
         if (buffer.remaining() < INJECT_SCROLL_EVENT_PAYLOAD_LENGTH) {
-            return null;
+            return false;
         }
-        Position position = readPosition(buffer);
+        int x = buffer.getInt();
+        int y = buffer.getInt();
+        int screenWidth = Binary.toUnsigned(buffer.getShort());
+        int screenHeight = Binary.toUnsigned(buffer.getShort());
         float hScroll = Binary.i16FixedPointToFloat(buffer.getShort());
         float vScroll = Binary.i16FixedPointToFloat(buffer.getShort());
         int buttons = buffer.getInt();
-        return ControlMessage.createInjectScrollEvent(position, hScroll, vScroll, buttons);
+        msg.setInjectScrollEvent(x, y, screenWidth, screenHeight, hScroll, vScroll, buttons);
+        return true;
     }
 
-    private ControlMessage parseBackOrScreenOnEvent() {
+    private boolean parseBackOrScreenOnEvent(ControlMessage msg) {
         if (buffer.remaining() < BACK_OR_SCREEN_ON_LENGTH) {
-            return null;
+            return false;
         }
         int action = Binary.toUnsigned(buffer.get());
-        return ControlMessage.createBackOrScreenOn(action);
+        msg.setBackOrScreenOn(action);
+        return true;
     }
 
-    private ControlMessage parseGetClipboard() {
+    private boolean parseGetClipboard(ControlMessage msg) {
         if (buffer.remaining() < GET_CLIPBOARD_LENGTH) {
-            return null;
+            return false;
         }
         int copyKey = Binary.toUnsigned(buffer.get());
-        return ControlMessage.createGetClipboard(copyKey);
+        msg.setGetClipboard(copyKey);
+        return true;
     }
 
-    private ControlMessage parseSetClipboard() {
+    private boolean parseSetClipboard(ControlMessage msg) {
         if (buffer.remaining() < SET_CLIPBOARD_FIXED_PAYLOAD_LENGTH) {
-            return null;
+            return false;
         }
         long sequence = buffer.getLong();
         boolean paste = buffer.get() != 0;
         String text = parseString();
         if (text == null) {
-            return null;
+            return false;
         }
-        return ControlMessage.createSetClipboard(sequence, text, paste);
+        msg.setSetClipboard(sequence, text, paste);
+        return true;
     }
 
-    private ControlMessage parseSetScreenPowerMode() {
+    private boolean parseSetScreenPowerMode(ControlMessage msg) {
         if (buffer.remaining() < SET_SCREEN_POWER_MODE_PAYLOAD_LENGTH) {
-            return null;
+            return false;
         }
         int mode = buffer.get();
-        return ControlMessage.createSetScreenPowerMode(mode);
+        msg.setSetScreenPowerMode(mode);
+        return true;
     }
 
-    private static Position readPosition(ByteBuffer buffer) {
-        int x = buffer.getInt();
-        int y = buffer.getInt();
-        int screenWidth = Binary.toUnsigned(buffer.getShort());
-        int screenHeight = Binary.toUnsigned(buffer.getShort());
-        return new Position(x, y, screenWidth, screenHeight);
+    private boolean parseSetVideoSettings(ControlMessage msg) {
+        if (buffer.remaining() < SET_VIDEO_SETTINGS_PAYLOAD_LENGTH) {
+            return false;
+        }
+        long sequence = buffer.getLong();
+        // unsigned 32-bit, saturated to int
+        long bitRate = buffer.getInt() & 0xFFFFFFFFL;
+        int maxFps = Binary.toUnsigned(buffer.getShort());
+        int iFrameInterval = Binary.toUnsigned(buffer.getShort());
+        msg.setSetVideoSettings(sequence, (int) Math.min(bitRate, Integer.MAX_VALUE), maxFps, iFrameInterval);
+        return true;
     }
 }
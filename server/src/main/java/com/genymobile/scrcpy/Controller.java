@@ -1,6 +1,7 @@
 package com.genymobile.scrcpy;
 
 import com.genymobile.scrcpy.wrappers.InputManager;
+import com.genymobile.scrcpy.wrappers.ServiceManager;
 
 import android.os.Build;
 import android.os.SystemClock;
@@ -13,6 +14,7 @@ import java.io.IOException;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 public class Controller implements AsyncProcessor {
 
@@ -22,36 +24,66 @@ public class Controller implements AsyncProcessor {
     private static final int POINTER_ID_MOUSE = -1;
     private static final int POINTER_ID_VIRTUAL_MOUSE = -3;
 
+    // max number of samples of a coalesced ACTION_MOVE event
+    private static final int MAX_COALESCED_MOVES = 32;
+
+    private static final Metrics.Counter INJECTED_MOVES = Metrics.counter("control.injected_moves");
+    private static final Metrics.Counter COALESCED_MOVES = Metrics.counter("control.coalesced_moves");
+
     private static final ScheduledExecutorService EXECUTOR = Executors.newSingleThreadScheduledExecutor();
 
+    // the control messages are read by the "control-recv" thread, then injected by the "control-inject" thread, so that a slow injection
+    // (or a blocking command) never stalls the reading of the socket
     private Thread thread;
+    private Thread injectorThread;
+    private final ControlMessageQueue queue = new ControlMessageQueue(ControlMessageQueue.DEFAULT_CAPACITY);
+    private final AtomicBoolean terminated = new AtomicBoolean();
 
     private final Device device;
     private final DesktopConnection connection;
     private final DeviceMessageSender sender;
     private final boolean clipboardAutosync;
     private final boolean powerOn;
+    // texts of at least this length are pasted through the clipboard rather than typed (0 to always type)
+    private final int textPasteThreshold;
+
+    // set before start(), null if there is no video
+    private EncoderControl encoderControl;
 
     private final KeyCharacterMap charMap = KeyCharacterMap.load(KeyCharacterMap.VIRTUAL_KEYBOARD);
+    private final KeyStrokeCache keyStrokes = new KeyStrokeCache(this::loadKeyStrokes);
 
     private long lastTouchDown;
-    private final PointersState pointersState = new PointersState();
-    private final MotionEvent.PointerProperties[] pointerProperties = new MotionEvent.PointerProperties[PointersState.MAX_POINTERS];
-    private final MotionEvent.PointerCoords[] pointerCoords = new MotionEvent.PointerCoords[PointersState.MAX_POINTERS];
+    private final PointersState pointersState;
+    private final MotionEvent.PointerProperties[] pointerProperties;
+    private final MotionEvent.PointerCoords[] pointerCoords;
+    // output of device.getPhysicalPoint(), reused to avoid allocations on every event
+    private final int[] physicalPoint = new int[2];
+
+    // ACTION_MOVE event not injected yet, the following buffered moves are added to it as historical samples
+    private MotionEvent pendingMove;
+    private int pendingMoveSamples;
 
     private boolean keepPowerModeOff;
 
-    public Controller(Device device, DesktopConnection connection, boolean clipboardAutosync, boolean powerOn) {
+    public Controller(Device device, DesktopConnection connection, boolean clipboardAutosync, boolean powerOn, int textPasteThreshold,
+            int maxPointers) {
         this.device = device;
         this.connection = connection;
         this.clipboardAutosync = clipboardAutosync;
         this.powerOn = powerOn;
+        this.textPasteThreshold = textPasteThreshold;
+        pointersState = new PointersState(maxPointers);
+        pointerProperties = new MotionEvent.PointerProperties[maxPointers];
+        pointerCoords = new MotionEvent.PointerCoords[maxPointers];
         initPointers();
         sender = new DeviceMessageSender(connection);
+        // resolve the injection methods now, so that a failure is reported on startup rather than on the first event
+        ServiceManager.getInputManager();
     }
 
     private void initPointers() {
-        for (int i = 0; i < PointersState.MAX_POINTERS; ++i) {
+        for (int i = 0; i < pointerProperties.length; ++i) {
             MotionEvent.PointerProperties props = new MotionEvent.PointerProperties();
             props.toolType = MotionEvent.TOOL_TYPE_FINGER;
 
@@ -64,7 +96,15 @@ public class Controller implements AsyncProcessor {
         }
     }
 
-    private void control() throws IOException {
+    private void receive() throws IOException, InterruptedException {
+        while (!Thread.currentThread().isInterrupted()) {
+            ControlMessage msg = connection.receiveControlMessage();
+            // the queue copies the message, the reader may reuse it
+            queue.offer(msg);
+        }
+    }
+
+    private void control() throws InterruptedException {
         // on start, power on the device
         if (powerOn && !Device.isScreenOn()) {
             device.pressReleaseKeycode(KeyEvent.KEYCODE_POWER, Device.INJECT_MODE_ASYNC);
@@ -84,19 +124,36 @@ public class Controller implements AsyncProcessor {
         }
     }
 
+    private void notifyTerminated(TerminationListener listener) {
+        // whichever thread terminates first terminates the controller
+        if (terminated.compareAndSet(false, true)) {
+            Ln.d("Controller stopped");
+            listener.onTerminated(true);
+        }
+    }
+
     @Override
     public void start(TerminationListener listener) {
         thread = new Thread(() -> {
             try {
-                control();
-            } catch (IOException e) {
+                receive();
+            } catch (IOException | InterruptedException e) {
                 // this is expected on close
             } finally {
-                Ln.d("Controller stopped");
-                listener.onTerminated(true);
+                notifyTerminated(listener);
             }
         }, "control-recv");
+        injectorThread = new Thread(() -> {
+            try {
+                control();
+            } catch (InterruptedException e) {
+                // this is expected on close
+            } finally {
+                notifyTerminated(listener);
+            }
+        }, "control-inject");
         thread.start();
+        injectorThread.start();
         sender.start();
     }
 
@@ -105,6 +162,9 @@ public class Controller implements AsyncProcessor {
         if (thread != null) {
             thread.interrupt();
         }
+        if (injectorThread != null) {
+            injectorThread.interrupt();
+        }
         sender.stop();
     }
 
@@ -113,15 +173,37 @@ public class Controller implements AsyncProcessor {
         if (thread != null) {
             thread.join();
         }
+        if (injectorThread != null) {
+            injectorThread.join();
+        }
         sender.join();
     }
 
+    public void setEncoderControl(EncoderControl encoderControl) {
+        this.encoderControl = encoderControl;
+    }
+
     public DeviceMessageSender getSender() {
         return sender;
     }
 
-    private void handleEvent() throws IOException {
-        ControlMessage msg = connection.receiveControlMessage();
+    private void handleEvent() throws InterruptedException {
+        ControlMessage msg;
+        if (pendingMove == null) {
+            msg = queue.take();
+        } else {
+            // only coalesce the moves already received, never wait for the next ones
+            msg = queue.poll();
+            if (msg == null) {
+                flushPendingMove();
+                return;
+            }
+            if (msg.getType() != ControlMessage.TYPE_INJECT_TOUCH_EVENT || msg.getAction() != MotionEvent.ACTION_MOVE) {
+                // preserve the order of the events
+                flushPendingMove();
+            }
+        }
+
         switch (msg.getType()) {
             case ControlMessage.TYPE_INJECT_KEYCODE:
                 if (device.supportsInputEvents()) {
@@ -135,12 +217,14 @@ public class Controller implements AsyncProcessor {
                 break;
             case ControlMessage.TYPE_INJECT_TOUCH_EVENT:
                 if (device.supportsInputEvents()) {
-                    injectTouch(msg.getAction(), msg.getPointerId(), msg.getPosition(), msg.getPressure(), msg.getActionButton(), msg.getButtons());
+                    injectTouch(msg.getAction(), msg.getPointerId(), msg.getX(), msg.getY(), msg.getScreenWidth(), msg.getScreenHeight(),
+                            msg.getPressure(), msg.getActionButton(), msg.getButtons());
                 }
                 break;
             case ControlMessage.TYPE_INJECT_SCROLL_EVENT:
                 if (device.supportsInputEvents()) {
-                    injectScroll(msg.getPosition(), msg.getHScroll(), msg.getVScroll(), msg.getButtons());
+                    injectScroll(msg.getX(), msg.getY(), msg.getScreenWidth(), msg.getScreenHeight(), msg.getHScroll(), msg.getVScroll(),
+                            msg.getButtons());
                 }
                 break;
             case ControlMessage.TYPE_BACK_OR_SCREEN_ON:
@@ -176,6 +260,14 @@ public class Controller implements AsyncProcessor {
             case ControlMessage.TYPE_ROTATE_DEVICE:
                 Device.rotateDevice();
                 break;
+            case ControlMessage.TYPE_REQUEST_KEY_FRAME:
+                if (encoderControl != null) {
+                    encoderControl.requestKeyFrame();
+                }
+                break;
+            case ControlMessage.TYPE_SET_VIDEO_SETTINGS:
+                setVideoSettings(msg.getSequence(), msg.getBitRate(), msg.getMaxFps(), msg.getIFrameInterval());
+                break;
             default:
                 // do nothing
         }
@@ -188,24 +280,59 @@ public class Controller implements AsyncProcessor {
         return device.injectKeyEvent(action, keycode, repeat, metaState, Device.INJECT_MODE_ASYNC);
     }
 
-    private boolean injectChar(char c) {
+    private int[] loadKeyStrokes(char c) {
         String decomposed = KeyComposition.decompose(c);
         char[] chars = decomposed != null ? decomposed.toCharArray() : new char[]{c};
         KeyEvent[] events = charMap.getEvents(chars);
         if (events == null) {
+            return null;
+        }
+        int[] strokes = new int[events.length * KeyStrokeCache.STROKE_SIZE];
+        for (int i = 0; i < events.length; ++i) {
+            KeyEvent event = events[i];
+            strokes[i * KeyStrokeCache.STROKE_SIZE] = event.getAction();
+            strokes[i * KeyStrokeCache.STROKE_SIZE + 1] = event.getKeyCode();
+            strokes[i * KeyStrokeCache.STROKE_SIZE + 2] = event.getMetaState();
+        }
+        return strokes;
+    }
+
+    private boolean injectChar(char c) {
+        int[] strokes = keyStrokes.get(c);
+        if (strokes == null) {
             return false;
         }
-        for (KeyEvent event : events) {
-            if (!device.injectEvent(event, Device.INJECT_MODE_ASYNC)) {
+        for (int i = 0; i < strokes.length; i += KeyStrokeCache.STROKE_SIZE) {
+            // the events are recreated with the current time, the input dispatcher drops stale events
+            if (!device.injectKeyEvent(strokes[i], strokes[i + 1], 0, strokes[i + 2], Device.INJECT_MODE_ASYNC)) {
                 return false;
             }
         }
         return true;
     }
 
+    private boolean pasteText(String text) {
+        // the PASTE keycode is only supported on Android >= 7
+        // the clipboard may already contain the text (for example on a second paste), it can be pasted anyway
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.N || device.setClipboardText(text) == Device.CLIPBOARD_ERROR) {
+            return false;
+        }
+        return device.pressReleaseKeycode(KeyEvent.KEYCODE_PASTE, Device.INJECT_MODE_ASYNC);
+    }
+
     private int injectText(String text) {
+        int length = text.length();
+        if (textPasteThreshold > 0 && length >= textPasteThreshold) {
+            // a single clipboard change and 2 key events, instead of at least 2 key events per char
+            if (pasteText(text)) {
+                return length;
+            }
+            Ln.w("Could not paste text, typing it");
+        }
+
         int successCount = 0;
-        for (char c : text.toCharArray()) {
+        for (int i = 0; i < length; ++i) {
+            char c = text.charAt(i);
             if (!injectChar(c)) {
                 Ln.w("Could not inject char u+" + String.format("%04x", (int) c));
                 continue;
@@ -215,11 +342,11 @@ public class Controller implements AsyncProcessor {
         return successCount;
     }
 
-    private boolean injectTouch(int action, long pointerId, Position position, float pressure, int actionButton, int buttons) {
+    private boolean injectTouch(int action, long pointerId, int x, int y, int screenWidth, int screenHeight, float pressure, int actionButton,
+            int buttons) {
         long now = SystemClock.uptimeMillis();
 
-        Point point = device.getPhysicalPoint(position);
-        if (point == null) {
+        if (!device.getPhysicalPoint(x, y, screenWidth, screenHeight, physicalPoint)) {
             Ln.w("Ignore touch event, it was generated for a different device size");
             return false;
         }
@@ -229,23 +356,22 @@ public class Controller implements AsyncProcessor {
             Ln.w("Too many pointers for touch event");
             return false;
         }
-        Pointer pointer = pointersState.get(pointerIndex);
-        pointer.setPoint(point);
-        pointer.setPressure(pressure);
+        pointersState.setPoint(pointerIndex, physicalPoint[0], physicalPoint[1]);
+        pointersState.setPressure(pointerIndex, pressure);
 
         int source;
         if (pointerId == POINTER_ID_MOUSE || pointerId == POINTER_ID_VIRTUAL_MOUSE) {
             // real mouse event (forced by the client when --forward-on-click)
             pointerProperties[pointerIndex].toolType = MotionEvent.TOOL_TYPE_MOUSE;
             source = InputDevice.SOURCE_MOUSE;
-            pointer.setUp(buttons == 0);
+            pointersState.setUp(pointerIndex, buttons == 0);
         } else {
             // POINTER_ID_GENERIC_FINGER, POINTER_ID_VIRTUAL_FINGER or real touch from device
             pointerProperties[pointerIndex].toolType = MotionEvent.TOOL_TYPE_FINGER;
             source = InputDevice.SOURCE_TOUCHSCREEN;
             // Buttons must not be set for touch events
             buttons = 0;
-            pointer.setUp(action == MotionEvent.ACTION_UP);
+            pointersState.setUp(pointerIndex, action == MotionEvent.ACTION_UP);
         }
 
         int pointerCount = pointersState.update(pointerProperties, pointerCoords);
@@ -318,16 +444,63 @@ public class Controller implements AsyncProcessor {
             }
         }
 
+        if (action == MotionEvent.ACTION_MOVE) {
+            if (canCoalesceMove(pointerCount, source, buttons)) {
+                pendingMove.addBatch(now, pointerCoords, 0);
+                ++pendingMoveSamples;
+                COALESCED_MOVES.increment();
+                return true;
+            }
+            // the pointers changed, this move starts a new event
+            boolean ok = flushPendingMove();
+            pendingMove = MotionEvent.obtain(lastTouchDown, now, action, pointerCount, pointerProperties, pointerCoords, 0, buttons, 1f, 1f,
+                    DEFAULT_DEVICE_ID, 0, source, 0);
+            pendingMoveSamples = 1;
+            return ok;
+        }
+
         MotionEvent event = MotionEvent
                 .obtain(lastTouchDown, now, action, pointerCount, pointerProperties, pointerCoords, 0, buttons, 1f, 1f, DEFAULT_DEVICE_ID, 0, source,
                         0);
         return device.injectEvent(event, Device.INJECT_MODE_ASYNC);
     }
 
-    private boolean injectScroll(Position position, float hScroll, float vScroll, int buttons) {
+    /**
+     * Indicate whether the current pointers may be added as a new sample of the pending move (they must be the same pointers, in the same
+     * order, from the same gesture).
+     */
+    private boolean canCoalesceMove(int pointerCount, int source, int buttons) {
+        if (pendingMove == null || pendingMoveSamples >= MAX_COALESCED_MOVES) {
+            return false;
+        }
+        if (pendingMove.getPointerCount() != pointerCount || pendingMove.getSource() != source || pendingMove.getButtonState() != buttons
+                || pendingMove.getDownTime() != lastTouchDown) {
+            return false;
+        }
+        for (int i = 0; i < pointerCount; ++i) {
+            if (pendingMove.getPointerId(i) != pointerProperties[i].id || pendingMove.getToolType(i) != pointerProperties[i].toolType) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Inject the pending move (with all its coalesced samples), if any.
+     */
+    private boolean flushPendingMove() {
+        if (pendingMove == null) {
+            return true;
+        }
+        MotionEvent event = pendingMove;
+        pendingMove = null;
+        INJECTED_MOVES.increment();
+        return device.injectEvent(event, Device.INJECT_MODE_ASYNC);
+    }
+
+    private boolean injectScroll(int x, int y, int screenWidth, int screenHeight, float hScroll, float vScroll, int buttons) {
         long now = SystemClock.uptimeMillis();
-        Point point = device.getPhysicalPoint(position);
-        if (point == null) {
+        if (!device.getPhysicalPoint(x, y, screenWidth, screenHeight, physicalPoint)) {
             // ignore event
             return false;
         }
@@ -336,8 +509,8 @@ public class Controller implements AsyncProcessor {
         props.id = 0;
 
         MotionEvent.PointerCoords coords = pointerCoords[0];
-        coords.x = point.getX();
-        coords.y = point.getY();
+        coords.x = physicalPoint[0];
+        coords.y = physicalPoint[1];
         coords.setAxisValue(MotionEvent.AXIS_HSCROLL, hScroll);
         coords.setAxisValue(MotionEvent.AXIS_VSCROLL, vScroll);
 
@@ -395,7 +568,8 @@ public class Controller implements AsyncProcessor {
     }
 
     private boolean setClipboard(String text, boolean paste, long sequence) {
-        boolean ok = device.setClipboardText(text);
+        // keep the previous behavior: report a success only if the clipboard has been changed
+        boolean ok = device.setClipboardText(text) == Device.CLIPBOARD_SET;
         if (ok) {
             Ln.i("Device clipboard set");
         }
@@ -412,4 +586,33 @@ public class Controller implements AsyncProcessor {
 
         return ok;
     }
+
+    private void setVideoSettings(long sequence, int bitRate, int maxFps, int iFrameInterval) {
+        if (encoderControl == null) {
+            Ln.w("Cannot change the video settings: no video encoder");
+            if (sequence != ControlMessage.SEQUENCE_INVALID) {
+                sender.pushAckVideoSettings(sequence, DeviceMessage.VIDEO_SETTINGS_FAILED);
+            }
+            return;
+        }
+
+        encoderControl.setVideoSettings(bitRate, maxFps, iFrameInterval, result -> {
+            if (sequence != ControlMessage.SEQUENCE_INVALID) {
+                // Acknowledgement requested
+                sender.pushAckVideoSettings(sequence, toAckStatus(result));
+            }
+        });
+    }
+
+    private static int toAckStatus(EncoderControl.VideoSettingsResult result) {
+        switch (result) {
+            case APPLIED:
+                return DeviceMessage.VIDEO_SETTINGS_APPLIED;
+            case RESTARTED:
+                return DeviceMessage.VIDEO_SETTINGS_RESTARTED;
+            default:
+                // never applied
+                return DeviceMessage.VIDEO_SETTINGS_FAILED;
+        }
+    }
 }
@@ -0,0 +1,276 @@
+package com.genymobile.scrcpy;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Policy of the graceful degradation of the video stream.
+ * <p>
+ * The ladder is a list of rungs, from the configured settings (level 0) to the lowest settings, each one reducing either the size or the
+ * frame rate of the previous one (alternately), with a bitrate scaled accordingly. The ladder steps down:
+ * <ul>
+ *     <li>on an encoding error before the first frame of the rung (the configuration is not supported);</li>
+ *     <li>after several consecutive encoding errors;</li>
+ *     <li>if the encoding rate stays below the target frame rate (only when the capture produces frames at a constant rate).</li>
+ * </ul>
+ * It steps back up after a hold period without errors nor slow windows. If stepping up fails again quickly, the hold period is doubled,
+ * so that the ladder does not oscillate around a rung the device cannot sustain.
+ * <p>
+ * The codec is not part of the ladder: the client configures its decoder from the stream header, so it cannot change during a session.
+ * <p>
+ * This class does not read any clock and does not touch the encoder, so that it can be tested against simulated traces.
+ */
+public final class DegradationLadder {
+
+    public static final int NO_CHANGE = -1;
+
+    // Keep the values in descending order
+    private static final int[] MAX_SIZE_FALLBACK = {2560, 1920, 1600, 1280, 1024, 800};
+    private static final int[] MAX_FPS_FALLBACK = {30, 20, 15};
+    // frame rate assumed to scale the bitrate if the capture frame rate is not limited
+    private static final int DEFAULT_FPS = 60;
+    private static final int MIN_BIT_RATE_PERCENT = 10;
+
+    private static final int MAX_CONSECUTIVE_ERRORS = 3;
+
+    private static final long WINDOW_NS = 1_000_000_000; // 1s
+    // a window is slow if less than 80% of the target frame rate has been encoded
+    private static final int SLOW_RATE_PERCENT = 80;
+    private static final int SLOW_WINDOWS_BEFORE_DECREASE = 3;
+
+    private static final long INITIAL_HOLD_NS = 30_000_000_000L; // 30s
+    private static final long MAX_HOLD_NS = 480_000_000_000L; // 8min
+
+    public static final class Rung {
+        public static final Rung FULL_QUALITY = new Rung(0, 0, 100);
+
+        private final int maxSize;
+        private final int maxFps;
+        private final int bitRatePercent;
+
+        Rung(int maxSize, int maxFps, int bitRatePercent) {
+            this.maxSize = maxSize;
+            this.maxFps = maxFps;
+            this.bitRatePercent = bitRatePercent;
+        }
+
+        /**
+         * Return the max size of the video, or 0 to keep the configured one.
+         */
+        public int getMaxSize() {
+            return maxSize;
+        }
+
+        /**
+         * Return the frame rate cap, or 0 to keep the configured frame rate.
+         */
+        public int getMaxFps() {
+            return maxFps;
+        }
+
+        public int getBitRatePercent() {
+            return bitRatePercent;
+        }
+
+        /**
+         * Apply the frame rate cap of this rung.
+         *
+         * @param fps the configured frame rate (0 if not limited)
+         * @return the frame rate to use (0 if not limited)
+         */
+        public int capFps(int fps) {
+            if (maxFps == 0) {
+                return fps;
+            }
+            return fps == 0 ? maxFps : Math.min(fps, maxFps);
+        }
+
+        public int scaleBitRate(int bitRate) {
+            return (int) ((long) bitRate * bitRatePercent / 100);
+        }
+
+        @Override
+        public String toString() {
+            return "max_size=" + (maxSize != 0 ? maxSize : "unchanged") + ", max_fps=" + (maxFps != 0 ? maxFps : "unchanged") + ", bitrate="
+                    + bitRatePercent + "%";
+        }
+    }
+
+    private final List<Rung> rungs;
+    private int level;
+
+    // whether the current rung has produced a frame
+    private boolean rungFrameProduced;
+    private int consecutiveErrors;
+
+    private boolean windowStarted;
+    private long windowStartNs;
+    private int windowFrames;
+    private int slowWindows;
+
+    private long healthySinceNs;
+    private long holdNs = INITIAL_HOLD_NS;
+    private boolean lastChangeUp;
+    private long lastChangeNs;
+
+    /**
+     * @param videoMaxSize the largest dimension of the initial video size
+     * @param fps          the configured frame rate (0 if not limited)
+     * @param nowNs        the current time, in nanoseconds
+     */
+    public DegradationLadder(int videoMaxSize, int fps, long nowNs) {
+        rungs = buildRungs(videoMaxSize, fps);
+        healthySinceNs = nowNs;
+    }
+
+    static List<Rung> buildRungs(int videoMaxSize, int fps) {
+        List<Rung> rungs = new ArrayList<>();
+        rungs.add(Rung.FULL_QUALITY);
+
+        int baseFps = fps > 0 ? fps : DEFAULT_FPS;
+        int size = videoMaxSize;
+        int currentFps = baseFps;
+        boolean reduceSize = true;
+        while (true) {
+            int nextSize = nextLower(MAX_SIZE_FALLBACK, size);
+            int nextFps = nextLower(MAX_FPS_FALLBACK, currentFps);
+            if (nextSize == 0 && nextFps == 0) {
+                break;
+            }
+            if (nextFps == 0 || (reduceSize && nextSize != 0)) {
+                size = nextSize;
+            } else {
+                currentFps = nextFps;
+            }
+            reduceSize = !reduceSize;
+
+            // scale the bitrate by the number of pixels per second
+            double ratio = (double) size * size / videoMaxSize / videoMaxSize * currentFps / baseFps;
+            int bitRatePercent = Math.max(MIN_BIT_RATE_PERCENT, (int) Math.round(ratio * 100));
+            rungs.add(new Rung(size != videoMaxSize ? size : 0, currentFps != baseFps ? currentFps : 0, bitRatePercent));
+        }
+        return Collections.unmodifiableList(rungs);
+    }
+
+    private static int nextLower(int[] values, int current) {
+        for (int value : values) {
+            if (value < current) {
+                return value;
+            }
+        }
+        return 0;
+    }
+
+    public List<Rung> getRungs() {
+        return rungs;
+    }
+
+    public int getLevel() {
+        return level;
+    }
+
+    public Rung getRung() {
+        return rungs.get(level);
+    }
+
+    /**
+     * Restart the measurement of the encoding rate (for example when the encoder is restarted), keeping the current rung.
+     */
+    public void reset() {
+        windowStarted = false;
+        slowWindows = 0;
+    }
+
+    /**
+     * Notify an encoding error.
+     *
+     * @param nowNs the current time, in nanoseconds
+     * @return {@code false} if the stream must definitively fail (no lower rung), {@code true} to retry (the rung may have changed)
+     */
+    public boolean onError(long nowNs) {
+        reset();
+        healthySinceNs = nowNs;
+        if (rungFrameProduced && ++consecutiveErrors < MAX_CONSECUTIVE_ERRORS) {
+            // retry on the same rung, the error may be transient
+            return true;
+        }
+        return stepDown(nowNs);
+    }
+
+    /**
+     * Notify that a frame has been encoded.
+     *
+     * @param nowNs     the current time, in nanoseconds
+     * @param targetFps the frame rate expected from the capture, or 0 if it is not constant (the encoding rate is not checked)
+     * @return the new level, or {@link #NO_CHANGE}
+     */
+    public int onFrame(long nowNs, int targetFps) {
+        rungFrameProduced = true;
+        consecutiveErrors = 0;
+
+        if (targetFps > 0 && checkSlow(nowNs, targetFps)) {
+            if (level < rungs.size() - 1 && stepDown(nowNs)) {
+                return level;
+            }
+            // already on the lowest rung, keep streaming
+        }
+
+        if (level > 0 && nowNs - healthySinceNs >= holdNs) {
+            --level;
+            onChange(nowNs, true);
+            return level;
+        }
+
+        return NO_CHANGE;
+    }
+
+    // return true if the encoding has been too slow for several consecutive windows
+    private boolean checkSlow(long nowNs, int targetFps) {
+        if (!windowStarted) {
+            windowStarted = true;
+            windowStartNs = nowNs;
+            windowFrames = 0;
+            return false;
+        }
+
+        ++windowFrames;
+        long durationNs = nowNs - windowStartNs;
+        if (durationNs < WINDOW_NS) {
+            return false;
+        }
+
+        boolean slow = windowFrames * 1_000_000_000L * 100 < (long) targetFps * SLOW_RATE_PERCENT * durationNs;
+        windowStartNs = nowNs;
+        windowFrames = 0;
+        if (!slow) {
+            slowWindows = 0;
+            return false;
+        }
+
+        healthySinceNs = nowNs;
+        return ++slowWindows >= SLOW_WINDOWS_BEFORE_DECREASE;
+    }
+
+    private boolean stepDown(long nowNs) {
+        if (level == rungs.size() - 1) {
+            return false;
+        }
+        if (lastChangeUp && nowNs - lastChangeNs < holdNs) {
+            // the upper rung could not be sustained, wait longer before trying it again
+            holdNs = Math.min(holdNs * 2, MAX_HOLD_NS);
+        }
+        ++level;
+        onChange(nowNs, false);
+        return true;
+    }
+
+    private void onChange(long nowNs, boolean up) {
+        reset();
+        rungFrameProduced = false;
+        consecutiveErrors = 0;
+        healthySinceNs = nowNs;
+        lastChangeUp = up;
+        lastChangeNs = nowNs;
+    }
+}
@@ -27,7 +27,8 @@ public final class DesktopConnection implements Closeable {
     private final InputStream controlInputStream;
     private final OutputStream controlOutputStream;
 
-    private final ControlMessageReader reader = new ControlMessageReader();
+    // the controller copies each message before reading the next one, so the decoded message can be reused
+    private final ControlMessageReader reader = new ControlMessageReader(true);
     private final DeviceMessageWriter writer = new DeviceMessageWriter();
 
     private DesktopConnection(LocalSocket videoSocket, LocalSocket audioSocket, LocalSocket controlSocket) throws IOException {
@@ -29,6 +29,11 @@ public final class Device {
     public static final int INJECT_MODE_WAIT_FOR_RESULT = InputManager.INJECT_INPUT_EVENT_MODE_WAIT_FOR_RESULT;
     public static final int INJECT_MODE_WAIT_FOR_FINISH = InputManager.INJECT_INPUT_EVENT_MODE_WAIT_FOR_FINISH;
 
+    // results of setClipboardText()
+    public static final int CLIPBOARD_SET = 0;
+    public static final int CLIPBOARD_UNCHANGED = 1; // the clipboard already contained the text
+    public static final int CLIPBOARD_ERROR = 2;
+
     public static final int LOCK_VIDEO_ORIENTATION_UNLOCKED = -1;
     public static final int LOCK_VIDEO_ORIENTATION_INITIAL = -2;
 
@@ -44,6 +49,12 @@ public final class Device {
         void onClipboardTextChanged(String text);
     }
 
+    interface Clipboard {
+        String getText();
+
+        boolean setText(String text);
+    }
+
     private final Size deviceSize;
     private final Rect crop;
     private int maxSize;
@@ -115,8 +126,9 @@ public final class Device {
                             return;
                         }
 
-                        screenInfo = ScreenInfo.computeScreenInfo(displayInfo.getRotation(), displayInfo.getSize(), options.getCrop(),
-                                options.getMaxSize(), options.getLockVideoOrientation());
+                        // keep the max size set by setMaxSize(), if the video has been downsized
+                        screenInfo = ScreenInfo.computeScreenInfo(displayInfo.getRotation(), displayInfo.getSize(), options.getCrop(), maxSize,
+                                options.getLockVideoOrientation());
                         // notify
                         if (foldListener != null) {
                             foldListener.onFoldChanged(displayId, folded);
@@ -163,6 +175,10 @@ public final class Device {
         }
     }
 
+    public synchronized int getMaxSize() {
+        return maxSize;
+    }
+
     public synchronized void setMaxSize(int newMaxSize) {
         maxSize = newMaxSize;
         screenInfo = ScreenInfo.computeScreenInfo(screenInfo.getReverseVideoRotation(), deviceSize, crop, newMaxSize, lockVideoOrientation);
@@ -177,6 +193,22 @@ public final class Device {
     }
 
     public Point getPhysicalPoint(Position position) {
+        Point point = position.getPoint();
+        Size screenSize = position.getScreenSize();
+        int[] physicalPoint = new int[2];
+        if (!getPhysicalPoint(point.getX(), point.getY(), screenSize.getWidth(), screenSize.getHeight(), physicalPoint)) {
+            return null;
+        }
+        return new Point(physicalPoint[0], physicalPoint[1]);
+    }
+
+    /**
+     * Same as {@link #getPhysicalPoint(Position)}, for a position given as primitives, without allocation.
+     *
+     * @param out receives the physical x and y coordinates
+     * @return {@code false} if the event must be ignored (generated for a video with different dimensions)
+     */
+    public boolean getPhysicalPoint(int x, int y, int screenWidth, int screenHeight, int[] out) {
         // it hides the field on purpose, to read it with a lock
         @SuppressWarnings("checkstyle:HiddenField")
         ScreenInfo screenInfo = getScreenInfo(); // read with synchronization
@@ -184,21 +216,47 @@ public final class Device {
         // ignore the locked video orientation, the events will apply in coordinates considered in the physical device orientation
         Size unlockedVideoSize = screenInfo.getUnlockedVideoSize();
 
-        int reverseVideoRotation = screenInfo.getReverseVideoRotation();
-        // reverse the video rotation to apply the events
-        Position devicePosition = position.rotate(reverseVideoRotation);
+        // reverse the video rotation to apply the events (same as Position.rotate())
+        int deviceX;
+        int deviceY;
+        int clientVideoWidth;
+        int clientVideoHeight;
+        switch (screenInfo.getReverseVideoRotation()) {
+            case 1:
+                deviceX = screenHeight - y;
+                deviceY = x;
+                clientVideoWidth = screenHeight;
+                clientVideoHeight = screenWidth;
+                break;
+            case 2:
+                deviceX = screenWidth - x;
+                deviceY = screenHeight - y;
+                clientVideoWidth = screenWidth;
+                clientVideoHeight = screenHeight;
+                break;
+            case 3:
+                deviceX = y;
+                deviceY = screenWidth - x;
+                clientVideoWidth = screenHeight;
+                clientVideoHeight = screenWidth;
+                break;
+            default:
+                deviceX = x;
+                deviceY = y;
+                clientVideoWidth = screenWidth;
+                clientVideoHeight = screenHeight;
+                break;
+        }
 
-        Size clientVideoSize = devicePosition.getScreenSize();
-        if (!unlockedVideoSize.equals(clientVideoSize)) {
+        if (unlockedVideoSize.getWidth() != clientVideoWidth || unlockedVideoSize.getHeight() != clientVideoHeight) {
             // The client sends a click relative to a video with wrong dimensions,
             // the device may have been rotated since the event was generated, so ignore the event
-            return null;
+            return false;
         }
         Rect contentRect = screenInfo.getContentRect();
-        Point point = devicePosition.getPoint();
-        int convertedX = contentRect.left + point.getX() * contentRect.width() / unlockedVideoSize.getWidth();
-        int convertedY = contentRect.top + point.getY() * contentRect.height() / unlockedVideoSize.getHeight();
-        return new Point(convertedX, convertedY);
+        out[0] = contentRect.left + deviceX * contentRect.width() / unlockedVideoSize.getWidth();
+        out[1] = contentRect.top + deviceY * contentRect.height() / unlockedVideoSize.getHeight();
+        return true;
     }
 
     public static String getDeviceName() {
@@ -289,25 +347,44 @@ public final class Device {
         return s.toString();
     }
 
-    public boolean setClipboardText(String text) {
+    /**
+     * Set the device clipboard text.
+     *
+     * @return {@link #CLIPBOARD_SET}, {@link #CLIPBOARD_UNCHANGED} or {@link #CLIPBOARD_ERROR}
+     */
+    public int setClipboardText(String text) {
         ClipboardManager clipboardManager = ServiceManager.getClipboardManager();
         if (clipboardManager == null) {
-            return false;
+            return CLIPBOARD_ERROR;
         }
 
-        String currentClipboard = getClipboardText();
+        return setClipboardText(new Clipboard() {
+            @Override
+            public String getText() {
+                return getClipboardText();
+            }
+
+            @Override
+            public boolean setText(String text) {
+                isSettingClipboard.set(true);
+                boolean ok = clipboardManager.setText(text);
+                isSettingClipboard.set(false);
+                return ok;
+            }
+        }, text);
+    }
+
+    static int setClipboardText(Clipboard clipboard, String text) {
+        String currentClipboard = clipboard.getText();
         if (currentClipboard != null && currentClipboard.equals(text)) {
             // The clipboard already contains the requested text.
             // Since pasting text from the computer involves setting the device clipboard, it could be set twice on a copy-paste. This would cause
             // the clipboard listeners to be notified twice, and that would flood the Android keyboard clipboard history. To workaround this
             // problem, do not explicitly set the clipboard text if it already contains the expected content.
-            return false;
+            return CLIPBOARD_UNCHANGED;
         }
 
-        isSettingClipboard.set(true);
-        boolean ok = clipboardManager.setText(text);
-        isSettingClipboard.set(false);
-        return ok;
+        return clipboard.setText(text) ? CLIPBOARD_SET : CLIPBOARD_ERROR;
     }
 
     /**
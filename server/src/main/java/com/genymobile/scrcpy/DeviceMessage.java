@@ -4,12 +4,19 @@ public final class DeviceMessage {
 
     public static final int TYPE_CLIPBOARD = 0;
     public static final int TYPE_ACK_CLIPBOARD = 1;
+    public static final int TYPE_ACK_VIDEO_SETTINGS = 2;
+
+    // status of TYPE_ACK_VIDEO_SETTINGS
+    public static final int VIDEO_SETTINGS_APPLIED = 0; // applied to the running encoder
+    public static final int VIDEO_SETTINGS_RESTARTED = 1; // applied by restarting the encoder
+    public static final int VIDEO_SETTINGS_FAILED = 2; // not applied (no video encoder, or the stream has ended)
 
     public static final long SEQUENCE_INVALID = ControlMessage.SEQUENCE_INVALID;
 
     private int type;
     private String text;
     private long sequence;
+    private int status;
 
     private DeviceMessage() {
     }
@@ -28,6 +35,14 @@ public final class DeviceMessage {
         return event;
     }
 
+    public static DeviceMessage createAckVideoSettings(long sequence, int status) {
+        DeviceMessage event = new DeviceMessage();
+        event.type = TYPE_ACK_VIDEO_SETTINGS;
+        event.sequence = sequence;
+        event.status = status;
+        return event;
+    }
+
     public int getType() {
         return type;
     }
@@ -39,4 +54,8 @@ public final class DeviceMessage {
     public long getSequence() {
         return sequence;
     }
+
+    public int getStatus() {
+        return status;
+    }
 }
@@ -1,6 +1,8 @@
 package com.genymobile.scrcpy;
 
 import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
 
 public final class DeviceMessageSender {
 
@@ -12,6 +14,9 @@ public final class DeviceMessageSender {
 
     private long ack;
 
+    // unlike the clipboard acks, every video settings ack must be sent
+    private final Deque<DeviceMessage> videoSettingsAcks = new ArrayDeque<>();
+
     public DeviceMessageSender(DesktopConnection connection) {
         this.connection = connection;
     }
@@ -26,12 +31,18 @@ public final class DeviceMessageSender {
         notify();
     }
 
+    public synchronized void pushAckVideoSettings(long sequence, int status) {
+        videoSettingsAcks.add(DeviceMessage.createAckVideoSettings(sequence, status));
+        notify();
+    }
+
     private void loop() throws IOException, InterruptedException {
         while (!Thread.currentThread().isInterrupted()) {
             String text;
             long sequence;
+            DeviceMessage videoSettingsAck;
             synchronized (this) {
-                while (ack == DeviceMessage.SEQUENCE_INVALID && clipboardText == null) {
+                while (ack == DeviceMessage.SEQUENCE_INVALID && clipboardText == null && videoSettingsAcks.isEmpty()) {
                     wait();
                 }
                 text = clipboardText;
@@ -39,6 +50,8 @@ public final class DeviceMessageSender {
 
                 sequence = ack;
                 ack = DeviceMessage.SEQUENCE_INVALID;
+
+                videoSettingsAck = videoSettingsAcks.poll();
             }
 
             if (sequence != DeviceMessage.SEQUENCE_INVALID) {
@@ -49,6 +62,9 @@ public final class DeviceMessageSender {
                 DeviceMessage event = DeviceMessage.createClipboard(text);
                 connection.sendDeviceMessage(event);
             }
+            if (videoSettingsAck != null) {
+                connection.sendDeviceMessage(videoSettingsAck);
+            }
         }
     }
     public void start() {
@@ -29,6 +29,11 @@ public class DeviceMessageWriter {
                 buffer.putLong(msg.getSequence());
                 output.write(rawBuffer, 0, buffer.position());
                 break;
+            case DeviceMessage.TYPE_ACK_VIDEO_SETTINGS:
+                buffer.putLong(msg.getSequence());
+                buffer.put((byte) msg.getStatus());
+                output.write(rawBuffer, 0, buffer.position());
+                break;
             default:
                 Ln.w("Unknown device message: " + msg.getType());
                 break;
@@ -0,0 +1,201 @@
+package com.genymobile.scrcpy;
+
+import android.media.MediaCodec;
+import android.media.MediaCodecInfo;
+import android.media.MediaFormat;
+import android.opengl.GLES20;
+
+import com.genymobile.scrcpy.glec.CodecInputSurface;
+
+import java.io.IOException;
+
+/**
+ * Measure of the throughput and the latency of a video encoder, on a synthetic GL workload rendered to its input surface.
+ * <p>
+ * The frames are submitted as fast as possible (rendering into the input surface blocks when the encoder does not keep up), so the
+ * measured frame rate is the throughput of the encoder at the target resolution.
+ */
+public final class EncoderBenchmark {
+
+    public static final class Result {
+        private final String encoderName;
+        private final float fps;
+        private final long latencyUs;
+
+        public Result(String encoderName, float fps, long latencyUs) {
+            this.encoderName = encoderName;
+            this.fps = fps;
+            this.latencyUs = latencyUs;
+        }
+
+        public String getEncoderName() {
+            return encoderName;
+        }
+
+        public float getFps() {
+            return fps;
+        }
+
+        public long getLatencyUs() {
+            return latencyUs;
+        }
+
+        @Override
+        public String toString() {
+            return encoderName + ": " + fps + " fps, " + latencyUs / 1000 + " ms latency";
+        }
+    }
+
+    private static final int FRAMES = 60;
+    // the PTS of the frames, for the rate control of the encoder
+    private static final int FRAME_RATE = 60;
+    private static final long TIMEOUT_NS = 1_500_000_000;
+
+    // RGB color values for generated frames
+    private static final int TEST_R0 = 0;
+    private static final int TEST_G0 = 136;
+    private static final int TEST_B0 = 0;
+    private static final int TEST_R1 = 236;
+    private static final int TEST_G1 = 50;
+    private static final int TEST_B1 = 186;
+
+    private final MediaCodec.BufferInfo bufferInfo = new MediaCodec.BufferInfo();
+    private final long[] submitTimesNs = new long[FRAMES];
+    private int received;
+    private long latencySumNs;
+    private long lastOutputNs;
+
+    private EncoderBenchmark() {
+        // use run()
+    }
+
+    /**
+     * Run the benchmark of an encoder.
+     *
+     * @return the result, or {@code null} if the encoder could not encode at this size
+     */
+    public static Result run(String encoderName, String mimeType, Size size, int bitRate) {
+        try {
+            return new EncoderBenchmark().measure(encoderName, mimeType, size, bitRate);
+        } catch (IOException | RuntimeException e) {
+            Ln.d("Encoder benchmark failed for '" + encoderName + "': " + e.getMessage());
+            return null;
+        }
+    }
+
+    private Result measure(String encoderName, String mimeType, Size size, int bitRate) throws IOException {
+        int width = size.getWidth();
+        int height = size.getHeight();
+
+        MediaFormat format = MediaFormat.createVideoFormat(mimeType, width, height);
+        format.setInteger(MediaFormat.KEY_COLOR_FORMAT, MediaCodecInfo.CodecCapabilities.COLOR_FormatSurface);
+        format.setInteger(MediaFormat.KEY_BIT_RATE, bitRate);
+        format.setInteger(MediaFormat.KEY_FRAME_RATE, FRAME_RATE);
+        format.setInteger(MediaFormat.KEY_I_FRAME_INTERVAL, 10);
+
+        MediaCodec codec = MediaCodec.createByCodecName(encoderName);
+        CodecInputSurface inputSurface = null;
+        boolean started = false;
+        try {
+            codec.configure(format, null, null, MediaCodec.CONFIGURE_FLAG_ENCODE);
+            inputSurface = new CodecInputSurface(codec.createInputSurface());
+            inputSurface.makeCurrent();
+            codec.start();
+            started = true;
+
+            long startNs = System.nanoTime();
+            long deadlineNs = startNs + TIMEOUT_NS;
+            int submitted = 0;
+            while (submitted < FRAMES && System.nanoTime() < deadlineNs) {
+                generateSurfaceFrame(submitted, width, height);
+                inputSurface.setPresentationTime(submitted * 1_000_000_000L / FRAME_RATE);
+                submitTimesNs[submitted] = System.nanoTime();
+                inputSurface.swapBuffers();
+                ++submitted;
+                drain(codec, 0);
+            }
+
+            codec.signalEndOfInputStream();
+            boolean eos = false;
+            while (!eos && received < submitted && System.nanoTime() < deadlineNs) {
+                eos = drain(codec, 10_000);
+            }
+
+            if (received == 0) {
+                return null;
+            }
+            float fps = received * 1e9f / (lastOutputNs - startNs);
+            return new Result(encoderName, fps, latencySumNs / received / 1000);
+        } finally {
+            if (started) {
+                codec.stop();
+            }
+            codec.release();
+            if (inputSurface != null) {
+                inputSurface.release();
+            }
+        }
+    }
+
+    /**
+     * Consume the available output buffers.
+     *
+     * @return {@code true} if the end of stream has been reached
+     */
+    private boolean drain(MediaCodec codec, long timeoutUs) {
+        while (true) {
+            int index = codec.dequeueOutputBuffer(bufferInfo, timeoutUs);
+            if (index < 0) {
+                // no buffer available (or a format change, which does not matter here)
+                return false;
+            }
+            boolean eos = (bufferInfo.flags & MediaCodec.BUFFER_FLAG_END_OF_STREAM) != 0;
+            boolean config = (bufferInfo.flags & MediaCodec.BUFFER_FLAG_CODEC_CONFIG) != 0;
+            if (!config && bufferInfo.size > 0) {
+                long now = System.nanoTime();
+                int frame = (int) Math.round(bufferInfo.presentationTimeUs * FRAME_RATE / 1e6);
+                if (frame >= 0 && frame < FRAMES) {
+                    latencySumNs += now - submitTimesNs[frame];
+                    ++received;
+                    lastOutputNs = now;
+                }
+            }
+            codec.releaseOutputBuffer(index, false);
+            if (eos) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Generates a frame of data using GL commands.  We have an 8-frame animation
+     * sequence that wraps around.  It looks like this:
+     * <pre>
+     *   0 1 2 3
+     *   7 6 5 4
+     * </pre>
+     * We draw one of the eight rectangles and leave the rest set to the clear color.
+     */
+    private static void generateSurfaceFrame(int frameIndex, int width, int height) {
+        frameIndex %= 8;
+
+        int startX, startY;
+        if (frameIndex < 4) {
+            // (0,0) is bottom-left in GL
+            startX = frameIndex * (width / 4);
+            startY = height / 2;
+        } else {
+            startX = (7 - frameIndex) * (width / 4);
+            startY = 0;
+        }
+
+        GLES20.glClearColor(TEST_R0 / 255.0f, TEST_G0 / 255.0f, TEST_B0 / 255.0f, 1.0f);
+        GLES20.glClear(GLES20.GL_COLOR_BUFFER_BIT);
+
+        GLES20.glEnable(GLES20.GL_SCISSOR_TEST);
+        GLES20.glScissor(startX, startY, width / 4, height / 2);
+        GLES20.glClearColor(TEST_R1 / 255.0f, TEST_G1 / 255.0f, TEST_B1 / 255.0f, 1.0f);
+        GLES20.glClear(GLES20.GL_COLOR_BUFFER_BIT);
+        GLES20.glDisable(GLES20.GL_SCISSOR_TEST);
+    }
+}
@@ -0,0 +1,302 @@
+package com.genymobile.scrcpy;
+
+import android.media.MediaCodecInfo;
+import android.media.MediaCodecList;
+import android.os.Build;
+import android.util.Range;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Capabilities of the encoders of the device, cached in a file across the server launches.
+ * <p>
+ * Enumerating the codecs and querying their capabilities takes hundreds of milliseconds on some devices, but they only change on a system
+ * update. Therefore, they are stored in a compact binary file, keyed by the build fingerprint, and loaded lazily on first use.
+ */
+public final class EncoderCapabilities {
+
+    public static final class Encoder {
+        private final String name;
+        private final String mimeType;
+        private final int maxInstances;
+        // (profile, level) pairs
+        private final int[] profileLevels;
+        private final int[] colorFormats;
+        // video only (0 for audio)
+        private final int minWidth;
+        private final int maxWidth;
+        private final int minHeight;
+        private final int maxHeight;
+        private final int maxFrameRate;
+
+        public Encoder(String name, String mimeType, int maxInstances, int[] profileLevels, int[] colorFormats, int minWidth, int maxWidth,
+                int minHeight, int maxHeight, int maxFrameRate) {
+            this.name = name;
+            this.mimeType = mimeType;
+            this.maxInstances = maxInstances;
+            this.profileLevels = profileLevels;
+            this.colorFormats = colorFormats;
+            this.minWidth = minWidth;
+            this.maxWidth = maxWidth;
+            this.minHeight = minHeight;
+            this.maxHeight = maxHeight;
+            this.maxFrameRate = maxFrameRate;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public String getMimeType() {
+            return mimeType;
+        }
+
+        public int getMaxInstances() {
+            return maxInstances;
+        }
+
+        public int[] getProfileLevels() {
+            return profileLevels;
+        }
+
+        public int[] getColorFormats() {
+            return colorFormats;
+        }
+
+        public int getMinWidth() {
+            return minWidth;
+        }
+
+        public int getMaxWidth() {
+            return maxWidth;
+        }
+
+        public int getMinHeight() {
+            return minHeight;
+        }
+
+        public int getMaxHeight() {
+            return maxHeight;
+        }
+
+        public int getMaxFrameRate() {
+            return maxFrameRate;
+        }
+    }
+
+    private static final String CACHE_PATH = "/data/local/tmp/scrcpy-encoders.bin";
+
+    private static final int MAGIC = 0x73636563; // "scec" in ASCII
+    private static final int FORMAT_VERSION = 1;
+
+    private static EncoderCapabilities instance;
+
+    private final String fingerprint;
+    private final List<Encoder> encoders;
+
+    EncoderCapabilities(String fingerprint, List<Encoder> encoders) {
+        this.fingerprint = fingerprint;
+        this.encoders = Collections.unmodifiableList(encoders);
+    }
+
+    /**
+     * Return the capabilities of the encoders, from the cache if it matches the current build, or by querying the codecs otherwise.
+     */
+    public static synchronized EncoderCapabilities get() {
+        if (instance == null) {
+            instance = loadOrQuery(new File(CACHE_PATH), Build.FINGERPRINT);
+        }
+        return instance;
+    }
+
+    private static EncoderCapabilities loadOrQuery(File file, String fingerprint) {
+        if (file.exists()) {
+            try (DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+                EncoderCapabilities capabilities = read(input, fingerprint);
+                if (capabilities != null) {
+                    Ln.d("Encoder capabilities loaded from " + file);
+                    return capabilities;
+                }
+                Ln.d("Encoder capabilities cache outdated");
+            } catch (IOException e) {
+                Ln.w("Could not read the encoder capabilities cache: " + e.getMessage());
+            }
+        }
+
+        EncoderCapabilities capabilities = query(fingerprint);
+        try {
+            IO.writeFileAtomically(file, capabilities::write);
+        } catch (IOException e) {
+            Ln.w("Could not write the encoder capabilities cache: " + e.getMessage());
+        }
+        return capabilities;
+    }
+
+    private static EncoderCapabilities query(String fingerprint) {
+        List<Encoder> encoders = new ArrayList<>();
+        MediaCodecList codecList = new MediaCodecList(MediaCodecList.REGULAR_CODECS);
+        for (MediaCodecInfo info : codecList.getCodecInfos()) {
+            if (!info.isEncoder()) {
+                continue;
+            }
+            for (String mimeType : info.getSupportedTypes()) {
+                MediaCodecInfo.CodecCapabilities capabilities;
+                try {
+                    capabilities = info.getCapabilitiesForType(mimeType);
+                } catch (IllegalArgumentException e) {
+                    Ln.w("Cannot retrieve the capabilities of " + info.getName() + " for " + mimeType);
+                    continue;
+                }
+                encoders.add(createEncoder(info.getName(), mimeType, capabilities));
+            }
+        }
+        return new EncoderCapabilities(fingerprint, encoders);
+    }
+
+    private static Encoder createEncoder(String name, String mimeType, MediaCodecInfo.CodecCapabilities capabilities) {
+        MediaCodecInfo.CodecProfileLevel[] levels = capabilities.profileLevels;
+        int[] profileLevels = new int[levels.length * 2];
+        for (int i = 0; i < levels.length; ++i) {
+            profileLevels[2 * i] = levels[i].profile;
+            profileLevels[2 * i + 1] = levels[i].level;
+        }
+
+        int maxInstances = Build.VERSION.SDK_INT >= Build.VERSION_CODES.M ? capabilities.getMaxSupportedInstances() : 0;
+
+        MediaCodecInfo.VideoCapabilities video = capabilities.getVideoCapabilities();
+        if (video == null) {
+            return new Encoder(name, mimeType, maxInstances, profileLevels, capabilities.colorFormats.clone(), 0, 0, 0, 0, 0);
+        }
+
+        Range<Integer> widths = video.getSupportedWidths();
+        Range<Integer> heights = video.getSupportedHeights();
+        Range<Integer> frameRates = video.getSupportedFrameRates();
+        return new Encoder(name, mimeType, maxInstances, profileLevels, capabilities.colorFormats.clone(), widths.getLower(), widths.getUpper(),
+                heights.getLower(), heights.getUpper(), frameRates.getUpper());
+    }
+
+    public String getFingerprint() {
+        return fingerprint;
+    }
+
+    public List<Encoder> getEncoders() {
+        return encoders;
+    }
+
+    /**
+     * Return the encoders supporting a MIME type, in the order of the codec list (the preferred ones first).
+     */
+    public List<Encoder> getEncoders(String mimeType) {
+        List<Encoder> result = new ArrayList<>();
+        for (Encoder encoder : encoders) {
+            if (encoder.mimeType.equals(mimeType)) {
+                result.add(encoder);
+            }
+        }
+        return result;
+    }
+
+    void write(DataOutputStream output) throws IOException {
+        output.writeInt(MAGIC);
+        output.writeShort(FORMAT_VERSION);
+        output.writeUTF(fingerprint);
+        output.writeShort(encoders.size());
+        for (Encoder encoder : encoders) {
+            output.writeUTF(encoder.name);
+            output.writeUTF(encoder.mimeType);
+            writeU16(output, encoder.maxInstances);
+            writeInts(output, encoder.profileLevels);
+            writeInts(output, encoder.colorFormats);
+            writeU16(output, encoder.minWidth);
+            writeU16(output, encoder.maxWidth);
+            writeU16(output, encoder.minHeight);
+            writeU16(output, encoder.maxHeight);
+            writeU16(output, encoder.maxFrameRate);
+        }
+    }
+
+    private static void writeU16(DataOutputStream output, int value) throws IOException {
+        // the values are small, but never trust a vendor implementation
+        output.writeShort(Math.max(0, Math.min(value, 0xFFFF)));
+    }
+
+    private static void writeInts(DataOutputStream output, int[] values) throws IOException {
+        output.writeShort(values.length);
+        for (int value : values) {
+            output.writeInt(value);
+        }
+    }
+
+    /**
+     * Read the capabilities written by {@link #write(DataOutputStream)}.
+     *
+     * @param fingerprint the current build fingerprint
+     * @return the capabilities, or {@code null} if they were written by another format version or for another build
+     * @throws IOException if the data is invalid or truncated
+     */
+    static EncoderCapabilities read(DataInputStream input, String fingerprint) throws IOException {
+        if (input.readInt() != MAGIC) {
+            throw new IOException("Invalid encoder capabilities header");
+        }
+        if (input.readUnsignedShort() != FORMAT_VERSION || !fingerprint.equals(input.readUTF())) {
+            return null;
+        }
+        int count = input.readUnsignedShort();
+        List<Encoder> encoders = new ArrayList<>(count);
+        for (int i = 0; i < count; ++i) {
+            String name = input.readUTF();
+            String mimeType = input.readUTF();
+            int maxInstances = input.readUnsignedShort();
+            int[] profileLevels = readInts(input);
+            int[] colorFormats = readInts(input);
+            int minWidth = input.readUnsignedShort();
+            int maxWidth = input.readUnsignedShort();
+            int minHeight = input.readUnsignedShort();
+            int maxHeight = input.readUnsignedShort();
+            int maxFrameRate = input.readUnsignedShort();
+            encoders.add(new Encoder(name, mimeType, maxInstances, profileLevels, colorFormats, minWidth, maxWidth, minHeight, maxHeight,
+                    maxFrameRate));
+        }
+        return new EncoderCapabilities(fingerprint, encoders);
+    }
+
+    private static int[] readInts(DataInputStream input) throws IOException {
+        int[] values = new int[input.readUnsignedShort()];
+        for (int i = 0; i < values.length; ++i) {
+            values[i] = input.readInt();
+        }
+        return values;
+    }
+
+    /**
+     * Format the capabilities of all the encoders (verbose).
+     */
+    public String dump() {
+        StringBuilder builder = new StringBuilder("Encoder capabilities:");
+        for (Encoder encoder : encoders) {
+            builder.append("\n    ").append(encoder.name).append(" [").append(encoder.mimeType).append("] max instances: ")
+                    .append(encoder.maxInstances);
+            if (encoder.maxWidth > 0) {
+                builder.append(", size: [").append(encoder.minWidth).append('x').append(encoder.minHeight).append(", ").append(encoder.maxWidth)
+                        .append('x').append(encoder.maxHeight).append("], max fps: ").append(encoder.maxFrameRate);
+            }
+            builder.append(", color formats:");
+            for (int colorFormat : encoder.colorFormats) {
+                builder.append(" 0x").append(Integer.toHexString(colorFormat));
+            }
+            builder.append(", profiles/levels:");
+            for (int i = 0; i < encoder.profileLevels.length; i += 2) {
+                builder.append(' ').append(encoder.profileLevels[i]).append('/').append(encoder.profileLevels[i + 1]);
+            }
+        }
+        return builder.toString();
+    }
+}
@@ -0,0 +1,48 @@
+package com.genymobile.scrcpy;
+
+/**
+ * Control of the live video encoder, from the control messages.
+ * <p>
+ * The methods may be called from any thread.
+ */
+public interface EncoderControl {
+
+    enum VideoSettingsResult {
+        /**
+         * The settings have been applied to the running encoder.
+         */
+        APPLIED,
+        /**
+         * The encoder has been restarted to apply the settings.
+         */
+        RESTARTED,
+        /**
+         * The settings will never be applied, because the stream has ended.
+         */
+        DROPPED,
+    }
+
+    interface VideoSettingsCallback {
+        /**
+         * Called exactly once per request, once the result is known (possibly from the encoder thread).
+         */
+        void onResult(VideoSettingsResult result);
+    }
+
+    /**
+     * Request a key frame (sync frame) as soon as possible.
+     */
+    void requestKeyFrame();
+
+    /**
+     * Change the video settings without restarting the session.
+     * <p>
+     * The bitrate is applied to the running encoder; the max fps and the I-frame interval can only be applied by restarting the encoder.
+     *
+     * @param bitRate        the new bitrate (in bps), or 0 to keep the current one
+     * @param maxFps         the new max fps, or 0 to keep the current one
+     * @param iFrameInterval the new I-frame interval (in seconds), or 0 to keep the current one
+     * @param callback       called once the settings are applied (or dropped)
+     */
+    void setVideoSettings(int bitRate, int maxFps, int iFrameInterval, VideoSettingsCallback callback);
+}
@@ -0,0 +1,145 @@
+package com.genymobile.scrcpy;
+
+import android.media.MediaCodec;
+import android.os.Looper;
+
+import java.io.IOException;
+
+/**
+ * Creation of the encoders in the background, while the client connects.
+ * <p>
+ * Creating a {@link MediaCodec} allocates a codec component in the media server, which takes tens of milliseconds. The encoders take their
+ * preloaded codec when they start, or create one if it could not be preloaded (with the usual error reporting).
+ */
+public final class EncoderPreloader {
+
+    private static final int VIDEO = 0;
+    private static final int AUDIO = 1;
+    private static final String[] NAMES = {"video", "audio"};
+
+    private final Codec[] codecs = new Codec[2];
+    private final String[] encoderNames = new String[2];
+    // for the automatic selection of the video encoder
+    private final Size videoSize;
+    private final int videoBitRate;
+
+    // guarded by this
+    private final MediaCodec[] mediaCodecs = new MediaCodec[2];
+    private final boolean[] done = new boolean[2];
+    private boolean released;
+
+    /**
+     * @param videoCodec       the video codec, or {@code null} if there is no video encoder
+     * @param videoEncoderName the video encoder name, {@link EncoderSelector#AUTO}, or {@code null} for the default encoder
+     * @param videoSize        the initial video size
+     * @param videoBitRate     the video bit rate
+     * @param audioCodec       the audio codec, or {@code null} if there is no audio encoder
+     * @param audioEncoderName the audio encoder name, or {@code null} for the default encoder
+     */
+    public EncoderPreloader(Codec videoCodec, String videoEncoderName, Size videoSize, int videoBitRate, Codec audioCodec,
+            String audioEncoderName) {
+        this.videoSize = videoSize;
+        this.videoBitRate = videoBitRate;
+        codecs[VIDEO] = videoCodec;
+        codecs[AUDIO] = audioCodec;
+        encoderNames[VIDEO] = videoEncoderName;
+        encoderNames[AUDIO] = audioEncoderName;
+    }
+
+    public void start() {
+        Thread thread = new Thread(() -> {
+            // like the video encoding thread
+            Looper.prepare();
+            if (EncoderSelector.AUTO.equals(encoderNames[VIDEO])) {
+                // the automatic selection may benchmark several video encoders (on a cold cache), the audio encoder must not wait for it
+                preload(AUDIO);
+                preload(VIDEO);
+            } else {
+                preload(VIDEO);
+                preload(AUDIO);
+            }
+        }, "encoder-preload");
+        thread.start();
+    }
+
+    private void preload(int index) {
+        Codec codec = codecs[index];
+        MediaCodec mediaCodec = null;
+        if (codec != null) {
+            try {
+                String encoderName = encoderNames[index];
+                if (EncoderSelector.AUTO.equals(encoderName)) {
+                    // null to use the default encoder
+                    encoderName = EncoderSelector.select(codec, videoSize, videoBitRate);
+                    StartupTimeline.get().mark("video encoder selected");
+                }
+                mediaCodec = encoderName != null ? MediaCodec.createByCodecName(encoderName) : MediaCodec.createEncoderByType(codec.getMimeType());
+                StartupTimeline.get().mark(NAMES[index] + " encoder created");
+            } catch (IOException | RuntimeException e) {
+                // the encoder will retry and report the error
+                Ln.d("Could not preload the " + codec.getName() + " encoder: " + e.getMessage());
+            }
+        }
+
+        synchronized (this) {
+            if (released) {
+                if (mediaCodec != null) {
+                    mediaCodec.release();
+                }
+            } else {
+                mediaCodecs[index] = mediaCodec;
+            }
+            done[index] = true;
+            notifyAll();
+        }
+    }
+
+    private synchronized MediaCodec take(int index) {
+        boolean interrupted = false;
+        while (!done[index] && !released) {
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        MediaCodec mediaCodec = mediaCodecs[index];
+        mediaCodecs[index] = null;
+        return mediaCodec;
+    }
+
+    /**
+     * Take the preloaded video encoder (waiting for its creation if necessary).
+     *
+     * @return the encoder (owned by the caller), or {@code null} if it could not be preloaded
+     */
+    public MediaCodec takeVideoCodec() {
+        return take(VIDEO);
+    }
+
+    /**
+     * Take the preloaded audio encoder (waiting for its creation if necessary).
+     *
+     * @return the encoder (owned by the caller), or {@code null} if it could not be preloaded
+     */
+    public MediaCodec takeAudioCodec() {
+        return take(AUDIO);
+    }
+
+    /**
+     * Release the encoders which have not been taken (including those still being created).
+     */
+    public synchronized void release() {
+        released = true;
+        for (int i = 0; i < mediaCodecs.length; ++i) {
+            if (mediaCodecs[i] != null) {
+                mediaCodecs[i].release();
+                mediaCodecs[i] = null;
+            }
+        }
+        notifyAll();
+    }
+}
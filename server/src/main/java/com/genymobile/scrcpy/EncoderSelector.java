@@ -0,0 +1,193 @@
+package com.genymobile.scrcpy;
+
+import android.os.Build;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Automatic selection of the video encoder ({@code video_encoder=auto}).
+ * <p>
+ * The default encoder of a MIME type is sometimes a software encoder, or a slow hardware variant. Each candidate encoder is benchmarked at
+ * the target resolution (see {@link EncoderBenchmark}), and the fastest one is selected. The selection is cached per build fingerprint,
+ * MIME type and resolution, so the benchmark only runs on the first launch.
+ */
+public final class EncoderSelector {
+
+    public static final String AUTO = "auto";
+
+    private static final String CACHE_PATH = "/data/local/tmp/scrcpy-encoder-selection.bin";
+
+    private static final int MAGIC = 0x73637365; // "scse" in ASCII
+    private static final int FORMAT_VERSION = 1;
+
+    // frame rates within this ratio are considered equivalent, the latency decides
+    private static final float FPS_TOLERANCE = 0.05f;
+
+    static final class Selection {
+        private final String mimeType;
+        private final int width;
+        private final int height;
+        private final EncoderBenchmark.Result result;
+
+        Selection(String mimeType, int width, int height, EncoderBenchmark.Result result) {
+            this.mimeType = mimeType;
+            this.width = width;
+            this.height = height;
+            this.result = result;
+        }
+
+        boolean matches(String mimeType, Size size) {
+            return this.mimeType.equals(mimeType) && width == size.getWidth() && height == size.getHeight();
+        }
+
+        EncoderBenchmark.Result getResult() {
+            return result;
+        }
+    }
+
+    private EncoderSelector() {
+        // not instantiable
+    }
+
+    /**
+     * Select the fastest video encoder for a codec at a given size, from the cache or by running the benchmarks.
+     *
+     * @return the encoder name, or {@code null} if no encoder could be benchmarked (the default encoder must be used)
+     */
+    public static String select(Codec codec, Size size, int bitRate) {
+        File file = new File(CACHE_PATH);
+        String mimeType = codec.getMimeType();
+        String fingerprint = Build.FINGERPRINT;
+
+        List<Selection> selections = load(file, fingerprint);
+        Selection cached = find(selections, mimeType, size);
+        if (cached != null) {
+            Ln.i("Video encoder selected (cached): " + cached.getResult());
+            return cached.getResult().getEncoderName();
+        }
+
+        List<EncoderBenchmark.Result> results = new ArrayList<>();
+        for (CodecUtils.DeviceEncoder encoder : CodecUtils.listVideoEncoders()) {
+            if (encoder.getCodec() == codec) {
+                EncoderBenchmark.Result result = EncoderBenchmark.run(encoder.getEncoder().getName(), mimeType, size, bitRate);
+                if (result != null) {
+                    Ln.d("Encoder benchmark at " + size.getWidth() + "x" + size.getHeight() + ": " + result);
+                    results.add(result);
+                }
+            }
+        }
+
+        EncoderBenchmark.Result best = pickFastest(results);
+        if (best == null) {
+            Ln.w("Could not benchmark any " + codec.getName() + " encoder, using the default one");
+            return null;
+        }
+        Ln.i("Video encoder selected: " + best);
+
+        selections.add(new Selection(mimeType, size.getWidth(), size.getHeight(), best));
+        try {
+            IO.writeFileAtomically(file, output -> write(output, fingerprint, selections));
+        } catch (IOException e) {
+            Ln.w("Could not write the encoder selection cache: " + e.getMessage());
+        }
+        return best.getEncoderName();
+    }
+
+    /**
+     * Return the fastest encoder: the highest frame rate, or the lowest latency between equivalent frame rates.
+     *
+     * @return the fastest encoder, or {@code null} if there is none
+     */
+    static EncoderBenchmark.Result pickFastest(List<EncoderBenchmark.Result> results) {
+        EncoderBenchmark.Result best = null;
+        for (EncoderBenchmark.Result result : results) {
+            if (best == null || isFaster(result, best)) {
+                best = result;
+            }
+        }
+        return best;
+    }
+
+    private static boolean isFaster(EncoderBenchmark.Result result, EncoderBenchmark.Result best) {
+        if (result.getFps() > best.getFps() * (1 + FPS_TOLERANCE)) {
+            return true;
+        }
+        if (result.getFps() < best.getFps() * (1 - FPS_TOLERANCE)) {
+            return false;
+        }
+        return result.getLatencyUs() < best.getLatencyUs();
+    }
+
+    static Selection find(List<Selection> selections, String mimeType, Size size) {
+        for (Selection selection : selections) {
+            if (selection.matches(mimeType, size)) {
+                return selection;
+            }
+        }
+        return null;
+    }
+
+    private static List<Selection> load(File file, String fingerprint) {
+        if (file.exists()) {
+            try (DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+                List<Selection> selections = read(input, fingerprint);
+                if (selections != null) {
+                    return selections;
+                }
+                Ln.d("Encoder selection cache outdated");
+            } catch (IOException e) {
+                Ln.w("Could not read the encoder selection cache: " + e.getMessage());
+            }
+        }
+        return new ArrayList<>();
+    }
+
+    static void write(DataOutputStream output, String fingerprint, List<Selection> selections) throws IOException {
+        output.writeInt(MAGIC);
+        output.writeShort(FORMAT_VERSION);
+        output.writeUTF(fingerprint);
+        output.writeShort(selections.size());
+        for (Selection selection : selections) {
+            output.writeUTF(selection.mimeType);
+            output.writeShort(selection.width);
+            output.writeShort(selection.height);
+            output.writeUTF(selection.result.getEncoderName());
+            output.writeFloat(selection.result.getFps());
+            output.writeInt((int) Math.min(selection.result.getLatencyUs(), Integer.MAX_VALUE));
+        }
+    }
+
+    /**
+     * Read the selections written by {@link #write(DataOutputStream, String, List)}.
+     *
+     * @return the selections, or {@code null} if they were written by another format version or for another build
+     * @throws IOException if the data is invalid or truncated
+     */
+    static List<Selection> read(DataInputStream input, String fingerprint) throws IOException {
+        if (input.readInt() != MAGIC) {
+            throw new IOException("Invalid encoder selection header");
+        }
+        if (input.readUnsignedShort() != FORMAT_VERSION || !fingerprint.equals(input.readUTF())) {
+            return null;
+        }
+        int count = input.readUnsignedShort();
+        List<Selection> selections = new ArrayList<>(count);
+        for (int i = 0; i < count; ++i) {
+            String mimeType = input.readUTF();
+            int width = input.readUnsignedShort();
+            int height = input.readUnsignedShort();
+            String encoderName = input.readUTF();
+            float fps = input.readFloat();
+            long latencyUs = input.readInt();
+            selections.add(new Selection(mimeType, width, height, new EncoderBenchmark.Result(encoderName, fps, latencyUs)));
+        }
+        return selections;
+    }
+}
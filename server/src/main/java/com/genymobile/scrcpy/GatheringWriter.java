@@ -0,0 +1,115 @@
+package com.genymobile.scrcpy;
+
+import android.system.ErrnoException;
+import android.system.Os;
+import android.system.OsConstants;
+
+import java.io.FileDescriptor;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Gathering writes to a file descriptor, used to write a header and its payload with a single system call (in the common case where the
+ * write is not partial), so that the client is not woken up for a header without its payload.
+ * <p>
+ * The arrays passed to {@link Os#writev(FileDescriptor, Object[], int[], int[])} (public since API 21, the min SDK version) are reused
+ * across the writes, so that writing a packet does not allocate. They are reallocated only if the number of buffers changes.
+ * <p>
+ * If a buffer is neither backed by an accessible array nor direct, fallback to one write per buffer.
+ * <p>
+ * This class is not thread-safe: each stream has its own instance.
+ */
+public final class GatheringWriter {
+
+    private final FileDescriptor fd;
+
+    // Os.writev() does not update the buffer positions, pass explicit offsets and byte counts
+    private Object[] iovBuffers = new Object[0];
+    private int[] iovOffsets = new int[0];
+    private int[] iovByteCounts = new int[0];
+
+    public GatheringWriter(FileDescriptor fd) {
+        this.fd = fd;
+    }
+
+    /**
+     * Write the remaining bytes of all the buffers, in order.
+     *
+     * @param buffers the buffers to write (their positions are updated)
+     * @throws IOException if an I/O error occurs
+     */
+    public void write(ByteBuffer[] buffers) throws IOException {
+        for (ByteBuffer buffer : buffers) {
+            if (!buffer.hasArray() && !buffer.isDirect()) {
+                for (ByteBuffer b : buffers) {
+                    IO.writeFully(fd, b);
+                }
+                return;
+            }
+        }
+
+        try {
+            while (prepare(buffers) > 0) {
+                try {
+                    int w = Os.writev(fd, iovBuffers, iovOffsets, iovByteCounts);
+                    if (BuildConfig.DEBUG && w < 0) {
+                        // w should not be negative, since an exception is thrown on error
+                        throw new AssertionError("Os.writev() returned a negative value (" + w + ")");
+                    }
+                    IO.consume(buffers, w);
+                } catch (ErrnoException e) {
+                    if (e.errno != OsConstants.EINTR) {
+                        throw new IOException(e);
+                    }
+                }
+            }
+        } finally {
+            // do not retain the buffers of the caller
+            for (int i = 0; i < iovBuffers.length; ++i) {
+                iovBuffers[i] = null;
+            }
+        }
+    }
+
+    /**
+     * Fill the iov arrays with the remaining bytes of the buffers (an empty buffer is passed with a byte count of 0).
+     *
+     * @return the number of bytes to write
+     */
+    long prepare(ByteBuffer[] buffers) {
+        int count = buffers.length;
+        if (iovBuffers.length != count) {
+            iovBuffers = new Object[count];
+            iovOffsets = new int[count];
+            iovByteCounts = new int[count];
+        }
+
+        long total = 0;
+        for (int i = 0; i < count; ++i) {
+            ByteBuffer buffer = buffers[i];
+            if (buffer.hasArray()) {
+                iovBuffers[i] = buffer.array();
+                iovOffsets[i] = buffer.arrayOffset() + buffer.position();
+            } else {
+                iovBuffers[i] = buffer;
+                iovOffsets[i] = buffer.position();
+            }
+            iovByteCounts[i] = buffer.remaining();
+            total += buffer.remaining();
+        }
+        return total;
+    }
+
+    // for tests
+    Object[] getIovBuffers() {
+        return iovBuffers;
+    }
+
+    int[] getIovOffsets() {
+        return iovOffsets;
+    }
+
+    int[] getIovByteCounts() {
+        return iovByteCounts;
+    }
+}
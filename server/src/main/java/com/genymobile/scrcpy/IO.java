@@ -4,13 +4,22 @@ import android.system.ErrnoException;
 import android.system.Os;
 import android.system.OsConstants;
 
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
 import java.io.FileDescriptor;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.nio.ByteBuffer;
 import java.util.Scanner;
 
 public final class IO {
+
+    public interface DataWriter {
+        void write(DataOutputStream output) throws IOException;
+    }
+
     private IO() {
         // not instantiable
     }
@@ -40,6 +49,44 @@ public final class IO {
         writeFully(fd, ByteBuffer.wrap(buffer, offset, len));
     }
 
+    /**
+     * Advance the buffer positions by the number of bytes written by a (possibly partial) gathering write.
+     */
+    static void consume(ByteBuffer[] buffers, int written) {
+        for (ByteBuffer buffer : buffers) {
+            if (written == 0) {
+                break;
+            }
+            int n = Math.min(buffer.remaining(), written);
+            buffer.position(buffer.position() + n);
+            written -= n;
+        }
+        if (written != 0) {
+            throw new AssertionError("More bytes written than available");
+        }
+    }
+
+    /**
+     * Write a file atomically: the data is written to a temporary file, which is then renamed.
+     * <p>
+     * Several servers may start at the same time, so a reader must never see a partially written file.
+     */
+    public static void writeFileAtomically(File file, DataWriter writer) throws IOException {
+        File tmp = new File(file.getPath() + ".tmp" + android.os.Process.myPid());
+        try {
+            try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)))) {
+                writer.write(output);
+            }
+            if (!tmp.renameTo(file)) {
+                throw new IOException("Could not rename " + tmp + " to " + file);
+            }
+        } finally {
+            if (tmp.exists() && !tmp.delete()) {
+                Ln.w("Could not delete " + tmp);
+            }
+        }
+    }
+
     public static String toString(InputStream inputStream) {
         StringBuilder builder = new StringBuilder();
         Scanner scanner = new Scanner(inputStream);
@@ -0,0 +1,61 @@
+package com.genymobile.scrcpy;
+
+/**
+ * Cache of the key events to inject to type each char.
+ * <p>
+ * The key events of a char are stored as a flat array of (action, keycode, metaState) triples, so that typing a text does not call
+ * {@link android.view.KeyCharacterMap#getEvents(char[]) KeyCharacterMap.getEvents()} (nor decompose the char) more than once per distinct
+ * char.
+ * <p>
+ * The entries are stored in a two-level table indexed by the char value (256 pages of 256 entries, allocated on first use), so a lookup
+ * is two array accesses, without boxing.
+ */
+public final class KeyStrokeCache {
+
+    public interface Loader {
+        /**
+         * Compute the key events generating a char.
+         *
+         * @return the (action, keycode, metaState) triples, or {@code null} if the char cannot be typed
+         */
+        int[] load(char c);
+    }
+
+    public static final int STROKE_SIZE = 3;
+
+    // a char which cannot be typed (distinct from a missing entry)
+    private static final int[] UNTYPABLE = new int[0];
+
+    private final Loader loader;
+    private final int[][][] pages = new int[256][][];
+
+    public KeyStrokeCache(Loader loader) {
+        this.loader = loader;
+    }
+
+    /**
+     * Return the key events generating a char (loading them on the first call).
+     * <p>
+     * The returned array must not be modified.
+     *
+     * @return the (action, keycode, metaState) triples, or {@code null} if the char cannot be typed
+     */
+    public int[] get(char c) {
+        int[][] page = pages[c >>> 8];
+        if (page == null) {
+            page = new int[256][];
+            pages[c >>> 8] = page;
+        }
+        int[] strokes = page[c & 0xff];
+        if (strokes == null) {
+            strokes = loader.load(c);
+            if (strokes == null) {
+                strokes = UNTYPABLE;
+            } else if (strokes.length % STROKE_SIZE != 0) {
+                throw new IllegalArgumentException("Invalid key strokes length: " + strokes.length);
+            }
+            page[c & 0xff] = strokes;
+        }
+        return strokes == UNTYPABLE ? null : strokes;
+    }
+}
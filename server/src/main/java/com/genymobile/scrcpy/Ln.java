@@ -37,6 +37,16 @@ public final class Ln {
         return true;
     }
 
+    /**
+     * Return whether the requested log level includes {@code level}.
+     * <p>
+     * The messages are logged whatever the requested level (see {@link #isEnabled(Level)}), but expensive diagnostics must only be
+     * produced if they are requested.
+     */
+    public static boolean isRequested(Level level) {
+        return level.ordinal() >= threshold.ordinal();
+    }
+
     public static void v(String message) {
         if (isEnabled(Level.VERBOSE)) {
             Log.v(TAG, message);
@@ -19,7 +19,7 @@ public final class LogUtils {
         } else {
             for (CodecUtils.DeviceEncoder encoder : videoEncoders) {
                 builder.append("\n    --video-codec=").append(encoder.getCodec().getName());
-                builder.append(" --video-encoder='").append(encoder.getInfo().getName()).append("'");
+                builder.append(" --video-encoder='").append(encoder.getEncoder().getName()).append("'");
             }
         }
         return builder.toString();
@@ -33,7 +33,7 @@ public final class LogUtils {
         } else {
             for (CodecUtils.DeviceEncoder encoder : audioEncoders) {
                 builder.append("\n    --audio-codec=").append(encoder.getCodec().getName());
-                builder.append(" --audio-encoder='").append(encoder.getInfo().getName()).append("'");
+                builder.append(" --audio-encoder='").append(encoder.getEncoder().getName()).append("'");
             }
         }
         return builder.toString();
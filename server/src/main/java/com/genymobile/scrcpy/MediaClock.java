@@ -0,0 +1,126 @@
+package com.genymobile.scrcpy;
+
+/**
+ * Media clock shared by the video and audio pipelines.
+ * <p>
+ * All the PTS written to the streams are on a single time base: the monotonic clock ({@link System#nanoTime()}, i.e.
+ * {@code CLOCK_MONOTONIC}), in microseconds. This is the time base of the {@code SurfaceTexture} timestamps (video) and of
+ * {@code AudioTimestamp.TIMEBASE_MONOTONIC} (audio). A pipeline must convert its timestamps to this time base before writing its packets
+ * (for example, remove the fixed-frame time offset).
+ * <p>
+ * For each stream, the clock measures the offset between the time a packet is written and its PTS. Over each window, the minimum offset is
+ * the latency of the pipeline without jitter, and the spread of the offsets is the jitter. The difference between the minimum offsets of
+ * video and audio is the A/V drift: the delay a client must add to the stream ahead to play them in sync, while its jitter buffer only
+ * needs to absorb the jitter.
+ */
+public final class MediaClock {
+
+    public interface Clock {
+        long nanoTime();
+    }
+
+    public static final Clock SYSTEM_CLOCK = System::nanoTime;
+
+    public static final int STREAM_VIDEO = 0;
+    public static final int STREAM_AUDIO = 1;
+
+    private static final long WINDOW_US = 1_000_000;
+
+    // video offset minus audio offset: positive if the video is late
+    private static final Metrics.Gauge AV_DRIFT = Metrics.gauge("av.drift_us");
+    private static final Metrics.Histogram AV_DRIFT_ABS = Metrics.histogram("av.drift_abs_us");
+    private static final Metrics.Gauge[] JITTER = {
+            Metrics.gauge("video.pts_jitter_us"),
+            Metrics.gauge("audio.pts_jitter_us"),
+    };
+
+    private final Clock clock;
+
+    private long windowStartUs = -1;
+    private final long[] minOffsetsUs = new long[2];
+    private final long[] maxOffsetsUs = new long[2];
+    private final boolean[] hasPackets = new boolean[2];
+
+    private boolean driftAvailable;
+    private long driftUs;
+    private final long[] jittersUs = new long[2];
+
+    public MediaClock() {
+        this(SYSTEM_CLOCK);
+    }
+
+    public MediaClock(Clock clock) {
+        this.clock = clock;
+    }
+
+    /**
+     * Return the current time on the media time base, in microseconds.
+     */
+    public long nowUs() {
+        return clock.nanoTime() / 1000;
+    }
+
+    /**
+     * Notify that a media packet is written.
+     *
+     * @param stream {@link #STREAM_VIDEO} or {@link #STREAM_AUDIO}
+     * @param ptsUs  the PTS of the packet, on the media time base
+     */
+    public synchronized void onPacket(int stream, long ptsUs) {
+        long now = nowUs();
+        long offset = now - ptsUs;
+        if (!hasPackets[stream]) {
+            hasPackets[stream] = true;
+            minOffsetsUs[stream] = offset;
+            maxOffsetsUs[stream] = offset;
+        } else {
+            minOffsetsUs[stream] = Math.min(minOffsetsUs[stream], offset);
+            maxOffsetsUs[stream] = Math.max(maxOffsetsUs[stream], offset);
+        }
+
+        if (windowStartUs == -1) {
+            windowStartUs = now;
+        } else if (now - windowStartUs >= WINDOW_US) {
+            closeWindow();
+            windowStartUs = now;
+        }
+    }
+
+    private void closeWindow() {
+        for (int stream = 0; stream < 2; ++stream) {
+            if (hasPackets[stream]) {
+                jittersUs[stream] = maxOffsetsUs[stream] - minOffsetsUs[stream];
+                JITTER[stream].set(jittersUs[stream]);
+            }
+        }
+        if (hasPackets[STREAM_VIDEO] && hasPackets[STREAM_AUDIO]) {
+            driftUs = minOffsetsUs[STREAM_VIDEO] - minOffsetsUs[STREAM_AUDIO];
+            driftAvailable = true;
+            AV_DRIFT.set(driftUs);
+            AV_DRIFT_ABS.record(Math.abs(driftUs));
+        }
+        hasPackets[STREAM_VIDEO] = false;
+        hasPackets[STREAM_AUDIO] = false;
+    }
+
+    /**
+     * Return whether the A/V drift has been measured (it requires packets of both streams within a window).
+     */
+    public synchronized boolean isDriftAvailable() {
+        return driftAvailable;
+    }
+
+    /**
+     * Return the A/V drift measured over the last complete window, in microseconds (positive if the video is late).
+     */
+    public synchronized long getDriftUs() {
+        return driftUs;
+    }
+
+    /**
+     * Return the jitter of a stream measured over the last complete window, in microseconds.
+     */
+    public synchronized long getJitterUs(int stream) {
+        return jittersUs[stream];
+    }
+}
@@ -0,0 +1,271 @@
+package com.genymobile.scrcpy;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Registry of lightweight metrics (counters, gauges and fixed-bucket histograms).
+ * <p>
+ * Metrics are registered once (typically in a static field or a constructor), then recording a value does not allocate: it only updates
+ * primitive atomic arrays, so it can be called on every frame from the capture, render, encoding and streaming threads.
+ */
+public final class Metrics {
+
+    public static final class Counter {
+        private final String name;
+        private final AtomicLong value = new AtomicLong();
+
+        private Counter(String name) {
+            this.name = name;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public void increment() {
+            value.incrementAndGet();
+        }
+
+        public void add(long delta) {
+            value.addAndGet(delta);
+        }
+
+        public long get() {
+            return value.get();
+        }
+    }
+
+    /**
+     * Current value of a quantity (for example a queue depth), with its peak since the previous dump.
+     */
+    public static final class Gauge {
+        private final String name;
+        private final AtomicLong value = new AtomicLong();
+        private final AtomicLong peak = new AtomicLong();
+
+        private Gauge(String name) {
+            this.name = name;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public void set(long newValue) {
+            value.set(newValue);
+            long max;
+            do {
+                max = peak.get();
+            } while (newValue > max && !peak.compareAndSet(max, newValue));
+        }
+
+        public long get() {
+            return value.get();
+        }
+
+        /**
+         * Return the peak value since the previous call, and reset it to the current value.
+         */
+        long resetPeak() {
+            return Math.max(peak.getAndSet(value.get()), value.get());
+        }
+    }
+
+    /**
+     * Histogram of durations, in microseconds.
+     * <p>
+     * The values are counted in fixed buckets (upper bounds in {@link #BOUNDS}, plus an overflow bucket), so percentiles are estimated by the
+     * upper bound of the bucket they fall in.
+     */
+    public static final class Histogram {
+        // upper bounds (inclusive), in microseconds
+        static final long[] BOUNDS = {100, 200, 500, 1_000, 2_000, 5_000, 10_000, 20_000, 50_000, 100_000, 200_000, 500_000, 1_000_000};
+
+        private final String name;
+        private final AtomicLongArray buckets = new AtomicLongArray(BOUNDS.length + 1);
+        // count, sum, max
+        private final AtomicLongArray totals = new AtomicLongArray(3);
+
+        private Histogram(String name) {
+            this.name = name;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public void record(long valueUs) {
+            if (valueUs < 0) {
+                // clocks are not always consistent between components, do not pollute the first bucket
+                return;
+            }
+            buckets.incrementAndGet(findBucket(valueUs));
+            totals.incrementAndGet(0);
+            totals.addAndGet(1, valueUs);
+            long max;
+            do {
+                max = totals.get(2);
+            } while (valueUs > max && !totals.compareAndSet(2, max, valueUs));
+        }
+
+        /**
+         * Record the duration elapsed since {@code startNs} (on the {@link System#nanoTime()} time base).
+         */
+        public void recordSince(long startNs) {
+            record((System.nanoTime() - startNs) / 1000);
+        }
+
+        static int findBucket(long valueUs) {
+            for (int i = 0; i < BOUNDS.length; ++i) {
+                if (valueUs <= BOUNDS[i]) {
+                    return i;
+                }
+            }
+            return BOUNDS.length;
+        }
+
+        /**
+         * Take a snapshot of the values recorded since the previous snapshot, and reset them.
+         */
+        Snapshot snapshot() {
+            long[] counts = new long[BOUNDS.length + 1];
+            for (int i = 0; i < counts.length; ++i) {
+                counts[i] = buckets.getAndSet(i, 0);
+            }
+            long count = totals.getAndSet(0, 0);
+            long sum = totals.getAndSet(1, 0);
+            long max = totals.getAndSet(2, 0);
+            return new Snapshot(counts, count, sum, max);
+        }
+    }
+
+    static final class Snapshot {
+        private final long[] counts;
+        private final long count;
+        private final long sum;
+        private final long max;
+
+        Snapshot(long[] counts, long count, long sum, long max) {
+            this.counts = counts;
+            this.count = count;
+            this.sum = sum;
+            this.max = max;
+        }
+
+        long getCount() {
+            return count;
+        }
+
+        long getMean() {
+            return count == 0 ? 0 : sum / count;
+        }
+
+        long getMax() {
+            return max;
+        }
+
+        /**
+         * Return the upper bound of the bucket containing the given percentile (or the max for the overflow bucket).
+         */
+        long getPercentile(int percent) {
+            long total = 0;
+            for (long c : counts) {
+                total += c;
+            }
+            if (total == 0) {
+                return 0;
+            }
+            // rank of the percentile, 1-based
+            long rank = Math.max(1, (total * percent + 99) / 100);
+            long seen = 0;
+            for (int i = 0; i < counts.length; ++i) {
+                seen += counts[i];
+                if (seen >= rank) {
+                    return i < Histogram.BOUNDS.length ? Math.min(Histogram.BOUNDS[i], max) : max;
+                }
+            }
+            return max;
+        }
+    }
+
+    private static final List<Counter> COUNTERS = new ArrayList<>();
+    private static final List<Gauge> GAUGES = new ArrayList<>();
+    private static final List<Histogram> HISTOGRAMS = new ArrayList<>();
+
+    private Metrics() {
+        // not instantiable
+    }
+
+    /**
+     * Return the counter registered with this name, registering it if necessary.
+     */
+    public static synchronized Counter counter(String name) {
+        for (Counter counter : COUNTERS) {
+            if (counter.name.equals(name)) {
+                return counter;
+            }
+        }
+        Counter counter = new Counter(name);
+        COUNTERS.add(counter);
+        return counter;
+    }
+
+    /**
+     * Return the gauge registered with this name, registering it if necessary.
+     */
+    public static synchronized Gauge gauge(String name) {
+        for (Gauge gauge : GAUGES) {
+            if (gauge.name.equals(name)) {
+                return gauge;
+            }
+        }
+        Gauge gauge = new Gauge(name);
+        GAUGES.add(gauge);
+        return gauge;
+    }
+
+    /**
+     * Return the histogram registered with this name, registering it if necessary.
+     */
+    public static synchronized Histogram histogram(String name) {
+        for (Histogram histogram : HISTOGRAMS) {
+            if (histogram.name.equals(name)) {
+                return histogram;
+            }
+        }
+        Histogram histogram = new Histogram(name);
+        HISTOGRAMS.add(histogram);
+        return histogram;
+    }
+
+    /**
+     * Format all the metrics. The counters are cumulative; the gauge peaks and the histograms only cover the period since the previous dump.
+     */
+    public static synchronized String dump() {
+        StringBuilder builder = new StringBuilder("Metrics:");
+        for (Counter counter : COUNTERS) {
+            builder.append("\n    ").append(counter.name).append(": ").append(counter.get());
+        }
+        for (Gauge gauge : GAUGES) {
+            builder.append("\n    ").append(gauge.name).append(": ").append(gauge.get()).append(" (peak ").append(gauge.resetPeak()).append(')');
+        }
+        for (Histogram histogram : HISTOGRAMS) {
+            Snapshot snapshot = histogram.snapshot();
+            builder.append("\n    ").append(histogram.name).append(": ");
+            if (snapshot.getCount() == 0) {
+                builder.append("-");
+            } else {
+                builder.append("n=").append(snapshot.getCount())
+                        .append(" mean=").append(snapshot.getMean())
+                        .append(" p50<=").append(snapshot.getPercentile(50))
+                        .append(" p90<=").append(snapshot.getPercentile(90))
+                        .append(" p99<=").append(snapshot.getPercentile(99))
+                        .append(" max=").append(snapshot.getMax());
+            }
+        }
+        return builder.toString();
+    }
+}
@@ -0,0 +1,61 @@
+package com.genymobile.scrcpy;
+
+/**
+ * Periodically log the {@link Metrics}.
+ */
+public final class MetricsReporter {
+
+    // the context switches of the process since the start of the reporter
+    private static final Metrics.Counter CONTEXT_SWITCHES = Metrics.counter("process.context_switches");
+
+    private final int intervalMs;
+    private long lastContextSwitches = -1;
+    private Thread thread;
+
+    public MetricsReporter(int intervalMs) {
+        this.intervalMs = intervalMs;
+    }
+
+    public void start() {
+        thread = new Thread(() -> {
+            try {
+                lastContextSwitches = ProcStats.readContextSwitches();
+                while (!Thread.currentThread().isInterrupted()) {
+                    Thread.sleep(intervalMs);
+                    sampleContextSwitches();
+                    Ln.i(Metrics.dump());
+                }
+            } catch (InterruptedException e) {
+                // stopped
+            }
+        }, "metrics");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private void sampleContextSwitches() {
+        long contextSwitches = ProcStats.readContextSwitches();
+        if (contextSwitches == -1) {
+            return;
+        }
+        if (lastContextSwitches != -1 && contextSwitches > lastContextSwitches) {
+            // the count decreases when a thread terminates, ignore these intervals
+            CONTEXT_SWITCHES.add(contextSwitches - lastContextSwitches);
+        }
+        lastContextSwitches = contextSwitches;
+    }
+
+    public void stop() {
+        if (thread != null) {
+            thread.interrupt();
+        }
+    }
+
+    public void join() throws InterruptedException {
+        if (thread != null) {
+            thread.join();
+            // the values recorded since the last periodic dump
+            Ln.i(Metrics.dump());
+        }
+    }
+}
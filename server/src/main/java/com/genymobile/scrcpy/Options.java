@@ -1,5 +1,7 @@
 package com.genymobile.scrcpy;
 
+import com.genymobile.scrcpy.glec.IdleFrameMode;
+
 import android.graphics.Rect;
 
 import java.util.List;
@@ -17,9 +19,19 @@ public class Options {
     private AudioSource audioSource = AudioSource.OUTPUT;
     private int videoBitRate = 8000000; //视频码率8M
     private int audioBitRate = 128000; //音频码率128k
+    private int audioBatchMs = AudioEncoder.DEFAULT_BATCH_MS; // audio captured per codec input buffer
+    private boolean audioSingleThread; // audio_engine=sync
+    private boolean audioSilenceGate; // send silence packets instead of silent raw audio
+    private int audioSilenceThreshold; // max amplitude considered as silence (0: digital silence only)
     private int maxFps;
+    private boolean adaptiveBitRate;
+    private int minVideoBitRate; // 0 means video_bit_rate / 8
+    private int maxVideoBitRate; // 0 means video_bit_rate
 
     private boolean isFixedFrame = true;   //是否固定帧率
+    private int fixedFrameFps; // 0 means max_fps if set, or the default rate
+    private int fixedFrameTimeOffset = 500; // milliseconds added to the PTS of rendered frames
+    private IdleFrameMode fixedFrameIdleMode = IdleFrameMode.REPEAT;
     private int lockVideoOrientation = -1;
     private boolean tunnelForward;
     private Rect crop;
@@ -37,6 +49,10 @@ public class Options {
     private boolean downsizeOnError = true;
     private boolean cleanup = true;
     private boolean powerOn = true;
+    // texts of at least this length are pasted rather than typed, 0 to disable (the client only sends longer texts if enabled)
+    private int textPasteThreshold = 300;
+    private int maxPointers = PointersState.DEFAULT_MAX_POINTERS;
+    private int metricsInterval; // milliseconds between two metrics dumps, 0 to disable
 
     private boolean listEncoders;
     private boolean listDisplays;
@@ -87,14 +103,54 @@ public class Options {
         return audioBitRate;
     }
 
+    public int getAudioBatchMs() {
+        return audioBatchMs;
+    }
+
+    public boolean getAudioSingleThread() {
+        return audioSingleThread;
+    }
+
+    public boolean getAudioSilenceGate() {
+        return audioSilenceGate;
+    }
+
+    public int getAudioSilenceThreshold() {
+        return audioSilenceThreshold;
+    }
+
     public int getMaxFps() {
         return maxFps;
     }
 
+    public boolean getAdaptiveBitRate() {
+        return adaptiveBitRate;
+    }
+
+    public int getMinVideoBitRate() {
+        return minVideoBitRate;
+    }
+
+    public int getMaxVideoBitRate() {
+        return maxVideoBitRate;
+    }
+
     public boolean isFixedFrame() {
         return isFixedFrame;
     }
 
+    public int getFixedFrameFps() {
+        return fixedFrameFps;
+    }
+
+    public int getFixedFrameTimeOffset() {
+        return fixedFrameTimeOffset;
+    }
+
+    public IdleFrameMode getFixedFrameIdleMode() {
+        return fixedFrameIdleMode;
+    }
+
     public int getLockVideoOrientation() {
         return lockVideoOrientation;
     }
@@ -159,6 +215,18 @@ public class Options {
         return powerOn;
     }
 
+    public int getTextPasteThreshold() {
+        return textPasteThreshold;
+    }
+
+    public int getMaxPointers() {
+        return maxPointers;
+    }
+
+    public int getMetricsInterval() {
+        return metricsInterval;
+    }
+
     public boolean getListEncoders() {
         return listEncoders;
     }
@@ -252,9 +320,65 @@ public class Options {
                 case "audio_bit_rate":
                     options.audioBitRate = Integer.parseInt(value);
                     break;
+                case "audio_batch_ms":
+                    int audioBatchMs = Integer.parseInt(value);
+                    if (audioBatchMs < 1 || audioBatchMs > AudioEncoder.MAX_BATCH_MS) {
+                        throw new IllegalArgumentException("audio_batch_ms must be in [1, " + AudioEncoder.MAX_BATCH_MS + "]: " + audioBatchMs);
+                    }
+                    options.audioBatchMs = audioBatchMs;
+                    break;
+                case "audio_engine":
+                    if ("sync".equals(value)) {
+                        options.audioSingleThread = true;
+                    } else if ("async".equals(value)) {
+                        options.audioSingleThread = false;
+                    } else {
+                        throw new IllegalArgumentException("Invalid audio_engine: " + value + " (expected \"async\" or \"sync\")");
+                    }
+                    break;
+                case "audio_silence_gate":
+                    options.audioSilenceGate = Boolean.parseBoolean(value);
+                    break;
+                case "audio_silence_threshold":
+                    int audioSilenceThreshold = Integer.parseInt(value);
+                    if (audioSilenceThreshold < 0 || audioSilenceThreshold > AudioRawRecorder.MAX_SILENCE_THRESHOLD) {
+                        throw new IllegalArgumentException(
+                                "audio_silence_threshold must be in [0, " + AudioRawRecorder.MAX_SILENCE_THRESHOLD + "]: " + audioSilenceThreshold);
+                    }
+                    options.audioSilenceThreshold = audioSilenceThreshold;
+                    break;
                 case "max_fps":
                     options.maxFps = Integer.parseInt(value);
                     break;
+                case "adaptive_bit_rate":
+                    options.adaptiveBitRate = Boolean.parseBoolean(value);
+                    break;
+                case "min_video_bit_rate":
+                    options.minVideoBitRate = Integer.parseInt(value);
+                    break;
+                case "max_video_bit_rate":
+                    options.maxVideoBitRate = Integer.parseInt(value);
+                    break;
+                case "fixed_frame":
+                    options.isFixedFrame = Boolean.parseBoolean(value);
+                    break;
+                case "fixed_frame_fps":
+                    int fixedFrameFps = Integer.parseInt(value);
+                    if (fixedFrameFps < 0) {
+                        throw new IllegalArgumentException("fixed_frame_fps may not be negative: " + fixedFrameFps);
+                    }
+                    options.fixedFrameFps = fixedFrameFps;
+                    break;
+                case "fixed_frame_time_offset":
+                    options.fixedFrameTimeOffset = Integer.parseInt(value);
+                    break;
+                case "fixed_frame_idle":
+                    IdleFrameMode idleFrameMode = IdleFrameMode.findByName(value);
+                    if (idleFrameMode == null) {
+                        throw new IllegalArgumentException("Fixed frame idle mode " + value + " not supported");
+                    }
+                    options.fixedFrameIdleMode = idleFrameMode;
+                    break;
                 case "lock_video_orientation":
                     options.lockVideoOrientation = Integer.parseInt(value);
                     break;
@@ -306,6 +430,27 @@ public class Options {
                 case "power_on":
                     options.powerOn = Boolean.parseBoolean(value);
                     break;
+                case "text_paste_threshold":
+                    int textPasteThreshold = Integer.parseInt(value);
+                    if (textPasteThreshold < 0) {
+                        throw new IllegalArgumentException("text_paste_threshold may not be negative: " + textPasteThreshold);
+                    }
+                    options.textPasteThreshold = textPasteThreshold;
+                    break;
+                case "max_pointers":
+                    int maxPointers = Integer.parseInt(value);
+                    if (maxPointers < 1 || maxPointers > PointersState.MAX_POINTERS_LIMIT) {
+                        throw new IllegalArgumentException("max_pointers must be in [1, " + PointersState.MAX_POINTERS_LIMIT + "]: " + maxPointers);
+                    }
+                    options.maxPointers = maxPointers;
+                    break;
+                case "metrics_interval":
+                    int metricsInterval = Integer.parseInt(value);
+                    if (metricsInterval < 0) {
+                        throw new IllegalArgumentException("metrics_interval may not be negative: " + metricsInterval);
+                    }
+                    options.metricsInterval = metricsInterval;
+                    break;
                 case "list_encoders":
                     options.listEncoders = Boolean.parseBoolean(value);
                     break;
@@ -372,7 +517,18 @@ public class Options {
                 ", audioSource=" + audioSource +
                 ", videoBitRate=" + videoBitRate +
                 ", audioBitRate=" + audioBitRate +
+                ", audioBatchMs=" + audioBatchMs +
+                ", audioSingleThread=" + audioSingleThread +
+                ", audioSilenceGate=" + audioSilenceGate +
+                ", audioSilenceThreshold=" + audioSilenceThreshold +
                 ", maxFps=" + maxFps +
+                ", adaptiveBitRate=" + adaptiveBitRate +
+                ", minVideoBitRate=" + minVideoBitRate +
+                ", maxVideoBitRate=" + maxVideoBitRate +
+                ", isFixedFrame=" + isFixedFrame +
+                ", fixedFrameFps=" + fixedFrameFps +
+                ", fixedFrameTimeOffset=" + fixedFrameTimeOffset +
+                ", fixedFrameIdleMode=" + fixedFrameIdleMode +
                 ", lockVideoOrientation=" + lockVideoOrientation +
                 ", tunnelForward=" + tunnelForward +
                 ", crop=" + crop +
@@ -389,6 +545,9 @@ public class Options {
                 ", downsizeOnError=" + downsizeOnError +
                 ", cleanup=" + cleanup +
                 ", powerOn=" + powerOn +
+                ", textPasteThreshold=" + textPasteThreshold +
+                ", maxPointers=" + maxPointers +
+                ", metricsInterval=" + metricsInterval +
                 ", listEncoders=" + listEncoders +
                 ", listDisplays=" + listDisplays +
                 ", sendDeviceMeta=" + sendDeviceMeta +
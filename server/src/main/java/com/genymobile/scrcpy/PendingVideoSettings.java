@@ -0,0 +1,80 @@
+package com.genymobile.scrcpy;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Video settings requests waiting for an encoder restart to be applied.
+ * <p>
+ * Each request is completed exactly once: with {@link EncoderControl.VideoSettingsResult#RESTARTED} by the encoder thread once it has been
+ * restarted with the settings, or with {@link EncoderControl.VideoSettingsResult#DROPPED} if the stream ends before (a request received
+ * after the end of the stream is rejected by {@link #add(EncoderControl.VideoSettingsCallback)}).
+ * <p>
+ * The callbacks are never called with the lock held.
+ */
+final class PendingVideoSettings {
+
+    private final List<EncoderControl.VideoSettingsCallback> callbacks = new ArrayList<>();
+    private boolean ended;
+
+    /**
+     * Add a request, to be completed on the next encoder restart.
+     *
+     * @return {@code false} if the stream has already ended (the caller must complete the request with
+     * {@link EncoderControl.VideoSettingsResult#DROPPED})
+     */
+    synchronized boolean add(EncoderControl.VideoSettingsCallback callback) {
+        if (ended) {
+            return false;
+        }
+        callbacks.add(callback);
+        return true;
+    }
+
+    /**
+     * Take the pending requests, before (re)configuring the encoder with the current settings.
+     *
+     * @return the requests, or {@code null} if there are none
+     */
+    synchronized List<EncoderControl.VideoSettingsCallback> take() {
+        if (callbacks.isEmpty()) {
+            return null;
+        }
+        List<EncoderControl.VideoSettingsCallback> result = new ArrayList<>(callbacks);
+        callbacks.clear();
+        return result;
+    }
+
+    /**
+     * Put back requests previously taken, if the encoder failed to start, so that they are completed by the retry (or by the end of the
+     * stream).
+     */
+    void requeue(List<EncoderControl.VideoSettingsCallback> taken) {
+        synchronized (this) {
+            if (!ended) {
+                callbacks.addAll(0, taken);
+                return;
+            }
+        }
+        complete(taken, EncoderControl.VideoSettingsResult.DROPPED);
+    }
+
+    /**
+     * Mark the stream as ended, and drop all the pending requests.
+     */
+    void end() {
+        List<EncoderControl.VideoSettingsCallback> dropped;
+        synchronized (this) {
+            ended = true;
+            dropped = new ArrayList<>(callbacks);
+            callbacks.clear();
+        }
+        complete(dropped, EncoderControl.VideoSettingsResult.DROPPED);
+    }
+
+    static void complete(List<EncoderControl.VideoSettingsCallback> callbacks, EncoderControl.VideoSettingsResult result) {
+        for (EncoderControl.VideoSettingsCallback callback : callbacks) {
+            callback.onResult(result);
+        }
+    }
+}
@@ -2,46 +2,96 @@ package com.genymobile.scrcpy;
 
 import android.view.MotionEvent;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.util.Arrays;
 
+/**
+ * State of the pointers currently down, in the order of their index in the injected motion events.
+ * <p>
+ * The pointers are stored in parallel primitive arrays, so that tracking them never allocates. The local ids in use are stored as a
+ * bitmask, so that the lowest available one is found in constant time. The index of a client id is found in constant time in a small
+ * open-addressed table (primitive keys and values, no boxing), rebuilt when the indices are compacted.
+ */
 public class PointersState {
 
-    public static final int MAX_POINTERS = 10;
+    public static final int DEFAULT_MAX_POINTERS = 10;
+    // the maximum number of pointers in a MotionEvent supported by the input dispatcher
+    public static final int MAX_POINTERS_LIMIT = 16;
 
-    private final List<Pointer> pointers = new ArrayList<>();
+    private final int maxPointers;
 
-    private int indexOf(long id) {
-        for (int i = 0; i < pointers.size(); ++i) {
-            Pointer pointer = pointers.get(i);
-            if (pointer.getId() == id) {
-                return i;
-            }
-        }
-        return -1;
+    // client ids of the pointers, for indices in [0, count)
+    private final long[] ids;
+    private final int[] localIds;
+    private final int[] xs;
+    private final int[] ys;
+    private final float[] pressures;
+    private final boolean[] ups;
+    private int count;
+
+    // bit i is set if local id i is in use
+    private int usedLocalIds;
+
+    // open-addressed table (linear probing) from client id to index, with a load factor of at most 1/2
+    private final long[] tableIds;
+    private final int[] tableIndices; // -1 if the slot is empty
+    private final int tableMask;
+
+    public PointersState() {
+        this(DEFAULT_MAX_POINTERS);
     }
 
-    private boolean isLocalIdAvailable(int localId) {
-        for (int i = 0; i < pointers.size(); ++i) {
-            Pointer pointer = pointers.get(i);
-            if (pointer.getLocalId() == localId) {
-                return false;
-            }
+    public PointersState(int maxPointers) {
+        if (maxPointers < 1 || maxPointers > MAX_POINTERS_LIMIT) {
+            throw new IllegalArgumentException("The max number of pointers must be in [1, " + MAX_POINTERS_LIMIT + "]: " + maxPointers);
         }
-        return true;
+        this.maxPointers = maxPointers;
+        ids = new long[maxPointers];
+        localIds = new int[maxPointers];
+        xs = new int[maxPointers];
+        ys = new int[maxPointers];
+        pressures = new float[maxPointers];
+        ups = new boolean[maxPointers];
+
+        int tableSize = Integer.highestOneBit(maxPointers) << 2;
+        tableIds = new long[tableSize];
+        tableIndices = new int[tableSize];
+        tableMask = tableSize - 1;
+        Arrays.fill(tableIndices, -1);
     }
 
-    private int nextUnusedLocalId() {
-        for (int localId = 0; localId < MAX_POINTERS; ++localId) {
-            if (isLocalIdAvailable(localId)) {
-                return localId;
+    public int getMaxPointers() {
+        return maxPointers;
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    private int slotOf(long id) {
+        // the client ids are often small consecutive values (or negative for the mouse), spread them over the table
+        long h = id * 0x9E3779B97F4A7C15L;
+        return (int) (h >>> 32) & tableMask;
+    }
+
+    private int indexOf(long id) {
+        int slot = slotOf(id);
+        int index;
+        while ((index = tableIndices[slot]) != -1) {
+            if (tableIds[slot] == id) {
+                return index;
             }
+            slot = (slot + 1) & tableMask;
         }
         return -1;
     }
 
-    public Pointer get(int index) {
-        return pointers.get(index);
+    private void putIndex(long id, int index) {
+        int slot = slotOf(id);
+        while (tableIndices[slot] != -1) {
+            slot = (slot + 1) & tableMask;
+        }
+        tableIds[slot] = id;
+        tableIndices[slot] = index;
     }
 
     public int getPointerIndex(long id) {
@@ -50,19 +100,61 @@ public class PointersState {
             // already exists, return it
             return index;
         }
-        if (pointers.size() >= MAX_POINTERS) {
+        if (count >= maxPointers) {
             // it's full
             return -1;
         }
-        // id 0 is reserved for mouse events
-        int localId = nextUnusedLocalId();
-        if (localId == -1) {
-            throw new AssertionError("pointers.size() < maxFingers implies that a local id is available");
-        }
-        Pointer pointer = new Pointer(id, localId);
-        pointers.add(pointer);
+        // the lowest local id not in use (count < maxPointers implies that there is one)
+        int localId = Integer.numberOfTrailingZeros(~usedLocalIds);
+        usedLocalIds |= 1 << localId;
+
+        index = count++;
+        ids[index] = id;
+        putIndex(id, index);
+        localIds[index] = localId;
+        xs[index] = 0;
+        ys[index] = 0;
+        pressures[index] = 0;
+        ups[index] = false;
         // return the index of the pointer
-        return pointers.size() - 1;
+        return index;
+    }
+
+    public long getId(int index) {
+        return ids[index];
+    }
+
+    public int getLocalId(int index) {
+        return localIds[index];
+    }
+
+    public int getX(int index) {
+        return xs[index];
+    }
+
+    public int getY(int index) {
+        return ys[index];
+    }
+
+    public void setPoint(int index, int x, int y) {
+        xs[index] = x;
+        ys[index] = y;
+    }
+
+    public float getPressure(int index) {
+        return pressures[index];
+    }
+
+    public void setPressure(int index, float pressure) {
+        pressures[index] = pressure;
+    }
+
+    public boolean isUp(int index) {
+        return ups[index];
+    }
+
+    public void setUp(int index, boolean up) {
+        ups[index] = up;
     }
 
     /**
@@ -73,30 +165,45 @@ public class PointersState {
      * @return The number of items initialized (the number of pointers).
      */
     public int update(MotionEvent.PointerProperties[] props, MotionEvent.PointerCoords[] coords) {
-        int count = pointers.size();
-        for (int i = 0; i < count; ++i) {
-            Pointer pointer = pointers.get(i);
-
+        int n = count;
+        for (int i = 0; i < n; ++i) {
             // id 0 is reserved for mouse events
-            props[i].id = pointer.getLocalId();
+            props[i].id = localIds[i];
 
-            Point point = pointer.getPoint();
-            coords[i].x = point.getX();
-            coords[i].y = point.getY();
-            coords[i].pressure = pointer.getPressure();
+            coords[i].x = xs[i];
+            coords[i].y = ys[i];
+            coords[i].pressure = pressures[i];
         }
         cleanUp();
-        return count;
+        return n;
     }
 
     /**
-     * Remove all pointers which are UP.
+     * Remove all pointers which are UP, keeping the order of the others.
      */
     private void cleanUp() {
-        for (int i = pointers.size() - 1; i >= 0; --i) {
-            Pointer pointer = pointers.get(i);
-            if (pointer.isUp()) {
-                pointers.remove(i);
+        int j = 0;
+        for (int i = 0; i < count; ++i) {
+            if (ups[i]) {
+                usedLocalIds &= ~(1 << localIds[i]);
+                continue;
+            }
+            if (i != j) {
+                ids[j] = ids[i];
+                localIds[j] = localIds[i];
+                xs[j] = xs[i];
+                ys[j] = ys[i];
+                pressures[j] = pressures[i];
+                ups[j] = false;
+            }
+            ++j;
+        }
+        if (j != count) {
+            // the indices have changed (this only happens when a pointer is released)
+            count = j;
+            Arrays.fill(tableIndices, -1);
+            for (int i = 0; i < count; ++i) {
+                putIndex(ids[i], i);
             }
         }
     }
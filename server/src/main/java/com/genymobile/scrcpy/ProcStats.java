@@ -0,0 +1,49 @@
+package com.genymobile.scrcpy;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Statistics of the server process, read from {@code /proc}.
+ */
+public final class ProcStats {
+
+    private static final File TASK_DIR = new File("/proc/self/task");
+
+    private ProcStats() {
+        // not instantiable
+    }
+
+    /**
+     * Return the number of context switches (voluntary and involuntary) of the live threads of the process.
+     *
+     * @return the number of context switches, or -1 if it could not be read
+     */
+    public static long readContextSwitches() {
+        File[] tasks = TASK_DIR.listFiles();
+        if (tasks == null) {
+            return -1;
+        }
+        long total = 0;
+        for (File task : tasks) {
+            try (InputStream input = new FileInputStream(new File(task, "status"))) {
+                total += parseContextSwitches(IO.toString(input));
+            } catch (IOException e) {
+                // the thread terminated in the meantime
+            }
+        }
+        return total;
+    }
+
+    static long parseContextSwitches(String status) {
+        long total = 0;
+        for (String line : status.split("\n")) {
+            if (line.startsWith("voluntary_ctxt_switches:") || line.startsWith("nonvoluntary_ctxt_switches:")) {
+                total += Long.parseLong(line.substring(line.indexOf(':') + 1).trim());
+            }
+        }
+        return total;
+    }
+}
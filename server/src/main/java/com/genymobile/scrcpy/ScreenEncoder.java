@@ -3,53 +3,90 @@ package com.genymobile.scrcpy;
 import android.graphics.Rect;
 import android.media.MediaCodec;
 import android.media.MediaCodecInfo;
-import android.media.MediaCodecList;
 import android.media.MediaFormat;
 import android.os.Build;
-import android.opengl.GLES20;
+import android.os.Bundle;
 import android.os.IBinder;
 import android.os.Looper;
 import android.os.SystemClock;
 import android.view.Surface;
 
 import com.genymobile.scrcpy.glec.EGLRender;
+import com.genymobile.scrcpy.glec.IdleFrameMode;
 import com.genymobile.scrcpy.wrappers.SurfaceControl;
 
 import java.io.FileDescriptor;
 import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.util.List;
+import java.util.Locale;
 import java.util.concurrent.atomic.AtomicBoolean;
 
-public class ScreenEncoder implements Device.RotationListener, Device.FoldListener, AsyncProcessor {
+public class ScreenEncoder implements Device.RotationListener, Device.FoldListener, AsyncProcessor, EncoderControl {
 
     private static final int DEFAULT_I_FRAME_INTERVAL = 10; // seconds
     private static final int REPEAT_FRAME_DELAY_US = 100_000; // repeat after 100ms
     private static final String KEY_MAX_FPS_TO_ENCODER = "max-fps-to-encoder";
 
-    // Keep the values in descending order
-    private static final int[] MAX_SIZE_FALLBACK = {2560, 1920, 1600, 1280, 1024, 800};
+    // without degradation (downsize_on_error=false), the number of consecutive errors before failing
     private static final int MAX_CONSECUTIVE_ERRORS = 3;
 
+    // Minimal interval between two key frame requests applied to the encoder, the requests received meanwhile are deferred
+    private static final long KEY_FRAME_REQUEST_MIN_INTERVAL_NS = 500_000_000; // 500ms
+
+    // Frame rate of the fixed-frame mode if neither fixed_frame_fps nor max_fps is set
+    private static final int DEFAULT_FIXED_FRAME_FPS = 30;
+
+    // from the capture (or the render slot in fixed-frame mode) to the output of the encoded packet
+    private static final Metrics.Histogram ENCODE_LATENCY = Metrics.histogram("video.encode_latency_us");
+    private static final Metrics.Counter ENCODED_FRAMES = Metrics.counter("video.frames");
+    private static final Metrics.Counter ENCODED_KEY_FRAMES = Metrics.counter("video.key_frames");
+    private static final Metrics.Counter KEY_FRAME_REQUESTS = Metrics.counter("video.key_frame_requests");
+    private static final Metrics.Gauge DEGRADATION_LEVEL = Metrics.gauge("video.degradation_level");
+
     private final AtomicBoolean resetCapture = new AtomicBoolean();
 
     private final Device device;
     private final Streamer streamer;
     private final String encoderName;
     private final List<CodecOption> codecOptions;
-    private final int videoBitRate;
-    private final int maxFps;
     private final boolean downsizeOnError;
+    private final BitrateController bitrateController; // null if the bitrate is not adaptive
+    private final EncoderPreloader encoderPreloader; // may be null
 
     private boolean firstFrameSent;
     private int consecutiveErrors;
 
+    private DegradationLadder ladder; // null if downsize_on_error is disabled
+    private int configuredMaxSize;
+
+    // Start of the current capture (initial start or restart after a reset), to measure the time to first frame
+    private long captureStartNs;
+    private boolean captureFirstFrameSent;
+
     private Thread thread;
     private final AtomicBoolean stopped = new AtomicBoolean();
 
+    private final Object codecLock = new Object();
+    private MediaCodec liveCodec; // the started encoder, guarded by codecLock
+    private long lastKeyFrameRequestNs; // guarded by codecLock
+    private volatile boolean keyFrameRequestPending;
+
+    // may be changed at runtime by setVideoSettings(), guarded by codecLock
+    private int videoBitRate;
+    private int maxFps;
+    private int iFrameInterval = DEFAULT_I_FRAME_INTERVAL;
+    private DegradationLadder.Rung rung = DegradationLadder.Rung.FULL_QUALITY;
+    // the requests applied on the next encoder restart
+    private final PendingVideoSettings pendingVideoSettings = new PendingVideoSettings();
+
 
     //是否固定帧率
-    private boolean mIsFixedFrame = true;
+    private final boolean mIsFixedFrame;
+    private final int mFixedFrameFpsOption; // the fixed_frame_fps option (0 to follow max_fps)
+    private int mFixedFrameFps;
+    private final int mFixedFrameTimeOffset;
+    private final IdleFrameMode mFixedFrameIdleMode;
     private EGLRender mEglRender;
     private final EGLRender.onFrameCallBack mFrameCallBack = new EGLRender.onFrameCallBack() {
         @Override
@@ -60,13 +97,12 @@ public class ScreenEncoder implements Device.RotationListener, Device.FoldListen
         @Override
         public void onStop() {
             Ln.v("EglRender onStop!");
-            mEglRender.releaseResource();
-            mEglRender = null;
         }
     };
 
     public ScreenEncoder(Device device, Streamer streamer, int videoBitRate, int maxFps, List<CodecOption> codecOptions, String encoderName,
-                         boolean downsizeOnError) {
+                         boolean downsizeOnError, boolean fixedFrame, int fixedFrameFps, int fixedFrameTimeOffset,
+                         IdleFrameMode fixedFrameIdleMode, BitrateController bitrateController, EncoderPreloader encoderPreloader) {
         this.device = device;
         this.streamer = streamer;
         this.videoBitRate = videoBitRate;
@@ -74,6 +110,24 @@ public class ScreenEncoder implements Device.RotationListener, Device.FoldListen
         this.codecOptions = codecOptions;
         this.encoderName = encoderName;
         this.downsizeOnError = downsizeOnError;
+        this.mIsFixedFrame = fixedFrame;
+        this.mFixedFrameFpsOption = fixedFrameFps;
+        this.mFixedFrameFps = getFixedFrameFps(fixedFrameFps, maxFps);
+        this.mFixedFrameTimeOffset = fixedFrameTimeOffset;
+        this.mFixedFrameIdleMode = fixedFrameIdleMode;
+        this.bitrateController = bitrateController;
+        this.encoderPreloader = encoderPreloader;
+    }
+
+    private static int getFixedFrameFps(int fixedFrameFps, int maxFps) {
+        if (fixedFrameFps > 0) {
+            return fixedFrameFps;
+        }
+        if (maxFps > 0) {
+            // render at the requested max fps rather than capping at the default rate
+            return maxFps;
+        }
+        return DEFAULT_FIXED_FRAME_FPS;
     }
 
     @Override
@@ -92,18 +146,53 @@ public class ScreenEncoder implements Device.RotationListener, Device.FoldListen
 
     private void streamScreen() throws IOException, ConfigurationException {
         Codec codec = streamer.getCodec();
-        printMediaCodecInfo();
-        MediaCodec mediaCodec = createMediaCodec(codec, encoderName);
-        MediaFormat format = createFormat(codec.getMimeType(), videoBitRate, maxFps, codecOptions);
+        if (Ln.isRequested(Ln.Level.DEBUG)) {
+            Ln.d(EncoderCapabilities.get().dump());
+        }
+        MediaCodec mediaCodec = encoderPreloader != null ? encoderPreloader.takeVideoCodec() : null;
+        if (mediaCodec != null) {
+            Ln.d("Using preloaded video encoder: '" + mediaCodec.getName() + "'");
+        } else {
+            // if the automatic selection failed, use the default encoder
+            mediaCodec = createMediaCodec(codec, EncoderSelector.AUTO.equals(encoderName) ? null : encoderName);
+        }
         IBinder display = createDisplay();
+        StartupTimeline.get().mark("video display created");
         device.setRotationListener(this);
         device.setFoldListener(this);
 
-        streamer.writeVideoHeader(device.getScreenInfo().getVideoSize());
+        if (mIsFixedFrame) {
+            Ln.i("Video capture mode: fixed frame rate (" + mFixedFrameFps + " fps, time offset " + mFixedFrameTimeOffset + " ms, idle frames: "
+                    + mFixedFrameIdleMode.name().toLowerCase(Locale.ENGLISH) + ")");
+        } else {
+            Ln.i("Video capture mode: direct");
+        }
+
+        Size initialVideoSize = device.getScreenInfo().getVideoSize();
+        streamer.writeVideoHeader(initialVideoSize);
+
+        if (downsizeOnError) {
+            configuredMaxSize = device.getMaxSize();
+            int fps = mIsFixedFrame ? mFixedFrameFps : maxFps;
+            ladder = new DegradationLadder(Math.max(initialVideoSize.getWidth(), initialVideoSize.getHeight()), fps, System.nanoTime());
+        }
 
         boolean alive;
         try {
+            if (mIsFixedFrame) {
+                // the EGL contexts and the GL program are kept across the encoder restarts
+                Rect initialRect = device.getScreenInfo().getVideoSize().toRect();
+                mEglRender = new EGLRender(initialRect.width(), initialRect.height(), mFixedFrameFps, mFixedFrameTimeOffset, mFixedFrameIdleMode);
+                mEglRender.setCallBack(mFrameCallBack);
+                StartupTimeline.get().mark("egl ready");
+            }
+
             do {
+                captureStartNs = System.nanoTime();
+                captureFirstFrameSent = false;
+                // created on each restart, a key set for a previous capture may have to be removed (MediaFormat.removeKey() requires API 29)
+                MediaFormat format = createFormat(codec.getMimeType(), codecOptions);
+                List<VideoSettingsCallback> appliedCallbacks = applyVideoSettings(format);
                 ScreenInfo screenInfo = device.getScreenInfo();
                 Rect contentRect = screenInfo.getContentRect();
 
@@ -116,8 +205,7 @@ public class ScreenEncoder implements Device.RotationListener, Device.FoldListen
                     mediaCodec.configure(format, null, null, MediaCodec.CONFIGURE_FLAG_ENCODE);
 
                     if (mIsFixedFrame) {
-                        this.mEglRender = new EGLRender(mediaCodec.createInputSurface(), videoRect.width(), videoRect.height(), 30, 500);
-                        this.mEglRender.setCallBack(mFrameCallBack);
+                        this.mEglRender.attach(mediaCodec.createInputSurface(), videoRect.width(), videoRect.height());
                         surface = mEglRender.getDecodeSurface();
                     } else {
                         surface = mediaCodec.createInputSurface();
@@ -130,36 +218,54 @@ public class ScreenEncoder implements Device.RotationListener, Device.FoldListen
                     setDisplaySurface(display, surface, videoRotation, contentRect, unlockedVideoRect, layerStack);
 
                     if (this.mIsFixedFrame) {
-                        this.mEglRender.setStartTimeNs(SystemClock.elapsedRealtimeNanos());
+                        // the PTS are the deadlines of the render schedule, on the time base of the frames produced by the display
                         this.mEglRender.start();
                         Ln.i("Encoder running");
                     }
                     mediaCodec.start();
+                    setLiveCodec(mediaCodec);
+
+                    if (appliedCallbacks != null) {
+                        PendingVideoSettings.complete(appliedCallbacks, VideoSettingsResult.RESTARTED);
+                        appliedCallbacks = null;
+                    }
 
                     alive = encode(mediaCodec, streamer);
+                    setLiveCodec(null);
+                    // stop rendering into the input surface before stopping the encoder
+                    detachRenderer();
                     // do not call stop() on exception, it would trigger an IllegalStateException
                     mediaCodec.stop();
                 } catch (IllegalStateException | IllegalArgumentException e) {
                     Ln.e("Encoding error: " + e.getClass().getName() + ": " + e.getMessage());
-                    if (!prepareRetry(device, screenInfo)) {
+                    if (!prepareRetry()) {
                         throw e;
                     }
                     Ln.i("Retrying...");
                     alive = true;
                 } finally {
+                    if (appliedCallbacks != null) {
+                        // the encoder did not start, the settings will be applied by the retry
+                        pendingVideoSettings.requeue(appliedCallbacks);
+                    }
+                    setLiveCodec(null);
+                    // the renderer owns the encoder input surface, it is released on its render thread
+                    detachRenderer();
                     mediaCodec.reset();
-                    if (surface != null) {
+                    if (surface != null && !mIsFixedFrame) {
                         surface.release();
                     }
 
                     Ln.i("Encoder end");
-                    if (this.mEglRender != null) {
-                        this.mEglRender.stop();
-                    }
-
                 }
             } while (alive);
         } finally {
+            // the client expects an acknowledgment for each request
+            pendingVideoSettings.end();
+            if (mEglRender != null) {
+                mEglRender.stop();
+                mEglRender = null;
+            }
             mediaCodec.release();
             device.setRotationListener(null);
             device.setFoldListener(null);
@@ -167,7 +273,119 @@ public class ScreenEncoder implements Device.RotationListener, Device.FoldListen
         }
     }
 
-    private boolean prepareRetry(Device device, ScreenInfo screenInfo) {
+    /**
+     * Apply the current video settings to the format (and to the renderer), before (re)configuring the encoder.
+     *
+     * @return the callbacks of the settings which required this restart, or {@code null}
+     */
+    private List<VideoSettingsCallback> applyVideoSettings(MediaFormat format) {
+        synchronized (codecLock) {
+            if (bitrateController != null) {
+                // restart with the bitrate adapted during the previous capture
+                format.setInteger(MediaFormat.KEY_BIT_RATE, bitrateController.getBitRate());
+                bitrateController.reset();
+            } else {
+                format.setInteger(MediaFormat.KEY_BIT_RATE, rung.scaleBitRate(videoBitRate));
+            }
+            format.setInteger(MediaFormat.KEY_I_FRAME_INTERVAL, iFrameInterval);
+            int cappedMaxFps = rung.capFps(maxFps);
+            if (cappedMaxFps > 0) {
+                // The key existed privately before Android 10:
+                // <https://android.googlesource.com/platform/frameworks/base/+/625f0aad9f7a259b6881006ad8710adce57d1384%5E%21/>
+                // <https://github.com/Genymobile/scrcpy/issues/488#issuecomment-567321437>
+                format.setFloat(KEY_MAX_FPS_TO_ENCODER, cappedMaxFps);
+            }
+
+            if (mEglRender != null) {
+                int fps = rung.capFps(getFixedFrameFps(mFixedFrameFpsOption, maxFps));
+                if (fps != mFixedFrameFps) {
+                    // the renderer is detached between two captures
+                    Ln.i("Fixed frame rate: " + fps + " fps");
+                    mFixedFrameFps = fps;
+                    mEglRender.setFps(fps);
+                }
+            }
+
+            return pendingVideoSettings.take();
+        }
+    }
+
+    @Override
+    public void setVideoSettings(int bitRate, int maxFps, int iFrameInterval, VideoSettingsCallback callback) {
+        Ln.i("Video settings: bitrate=" + bitRate + ", max_fps=" + maxFps + ", i_frame_interval=" + iFrameInterval + " (0 = unchanged)");
+        // whether the settings can only be applied by the next encoder (re)start
+        boolean onRestart = false;
+        boolean restart = false;
+        boolean pending = false;
+        synchronized (codecLock) {
+            if (bitRate > 0) {
+                videoBitRate = bitRate;
+                int appliedBitRate = rung.scaleBitRate(bitRate);
+                if (bitrateController != null) {
+                    // the requested bitrate becomes the upper bound of the adaptive bitrate
+                    appliedBitRate = bitrateController.setMaxBitRate(bitRate);
+                }
+                if (liveCodec != null) {
+                    try {
+                        setVideoBitRate(liveCodec, appliedBitRate);
+                    } catch (IllegalStateException e) {
+                        // the encoder is being stopped, the bitrate will be applied on restart
+                        onRestart = true;
+                    }
+                } else {
+                    // the encoder is being (re)started (or the stream has ended)
+                    onRestart = true;
+                }
+            }
+            if (maxFps > 0 && maxFps != this.maxFps) {
+                this.maxFps = maxFps;
+                restart = true;
+            }
+            if (iFrameInterval > 0 && iFrameInterval != this.iFrameInterval) {
+                this.iFrameInterval = iFrameInterval;
+                restart = true;
+            }
+            if (restart || onRestart) {
+                // added with codecLock held, so that the next restart cannot miss it (see applyVideoSettings())
+                pending = pendingVideoSettings.add(callback);
+                if (pending && restart) {
+                    resetCapture.set(true);
+                }
+            }
+        }
+
+        if (restart || onRestart) {
+            if (!pending) {
+                // the stream has ended, the settings will never be applied
+                callback.onResult(VideoSettingsResult.DROPPED);
+            }
+        } else {
+            callback.onResult(VideoSettingsResult.APPLIED);
+        }
+    }
+
+    private void detachRenderer() {
+        if (mEglRender != null) {
+            mEglRender.detach();
+        }
+    }
+
+    private boolean prepareRetry() {
+        if (ladder != null) {
+            int level = ladder.getLevel();
+            if (!ladder.onError(System.nanoTime())) {
+                // Definitively fail
+                return false;
+            }
+            if (ladder.getLevel() != level) {
+                applyRung();
+            } else {
+                // Wait a bit to increase the probability that retrying will fix the problem
+                SystemClock.sleep(50);
+            }
+            return true;
+        }
+
         if (firstFrameSent) {
             ++consecutiveErrors;
             if (consecutiveErrors >= MAX_CONSECUTIVE_ERRORS) {
@@ -180,35 +398,25 @@ public class ScreenEncoder implements Device.RotationListener, Device.FoldListen
             return true;
         }
 
-        if (!downsizeOnError) {
-            // Must fail immediately
-            return false;
-        }
-
-        // Downsizing on error is only enabled if an encoding failure occurs before the first frame (downsizing later could be surprising)
-
-        int newMaxSize = chooseMaxSizeFallback(screenInfo.getVideoSize());
-        if (newMaxSize == 0) {
-            // Must definitively fail
-            return false;
-        }
-
-        // Retry with a smaller device size
-        Ln.i("Retrying with -m" + newMaxSize + "...");
-        device.setMaxSize(newMaxSize);
-        return true;
+        // Downsizing on error is disabled, must fail immediately
+        return false;
     }
 
-    private static int chooseMaxSizeFallback(Size failedSize) {
-        int currentMaxSize = Math.max(failedSize.getWidth(), failedSize.getHeight());
-        for (int value : MAX_SIZE_FALLBACK) {
-            if (value < currentMaxSize) {
-                // We found a smaller value to reduce the video size
-                return value;
+    /**
+     * Apply the current rung of the degradation ladder, to be used on the next encoder restart.
+     */
+    private void applyRung() {
+        DegradationLadder.Rung newRung = ladder.getRung();
+        Ln.i("Video degradation level " + ladder.getLevel() + "/" + (ladder.getRungs().size() - 1) + ": " + newRung);
+        DEGRADATION_LEVEL.set(ladder.getLevel());
+        device.setMaxSize(newRung.getMaxSize() != 0 ? newRung.getMaxSize() : configuredMaxSize);
+        synchronized (codecLock) {
+            rung = newRung;
+            if (bitrateController != null) {
+                // the scaled bitrate becomes the upper bound of the adaptive bitrate
+                bitrateController.setMaxBitRate(newRung.scaleBitRate(videoBitRate));
             }
         }
-        // No fallback, fail definitively
-        return 0;
     }
 
     private boolean encode(MediaCodec codec, Streamer streamer) throws IOException {
@@ -242,9 +450,49 @@ public class ScreenEncoder implements Device.RotationListener, Device.FoldListen
                         // If this is not a config packet, then it contains a frame
                         firstFrameSent = true;
                         consecutiveErrors = 0;
+                        if (!captureFirstFrameSent) {
+                            captureFirstFrameSent = true;
+                            Ln.i("Time to first frame: " + (System.nanoTime() - captureStartNs) / 1_000_000 + " ms");
+                        }
+                        long captureTimeUs = bufferInfo.presentationTimeUs;
+                        if (mIsFixedFrame) {
+                            captureTimeUs -= mFixedFrameTimeOffset * 1000L;
+                            // the time offset only applies to the encoder input, the stream PTS are on the media time base (see MediaClock)
+                            bufferInfo.presentationTimeUs = captureTimeUs;
+                        }
+                        ENCODE_LATENCY.record(System.nanoTime() / 1000 - captureTimeUs);
+                        ENCODED_FRAMES.increment();
+                        if (isKey) {
+                            ENCODED_KEY_FRAMES.increment();
+                        }
+
+                        if (ladder != null) {
+                            // the encoding rate is only meaningful if the capture produces frames at a constant rate
+                            int targetFps = mIsFixedFrame && mFixedFrameIdleMode == IdleFrameMode.REPEAT ? mFixedFrameFps : 0;
+                            if (ladder.onFrame(System.nanoTime(), targetFps) != DegradationLadder.NO_CHANGE) {
+                                applyRung();
+                                // restart the encoder with the new settings
+                                resetCapture.set(true);
+                            }
+                        }
                     }
 
                     streamer.writePacket(codecBuffer, bufferInfo);
+
+                    if (keyFrameRequestPending) {
+                        synchronized (codecLock) {
+                            applyKeyFrameRequest(System.nanoTime());
+                        }
+                    }
+
+                    if (bitrateController != null) {
+                        synchronized (codecLock) {
+                            int newBitRate = bitrateController.update(System.nanoTime(), streamer.getTotalBytes(), streamer.getTotalWriteTimeNs());
+                            if (newBitRate != BitrateController.NO_CHANGE) {
+                                setVideoBitRate(codec, newBitRate);
+                            }
+                        }
+                    }
                 }
             } finally {
                 if (outputBufferId >= 0) {
@@ -256,6 +504,55 @@ public class ScreenEncoder implements Device.RotationListener, Device.FoldListen
         return !eof && alive;
     }
 
+    private void setLiveCodec(MediaCodec codec) {
+        synchronized (codecLock) {
+            liveCodec = codec;
+            if (codec != null) {
+                // a (re)started encoder produces a key frame anyway
+                keyFrameRequestPending = false;
+            }
+        }
+    }
+
+    @Override
+    public void requestKeyFrame() {
+        KEY_FRAME_REQUESTS.increment();
+        synchronized (codecLock) {
+            keyFrameRequestPending = true;
+            applyKeyFrameRequest(System.nanoTime());
+        }
+    }
+
+    // must be called with codecLock held
+    private void applyKeyFrameRequest(long nowNs) {
+        if (!keyFrameRequestPending || liveCodec == null) {
+            return;
+        }
+        if (lastKeyFrameRequestNs != 0 && nowNs - lastKeyFrameRequestNs < KEY_FRAME_REQUEST_MIN_INTERVAL_NS) {
+            // rate-limited, the encoding loop will apply it later
+            return;
+        }
+        keyFrameRequestPending = false;
+        lastKeyFrameRequestNs = nowNs;
+
+        Ln.d("Request key frame");
+        Bundle params = new Bundle();
+        params.putInt(MediaCodec.PARAMETER_KEY_REQUEST_SYNC_FRAME, 0);
+        try {
+            liveCodec.setParameters(params);
+        } catch (IllegalStateException e) {
+            // the encoder is being stopped, the next one will start with a key frame
+            Ln.w("Could not request key frame: " + e.getMessage());
+        }
+    }
+
+    private static void setVideoBitRate(MediaCodec codec, int bitRate) {
+        Ln.d("Video bitrate: " + bitRate + " bps");
+        Bundle params = new Bundle();
+        params.putInt(MediaCodec.PARAMETER_KEY_VIDEO_BITRATE, bitRate);
+        codec.setParameters(params);
+    }
+
     private static MediaCodec createMediaCodec(Codec codec, String encoderName) throws IOException, ConfigurationException {
         if (encoderName != null) {
             Ln.d("Creating encoder by name: '" + encoderName + "'");
@@ -280,59 +577,16 @@ public class ScreenEncoder implements Device.RotationListener, Device.FoldListen
         }
     }
 
-    public  void printMediaCodecInfo() {
-        final MediaCodecList list = new MediaCodecList(MediaCodecList.REGULAR_CODECS);
-        final MediaCodecInfo[] codecInfos = list.getCodecInfos();
-        for (int i = 0; i < codecInfos.length; ++i) {
-            MediaCodecInfo info = null;
-            try {
-                info =codecInfos[i];
-            } catch (IllegalArgumentException e) {
-                Ln.e( "Cannot retrieve decoder codec info", e);
-            }
-            if (info == null) {
-                continue;
-            }
-            String codecInfo = "MediaCodec, name="+info.getName()+", [";
-
-            for (String mimeType : info.getSupportedTypes()) {
-                codecInfo += mimeType + ",";
-                MediaCodecInfo.CodecCapabilities capabilities;
-                try {
-                    capabilities = info.getCapabilitiesForType(mimeType);
-                } catch (IllegalArgumentException e) {
-                    Ln.e( "Cannot retrieve decoder capabilities", e);
-                    continue;
-                }
-                codecInfo += " max inst:"+capabilities.getMaxSupportedInstances()+",";
-                String strColorFormatList = "";
-                for (int colorFormat : capabilities.colorFormats) {
-                    strColorFormatList += " 0x" + Integer.toHexString(colorFormat);
-                }
-                codecInfo += strColorFormatList + "] [";
-            }
-            Ln.d(codecInfo);
-        }
-    }
-
-
-    private static MediaFormat createFormat(String videoMimeType, int bitRate, int maxFps, List<CodecOption> codecOptions) {
+    private static MediaFormat createFormat(String videoMimeType, List<CodecOption> codecOptions) {
+        // the bitrate, the I-frame interval and the max fps are set by applyVideoSettings()
         MediaFormat format = new MediaFormat();
         format.setString(MediaFormat.KEY_MIME, videoMimeType);
-        format.setInteger(MediaFormat.KEY_BIT_RATE, bitRate);
         // must be present to configure the encoder, but does not impact the actual frame rate, which is variable
         format.setInteger(MediaFormat.KEY_FRAME_RATE, 60);
         format.setInteger(MediaFormat.KEY_COLOR_FORMAT, MediaCodecInfo.CodecCapabilities.COLOR_FormatSurface);
-        format.setInteger(MediaFormat.KEY_I_FRAME_INTERVAL, DEFAULT_I_FRAME_INTERVAL); //10
         // display the very first frame, and recover from bad quality when no new frames
         // 当画面静止时,重复最后一帧，不影响界面显示
         format.setLong(MediaFormat.KEY_REPEAT_PREVIOUS_FRAME_AFTER, REPEAT_FRAME_DELAY_US); // 100_000µs
-        if (maxFps > 0) {
-            // The key existed privately before Android 10:
-            // <https://android.googlesource.com/platform/frameworks/base/+/625f0aad9f7a259b6881006ad8710adce57d1384%5E%21/>
-            // <https://github.com/Genymobile/scrcpy/issues/488#issuecomment-567321437>
-            format.setFloat(KEY_MAX_FPS_TO_ENCODER, maxFps);
-        }
 
         if (codecOptions != null) {
             for (CodecOption option : codecOptions) {
@@ -404,56 +658,4 @@ public class ScreenEncoder implements Device.RotationListener, Device.FoldListen
             thread.join();
         }
     }
-
-    //---------------------------------------------------------------------------------------------------
-
-
-    // RGB color values for generated frames
-    private static final int TEST_R0 = 0;
-    private static final int TEST_G0 = 136;
-    private static final int TEST_B0 = 0;
-    private static final int TEST_R1 = 236;
-    private static final int TEST_G1 = 50;
-    private static final int TEST_B1 = 186;
-
-    /**
-     * Generates a frame of data using GL commands.  We have an 8-frame animation
-     * sequence that wraps around.  It looks like this:
-     * <pre>
-     *   0 1 2 3
-     *   7 6 5 4
-     * </pre>
-     * We draw one of the eight rectangles and leave the rest set to the clear color.
-     */
-    private void generateSurfaceFrame(int frameIndex, int mWidth, int mHeight) {
-        frameIndex %= 8;
-
-        int startX, startY;
-        if (frameIndex < 4) {
-            // (0,0) is bottom-left in GL
-            startX = frameIndex * (mWidth / 4);
-            startY = mHeight / 2;
-        } else {
-            startX = (7 - frameIndex) * (mWidth / 4);
-            startY = 0;
-        }
-
-        GLES20.glClearColor(TEST_R0 / 255.0f, TEST_G0 / 255.0f, TEST_B0 / 255.0f, 1.0f);
-        GLES20.glClear(GLES20.GL_COLOR_BUFFER_BIT);
-
-        GLES20.glEnable(GLES20.GL_SCISSOR_TEST);
-        GLES20.glScissor(startX, startY, mWidth / 4, mHeight / 2);
-        GLES20.glClearColor(TEST_R1 / 255.0f, TEST_G1 / 255.0f, TEST_B1 / 255.0f, 1.0f);
-        GLES20.glClear(GLES20.GL_COLOR_BUFFER_BIT);
-        GLES20.glDisable(GLES20.GL_SCISSOR_TEST);
-    }
-
-    /**
-     * Generates the presentation time for frame N, in nanoseconds.
-     */
-    private long computePresentationTimeNsec(int frameIndex) {
-        final long ONE_BILLION = 1000000000;
-        return frameIndex * ONE_BILLION / maxFps;
-    }
-
 }
@@ -2,8 +2,11 @@ package com.genymobile.scrcpy;
 
 import android.os.BatteryManager;
 import android.os.Build;
+import android.os.Process;
+import android.os.SystemClock;
 
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -38,6 +41,54 @@ public final class Server {
         }
     }
 
+    /**
+     * Open the connection in the background.
+     */
+    private static class ConnectionOpener {
+        private final Options options;
+        private final Thread thread;
+
+        // written by the thread, read after join()
+        private DesktopConnection connection;
+        private Throwable error;
+
+        ConnectionOpener(Options options) {
+            this.options = options;
+            thread = new Thread(this::open, "connection");
+            // do not keep the process alive if the initialization fails while no client connects
+            thread.setDaemon(true);
+        }
+
+        void start() {
+            thread.start();
+        }
+
+        private void open() {
+            try {
+                connection = DesktopConnection.open(options.getScid(), options.isTunnelForward(), options.getVideo(), options.getAudio(),
+                        options.getControl(), options.getSendDummyByte());
+                StartupTimeline.get().mark("connection");
+            } catch (IOException | RuntimeException e) {
+                error = e;
+            }
+        }
+
+        DesktopConnection get() throws IOException {
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                throw new InterruptedIOException("Interrupted while opening the connection");
+            }
+            if (error instanceof IOException) {
+                throw (IOException) error;
+            }
+            if (error != null) {
+                throw (RuntimeException) error;
+            }
+            return connection;
+        }
+    }
+
     private Server() {
         // not instantiable
     }
@@ -89,59 +140,96 @@ public final class Server {
     private static void scrcpy(Options options) throws IOException, ConfigurationException {
         Ln.i("Device: [" + Build.MANUFACTURER + "] " + Build.BRAND + " " + Build.MODEL + " (Android " + Build.VERSION.RELEASE + ")");
         Ln.i(options.toString());
+        StartupTimeline timeline = StartupTimeline.get();
+
+        // the initialization does not depend on the connection: do not wait for the client meanwhile (nor make the client wait)
+        ConnectionOpener connectionOpener = new ConnectionOpener(options);
+        connectionOpener.start();
+
         final Device device = new Device(options);
+        timeline.mark("device");
 
         Thread initThread = startInitThread(options);
 
-        int scid = options.getScid();
-        boolean tunnelForward = options.isTunnelForward();
         boolean control = options.getControl();
         boolean video = options.getVideo();
         boolean audio = options.getAudio();
-        boolean sendDummyByte = options.getSendDummyByte();
 
         Workarounds.apply(audio);
+        timeline.mark("workarounds");
+
+        EncoderPreloader encoderPreloader = createEncoderPreloader(options, device.getScreenInfo().getVideoSize());
+        encoderPreloader.start();
 
         List<AsyncProcessor> asyncProcessors = new ArrayList<>();
+        Controller controller = null;
+        MetricsReporter metricsReporter = null;
 
-        DesktopConnection connection = DesktopConnection.open(scid, tunnelForward, video, audio, control, sendDummyByte);
+        DesktopConnection connection;
+        try {
+            connection = connectionOpener.get();
+        } catch (IOException e) {
+            encoderPreloader.release();
+            throw e;
+        }
         try {
             if (options.getSendDeviceMeta()) {
                 connection.sendDeviceMeta(Device.getDeviceName());
             }
 
             if (control) {
-                Controller controller = new Controller(device, connection, options.getClipboardAutosync(), options.getPowerOn());
-                device.setClipboardListener(text -> controller.getSender().pushClipboardText(text));
+                controller = new Controller(device, connection, options.getClipboardAutosync(), options.getPowerOn(),
+                        options.getTextPasteThreshold(), options.getMaxPointers());
+                DeviceMessageSender sender = controller.getSender();
+                device.setClipboardListener(text -> sender.pushClipboardText(text));
                 asyncProcessors.add(controller);
             }
 
+            // a single time base for the PTS of all the streams
+            MediaClock mediaClock = new MediaClock();
+
             if (audio) {
                 AudioCodec audioCodec = options.getAudioCodec();
                 AudioCapture audioCapture = new AudioCapture(options.getAudioSource());
-                Streamer audioStreamer = new Streamer(connection.getAudioFd(), audioCodec, options.getSendCodecMeta(), options.getSendFrameMeta());
+                Streamer audioStreamer = new Streamer(connection.getAudioFd(), audioCodec, options.getSendCodecMeta(), options.getSendFrameMeta(),
+                        mediaClock);
                 AsyncProcessor audioRecorder;
                 if (audioCodec == AudioCodec.RAW) {
-                    audioRecorder = new AudioRawRecorder(audioCapture, audioStreamer);
+                    audioRecorder = new AudioRawRecorder(audioCapture, audioStreamer, options.getAudioSilenceGate(),
+                            options.getAudioSilenceThreshold());
                 } else {
                     audioRecorder = new AudioEncoder(audioCapture, audioStreamer, options.getAudioBitRate(), options.getAudioCodecOptions(),
-                            options.getAudioEncoder());
+                            options.getAudioEncoder(), options.getAudioBatchMs(), options.getAudioSingleThread(), encoderPreloader);
                 }
                 asyncProcessors.add(audioRecorder);
             }
 
             if (video) {
                 Streamer videoStreamer = new Streamer(connection.getVideoFd(), options.getVideoCodec(), options.getSendCodecMeta(),
-                        options.getSendFrameMeta());
+                        options.getSendFrameMeta(), mediaClock);
                 ScreenEncoder screenEncoder = new ScreenEncoder(device, videoStreamer, options.getVideoBitRate(), options.getMaxFps(),
-                        options.getVideoCodecOptions(), options.getVideoEncoder(), options.getDownsizeOnError());
+                        options.getVideoCodecOptions(), options.getVideoEncoder(), options.getDownsizeOnError(), options.isFixedFrame(),
+                        options.getFixedFrameFps(), options.getFixedFrameTimeOffset(), options.getFixedFrameIdleMode(),
+                        createBitrateController(options), encoderPreloader);
                 asyncProcessors.add(screenEncoder);
+                if (controller != null) {
+                    controller.setEncoderControl(screenEncoder);
+                }
+            }
+
+            if (options.getMetricsInterval() > 0) {
+                metricsReporter = new MetricsReporter(options.getMetricsInterval());
+                metricsReporter.start();
             }
 
             Completion completion = new Completion(asyncProcessors.size());
             for (AsyncProcessor asyncProcessor : asyncProcessors) {
                 asyncProcessor.start(completion::addCompleted);
             }
+            timeline.mark("started");
+            if (timeline.expectStreams((video ? 1 : 0) + (audio ? 1 : 0))) {
+                timeline.log();
+            }
 
             completion.await();
         } finally {
@@ -149,20 +237,47 @@ public final class Server {
             for (AsyncProcessor asyncProcessor : asyncProcessors) {
                 asyncProcessor.stop();
             }
+            if (metricsReporter != null) {
+                metricsReporter.stop();
+            }
 
             try {
                 initThread.join();
                 for (AsyncProcessor asyncProcessor : asyncProcessors) {
                     asyncProcessor.join();
                 }
+                if (metricsReporter != null) {
+                    metricsReporter.join();
+                }
             } catch (InterruptedException e) {
                 // ignore
             }
+            encoderPreloader.release();
 
             connection.close();
         }
     }
 
+    private static BitrateController createBitrateController(Options options) {
+        if (!options.getAdaptiveBitRate()) {
+            return null;
+        }
+        int videoBitRate = options.getVideoBitRate();
+        int minBitRate = options.getMinVideoBitRate() > 0 ? options.getMinVideoBitRate() : videoBitRate / 8;
+        int maxBitRate = options.getMaxVideoBitRate() > 0 ? options.getMaxVideoBitRate() : videoBitRate;
+        Ln.i("Adaptive video bitrate: [" + minBitRate + ", " + maxBitRate + "] bps");
+        return new BitrateController(videoBitRate, minBitRate, maxBitRate);
+    }
+
+    private static EncoderPreloader createEncoderPreloader(Options options, Size videoSize) {
+        Codec videoCodec = options.getVideo() ? options.getVideoCodec() : null;
+        // the raw audio is not encoded
+        boolean audioEncoder = options.getAudio() && options.getAudioCodec() != AudioCodec.RAW;
+        Codec audioCodec = audioEncoder ? options.getAudioCodec() : null;
+        return new EncoderPreloader(videoCodec, options.getVideoEncoder(), videoSize, options.getVideoBitRate(), audioCodec,
+                options.getAudioEncoder());
+    }
+
     private static Thread startInitThread(final Options options) {
         Thread thread = new Thread(() -> initAndCleanUp(options), "init-cleanup");
         thread.start();
@@ -174,7 +289,15 @@ public final class Server {
             Ln.e("Exception on thread " + t, e);
         });
 
+        StartupTimeline timeline = StartupTimeline.get();
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.N) {
+            // the process start (before the runtime initialization)
+            long sinceProcessStartMs = SystemClock.elapsedRealtime() - Process.getStartElapsedRealtime();
+            timeline.markAt("process", System.nanoTime() - sinceProcessStartMs * 1_000_000);
+        }
+
         Options options = Options.parse(args);
+        timeline.mark("options");
 
         Ln.initLogLevel(options.getLogLevel());
 
@@ -0,0 +1,73 @@
+package com.genymobile.scrcpy;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Detection of silence in captured PCM (16-bit signed samples).
+ */
+public final class SilenceDetector {
+
+    // samples checked between two early exits (the loops in between have no branch, so they may be vectorized)
+    private static final int CHUNK_BYTES = 256;
+
+    private SilenceDetector() {
+        // not instantiable
+    }
+
+    /**
+     * Return whether all the samples between the position and the limit of the buffer are within {@code [-threshold, threshold]}.
+     * <p>
+     * The buffer position and limit are not modified.
+     *
+     * @param buffer    the PCM samples, in little-endian order
+     * @param threshold the max amplitude considered as silence (0 for digital silence only)
+     */
+    public static boolean isSilent(ByteBuffer buffer, int threshold) {
+        int start = buffer.position();
+        int end = buffer.limit();
+        if (threshold == 0) {
+            return isDigitalSilence(buffer, start, end);
+        }
+        if (buffer.order() != ByteOrder.LITTLE_ENDIAN) {
+            throw new IllegalArgumentException("PCM buffer must be little-endian");
+        }
+
+        int i = start;
+        while (i + 1 < end) {
+            int chunkEnd = Math.min(i + CHUNK_BYTES, end - 1);
+            // the sign bit is set if any sample is out of [-threshold, threshold]
+            int loud = 0;
+            for (; i < chunkEnd; i += 2) {
+                int sample = buffer.getShort(i);
+                loud |= (threshold - sample) | (sample + threshold);
+            }
+            if (loud < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isDigitalSilence(ByteBuffer buffer, int start, int end) {
+        // all bytes are 0, whatever the byte order: compare 8 bytes at a time
+        int i = start;
+        while (i < end) {
+            int chunkEnd = Math.min(i + CHUNK_BYTES, end - 7);
+            long bits = 0;
+            for (; i < chunkEnd; i += 8) {
+                bits |= buffer.getLong(i);
+            }
+            if (i >= end - 7) {
+                // trailing bytes
+                for (; i < end; ++i) {
+                    bits |= buffer.get(i);
+                }
+            }
+            if (bits != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
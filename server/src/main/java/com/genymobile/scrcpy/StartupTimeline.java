@@ -0,0 +1,103 @@
+package com.genymobile.scrcpy;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Timeline of the startup phases of the server, to measure the cold-start time.
+ * <p>
+ * The phases are marked by the threads which complete them (the initialization runs concurrently with the connection), relative to the
+ * origin (the start of {@link Server#main(String...)}). The startup is complete once every stream has started (written its first packet).
+ */
+public final class StartupTimeline {
+
+    private static final StartupTimeline INSTANCE = new StartupTimeline(MediaClock.SYSTEM_CLOCK);
+
+    private final MediaClock.Clock clock;
+    private final long originNs;
+
+    private final List<String> phases = new ArrayList<>();
+    private final List<Long> timesNs = new ArrayList<>();
+
+    private int startedStreams;
+    private int expectedStreams = -1; // unknown
+
+    StartupTimeline(MediaClock.Clock clock) {
+        this.clock = clock;
+        originNs = clock.nanoTime();
+    }
+
+    public static StartupTimeline get() {
+        return INSTANCE;
+    }
+
+    /**
+     * Mark the end of a phase now (only the first mark of a phase is kept, for example on encoder restarts).
+     */
+    public void mark(String phase) {
+        markAt(phase, clock.nanoTime());
+    }
+
+    /**
+     * Mark the end of a phase at a given time of the monotonic clock (possibly before the origin).
+     */
+    public synchronized void markAt(String phase, long timeNs) {
+        if (!phases.contains(phase)) {
+            phases.add(phase);
+            timesNs.add(timeNs);
+        }
+    }
+
+    /**
+     * Set the number of streams which must start to complete the startup.
+     *
+     * @return {@code true} if the startup is complete (there is no stream, or they all started meanwhile)
+     */
+    public synchronized boolean expectStreams(int count) {
+        expectedStreams = count;
+        return startedStreams >= count;
+    }
+
+    /**
+     * Mark the start of a stream (its first packet, or its disabling).
+     *
+     * @return {@code true} if it completes the startup
+     */
+    public synchronized boolean markStreamStarted(String phase) {
+        if (phases.contains(phase)) {
+            return false;
+        }
+        markAt(phase, clock.nanoTime());
+        ++startedStreams;
+        return startedStreams == expectedStreams;
+    }
+
+    /**
+     * Mark the start of a stream, and log the timeline once the startup is complete.
+     */
+    public static void onStreamStarted(String phase) {
+        if (INSTANCE.markStreamStarted(phase)) {
+            INSTANCE.log();
+        }
+    }
+
+    public void log() {
+        Ln.i("Startup timeline: " + format());
+    }
+
+    /**
+     * Format the phases in the order of their marks, with their time relative to the origin, in milliseconds.
+     */
+    public synchronized String format() {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < phases.size(); ++i) {
+            if (i > 0) {
+                builder.append(", ");
+            }
+            double ms = (timesNs.get(i) - originNs) / 1e6;
+            builder.append(phases.get(i)).append(String.format(Locale.ENGLISH, " %+.1fms", ms));
+        }
+        return builder.toString();
+    }
+}
@@ -10,26 +10,74 @@ public final class Streamer {
 
     private static final long PACKET_FLAG_CONFIG = 1L << 63;
     private static final long PACKET_FLAG_KEY_FRAME = 1L << 62;
+    // the payload is the number of frames of silence (raw audio only), as a 32-bit integer
+    private static final long PACKET_FLAG_SILENCE = 1L << 61;
 
     private static final long AOPUSHDR = 0x5244485355504F41L; // "AOPUSHDR" in ASCII (little-endian)
 
     private final FileDescriptor fd;
+    private final GatheringWriter gatheringWriter;
     private final Codec codec;
     private final boolean sendCodecMeta;
     private final boolean sendFrameMeta;
+    private final MediaClock mediaClock;
+    private final int mediaClockStream;
+    private final String streamName;
+    private boolean firstPacketWritten;
 
     private final ByteBuffer headerBuffer = ByteBuffer.allocate(12);
+    // the frame meta followed by the packet
+    private final ByteBuffer[] packetBuffers = {headerBuffer, null};
+    private final ByteBuffer silenceBuffer = ByteBuffer.allocate(4);
 
-    public Streamer(FileDescriptor fd, Codec codec, boolean sendCodecMeta, boolean sendFrameMeta) {
+    private final Metrics.Histogram writeTime;
+    private final Metrics.Counter writtenBytes;
+
+    // cumulative write statistics (only accessed from the thread writing the packets)
+    private long totalBytes;
+    private long totalWriteTimeNs;
+
+    /**
+     * @param mediaClock the clock shared by all the streams (the PTS must be on its time base)
+     */
+    public Streamer(FileDescriptor fd, Codec codec, boolean sendCodecMeta, boolean sendFrameMeta, MediaClock mediaClock) {
         this.fd = fd;
+        gatheringWriter = new GatheringWriter(fd);
         this.codec = codec;
         this.sendCodecMeta = sendCodecMeta;
         this.sendFrameMeta = sendFrameMeta;
+        this.mediaClock = mediaClock;
+        boolean video = codec.getType() == Codec.Type.VIDEO;
+        mediaClockStream = video ? MediaClock.STREAM_VIDEO : MediaClock.STREAM_AUDIO;
+        streamName = video ? "video" : "audio";
+        writeTime = Metrics.histogram(streamName + ".socket_write_us");
+        writtenBytes = Metrics.counter(streamName + ".socket_bytes");
     }
 
     public Codec getCodec() {
         return codec;
     }
+
+    /**
+     * Return whether silence packets may be written (they are signalled by a flag of the frame meta).
+     */
+    public boolean canWriteSilence() {
+        return sendFrameMeta && codec == AudioCodec.RAW;
+    }
+
+    /**
+     * Return the total number of bytes written by the packet writes (including the silence packets).
+     */
+    public long getTotalBytes() {
+        return totalBytes;
+    }
+
+    /**
+     * Return the total time spent (blocked) in the packet writes, in nanoseconds.
+     */
+    public long getTotalWriteTimeNs() {
+        return totalWriteTimeNs;
+    }
     public void writeAudioHeader() throws IOException {
         if (sendCodecMeta) {
             ByteBuffer buffer = ByteBuffer.allocate(4);
@@ -58,6 +106,7 @@ public final class Streamer {
         if (error) {
             code[3] = 1;
         }
+        StartupTimeline.onStreamStarted(streamName + " disabled");
         IO.writeFully(fd, code, 0, code.length);
     }
 
@@ -65,12 +114,64 @@ public final class Streamer {
         if (config && codec == AudioCodec.OPUS) {
             fixOpusConfigPacket(buffer);
         }
+        if (!config) {
+            onMediaPacket(pts);
+        }
 
-        if (sendFrameMeta) {
-            writeFrameMeta(fd, buffer.remaining(), pts, config, keyFrame);
+        long ptsAndFlags;
+        if (config) {
+            ptsAndFlags = PACKET_FLAG_CONFIG; // non-media data packet
+        } else {
+            ptsAndFlags = pts;
+            if (keyFrame) {
+                ptsAndFlags |= PACKET_FLAG_KEY_FRAME;
+            }
+        }
+        write(buffer, ptsAndFlags);
+    }
+
+    /**
+     * Write a packet of {@code frames} frames of silence, expanded by the client (only if {@link #canWriteSilence()}).
+     */
+    public void writeSilencePacket(long pts, int frames) throws IOException {
+        assert canWriteSilence();
+        onMediaPacket(pts);
+
+        silenceBuffer.clear();
+        silenceBuffer.putInt(frames);
+        silenceBuffer.flip();
+        write(silenceBuffer, pts | PACKET_FLAG_SILENCE);
+    }
+
+    private void onMediaPacket(long pts) {
+        mediaClock.onPacket(mediaClockStream, pts);
+        if (!firstPacketWritten) {
+            firstPacketWritten = true;
+            StartupTimeline.onStreamStarted(streamName + " first packet");
         }
+    }
 
-        IO.writeFully(fd, buffer);
+    private void write(ByteBuffer buffer, long ptsAndFlags) throws IOException {
+        long startNs = System.nanoTime();
+        int size = buffer.remaining();
+        if (sendFrameMeta) {
+            prepareFrameMeta(size, ptsAndFlags);
+            // write the frame meta and the packet at once
+            packetBuffers[1] = buffer;
+            try {
+                gatheringWriter.write(packetBuffers);
+            } finally {
+                packetBuffers[1] = null;
+            }
+            size += headerBuffer.capacity();
+        } else {
+            IO.writeFully(fd, buffer);
+        }
+        long durationNs = System.nanoTime() - startNs;
+        writeTime.record(durationNs / 1000);
+        writtenBytes.add(size);
+        totalBytes += size;
+        totalWriteTimeNs += durationNs;
     }
 
     public void writePacket(ByteBuffer codecBuffer, MediaCodec.BufferInfo bufferInfo) throws IOException {
@@ -80,23 +181,11 @@ public final class Streamer {
         writePacket(codecBuffer, pts, config, keyFrame);
     }
 
-    private void writeFrameMeta(FileDescriptor fd, int packetSize, long pts, boolean config, boolean keyFrame) throws IOException {
+    private void prepareFrameMeta(int packetSize, long ptsAndFlags) {
         headerBuffer.clear();
-
-        long ptsAndFlags;
-        if (config) {
-            ptsAndFlags = PACKET_FLAG_CONFIG; // non-media data packet
-        } else {
-            ptsAndFlags = pts;
-            if (keyFrame) {
-                ptsAndFlags |= PACKET_FLAG_KEY_FRAME;
-            }
-        }
-
         headerBuffer.putLong(ptsAndFlags);
         headerBuffer.putInt(packetSize);
         headerBuffer.flip();
-        IO.writeFully(fd, headerBuffer);
     }
 
     private static void fixOpusConfigPacket(ByteBuffer buffer) throws IOException {
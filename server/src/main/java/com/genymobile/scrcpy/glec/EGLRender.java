@@ -7,33 +7,37 @@ import android.opengl.EGLContext;
 import android.opengl.EGLDisplay;
 import android.opengl.EGLExt;
 import android.opengl.EGLSurface;
+import android.opengl.GLES20;
 import android.os.Handler;
 import android.os.HandlerThread;
-import android.os.Looper;
-import android.os.Message;
-import android.os.SystemClock;
 import android.util.Log;
 import android.view.Surface;
 
 import com.genymobile.scrcpy.Ln;
-
-import java.util.concurrent.atomic.AtomicBoolean;
-import java.util.concurrent.locks.ReentrantLock;
+import com.genymobile.scrcpy.Metrics;
 
 
 /**
  * Android OpenGL ES 离屏渲染（offscreen render）
+ * <p>
+ * The EGL contexts, the SurfaceTexture and the encoder surface are only touched from the render thread (see {@link RenderLoop}): the public
+ * methods hand off their work to it.
  */
-public class EGLRender implements SurfaceTexture.OnFrameAvailableListener {
+public class EGLRender implements SurfaceTexture.OnFrameAvailableListener, RenderLoop.Renderer {
 
     private static final String TAG = "EncodeDecodeSurface";
-    private static final int UNDERRUN_CHECK_INTERVAL = 200;
-    private static final int UNDERRUN_CHECK_PERCENT = 10;
     private static final boolean VERBOSE = true;
 
+    // from the production of the frame by the display to its latching in the texture
+    private static final Metrics.Histogram LATCH_LATENCY = Metrics.histogram("render.latch_latency_us");
+    private static final Metrics.Histogram DRAW_TIME = Metrics.histogram("render.draw_swap_us");
+    private static final Metrics.Counter NEW_FRAMES = Metrics.counter("render.new_frames");
+    private static final Metrics.Counter REPEATED_FRAMES = Metrics.counter("render.repeated_frames");
+
     private Surface decodeSurface;
+    //编码器输入Surface, 由EGLRender释放
+    private Surface mEncoderSurface;
     private onFrameCallBack mCallBack;
-    private long mCurrentTimeMs = 0;
     //1、为什么设计两个EglContext、mEglSurface
     private EGLContext mEGLContext = EGL14.EGL_NO_CONTEXT;
     private EGLContext mEGLContextEncoder = EGL14.EGL_NO_CONTEXT;
@@ -41,27 +45,18 @@ public class EGLRender implements SurfaceTexture.OnFrameAvailableListener {
     //2、为什么设计两个EGLSurface
     private EGLSurface mEGLSurface = EGL14.EGL_NO_SURFACE;
     private EGLSurface mEGLSurfaceEncoder = EGL14.EGL_NO_SURFACE;
+    private EGLConfig mEGLConfigEncoder;
 
-    private int mEncodedCount = 0;
     //帧率
     private int mFps;
-    private volatile boolean mFrameAvailable = false;
-    //帧间隔
-    private int mFrameIntervalMs = 0;
-
-    private RenderHandler mHandler;
-    private HandlerThread mHandlerThread;
-
-
-    private final ReentrantLock mLock = new ReentrantLock();
-    private int mNextCheckCount = 0;
-    private boolean mNotifyError = true;
-    private volatile AtomicBoolean mStart = new AtomicBoolean(false);
-    private long mStartTimeMs = 0;
+    //渲染线程(帧调度、脏帧计数)
+    private final RenderLoop mLoop;
+    //onFrameAvailable回调线程
+    private HandlerThread mListenerThread;
+    private boolean mStopped;
 
     private SurfaceTexture mSurfaceTexture;
     private STextureRender mTextureRender;
-    private long mTimeBaseNs = 0;
     private long mTimeOffset;
     private int mHeight,mWidth;
 
@@ -78,51 +73,6 @@ public class EGLRender implements SurfaceTexture.OnFrameAvailableListener {
 
 
 
-    private class RenderHandler extends Handler {
-        static final int MSG_DRAW_IMAGE = 1;
-
-        public RenderHandler(Looper looper) {
-            super(looper);
-        }
-
-        public void handleMessage(Message msg) {
-            if (msg.what == MSG_DRAW_IMAGE) {
-                EGLRender.this.mLock.lock();
-                try {
-                    if (!mFrameAvailable) {
-                        sendEmptyMessageDelayed(MSG_DRAW_IMAGE, 10);
-                    } else if (mStart.get()) {
-                        sendEmptyMessageDelayed(MSG_DRAW_IMAGE, (long) mFrameIntervalMs);
-                        mCurrentTimeMs = SystemClock.elapsedRealtime();
-                        if (mStartTimeMs <= 0) {
-                            mNextCheckCount = mNextCheckCount + EGLRender.UNDERRUN_CHECK_INTERVAL;
-                            mStartTimeMs = mCurrentTimeMs;
-                            makeCurrent(1);
-                        }
-                        mSurfaceTexture.updateTexImage();
-                        drawImage();
-                        setPresentationTime(((mCurrentTimeMs - mStartTimeMs) + mTimeOffset) * 1000000);
-                        swapBuffers();
-                        mEncodedCount = mEncodedCount + 1;
-                        if (mEncodedCount > mNextCheckCount) {
-                            mNextCheckCount = mNextCheckCount + EGLRender.UNDERRUN_CHECK_INTERVAL;
-                            checkPerformanceError((long)mEncodedCount, mCurrentTimeMs);
-                        }
-                       mLock.unlock();
-                    } else {
-                        mLock.unlock();
-                    }
-                } catch (Exception e) {
-                    Log.e("EncodeDecodeSurface", "error in draw image ", e);
-                } finally {
-                    mLock.unlock();
-                }
-            }
-        }
-    }
-
-
-
     /**
      *
      */
@@ -134,25 +84,30 @@ public class EGLRender implements SurfaceTexture.OnFrameAvailableListener {
 
 
 
-    public EGLRender() {
-    }
-
-    public EGLRender(Surface surface,int width,int height,int fps,long timeOffset) {
+    /**
+     * Create the EGL display, the contexts and the GL program, which are kept for the whole session. The encoder surface is attached
+     * separately (see {@link #attach(Surface, int, int)}), so that restarting the encoder does not recreate them.
+     */
+    public EGLRender(int width,int height,int fps,long timeOffset,IdleFrameMode idleFrameMode) {
         Ln.v(":::EGLRender:::+width"+width+"X height"+height);
         mWidth = width;
         mHeight = height;
         mTimeOffset = timeOffset;
-        initFPs(fps);
-        eglSetup(surface);
-        makeCurrent();
-        setup();
-
-    }
-
-    private void initFPs(int fps) {
         Ln.v("initFPs :" + fps);
-        this.mFps = fps;
-        this.mFrameIntervalMs = 1000 / fps;
+        mFps = fps;
+        mLoop = new RenderLoop(new FrameScheduler(fps), idleFrameMode, this, RenderLoop.SYSTEM_CLOCK);
+        mLoop.start();
+        try {
+            mLoop.invoke(() -> {
+                eglSetup();
+                makeCurrent();
+                setup();
+            });
+        } catch (RuntimeException e) {
+            mLoop.post(this::releaseResource);
+            mLoop.quit();
+            throw e;
+        }
     }
 
     /**
@@ -214,7 +169,7 @@ public class EGLRender implements SurfaceTexture.OnFrameAvailableListener {
 
     }*/
 
-    private void eglSetup(Surface surface) {
+    private void eglSetup() {
         this.mEGLDisplay = EGL14.eglGetDisplay(EGL14.EGL_DEFAULT_DISPLAY);
         if (this.mEGLDisplay == EGL14.EGL_NO_DISPLAY) {
             throw new RuntimeException("unable to get EGL14 display");
@@ -224,6 +179,7 @@ public class EGLRender implements SurfaceTexture.OnFrameAvailableListener {
             EGLConfig[] configs = new EGLConfig[1];
             if (EGL14.eglChooseConfig(this.mEGLDisplay, new int[]{12324, 8, 12323, 8, 12322, 8, 12321, 8, 12352, 4, 12339, 1, 12344}, 0, configs, 0, configs.length, new int[1], 0)) {
                 EGLConfig configEncoder = getConfig(2);
+                this.mEGLConfigEncoder = configEncoder;
                 int[] attrib_list = new int[]{12440, 2, 12344};
                 this.mEGLContext = EGL14.eglCreateContext(this.mEGLDisplay, configs[0], EGL14.EGL_NO_CONTEXT, attrib_list, 0);
                 checkEglError("eglCreateContext");
@@ -240,11 +196,6 @@ public class EGLRender implements SurfaceTexture.OnFrameAvailableListener {
                 if (this.mEGLSurface == null) {
                     throw new RuntimeException("surface was null");
                 }
-                this.mEGLSurfaceEncoder = EGL14.eglCreateWindowSurface(this.mEGLDisplay, configEncoder, surface, new int[]{12344}, 0);
-                checkEglError("eglCreateWindowSurface");
-                if (this.mEGLSurfaceEncoder == null) {
-                    throw new RuntimeException("surface was null");
-                }
                 return;
             }
             throw new RuntimeException("unable to find RGB888+recordable ES2 EGL config");
@@ -268,7 +219,11 @@ public class EGLRender implements SurfaceTexture.OnFrameAvailableListener {
         this.mTextureRender.surfaceCreated();
         this.mSurfaceTexture = new SurfaceTexture(this.mTextureRender.getTextureId());
         this.mSurfaceTexture.setDefaultBufferSize(this.mWidth, this.mHeight);
-        this.mSurfaceTexture.setOnFrameAvailableListener(this);
+        // Without a handler, the listener would be called on the Looper of the thread which created the SurfaceTexture (the render thread has
+        // no Looper). The listener only notifies the render loop, it does not touch the SurfaceTexture.
+        this.mListenerThread = new HandlerThread("frame-listener");
+        this.mListenerThread.start();
+        this.mSurfaceTexture.setOnFrameAvailableListener(this, new Handler(this.mListenerThread.getLooper()));
         this.decodeSurface = new Surface(this.mSurfaceTexture);
     }
 
@@ -356,17 +311,12 @@ public class EGLRender implements SurfaceTexture.OnFrameAvailableListener {
     }
 
 
-    public void setStartTimeNs(long startTimeNs){
-        mTimeBaseNs = startTimeNs;
-    }
-
-
     public void setCallBack(onFrameCallBack callBack){
         this.mCallBack = callBack;
     }
 
     public void setPresentationTime(long nsecs) {
-        EGLExt.eglPresentationTimeANDROID(this.mEGLDisplay, this.mEGLSurfaceEncoder, this.mTimeBaseNs + nsecs);
+        EGLExt.eglPresentationTimeANDROID(this.mEGLDisplay, this.mEGLSurfaceEncoder, nsecs);
         checkEglError("eglPresentationTimeANDROID");
     }
 
@@ -392,29 +342,108 @@ public class EGLRender implements SurfaceTexture.OnFrameAvailableListener {
     @Override
     public void onFrameAvailable(SurfaceTexture surfaceTexture) {
         Ln.v(":::onFrameAvailable:::");
-        this.mFrameAvailable = true;
+        this.mLoop.notifyFrameAvailable();
+    }
 
+    // Called on the render thread
+    @Override
+    public void render(int newFrames, long ptsNs) {
+        long startNs = System.nanoTime();
+        if (newFrames > 0) {
+            // updateTexImage() acquires a single buffer (and releases the previous one): call it until the last queued buffer is latched
+            for (int i = 0; i < newFrames; ++i) {
+                this.mSurfaceTexture.updateTexImage();
+            }
+            // the SurfaceTexture timestamps are on the monotonic time base, like System.nanoTime()
+            LATCH_LATENCY.record((startNs - this.mSurfaceTexture.getTimestamp()) / 1000);
+            NEW_FRAMES.add(newFrames);
+        } else {
+            // nothing changed, draw the last texture again without latching a new image
+            REPEATED_FRAMES.increment();
+        }
+        drawImage();
+        setPresentationTime(ptsNs + this.mTimeOffset * 1000000);
+        swapBuffers();
+        DRAW_TIME.recordSince(startNs);
     }
+
+    // Called on the render thread
+    @Override
+    public void onUnderrun() {
+        if (this.mCallBack != null) {
+            this.mCallBack.onError();
+        }
+    }
+
     public void drawImage() {
         Ln.v("drawImage:");
         this.mTextureRender.drawFrame();
     }
 
-    public void releaseResource() {
+    // Called on the render thread
+    private void releaseResource() {
+        releaseEncoderSurface();
         eglRelease();
-        this.mSurfaceTexture.release();
-        this.mSurfaceTexture = null;
+        if (this.mSurfaceTexture != null) {
+            this.mSurfaceTexture.release();
+            this.mSurfaceTexture = null;
+        }
+        if (this.mListenerThread != null) {
+            // the SurfaceTexture is released, no more frames may be notified
+            this.mListenerThread.quitSafely();
+            this.mListenerThread = null;
+        }
         this.mTextureRender = null;
-        this.decodeSurface.release();
-        this.decodeSurface = null;
+        if (this.decodeSurface != null) {
+            this.decodeSurface.release();
+            this.decodeSurface = null;
+        }
+    }
+
+    // Called on the render thread
+    private void createEncoderSurface(Surface surface, int width, int height) {
+        releaseEncoderSurface();
+        // owned from now on, even if the creation fails
+        this.mEncoderSurface = surface;
+        this.mEGLSurfaceEncoder = EGL14.eglCreateWindowSurface(this.mEGLDisplay, this.mEGLConfigEncoder, surface, new int[]{12344}, 0);
+        checkEglError("eglCreateWindowSurface");
+        if (this.mEGLSurfaceEncoder == null) {
+            this.mEGLSurfaceEncoder = EGL14.EGL_NO_SURFACE;
+            throw new RuntimeException("surface was null");
+        }
+        this.mWidth = width;
+        this.mHeight = height;
+        this.mSurfaceTexture.setDefaultBufferSize(width, height);
+        makeCurrent(1);
+        // the viewport is only initialized on the first binding of the context, not on the following ones
+        GLES20.glViewport(0, 0, width, height);
+    }
+
+    // Called on the render thread
+    private void releaseEncoderSurface() {
+        if (this.mEGLSurfaceEncoder != EGL14.EGL_NO_SURFACE) {
+            // keep the contexts alive on the pbuffer surface
+            makeCurrent(0);
+            EGL14.eglDestroySurface(this.mEGLDisplay, this.mEGLSurfaceEncoder);
+            this.mEGLSurfaceEncoder = EGL14.EGL_NO_SURFACE;
+        }
+        if (this.mEncoderSurface != null) {
+            this.mEncoderSurface.release();
+            this.mEncoderSurface = null;
+        }
     }
 
 
     private void eglRelease() {
+        if (this.mEGLDisplay == null || this.mEGLDisplay == EGL14.EGL_NO_DISPLAY) {
+            return;
+        }
+        EGL14.eglMakeCurrent(this.mEGLDisplay, EGL14.EGL_NO_SURFACE, EGL14.EGL_NO_SURFACE, EGL14.EGL_NO_CONTEXT);
         EGL14.eglDestroyContext(this.mEGLDisplay, this.mEGLContext);
         EGL14.eglDestroyContext(this.mEGLDisplay, this.mEGLContextEncoder);
         EGL14.eglDestroySurface(this.mEGLDisplay, this.mEGLSurface);
         EGL14.eglDestroySurface(this.mEGLDisplay, this.mEGLSurfaceEncoder);
+        EGL14.eglReleaseThread();
         EGL14.eglTerminate(this.mEGLDisplay);
         this.mEGLContext = EGL14.EGL_NO_CONTEXT;
         this.mEGLContextEncoder = EGL14.EGL_NO_CONTEXT;
@@ -424,32 +453,75 @@ public class EGLRender implements SurfaceTexture.OnFrameAvailableListener {
     }
 
 
-    private void checkPerformanceError(long count, long timeMs) {
-        long frameCount = (timeMs - this.mStartTimeMs) / ((long) this.mFrameIntervalMs);
-        if (((frameCount - count) * 100) / frameCount > 10) {
-            Log.w("EncodeDecodeSurface", "frame underrun more than 10% !!!");
-            if (this.mNotifyError) {
-                this.mCallBack.onError();
-                this.mNotifyError = false;
-            }
-        }
+    /**
+     * Bind the encoder input surface (owned by the renderer from now on). Any previously attached surface is released.
+     * <p>
+     * Only the EGL window surface is created: the contexts, the GL program and the SurfaceTexture are reused.
+     */
+    public void attach(Surface encoderSurface, int width, int height) {
+        long startNs = System.nanoTime();
+        this.mLoop.setRunning(false);
+        this.mLoop.invoke(() -> createEncoderSurface(encoderSurface, width, height));
+        Ln.d("Encoder surface attached in " + (System.nanoTime() - startNs) / 1000 + " us");
     }
 
-    public void start() {
-        this.mStart.set(true);
-        this.mHandlerThread = new HandlerThread("RenderThread");
-        this.mHandlerThread.start();
-        this.mHandler = new RenderHandler(this.mHandlerThread.getLooper());
-        this.mHandler.sendEmptyMessage(RenderHandler.MSG_DRAW_IMAGE);
+    /**
+     * Stop rendering and release the encoder surface, so that the encoder can be stopped or reset.
+     * <p>
+     * Calling this method without any attached surface has no effect.
+     */
+    public void detach() {
+        this.mLoop.setRunning(false);
+        FrameScheduler scheduler = this.mLoop.getScheduler();
+        this.mLoop.invoke(() -> {
+            if (this.mEncoderSurface != null && scheduler.isStarted()) {
+                Ln.i("Render stats: " + this.mLoop.getStats());
+            }
+            releaseEncoderSurface();
+        });
     }
 
-    public void stop() {
-        this.mStart.set(false);
-        this.mHandlerThread.quitSafely();
-        this.mLock.unlock();
-        this.mCallBack.onStop();
+    /**
+     * Change the frame rate. Must be called while detached (see {@link #detach()}).
+     */
+    public void setFps(int fps) {
+        this.mFps = fps;
+        this.mLoop.setFps(fps);
     }
 
+    /**
+     * Start rendering at the fixed frame rate into the attached surface, immediately on a restart (from the last latched image), or from the
+     * first frame produced by the display.
+     * <p>
+     * The presentation timestamps are the deadlines of the render schedule, on the {@link System#nanoTime()} time base (like the
+     * SurfaceTexture timestamps), so they match the capture time whenever the schedule actually starts.
+     */
+    public void start() {
+        this.mLoop.setRunning(true);
+    }
 
+    /**
+     * Return the render statistics of the session (achieved fps, late frames and skipped slots).
+     */
+    public FrameScheduler getScheduler() {
+        return this.mLoop.getScheduler();
+    }
 
+    /**
+     * Stop rendering, release all the resources (including the encoder surface, if any) on the render thread, and join it.
+     * <p>
+     * Calling this method several times has no effect.
+     */
+    public void stop() {
+        if (this.mStopped) {
+            return;
+        }
+        this.mStopped = true;
+        this.mLoop.setRunning(false);
+        this.mLoop.post(this::releaseResource);
+        this.mLoop.quit();
+        if (this.mCallBack != null) {
+            this.mCallBack.onStop();
+        }
+    }
 }
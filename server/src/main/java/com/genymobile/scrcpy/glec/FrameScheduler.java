@@ -0,0 +1,155 @@
+package com.genymobile.scrcpy.glec;
+
+/**
+ * Absolute-deadline scheduler for the fixed-frame-rate render loop.
+ * <p>
+ * The deadline of slot {@code n} is {@code start + n * 1e9 / fps} (in nanoseconds), computed from the start time on every frame, so that
+ * neither the drawing time nor the integer truncation of the frame interval accumulate drift. If the render thread wakes up after several
+ * deadlines, the missed slots are skipped (and counted) rather than rendered in a burst.
+ * <p>
+ * This class does not read any clock: all the timestamps are provided by the caller (on the {@link System#nanoTime()} time base in
+ * production), so that it can be tested against a simulated clock.
+ */
+public final class FrameScheduler {
+
+    public static final long NO_FRAME = -1;
+
+    private static final long NS_PER_SECOND = 1_000_000_000L;
+
+    private final int fps;
+    private final long lateThresholdNs;
+
+    private long startNs;
+    private long nextSlot;
+    private long lastTickNs;
+    private boolean started;
+
+    private long renderedFrames;
+    private long lateFrames;
+    private long skippedSlots;
+
+    public FrameScheduler(int fps) {
+        if (fps <= 0) {
+            throw new IllegalArgumentException("fps must be positive: " + fps);
+        }
+        this.fps = fps;
+        // a frame is late if it is rendered more than half a period after its deadline
+        this.lateThresholdNs = NS_PER_SECOND / fps / 2;
+    }
+
+    public int getFps() {
+        return fps;
+    }
+
+    public boolean isStarted() {
+        return started;
+    }
+
+    /**
+     * Return the time of slot 0, in nanoseconds.
+     */
+    public long getStartNs() {
+        return startNs;
+    }
+
+    /**
+     * Start the schedule: slot 0 is due at {@code nowNs}.
+     */
+    public void start(long nowNs) {
+        startNs = nowNs;
+        lastTickNs = nowNs;
+        nextSlot = 0;
+        renderedFrames = 0;
+        lateFrames = 0;
+        skippedSlots = 0;
+        started = true;
+    }
+
+    /**
+     * Return the deadline of the slot {@code slot}, in nanoseconds.
+     */
+    public long getDeadline(long slot) {
+        return startNs + slot * NS_PER_SECOND / fps;
+    }
+
+    /**
+     * Return the deadline of the next frame to render, in nanoseconds.
+     */
+    public long getNextDeadline() {
+        return getDeadline(nextSlot);
+    }
+
+    /**
+     * Consume the slot due at {@code nowNs}.
+     * <p>
+     * If the next deadline is not reached yet, nothing is consumed and {@link #NO_FRAME} is returned (the caller must wait until
+     * {@link #getNextDeadline()}). Otherwise, the most recent due slot is consumed (the previous ones are skipped).
+     *
+     * @param nowNs the current time, in nanoseconds
+     * @return the timestamp of the frame to render, relative to the start (in nanoseconds), or {@link #NO_FRAME}
+     */
+    public long tick(long nowNs) {
+        if (!started) {
+            throw new IllegalStateException("Scheduler not started");
+        }
+        long elapsed = nowNs - startNs;
+        if (elapsed < 0) {
+            return NO_FRAME;
+        }
+        long slot = elapsed * fps / NS_PER_SECOND;
+        if (slot < nextSlot) {
+            // woken up too early
+            return NO_FRAME;
+        }
+
+        if (nowNs - getDeadline(nextSlot) > lateThresholdNs) {
+            ++lateFrames;
+        }
+        skippedSlots += slot - nextSlot;
+        ++renderedFrames;
+        nextSlot = slot + 1;
+        lastTickNs = nowNs;
+
+        return getDeadline(slot) - startNs;
+    }
+
+    public long getRenderedFrames() {
+        return renderedFrames;
+    }
+
+    public long getLateFrames() {
+        return lateFrames;
+    }
+
+    public long getSkippedSlots() {
+        return skippedSlots;
+    }
+
+    /**
+     * Return the percentage of slots which have been skipped since the start.
+     */
+    public int getSkippedPercent() {
+        long slots = renderedFrames + skippedSlots;
+        if (slots == 0) {
+            return 0;
+        }
+        return (int) (skippedSlots * 100 / slots);
+    }
+
+    /**
+     * Return the frame rate actually achieved between the start and the last rendered frame.
+     */
+    public float getAchievedFps() {
+        long duration = lastTickNs - startNs;
+        if (renderedFrames < 2 || duration <= 0) {
+            return 0;
+        }
+        // the first frame is rendered at the start
+        return (renderedFrames - 1) * (float) NS_PER_SECOND / duration;
+    }
+
+    public String getStats() {
+        return String.format("target=%d fps, achieved=%.2f fps, rendered=%d, late=%d, skipped=%d", fps, getAchievedFps(), renderedFrames,
+                lateFrames, skippedSlots);
+    }
+}
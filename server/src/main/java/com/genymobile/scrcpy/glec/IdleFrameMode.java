@@ -0,0 +1,31 @@
+package com.genymobile.scrcpy.glec;
+
+/**
+ * Behavior of the fixed-frame-rate renderer on ticks where no new frame has been produced since the last draw.
+ */
+public enum IdleFrameMode {
+    /**
+     * Draw the last texture again (without latching a new image) and submit it, to keep a constant output frame rate.
+     */
+    REPEAT("repeat"),
+    /**
+     * Submit nothing: the encoder repeats the previous frame by itself (see {@code KEY_REPEAT_PREVIOUS_FRAME_AFTER}).
+     */
+    SKIP("skip");
+
+    private final String name;
+
+    IdleFrameMode(String name) {
+        this.name = name;
+    }
+
+    public static IdleFrameMode findByName(String name) {
+        for (IdleFrameMode mode : IdleFrameMode.values()) {
+            if (name.equals(mode.name)) {
+                return mode;
+            }
+        }
+
+        return null;
+    }
+}
@@ -0,0 +1,316 @@
+package com.genymobile.scrcpy.glec;
+
+import com.genymobile.scrcpy.Ln;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+/**
+ * Render thread of the fixed-frame-rate mode.
+ * <p>
+ * The render thread is the only thread which calls the {@link Renderer} (and so the only one which touches the GL context, the
+ * SurfaceTexture and the encoder surface). Other threads only post commands, which are executed in order on the render thread, and notify
+ * new frames.
+ * <p>
+ * On {@link #quit()}, the pending commands (typically the release of the resources) are executed, then the render thread terminates and is
+ * joined.
+ */
+public final class RenderLoop {
+
+    public interface Clock {
+        long nanoTime();
+    }
+
+    public interface Renderer {
+        /**
+         * Draw and submit a frame (called on the render thread).
+         *
+         * @param newFrames the number of images produced since the last frame, which must all be latched (only the last one is drawn), or 0
+         *                  to draw the last latched image again
+         * @param ptsNs     the timestamp of the frame (its deadline), on the time base of the clock
+         */
+        void render(int newFrames, long ptsNs);
+
+        /**
+         * Called (once per start) on the render thread if too many slots are skipped.
+         */
+        void onUnderrun();
+    }
+
+    public static final Clock SYSTEM_CLOCK = System::nanoTime;
+
+    private static final int UNDERRUN_CHECK_INTERVAL = 200;
+    private static final int UNDERRUN_CHECK_PERCENT = 10;
+
+    private final IdleFrameMode idleFrameMode;
+    private final Renderer renderer;
+    private final Clock clock;
+
+    private final Thread thread;
+
+    private final Object lock = new Object();
+    // all guarded by lock
+    private final Deque<Runnable> commands = new ArrayDeque<>();
+    private volatile FrameScheduler scheduler; // volatile for getScheduler(), only replaced when not running
+    private long frameGeneration;
+    private boolean running;
+    private boolean pendingStart;
+    private boolean quit;
+
+    // only accessed from the render thread
+    private long drawnGeneration;
+    // whether an image has been latched (the SurfaceTexture is kept across the restarts, so it is never lost)
+    private boolean latched;
+    // the first frame after a start is always rendered, so that the encoder produces a (key) frame even if nothing changes
+    private boolean firstTick;
+    private long nextUnderrunCheck;
+    private boolean underrunNotified;
+
+    private volatile long idleFrames;
+
+    public RenderLoop(FrameScheduler scheduler, IdleFrameMode idleFrameMode, Renderer renderer, Clock clock) {
+        this.scheduler = scheduler;
+        this.idleFrameMode = idleFrameMode;
+        this.renderer = renderer;
+        this.clock = clock;
+        thread = new Thread(this::loop, "render");
+    }
+
+    public void start() {
+        thread.start();
+    }
+
+    /**
+     * Execute a command asynchronously on the render thread.
+     */
+    public void post(Runnable command) {
+        synchronized (lock) {
+            if (quit) {
+                throw new IllegalStateException("Render loop stopped");
+            }
+            commands.add(command);
+            lock.notify();
+        }
+    }
+
+    /**
+     * Execute a command on the render thread and wait for its completion.
+     * <p>
+     * Any exception thrown by the command is rethrown to the caller.
+     */
+    public void invoke(Runnable command) {
+        if (Thread.currentThread() == thread) {
+            command.run();
+            return;
+        }
+
+        FutureTask<Void> task = new FutureTask<>(command, null);
+        post(task);
+
+        boolean interrupted = false;
+        try {
+            while (true) {
+                try {
+                    task.get();
+                    return;
+                } catch (InterruptedException e) {
+                    // the command must complete anyway, it may own resources
+                    interrupted = true;
+                } catch (ExecutionException e) {
+                    Throwable cause = e.getCause();
+                    if (cause instanceof RuntimeException) {
+                        throw (RuntimeException) cause;
+                    }
+                    if (cause instanceof Error) {
+                        throw (Error) cause;
+                    }
+                    throw new RuntimeException(cause);
+                }
+            }
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Start or stop rendering frames.
+     * <p>
+     * On start, the schedule starts immediately if an image has already been latched (on a restart, the display does not produce a new frame
+     * until its content changes, so the last image is rendered again), otherwise on the first frame produced.
+     */
+    public void setRunning(boolean running) {
+        synchronized (lock) {
+            this.running = running;
+            if (running) {
+                pendingStart = true;
+            }
+            lock.notify();
+        }
+    }
+
+    /**
+     * Notify that a new frame is available (may be called from any thread).
+     */
+    public void notifyFrameAvailable() {
+        synchronized (lock) {
+            ++frameGeneration;
+            lock.notify();
+        }
+    }
+
+    /**
+     * Execute the pending commands, terminate the render thread and join it.
+     * <p>
+     * Calling this method several times has no effect.
+     */
+    public void quit() {
+        synchronized (lock) {
+            quit = true;
+            lock.notify();
+        }
+
+        if (Thread.currentThread() == thread) {
+            // cannot join itself, the loop will terminate after the current command
+            return;
+        }
+
+        boolean interrupted = false;
+        while (thread.isAlive()) {
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public boolean isAlive() {
+        return thread.isAlive();
+    }
+
+    public long getIdleFrames() {
+        return idleFrames;
+    }
+
+    public FrameScheduler getScheduler() {
+        return scheduler;
+    }
+
+    /**
+     * Change the frame rate. Rendering must be stopped (see {@link #setRunning(boolean)}).
+     */
+    public void setFps(int fps) {
+        FrameScheduler newScheduler = new FrameScheduler(fps);
+        synchronized (lock) {
+            if (running) {
+                throw new IllegalStateException("Cannot change the frame rate while running");
+            }
+            scheduler = newScheduler;
+        }
+    }
+
+    public String getStats() {
+        return scheduler.getStats() + ", idle=" + idleFrames;
+    }
+
+    private void loop() {
+        while (true) {
+            Runnable command;
+            long now = 0;
+            long generation = 0;
+            FrameScheduler scheduler;
+            synchronized (lock) {
+                while (true) {
+                    // may have been replaced while waiting
+                    scheduler = this.scheduler;
+                    command = commands.poll();
+                    if (command != null) {
+                        break;
+                    }
+                    if (quit) {
+                        return;
+                    }
+                    try {
+                        if (running && (latched || frameGeneration != drawnGeneration)) {
+                            now = clock.nanoTime();
+                            if (pendingStart) {
+                                pendingStart = false;
+                                scheduler.start(now);
+                                firstTick = true;
+                                nextUnderrunCheck = UNDERRUN_CHECK_INTERVAL;
+                                underrunNotified = false;
+                            }
+                            long delayNs = scheduler.getNextDeadline() - now;
+                            if (delayNs <= 0) {
+                                generation = frameGeneration;
+                                break;
+                            }
+                            lock.wait(delayNs / 1_000_000, (int) (delayNs % 1_000_000));
+                        } else {
+                            lock.wait();
+                        }
+                    } catch (InterruptedException e) {
+                        // nobody is expected to interrupt the render thread, execute the pending commands and terminate
+                        quit = true;
+                    }
+                }
+            }
+
+            if (command != null) {
+                try {
+                    command.run();
+                } catch (RuntimeException e) {
+                    Ln.e("Render command error", e);
+                }
+            } else {
+                tick(scheduler, now, generation);
+            }
+        }
+    }
+
+    private void tick(FrameScheduler scheduler, long now, long generation) {
+        long ptsNs = scheduler.tick(now);
+        if (ptsNs == FrameScheduler.NO_FRAME) {
+            return;
+        }
+
+        // each notification is a buffer queued to the SurfaceTexture, drain them all so that the last one is drawn even if the display then
+        // becomes idle
+        int newFrames = (int) (generation - drawnGeneration);
+        drawnGeneration = generation;
+        boolean first = firstTick;
+        firstTick = false;
+        if (newFrames == 0) {
+            ++idleFrames;
+            if (idleFrameMode == IdleFrameMode.SKIP && !first) {
+                // nothing changed, let the encoder repeat the previous frame
+                return;
+            }
+        }
+
+        try {
+            renderer.render(newFrames, scheduler.getStartNs() + ptsNs);
+            if (newFrames > 0) {
+                latched = true;
+            }
+        } catch (RuntimeException e) {
+            Ln.e("Error in draw image", e);
+        }
+
+        if (scheduler.getRenderedFrames() >= nextUnderrunCheck) {
+            nextUnderrunCheck += UNDERRUN_CHECK_INTERVAL;
+            if (!underrunNotified && scheduler.getSkippedPercent() > UNDERRUN_CHECK_PERCENT) {
+                Ln.w("Frame underrun more than " + UNDERRUN_CHECK_PERCENT + "%");
+                underrunNotified = true;
+                renderer.onUnderrun();
+            }
+        }
+    }
+}
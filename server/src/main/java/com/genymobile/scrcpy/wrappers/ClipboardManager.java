@@ -13,68 +13,77 @@ import java.lang.reflect.Method;
 
 public class ClipboardManager {
     private final IInterface manager;
-    private Method getPrimaryClipMethod;
-    private Method setPrimaryClipMethod;
-    private Method addPrimaryClipChangedListener;
+    // resolved once on creation (null if not found, the failure is reported only once)
+    private MethodBinding getPrimaryClipMethod;
+    private MethodBinding setPrimaryClipMethod;
+    private MethodBinding addPrimaryClipChangedListenerMethod;
     private int getMethodVersion;
     private int setMethodVersion;
     private int addListenerMethodVersion;
 
     public ClipboardManager(IInterface manager) {
         this.manager = manager;
+        try {
+            getPrimaryClipMethod = MethodBinding.bind(resolveGetPrimaryClipMethod());
+        } catch (NoSuchMethodException e) {
+            Ln.e("Could not find method getPrimaryClip()", e);
+        }
+        try {
+            setPrimaryClipMethod = MethodBinding.bind(resolveSetPrimaryClipMethod());
+        } catch (NoSuchMethodException e) {
+            Ln.e("Could not find method setPrimaryClip()", e);
+        }
+        try {
+            addPrimaryClipChangedListenerMethod = MethodBinding.bind(resolveAddPrimaryClipChangedListener());
+        } catch (NoSuchMethodException e) {
+            Ln.e("Could not find method addPrimaryClipChangedListener()", e);
+        }
     }
 
-    private Method getGetPrimaryClipMethod() throws NoSuchMethodException {
-        if (getPrimaryClipMethod == null) {
-            if (Build.VERSION.SDK_INT < Build.VERSION_CODES.Q) {
-                getPrimaryClipMethod = manager.getClass().getMethod("getPrimaryClip", String.class);
-            } else {
+    private Method resolveGetPrimaryClipMethod() throws NoSuchMethodException {
+        Class<?> cls = manager.getClass();
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.Q) {
+            return cls.getMethod("getPrimaryClip", String.class);
+        }
+        try {
+            getMethodVersion = 0;
+            return cls.getMethod("getPrimaryClip", String.class, int.class);
+        } catch (NoSuchMethodException e1) {
+            try {
+                getMethodVersion = 1;
+                return cls.getMethod("getPrimaryClip", String.class, String.class, int.class);
+            } catch (NoSuchMethodException e2) {
                 try {
-                    getPrimaryClipMethod = manager.getClass().getMethod("getPrimaryClip", String.class, int.class);
-                    getMethodVersion = 0;
-                } catch (NoSuchMethodException e1) {
-                    try {
-                        getPrimaryClipMethod = manager.getClass().getMethod("getPrimaryClip", String.class, String.class, int.class);
-                        getMethodVersion = 1;
-                    } catch (NoSuchMethodException e2) {
-                        try {
-                            getPrimaryClipMethod = manager.getClass().getMethod("getPrimaryClip", String.class, String.class, int.class, int.class);
-                            getMethodVersion = 2;
-                        } catch (NoSuchMethodException e3) {
-                            getPrimaryClipMethod = manager.getClass().getMethod("getPrimaryClip", String.class, int.class, String.class);
-                            getMethodVersion = 3;
-                        }
-                    }
+                    getMethodVersion = 2;
+                    return cls.getMethod("getPrimaryClip", String.class, String.class, int.class, int.class);
+                } catch (NoSuchMethodException e3) {
+                    getMethodVersion = 3;
+                    return cls.getMethod("getPrimaryClip", String.class, int.class, String.class);
                 }
             }
         }
-        return getPrimaryClipMethod;
     }
 
-    private Method getSetPrimaryClipMethod() throws NoSuchMethodException {
-        if (setPrimaryClipMethod == null) {
-            if (Build.VERSION.SDK_INT < Build.VERSION_CODES.Q) {
-                setPrimaryClipMethod = manager.getClass().getMethod("setPrimaryClip", ClipData.class, String.class);
-            } else {
-                try {
-                    setPrimaryClipMethod = manager.getClass().getMethod("setPrimaryClip", ClipData.class, String.class, int.class);
-                    setMethodVersion = 0;
-                } catch (NoSuchMethodException e1) {
-                    try {
-                        setPrimaryClipMethod = manager.getClass().getMethod("setPrimaryClip", ClipData.class, String.class, String.class, int.class);
-                        setMethodVersion = 1;
-                    } catch (NoSuchMethodException e2) {
-                        setPrimaryClipMethod = manager.getClass()
-                                .getMethod("setPrimaryClip", ClipData.class, String.class, String.class, int.class, int.class);
-                        setMethodVersion = 2;
-                    }
-                }
+    private Method resolveSetPrimaryClipMethod() throws NoSuchMethodException {
+        Class<?> cls = manager.getClass();
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.Q) {
+            return cls.getMethod("setPrimaryClip", ClipData.class, String.class);
+        }
+        try {
+            setMethodVersion = 0;
+            return cls.getMethod("setPrimaryClip", ClipData.class, String.class, int.class);
+        } catch (NoSuchMethodException e1) {
+            try {
+                setMethodVersion = 1;
+                return cls.getMethod("setPrimaryClip", ClipData.class, String.class, String.class, int.class);
+            } catch (NoSuchMethodException e2) {
+                setMethodVersion = 2;
+                return cls.getMethod("setPrimaryClip", ClipData.class, String.class, String.class, int.class, int.class);
             }
         }
-        return setPrimaryClipMethod;
     }
 
-    private static ClipData getPrimaryClip(Method method, int methodVersion, IInterface manager)
+    private static ClipData getPrimaryClip(MethodBinding method, int methodVersion, IInterface manager)
             throws InvocationTargetException, IllegalAccessException {
         if (Build.VERSION.SDK_INT < Build.VERSION_CODES.Q) {
             return (ClipData) method.invoke(manager, FakeContext.PACKAGE_NAME);
@@ -92,7 +101,7 @@ public class ClipboardManager {
         }
     }
 
-    private static void setPrimaryClip(Method method, int methodVersion, IInterface manager, ClipData clipData)
+    private static void setPrimaryClip(MethodBinding method, int methodVersion, IInterface manager, ClipData clipData)
             throws InvocationTargetException, IllegalAccessException {
         if (Build.VERSION.SDK_INT < Build.VERSION_CODES.Q) {
             method.invoke(manager, clipData, FakeContext.PACKAGE_NAME);
@@ -113,32 +122,36 @@ public class ClipboardManager {
     }
 
     public CharSequence getText() {
+        if (getPrimaryClipMethod == null) {
+            return null;
+        }
         try {
-            Method method = getGetPrimaryClipMethod();
-            ClipData clipData = getPrimaryClip(method, getMethodVersion, manager);
+            ClipData clipData = getPrimaryClip(getPrimaryClipMethod, getMethodVersion, manager);
             if (clipData == null || clipData.getItemCount() == 0) {
                 return null;
             }
             return clipData.getItemAt(0).getText();
-        } catch (InvocationTargetException | IllegalAccessException | NoSuchMethodException e) {
+        } catch (InvocationTargetException | IllegalAccessException e) {
             Ln.e("Could not invoke method", e);
             return null;
         }
     }
 
     public boolean setText(CharSequence text) {
+        if (setPrimaryClipMethod == null) {
+            return false;
+        }
         try {
-            Method method = getSetPrimaryClipMethod();
             ClipData clipData = ClipData.newPlainText(null, text);
-            setPrimaryClip(method, setMethodVersion, manager, clipData);
+            setPrimaryClip(setPrimaryClipMethod, setMethodVersion, manager, clipData);
             return true;
-        } catch (InvocationTargetException | IllegalAccessException | NoSuchMethodException e) {
+        } catch (InvocationTargetException | IllegalAccessException e) {
             Ln.e("Could not invoke method", e);
             return false;
         }
     }
 
-    private static void addPrimaryClipChangedListener(Method method, int methodVersion, IInterface manager,
+    private static void addPrimaryClipChangedListener(MethodBinding method, int methodVersion, IInterface manager,
             IOnPrimaryClipChangedListener listener) throws InvocationTargetException, IllegalAccessException {
         if (Build.VERSION.SDK_INT < Build.VERSION_CODES.Q) {
             method.invoke(manager, listener, FakeContext.PACKAGE_NAME);
@@ -158,40 +171,34 @@ public class ClipboardManager {
         }
     }
 
-    private Method getAddPrimaryClipChangedListener() throws NoSuchMethodException {
-        if (addPrimaryClipChangedListener == null) {
-            if (Build.VERSION.SDK_INT < Build.VERSION_CODES.Q) {
-                addPrimaryClipChangedListener = manager.getClass()
-                        .getMethod("addPrimaryClipChangedListener", IOnPrimaryClipChangedListener.class, String.class);
-            } else {
-                try {
-                    addPrimaryClipChangedListener = manager.getClass()
-                            .getMethod("addPrimaryClipChangedListener", IOnPrimaryClipChangedListener.class, String.class, int.class);
-                    addListenerMethodVersion = 0;
-                } catch (NoSuchMethodException e1) {
-                    try {
-                        addPrimaryClipChangedListener = manager.getClass()
-                                .getMethod("addPrimaryClipChangedListener", IOnPrimaryClipChangedListener.class, String.class, String.class,
-                                        int.class);
-                        addListenerMethodVersion = 1;
-                    } catch (NoSuchMethodException e2) {
-                        addPrimaryClipChangedListener = manager.getClass()
-                                .getMethod("addPrimaryClipChangedListener", IOnPrimaryClipChangedListener.class, String.class, String.class,
-                                        int.class, int.class);
-                        addListenerMethodVersion = 2;
-                    }
-                }
+    private Method resolveAddPrimaryClipChangedListener() throws NoSuchMethodException {
+        Class<?> cls = manager.getClass();
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.Q) {
+            return cls.getMethod("addPrimaryClipChangedListener", IOnPrimaryClipChangedListener.class, String.class);
+        }
+        try {
+            addListenerMethodVersion = 0;
+            return cls.getMethod("addPrimaryClipChangedListener", IOnPrimaryClipChangedListener.class, String.class, int.class);
+        } catch (NoSuchMethodException e1) {
+            try {
+                addListenerMethodVersion = 1;
+                return cls.getMethod("addPrimaryClipChangedListener", IOnPrimaryClipChangedListener.class, String.class, String.class, int.class);
+            } catch (NoSuchMethodException e2) {
+                addListenerMethodVersion = 2;
+                return cls.getMethod("addPrimaryClipChangedListener", IOnPrimaryClipChangedListener.class, String.class, String.class, int.class,
+                        int.class);
             }
         }
-        return addPrimaryClipChangedListener;
     }
 
     public boolean addPrimaryClipChangedListener(IOnPrimaryClipChangedListener listener) {
+        if (addPrimaryClipChangedListenerMethod == null) {
+            return false;
+        }
         try {
-            Method method = getAddPrimaryClipChangedListener();
-            addPrimaryClipChangedListener(method, addListenerMethodVersion, manager, listener);
+            addPrimaryClipChangedListener(addPrimaryClipChangedListenerMethod, addListenerMethodVersion, manager, listener);
             return true;
-        } catch (InvocationTargetException | IllegalAccessException | NoSuchMethodException e) {
+        } catch (InvocationTargetException | IllegalAccessException e) {
             Ln.e("Could not invoke method", e);
             return false;
         }
@@ -2,11 +2,11 @@ package com.genymobile.scrcpy.wrappers;
 
 import com.genymobile.scrcpy.Ln;
 
+import android.os.Build;
 import android.view.InputEvent;
 import android.view.MotionEvent;
 
 import java.lang.reflect.InvocationTargetException;
-import java.lang.reflect.Method;
 
 public final class InputManager {
 
@@ -15,63 +15,54 @@ public final class InputManager {
     public static final int INJECT_INPUT_EVENT_MODE_WAIT_FOR_FINISH = 2;
 
     private final Object manager;
-    private Method injectInputEventMethod;
+    private final MethodBinding injectInputEventMethod;
 
-    private static Method setDisplayIdMethod;
-    private static Method setActionButtonMethod;
+    // resolved on class initialization, so that a failure is reported once at startup rather than on every event
+    // (only where they are used: injecting to a secondary display requires Android 10, mouse buttons are only handled on Android >= 6)
+    private static final MethodBinding SET_DISPLAY_ID_METHOD = Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q
+            ? MethodBinding.resolveOrNull(InputEvent.class, "setDisplayId", int.class) : null;
+    private static final MethodBinding SET_ACTION_BUTTON_METHOD = Build.VERSION.SDK_INT >= Build.VERSION_CODES.M
+            ? MethodBinding.resolveOrNull(MotionEvent.class, "setActionButton", int.class) : null;
 
     public InputManager(Object manager) {
         this.manager = manager;
+        injectInputEventMethod = MethodBinding.resolveOrNull(manager.getClass(), "injectInputEvent", InputEvent.class, int.class);
     }
 
-    private Method getInjectInputEventMethod() throws NoSuchMethodException {
+    public boolean injectInputEvent(InputEvent inputEvent, int mode) {
         if (injectInputEventMethod == null) {
-            injectInputEventMethod = manager.getClass().getMethod("injectInputEvent", InputEvent.class, int.class);
+            // already reported
+            return false;
         }
-        return injectInputEventMethod;
-    }
-
-    public boolean injectInputEvent(InputEvent inputEvent, int mode) {
         try {
-            Method method = getInjectInputEventMethod();
-            return (boolean) method.invoke(manager, inputEvent, mode);
-        } catch (InvocationTargetException | IllegalAccessException | NoSuchMethodException e) {
+            return injectInputEventMethod.invokeBoolean(manager, inputEvent, mode);
+        } catch (InvocationTargetException | IllegalAccessException e) {
             Ln.e("Could not invoke method", e);
             return false;
         }
     }
 
-    private static Method getSetDisplayIdMethod() throws NoSuchMethodException {
-        if (setDisplayIdMethod == null) {
-            setDisplayIdMethod = InputEvent.class.getMethod("setDisplayId", int.class);
-        }
-        return setDisplayIdMethod;
-    }
-
     public static boolean setDisplayId(InputEvent inputEvent, int displayId) {
+        if (SET_DISPLAY_ID_METHOD == null) {
+            return false;
+        }
         try {
-            Method method = getSetDisplayIdMethod();
-            method.invoke(inputEvent, displayId);
+            SET_DISPLAY_ID_METHOD.invokeVoid(inputEvent, displayId);
             return true;
-        } catch (InvocationTargetException | IllegalAccessException | NoSuchMethodException e) {
+        } catch (InvocationTargetException | IllegalAccessException e) {
             Ln.e("Cannot associate a display id to the input event", e);
             return false;
         }
     }
 
-    private static Method getSetActionButtonMethod() throws NoSuchMethodException {
-        if (setActionButtonMethod == null) {
-            setActionButtonMethod = MotionEvent.class.getMethod("setActionButton", int.class);
-        }
-        return setActionButtonMethod;
-    }
-
     public static boolean setActionButton(MotionEvent motionEvent, int actionButton) {
+        if (SET_ACTION_BUTTON_METHOD == null) {
+            return false;
+        }
         try {
-            Method method = getSetActionButtonMethod();
-            method.invoke(motionEvent, actionButton);
+            SET_ACTION_BUTTON_METHOD.invokeVoid(motionEvent, actionButton);
             return true;
-        } catch (InvocationTargetException | IllegalAccessException | NoSuchMethodException e) {
+        } catch (InvocationTargetException | IllegalAccessException e) {
             Ln.e("Cannot set action button on MotionEvent", e);
             return false;
         }
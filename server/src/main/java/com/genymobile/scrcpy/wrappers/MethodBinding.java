@@ -0,0 +1,213 @@
+package com.genymobile.scrcpy.wrappers;
+
+import com.genymobile.scrcpy.Ln;
+
+import android.annotation.TargetApi;
+import android.os.Build;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+
+/**
+ * A hidden API method, resolved once.
+ * <p>
+ * On Android >= 8 (where {@code java.lang.invoke} is available), the calls go through a {@link MethodHandle} invoked with an exact type:
+ * the primitive arguments and results are not boxed. Otherwise, they go through the pre-resolved {@link Method}, without any lookup.
+ * <p>
+ * The typed {@code invoke*()} methods are for instance methods, and must match the signature of the target method (primitive types must be
+ * the same). Static methods and other signatures use {@link #invoke(Object, Object...)}, through reflection. Any exception
+ * thrown by the target is wrapped into an {@link InvocationTargetException}, like {@link Method#invoke(Object, Object...)} does.
+ */
+public final class MethodBinding {
+
+    private interface Invoker {
+        Object invoke(Object receiver, Object... args) throws InvocationTargetException, IllegalAccessException;
+
+        void invokeVoid(Object receiver) throws InvocationTargetException, IllegalAccessException;
+
+        void invokeVoid(Object receiver, int arg) throws InvocationTargetException, IllegalAccessException;
+
+        boolean invokeBoolean(Object receiver) throws InvocationTargetException, IllegalAccessException;
+
+        boolean invokeBoolean(Object receiver, Object arg0, int arg1) throws InvocationTargetException, IllegalAccessException;
+
+        int invokeInt(Object receiver) throws InvocationTargetException, IllegalAccessException;
+    }
+
+    private static final class ReflectInvoker implements Invoker {
+        private final Method method;
+
+        ReflectInvoker(Method method) {
+            this.method = method;
+        }
+
+        @Override
+        public Object invoke(Object receiver, Object... args) throws InvocationTargetException, IllegalAccessException {
+            return method.invoke(receiver, args);
+        }
+
+        @Override
+        public void invokeVoid(Object receiver) throws InvocationTargetException, IllegalAccessException {
+            method.invoke(receiver);
+        }
+
+        @Override
+        public void invokeVoid(Object receiver, int arg) throws InvocationTargetException, IllegalAccessException {
+            method.invoke(receiver, arg);
+        }
+
+        @Override
+        public boolean invokeBoolean(Object receiver) throws InvocationTargetException, IllegalAccessException {
+            return (boolean) method.invoke(receiver);
+        }
+
+        @Override
+        public boolean invokeBoolean(Object receiver, Object arg0, int arg1) throws InvocationTargetException, IllegalAccessException {
+            return (boolean) method.invoke(receiver, arg0, arg1);
+        }
+
+        @Override
+        public int invokeInt(Object receiver) throws InvocationTargetException, IllegalAccessException {
+            return (int) method.invoke(receiver);
+        }
+    }
+
+    // java.lang.invoke is only referenced from this class, which is never loaded on Android < 8
+    @TargetApi(Build.VERSION_CODES.O)
+    private static final class HandleInvoker implements Invoker {
+        private final Method method;
+        // all reference types erased to Object, so that the typed methods below can call invokeExact()
+        private final MethodHandle handle;
+
+        HandleInvoker(Method method) throws IllegalAccessException {
+            this.method = method;
+            MethodHandle h = MethodHandles.lookup().unreflect(method);
+            this.handle = h.asType(h.type().erase());
+        }
+
+        @Override
+        public Object invoke(Object receiver, Object... args) throws InvocationTargetException, IllegalAccessException {
+            // arbitrary signature, not worth a spreader
+            return method.invoke(receiver, args);
+        }
+
+        @Override
+        public void invokeVoid(Object receiver) throws InvocationTargetException {
+            try {
+                handle.invokeExact(receiver);
+            } catch (Throwable t) {
+                throw new InvocationTargetException(t);
+            }
+        }
+
+        @Override
+        public void invokeVoid(Object receiver, int arg) throws InvocationTargetException {
+            try {
+                handle.invokeExact(receiver, arg);
+            } catch (Throwable t) {
+                throw new InvocationTargetException(t);
+            }
+        }
+
+        @Override
+        public boolean invokeBoolean(Object receiver) throws InvocationTargetException {
+            try {
+                return (boolean) handle.invokeExact(receiver);
+            } catch (Throwable t) {
+                throw new InvocationTargetException(t);
+            }
+        }
+
+        @Override
+        public boolean invokeBoolean(Object receiver, Object arg0, int arg1) throws InvocationTargetException {
+            try {
+                return (boolean) handle.invokeExact(receiver, arg0, arg1);
+            } catch (Throwable t) {
+                throw new InvocationTargetException(t);
+            }
+        }
+
+        @Override
+        public int invokeInt(Object receiver) throws InvocationTargetException {
+            try {
+                return (int) handle.invokeExact(receiver);
+            } catch (Throwable t) {
+                throw new InvocationTargetException(t);
+            }
+        }
+    }
+
+    private final Method method;
+    private final Invoker invoker;
+
+    private MethodBinding(Method method, Invoker invoker) {
+        this.method = method;
+        this.invoker = invoker;
+    }
+
+    /**
+     * Bind a resolved method.
+     */
+    public static MethodBinding bind(Method method) {
+        return bind(method, Build.VERSION.SDK_INT >= Build.VERSION_CODES.O);
+    }
+
+    static MethodBinding bind(Method method, boolean useMethodHandle) {
+        if (useMethodHandle) {
+            try {
+                method.setAccessible(true);
+                return new MethodBinding(method, new HandleInvoker(method));
+            } catch (IllegalAccessException | SecurityException e) {
+                Ln.d("Could not create a method handle for " + method + ", using reflection: " + e);
+            }
+        }
+        return new MethodBinding(method, new ReflectInvoker(method));
+    }
+
+    public static MethodBinding resolve(Class<?> cls, String name, Class<?>... parameterTypes) throws NoSuchMethodException {
+        return bind(cls.getMethod(name, parameterTypes));
+    }
+
+    /**
+     * Same as {@link #resolve(Class, String, Class[])}, but report the failure (once) and return {@code null} if the method does not
+     * exist.
+     */
+    public static MethodBinding resolveOrNull(Class<?> cls, String name, Class<?>... parameterTypes) {
+        try {
+            return resolve(cls, name, parameterTypes);
+        } catch (NoSuchMethodException e) {
+            Ln.e("Could not find method " + cls.getName() + "." + name + "()", e);
+            return null;
+        }
+    }
+
+    public Method getMethod() {
+        return method;
+    }
+
+    public Object invoke(Object receiver, Object... args) throws InvocationTargetException, IllegalAccessException {
+        return invoker.invoke(receiver, args);
+    }
+
+    public void invokeVoid(Object receiver) throws InvocationTargetException, IllegalAccessException {
+        invoker.invokeVoid(receiver);
+    }
+
+    public void invokeVoid(Object receiver, int arg) throws InvocationTargetException, IllegalAccessException {
+        invoker.invokeVoid(receiver, arg);
+    }
+
+    public boolean invokeBoolean(Object receiver) throws InvocationTargetException, IllegalAccessException {
+        return invoker.invokeBoolean(receiver);
+    }
+
+    public boolean invokeBoolean(Object receiver, Object arg0, int arg1) throws InvocationTargetException, IllegalAccessException {
+        return invoker.invokeBoolean(receiver, arg0, arg1);
+    }
+
+    public int invokeInt(Object receiver) throws InvocationTargetException, IllegalAccessException {
+        return invoker.invokeInt(receiver);
+    }
+}
@@ -31,6 +31,15 @@ public final class SurfaceControl {
         }
     }
 
+    // resolved on first use, then invoked without any lookup
+    private static MethodBinding openTransactionMethod;
+    private static MethodBinding closeTransactionMethod;
+    private static MethodBinding setDisplayProjectionMethod;
+    private static MethodBinding setDisplayLayerStackMethod;
+    private static MethodBinding setDisplaySurfaceMethod;
+    private static MethodBinding createDisplayMethod;
+    private static MethodBinding destroyDisplayMethod;
+
     private static Method getBuiltInDisplayMethod;
     private static Method setDisplayPowerModeMethod;
     private static Method getPhysicalDisplayTokenMethod;
@@ -42,7 +51,10 @@ public final class SurfaceControl {
 
     public static void openTransaction() {
         try {
-            CLASS.getMethod("openTransaction").invoke(null);
+            if (openTransactionMethod == null) {
+                openTransactionMethod = MethodBinding.resolve(CLASS, "openTransaction");
+            }
+            openTransactionMethod.invoke(null);
         } catch (Exception e) {
             throw new AssertionError(e);
         }
@@ -50,7 +62,10 @@ public final class SurfaceControl {
 
     public static void closeTransaction() {
         try {
-            CLASS.getMethod("closeTransaction").invoke(null);
+            if (closeTransactionMethod == null) {
+                closeTransactionMethod = MethodBinding.resolve(CLASS, "closeTransaction");
+            }
+            closeTransactionMethod.invoke(null);
         } catch (Exception e) {
             throw new AssertionError(e);
         }
@@ -58,8 +73,10 @@ public final class SurfaceControl {
 
     public static void setDisplayProjection(IBinder displayToken, int orientation, Rect layerStackRect, Rect displayRect) {
         try {
-            CLASS.getMethod("setDisplayProjection", IBinder.class, int.class, Rect.class, Rect.class)
-                    .invoke(null, displayToken, orientation, layerStackRect, displayRect);
+            if (setDisplayProjectionMethod == null) {
+                setDisplayProjectionMethod = MethodBinding.resolve(CLASS, "setDisplayProjection", IBinder.class, int.class, Rect.class, Rect.class);
+            }
+            setDisplayProjectionMethod.invoke(null, displayToken, orientation, layerStackRect, displayRect);
         } catch (Exception e) {
             throw new AssertionError(e);
         }
@@ -67,7 +84,10 @@ public final class SurfaceControl {
 
     public static void setDisplayLayerStack(IBinder displayToken, int layerStack) {
         try {
-            CLASS.getMethod("setDisplayLayerStack", IBinder.class, int.class).invoke(null, displayToken, layerStack);
+            if (setDisplayLayerStackMethod == null) {
+                setDisplayLayerStackMethod = MethodBinding.resolve(CLASS, "setDisplayLayerStack", IBinder.class, int.class);
+            }
+            setDisplayLayerStackMethod.invoke(null, displayToken, layerStack);
         } catch (Exception e) {
             throw new AssertionError(e);
         }
@@ -76,7 +96,10 @@ public final class SurfaceControl {
     ///public static void android.view.SurfaceControl.setDisplaySurface(android.os.IBinder,android.view.Surface)
     public static void setDisplaySurface(IBinder displayToken, Surface surface) {
         try {
-            CLASS.getMethod("setDisplaySurface", IBinder.class, Surface.class).invoke(null, displayToken, surface);
+            if (setDisplaySurfaceMethod == null) {
+                setDisplaySurfaceMethod = MethodBinding.resolve(CLASS, "setDisplaySurface", IBinder.class, Surface.class);
+            }
+            setDisplaySurfaceMethod.invoke(null, displayToken, surface);
         } catch (Exception e) {
             throw new AssertionError(e);
         }
@@ -84,7 +107,10 @@ public final class SurfaceControl {
 
     public static IBinder createDisplay(String name, boolean secure) {
         try {
-            return (IBinder) CLASS.getMethod("createDisplay", String.class, boolean.class).invoke(null, name, secure);
+            if (createDisplayMethod == null) {
+                createDisplayMethod = MethodBinding.resolve(CLASS, "createDisplay", String.class, boolean.class);
+            }
+            return (IBinder) createDisplayMethod.invoke(null, name, secure);
         } catch (Exception e) {
             throw new AssertionError(e);
         }
@@ -173,7 +199,10 @@ public final class SurfaceControl {
 
     public static void destroyDisplay(IBinder displayToken) {
         try {
-            CLASS.getMethod("destroyDisplay", IBinder.class).invoke(null, displayToken);
+            if (destroyDisplayMethod == null) {
+                destroyDisplayMethod = MethodBinding.resolve(CLASS, "destroyDisplay", IBinder.class);
+            }
+            destroyDisplayMethod.invoke(null, displayToken);
         } catch (Exception e) {
             throw new AssertionError(e);
         }
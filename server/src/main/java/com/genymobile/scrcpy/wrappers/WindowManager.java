@@ -8,89 +8,77 @@ import android.view.IRotationWatcher;
 import android.view.IDisplayFoldListener;
 
 import java.lang.reflect.InvocationTargetException;
-import java.lang.reflect.Method;
 
 public final class WindowManager {
     private final IInterface manager;
-    private Method getRotationMethod;
-    private Method freezeRotationMethod;
-    private Method isRotationFrozenMethod;
-    private Method thawRotationMethod;
+    // resolved once, a failure is reported on creation
+    private final MethodBinding getRotationMethod;
+    private final MethodBinding freezeRotationMethod;
+    private final MethodBinding isRotationFrozenMethod;
+    private final MethodBinding thawRotationMethod;
 
     public WindowManager(IInterface manager) {
         this.manager = manager;
+        Class<?> cls = manager.getClass();
+        getRotationMethod = resolveGetRotationMethod(cls);
+        freezeRotationMethod = MethodBinding.resolveOrNull(cls, "freezeRotation", int.class);
+        isRotationFrozenMethod = MethodBinding.resolveOrNull(cls, "isRotationFrozen");
+        thawRotationMethod = MethodBinding.resolveOrNull(cls, "thawRotation");
     }
 
-    private Method getGetRotationMethod() throws NoSuchMethodException {
-        if (getRotationMethod == null) {
-            Class<?> cls = manager.getClass();
-            try {
-                // method changed since this commit:
-                // https://android.googlesource.com/platform/frameworks/base/+/8ee7285128c3843401d4c4d0412cd66e86ba49e3%5E%21/#F2
-                getRotationMethod = cls.getMethod("getDefaultDisplayRotation");
-            } catch (NoSuchMethodException e) {
-                // old version
-                getRotationMethod = cls.getMethod("getRotation");
-            }
-        }
-        return getRotationMethod;
-    }
-
-    private Method getFreezeRotationMethod() throws NoSuchMethodException {
-        if (freezeRotationMethod == null) {
-            freezeRotationMethod = manager.getClass().getMethod("freezeRotation", int.class);
-        }
-        return freezeRotationMethod;
-    }
-
-    private Method getIsRotationFrozenMethod() throws NoSuchMethodException {
-        if (isRotationFrozenMethod == null) {
-            isRotationFrozenMethod = manager.getClass().getMethod("isRotationFrozen");
-        }
-        return isRotationFrozenMethod;
-    }
-
-    private Method getThawRotationMethod() throws NoSuchMethodException {
-        if (thawRotationMethod == null) {
-            thawRotationMethod = manager.getClass().getMethod("thawRotation");
+    private static MethodBinding resolveGetRotationMethod(Class<?> cls) {
+        try {
+            // method changed since this commit:
+            // https://android.googlesource.com/platform/frameworks/base/+/8ee7285128c3843401d4c4d0412cd66e86ba49e3%5E%21/#F2
+            return MethodBinding.resolve(cls, "getDefaultDisplayRotation");
+        } catch (NoSuchMethodException e) {
+            // old version
+            return MethodBinding.resolveOrNull(cls, "getRotation");
         }
-        return thawRotationMethod;
     }
 
     public int getRotation() {
+        if (getRotationMethod == null) {
+            return 0;
+        }
         try {
-            Method method = getGetRotationMethod();
-            return (int) method.invoke(manager);
-        } catch (InvocationTargetException | IllegalAccessException | NoSuchMethodException e) {
+            return getRotationMethod.invokeInt(manager);
+        } catch (InvocationTargetException | IllegalAccessException e) {
             Ln.e("Could not invoke method", e);
             return 0;
         }
     }
 
     public void freezeRotation(int rotation) {
+        if (freezeRotationMethod == null) {
+            return;
+        }
         try {
-            Method method = getFreezeRotationMethod();
-            method.invoke(manager, rotation);
-        } catch (InvocationTargetException | IllegalAccessException | NoSuchMethodException e) {
+            freezeRotationMethod.invokeVoid(manager, rotation);
+        } catch (InvocationTargetException | IllegalAccessException e) {
             Ln.e("Could not invoke method", e);
         }
     }
 
     public boolean isRotationFrozen() {
+        if (isRotationFrozenMethod == null) {
+            return false;
+        }
         try {
-            Method method = getIsRotationFrozenMethod();
-            return (boolean) method.invoke(manager);
-        } catch (InvocationTargetException | IllegalAccessException | NoSuchMethodException e) {
+            return isRotationFrozenMethod.invokeBoolean(manager);
+        } catch (InvocationTargetException | IllegalAccessException e) {
             Ln.e("Could not invoke method", e);
             return false;
         }
     }
 
     public void thawRotation() {
+        if (thawRotationMethod == null) {
+            return;
+        }
         try {
-            Method method = getThawRotationMethod();
-            method.invoke(manager);
-        } catch (InvocationTargetException | IllegalAccessException | NoSuchMethodException e) {
+            thawRotationMethod.invokeVoid(manager);
+        } catch (InvocationTargetException | IllegalAccessException e) {
             Ln.e("Could not invoke method", e);
         }
     }
@@ -0,0 +1,41 @@
+package com.genymobile.scrcpy;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class AudioCaptureTest {
+
+    @Test
+    public void testMillisToBytes() {
+        Assert.assertEquals(960, AudioCapture.millisToBytes(5));
+        Assert.assertEquals(192000, AudioCapture.millisToBytes(1000));
+    }
+
+    @Test
+    public void testComputePts() {
+        // the timestamp is the frame 48000 (1 second) captured at 10 seconds
+        long timestampNs = 10_000_000_000L;
+
+        Assert.assertEquals(10_000_000, AudioCapture.computePtsUs(timestampNs, 48000, 48000));
+        // 20ms (960 frames) before
+        Assert.assertEquals(9_980_000, AudioCapture.computePtsUs(timestampNs, 48000, 47040));
+        // 5ms (240 frames) after
+        Assert.assertEquals(10_005_000, AudioCapture.computePtsUs(timestampNs, 48000, 48240));
+    }
+
+    @Test
+    public void testComputePtsOfConsecutiveBatches() {
+        // the PTS of consecutive reads are exactly separated by their duration, whatever the size of the reads
+        long timestampNs = 5_000_000_000L;
+        long timestampFrame = 100_000;
+        int[] batchFrames = {240, 960, 4800, 240};
+        long frame = 90_000;
+        long pts = AudioCapture.computePtsUs(timestampNs, timestampFrame, frame);
+        for (int frames : batchFrames) {
+            frame += frames;
+            long nextPts = AudioCapture.computePtsUs(timestampNs, timestampFrame, frame);
+            Assert.assertEquals(frames * 1_000_000L / AudioCapture.SAMPLE_RATE, nextPts - pts);
+            pts = nextPts;
+        }
+    }
+}
@@ -0,0 +1,22 @@
+package com.genymobile.scrcpy;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class AudioEncoderTest {
+
+    @Test
+    public void testReadSize() {
+        int batchSize = AudioCapture.millisToBytes(20);
+        Assert.assertEquals(batchSize, AudioEncoder.getReadSize(batchSize, 65536));
+        Assert.assertEquals(batchSize, AudioEncoder.getReadSize(batchSize, batchSize));
+    }
+
+    @Test
+    public void testReadSizeLimitedByBuffer() {
+        int batchSize = AudioCapture.millisToBytes(100);
+        Assert.assertEquals(8192, AudioEncoder.getReadSize(batchSize, 8192));
+        // whole frames only
+        Assert.assertEquals(8188, AudioEncoder.getReadSize(batchSize, 8191));
+    }
+}
@@ -0,0 +1,222 @@
+package com.genymobile.scrcpy;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class BitrateControllerTest {
+
+    private static final int FPS = 60;
+    private static final long FRAME_NS = 1_000_000_000L / FPS;
+
+    /**
+     * Simulated link: the socket buffer is drained at the link capacity, and a write blocks until the packet fits in the buffer.
+     */
+    private static final class Link {
+        private static final long BUFFER_SIZE = 256 * 1024;
+
+        private final BitrateController controller;
+        private long capacityBps;
+
+        private long nowNs;
+        private double buffered; // bytes in the socket buffer
+        private long totalBytes;
+        private long totalWriteTimeNs;
+        private int bitRateChanges;
+
+        // bitrate statistics since the last resetStats()
+        private long bitRateSum;
+        private long frames;
+        private int minBitRate = Integer.MAX_VALUE;
+        private int maxBitRate;
+
+        Link(BitrateController controller, long capacityBps) {
+            this.controller = controller;
+            this.capacityBps = capacityBps;
+        }
+
+        void resetStats() {
+            bitRateSum = 0;
+            frames = 0;
+            minBitRate = Integer.MAX_VALUE;
+            maxBitRate = 0;
+        }
+
+        long getAverageBitRate() {
+            return bitRateSum / frames;
+        }
+
+        void setCapacity(long capacityBps) {
+            this.capacityBps = capacityBps;
+        }
+
+        private void advance(long durationNs) {
+            buffered = Math.max(0, buffered - (double) capacityBps / 8 * durationNs / 1_000_000_000L);
+            nowNs += durationNs;
+        }
+
+        /**
+         * Encode and write frames at the current bitrate during the given duration.
+         */
+        void run(long durationNs) {
+            long endNs = nowNs + durationNs;
+            while (nowNs < endNs) {
+                long frameStartNs = nowNs;
+                int bitRate = controller.getBitRate();
+                bitRateSum += bitRate;
+                ++frames;
+                minBitRate = Math.min(minBitRate, bitRate);
+                maxBitRate = Math.max(maxBitRate, bitRate);
+                int packetSize = bitRate / 8 / FPS;
+
+                // the write blocks until the packet fits in the socket buffer
+                double overflow = buffered + packetSize - BUFFER_SIZE;
+                long writeNs = overflow <= 0 ? 0 : (long) (overflow * 8 * 1_000_000_000L / capacityBps);
+                advance(writeNs);
+                buffered += packetSize;
+                totalBytes += packetSize;
+                totalWriteTimeNs += writeNs;
+
+                if (controller.update(nowNs, totalBytes, totalWriteTimeNs) != BitrateController.NO_CHANGE) {
+                    ++bitRateChanges;
+                }
+
+                // the next frame is produced one frame period after the previous one (or immediately if the write took longer)
+                long elapsed = nowNs - frameStartNs;
+                if (elapsed < FRAME_NS) {
+                    advance(FRAME_NS - elapsed);
+                }
+            }
+        }
+    }
+
+    private static long seconds(int s) {
+        return s * 1_000_000_000L;
+    }
+
+    @Test
+    public void testFastLinkKeepsMaxBitRate() {
+        BitrateController controller = new BitrateController(8_000_000, 1_000_000, 8_000_000);
+        Link link = new Link(controller, 100_000_000);
+        link.run(seconds(30));
+
+        Assert.assertEquals(8_000_000, controller.getBitRate());
+        Assert.assertEquals(0, link.bitRateChanges);
+    }
+
+    @Test
+    public void testSaturatedLinkDecreasesBelowCapacity() {
+        BitrateController controller = new BitrateController(8_000_000, 1_000_000, 8_000_000);
+        Link link = new Link(controller, 4_000_000);
+        link.run(seconds(5));
+
+        Assert.assertTrue(controller.getBitRate() < 4_000_000);
+        Assert.assertTrue(controller.getBitRate() >= 2_000_000);
+
+        // then it probes back up and backs off around the capacity, without collapsing nor overshooting much
+        link.resetStats();
+        link.run(seconds(60));
+        Assert.assertTrue(link.getAverageBitRate() <= 4_000_000);
+        Assert.assertTrue(link.getAverageBitRate() >= 3_000_000);
+        Assert.assertTrue(link.minBitRate >= 2_500_000);
+        Assert.assertTrue(link.maxBitRate <= 5_200_000);
+    }
+
+    @Test
+    public void testRecoversAfterCongestion() {
+        BitrateController controller = new BitrateController(8_000_000, 1_000_000, 8_000_000);
+        Link link = new Link(controller, 100_000_000);
+        link.run(seconds(5));
+
+        link.setCapacity(2_000_000);
+        link.run(seconds(2));
+        Assert.assertTrue(controller.getBitRate() <= 2_000_000);
+        link.resetStats();
+        link.run(seconds(20));
+        Assert.assertTrue(link.getAverageBitRate() <= 2_000_000);
+
+        // the bitrate is increased progressively (+10% every 1.5s)
+        link.setCapacity(100_000_000);
+        link.run(seconds(60));
+        Assert.assertEquals(8_000_000, controller.getBitRate());
+    }
+
+    @Test
+    public void testNeverBelowMin() {
+        BitrateController controller = new BitrateController(8_000_000, 3_000_000, 8_000_000);
+        Link link = new Link(controller, 500_000);
+        link.run(seconds(20));
+
+        Assert.assertEquals(3_000_000, controller.getBitRate());
+    }
+
+    @Test
+    public void testInitialBitRateClamped() {
+        BitrateController controller = new BitrateController(20_000_000, 1_000_000, 8_000_000);
+        Assert.assertEquals(8_000_000, controller.getBitRate());
+    }
+
+    @Test
+    public void testNoChangeWithinWindow() {
+        BitrateController controller = new BitrateController(8_000_000, 1_000_000, 8_000_000);
+        Assert.assertEquals(BitrateController.NO_CHANGE, controller.update(0, 0, 0));
+        // fully blocked, but the window is not complete
+        Assert.assertEquals(BitrateController.NO_CHANGE, controller.update(400_000_000, 100_000, 400_000_000));
+        Assert.assertNotEquals(BitrateController.NO_CHANGE, controller.update(500_000_000, 125_000, 500_000_000));
+    }
+
+    @Test
+    public void testResetRestartsWindow() {
+        BitrateController controller = new BitrateController(4_000_000, 1_000_000, 8_000_000);
+        controller.update(0, 0, 0);
+        controller.reset();
+        // the first update after a reset only starts a new window
+        Assert.assertEquals(BitrateController.NO_CHANGE, controller.update(seconds(10), 1_000_000, seconds(10)));
+        Assert.assertEquals(4_000_000, controller.getBitRate());
+    }
+
+    @Test
+    public void testSetMaxBitRate() {
+        BitrateController controller = new BitrateController(8_000_000, 1_000_000, 8_000_000);
+        Assert.assertEquals(4_000_000, controller.setMaxBitRate(4_000_000));
+        Assert.assertEquals(4_000_000, controller.getMaxBitRate());
+
+        // the bitrate is never increased above the new bound
+        Link link = new Link(controller, 100_000_000);
+        link.run(seconds(10));
+        Assert.assertEquals(4_000_000, link.maxBitRate);
+
+        // the bound can be raised again (the bitrate increases progressively), but not below the lower bound
+        Assert.assertEquals(4_000_000, controller.setMaxBitRate(12_000_000));
+        Assert.assertEquals(12_000_000, controller.getMaxBitRate());
+        link.run(seconds(30));
+        Assert.assertTrue(controller.getBitRate() > 8_000_000);
+        Assert.assertEquals(1_000_000, controller.setMaxBitRate(500_000));
+        Assert.assertEquals(1_000_000, controller.getMaxBitRate());
+    }
+
+    @Test
+    public void testSetMaxBitRateDuringCongestion() {
+        BitrateController controller = new BitrateController(8_000_000, 1_000_000, 8_000_000);
+        Link link = new Link(controller, 2_000_000);
+        link.run(seconds(5));
+        int congestedBitRate = controller.getBitRate();
+        Assert.assertTrue(congestedBitRate <= 2_000_000);
+
+        // a step of the degradation ladder lowers the bound, but must not undo the decrease
+        Assert.assertEquals(congestedBitRate, controller.setMaxBitRate(5_120_000));
+        Assert.assertEquals(congestedBitRate, controller.getBitRate());
+
+        // still congested, the bitrate stays below the capacity
+        link.resetStats();
+        link.run(seconds(10));
+        Assert.assertTrue(link.maxBitRate <= 2_600_000);
+
+        // a lower bound than the current bitrate applies immediately
+        Assert.assertEquals(1_500_000, controller.setMaxBitRate(1_500_000));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidBounds() {
+        new BitrateController(4_000_000, 8_000_000, 1_000_000);
+    }
+}
@@ -0,0 +1,235 @@
+package com.genymobile.scrcpy;
+
+import android.view.KeyEvent;
+import android.view.MotionEvent;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+public class ControlMessageQueueTest {
+
+    private static ControlMessage createTouch(int action, int x) {
+        return ControlMessage.createInjectTouchEvent(action, -1, new Position(x, 0, 1080, 1920), 1f, 0, 0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testCapacityNotPowerOf2() {
+        new ControlMessageQueue(12);
+    }
+
+    @Test
+    public void testFifoWithinLane() throws InterruptedException {
+        ControlMessageQueue queue = new ControlMessageQueue(4);
+        queue.offer(createTouch(MotionEvent.ACTION_DOWN, 1));
+        queue.offer(createTouch(MotionEvent.ACTION_MOVE, 2));
+        queue.offer(createTouch(MotionEvent.ACTION_UP, 3));
+        Assert.assertEquals(3, queue.getDepth());
+
+        ControlMessage msg = queue.poll();
+        Assert.assertEquals(MotionEvent.ACTION_DOWN, msg.getAction());
+        Assert.assertEquals(1, msg.getX());
+        msg = queue.poll();
+        Assert.assertEquals(MotionEvent.ACTION_MOVE, msg.getAction());
+        Assert.assertEquals(2, msg.getX());
+        msg = queue.poll();
+        Assert.assertEquals(MotionEvent.ACTION_UP, msg.getAction());
+        Assert.assertEquals(3, msg.getX());
+
+        Assert.assertNull(queue.poll());
+        Assert.assertEquals(0, queue.getDepth());
+    }
+
+    private static ControlMessage createKey(int keycode) {
+        return ControlMessage.createInjectKeycode(KeyEvent.ACTION_DOWN, keycode, 0, 0);
+    }
+
+    @Test
+    public void testInputBeforeCommands() throws InterruptedException {
+        ControlMessageQueue queue = new ControlMessageQueue(8);
+        queue.offer(createKey(KeyEvent.KEYCODE_A));
+        // the commands the input events do not depend on are consumed after all the queued input events, even the ones received after them
+        queue.offer(ControlMessage.createGetClipboard(ControlMessage.COPY_KEY_NONE));
+        queue.offer(ControlMessage.createEmpty(ControlMessage.TYPE_EXPAND_NOTIFICATION_PANEL));
+        queue.offer(ControlMessage.createSetScreenPowerMode(Device.POWER_MODE_OFF));
+        queue.offer(createKey(KeyEvent.KEYCODE_B));
+        queue.offer(ControlMessage.createInjectText("abc"));
+
+        Assert.assertEquals(KeyEvent.KEYCODE_A, queue.poll().getKeycode());
+        Assert.assertEquals(KeyEvent.KEYCODE_B, queue.poll().getKeycode());
+        Assert.assertEquals("abc", queue.poll().getText());
+        Assert.assertEquals(ControlMessage.TYPE_GET_CLIPBOARD, queue.poll().getType());
+        Assert.assertEquals(ControlMessage.TYPE_EXPAND_NOTIFICATION_PANEL, queue.poll().getType());
+        Assert.assertEquals(ControlMessage.TYPE_SET_SCREEN_POWER_MODE, queue.poll().getType());
+        Assert.assertNull(queue.poll());
+    }
+
+    @Test
+    public void testBarrier() throws InterruptedException {
+        ControlMessageQueue queue = new ControlMessageQueue(8);
+        queue.offer(createKey(KeyEvent.KEYCODE_A));
+        queue.offer(ControlMessage.createGetClipboard(ControlMessage.COPY_KEY_NONE));
+        // the client sets the clipboard (without waiting for an ack), then injects Ctrl+V to paste it
+        queue.offer(ControlMessage.createSetClipboard(ControlMessage.SEQUENCE_INVALID, "hello", false));
+        queue.offer(ControlMessage.createInjectKeycode(KeyEvent.ACTION_DOWN, KeyEvent.KEYCODE_V, 0, KeyEvent.META_CTRL_ON));
+        queue.offer(ControlMessage.createEmpty(ControlMessage.TYPE_COLLAPSE_PANELS));
+        queue.offer(ControlMessage.createSetClipboard(ControlMessage.SEQUENCE_INVALID, "world", false));
+        queue.offer(ControlMessage.createInjectKeycode(KeyEvent.ACTION_DOWN, KeyEvent.KEYCODE_V, 0, KeyEvent.META_CTRL_ON));
+
+        // the input event received before the barrier is still consumed first
+        Assert.assertEquals(KeyEvent.KEYCODE_A, queue.poll().getKeycode());
+        // the commands up to the barrier are consumed in order
+        Assert.assertEquals(ControlMessage.TYPE_GET_CLIPBOARD, queue.poll().getType());
+        ControlMessage msg = queue.poll();
+        Assert.assertEquals(ControlMessage.TYPE_SET_CLIPBOARD, msg.getType());
+        Assert.assertEquals("hello", msg.getText());
+        Assert.assertEquals(KeyEvent.KEYCODE_V, queue.poll().getKeycode());
+        Assert.assertEquals(ControlMessage.TYPE_COLLAPSE_PANELS, queue.poll().getType());
+        msg = queue.poll();
+        Assert.assertEquals(ControlMessage.TYPE_SET_CLIPBOARD, msg.getType());
+        Assert.assertEquals("world", msg.getText());
+        Assert.assertEquals(KeyEvent.KEYCODE_V, queue.poll().getKeycode());
+        Assert.assertNull(queue.poll());
+    }
+
+    @Test
+    public void testBarrierOnCopyKey() throws InterruptedException {
+        ControlMessageQueue queue = new ControlMessageQueue(4);
+        // the cut key is injected by the server, the following input events must not change the selection before
+        queue.offer(ControlMessage.createGetClipboard(ControlMessage.COPY_KEY_CUT));
+        queue.offer(ControlMessage.createInjectText("abc"));
+
+        Assert.assertEquals(ControlMessage.TYPE_GET_CLIPBOARD, queue.poll().getType());
+        Assert.assertEquals("abc", queue.poll().getText());
+        Assert.assertNull(queue.poll());
+    }
+
+    @Test
+    public void testOfferCopiesMessage() throws InterruptedException {
+        ControlMessageQueue queue = new ControlMessageQueue(2);
+        ControlMessage reused = ControlMessage.createReusable();
+
+        // the reused message is overwritten after each offer, like the flyweight message of the reader
+        reused.setInjectTouchEvent(MotionEvent.ACTION_DOWN, 7, 10, 20, 1080, 1920, 1f, 0, 0);
+        queue.offer(reused);
+        reused.setInjectTouchEvent(MotionEvent.ACTION_UP, 7, 30, 40, 1080, 1920, 0f, 0, 0);
+        queue.offer(reused);
+
+        ControlMessage msg = queue.poll();
+        Assert.assertEquals(MotionEvent.ACTION_DOWN, msg.getAction());
+        Assert.assertEquals(7, msg.getPointerId());
+        Assert.assertEquals(10, msg.getX());
+        Assert.assertEquals(20, msg.getY());
+        Assert.assertEquals(1f, msg.getPressure(), 0f);
+
+        msg = queue.poll();
+        Assert.assertEquals(MotionEvent.ACTION_UP, msg.getAction());
+        Assert.assertEquals(30, msg.getX());
+        Assert.assertEquals(40, msg.getY());
+    }
+
+    @Test
+    public void testSlotsReused() throws InterruptedException {
+        ControlMessageQueue queue = new ControlMessageQueue(2);
+        for (int i = 0; i < 10; ++i) {
+            Assert.assertTrue(queue.offer(createTouch(MotionEvent.ACTION_DOWN, i)));
+            Assert.assertEquals(i, queue.poll().getX());
+        }
+        Assert.assertNull(queue.poll());
+        Assert.assertEquals(0, queue.getDrops());
+    }
+
+    @Test
+    public void testDropMovesWhenFull() throws InterruptedException {
+        ControlMessageQueue queue = new ControlMessageQueue(2);
+        Assert.assertTrue(queue.offer(createTouch(MotionEvent.ACTION_DOWN, 1)));
+        Assert.assertTrue(queue.offer(createTouch(MotionEvent.ACTION_MOVE, 2)));
+
+        Assert.assertFalse(queue.offer(createTouch(MotionEvent.ACTION_MOVE, 3)));
+        Assert.assertFalse(queue.offer(ControlMessage.createInjectScrollEvent(new Position(0, 0, 1080, 1920), 0, 1, 0)));
+        Assert.assertEquals(2, queue.getDrops());
+        Assert.assertEquals(2, queue.getDepth());
+
+        Assert.assertEquals(1, queue.poll().getX());
+        Assert.assertEquals(2, queue.poll().getX());
+        Assert.assertNull(queue.poll());
+    }
+
+    @Test
+    public void testBackpressureWhenFull() throws Exception {
+        ControlMessageQueue queue = new ControlMessageQueue(2);
+        queue.offer(createTouch(MotionEvent.ACTION_DOWN, 1));
+        queue.offer(createTouch(MotionEvent.ACTION_MOVE, 2));
+
+        AtomicReference<Throwable> error = new AtomicReference<>();
+        Thread producer = new Thread(() -> {
+            try {
+                // an UP event must never be dropped: this blocks until a slot is free
+                queue.offer(createTouch(MotionEvent.ACTION_UP, 3));
+            } catch (Throwable t) {
+                error.set(t);
+            }
+        });
+        producer.start();
+
+        producer.join(50);
+        Assert.assertTrue(producer.isAlive());
+
+        Assert.assertEquals(1, queue.poll().getX());
+        // the slot of the previous message is released on the next poll()
+        Assert.assertEquals(2, queue.poll().getX());
+
+        producer.join(5000);
+        Assert.assertFalse(producer.isAlive());
+        Assert.assertNull(error.get());
+
+        Assert.assertEquals(3, queue.take().getX());
+        Assert.assertEquals(0, queue.getDrops());
+    }
+
+    @Test
+    public void testTakeWaits() throws Exception {
+        ControlMessageQueue queue = new ControlMessageQueue(4);
+        AtomicReference<ControlMessage> result = new AtomicReference<>();
+        Thread consumer = new Thread(() -> {
+            try {
+                ControlMessage msg = queue.take();
+                ControlMessage copy = ControlMessage.createReusable();
+                copy.copyFrom(msg);
+                result.set(copy);
+            } catch (InterruptedException e) {
+                // fail below
+            }
+        });
+        consumer.start();
+
+        consumer.join(50);
+        Assert.assertTrue(consumer.isAlive());
+
+        queue.offer(ControlMessage.createInjectText("hello"));
+        consumer.join(5000);
+        Assert.assertFalse(consumer.isAlive());
+        Assert.assertEquals("hello", result.get().getText());
+    }
+
+    @Test
+    public void testTakeInterrupted() throws Exception {
+        ControlMessageQueue queue = new ControlMessageQueue(4);
+        AtomicReference<Throwable> error = new AtomicReference<>();
+        Thread consumer = new Thread(() -> {
+            try {
+                queue.take();
+            } catch (Throwable t) {
+                error.set(t);
+            }
+        });
+        consumer.start();
+        consumer.join(50);
+        consumer.interrupt();
+        consumer.join(5000);
+
+        Assert.assertFalse(consumer.isAlive());
+        Assert.assertTrue(error.get() instanceof InterruptedException);
+    }
+}
@@ -116,6 +116,76 @@ public class ControlMessageReaderTest {
         Assert.assertEquals(MotionEvent.BUTTON_PRIMARY, event.getButtons());
     }
 
+    @Test
+    public void testParseTouchEventsFlyweight() throws IOException {
+        ControlMessageReader reader = new ControlMessageReader(true);
+
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        DataOutputStream dos = new DataOutputStream(bos);
+        dos.writeByte(ControlMessage.TYPE_INJECT_TOUCH_EVENT);
+        dos.writeByte(MotionEvent.ACTION_DOWN);
+        dos.writeLong(-42); // pointerId
+        dos.writeInt(100);
+        dos.writeInt(200);
+        dos.writeShort(1080);
+        dos.writeShort(1920);
+        dos.writeShort(0xffff); // pressure
+        dos.writeInt(MotionEvent.BUTTON_PRIMARY); // action button
+        dos.writeInt(MotionEvent.BUTTON_PRIMARY); // buttons
+
+        dos.writeByte(ControlMessage.TYPE_INJECT_SCROLL_EVENT);
+        dos.writeInt(260);
+        dos.writeInt(1026);
+        dos.writeShort(1080);
+        dos.writeShort(1920);
+        dos.writeShort(0);
+        dos.writeShort(0x8000); // -1.0f encoded as i16
+        dos.writeInt(0);
+
+        dos.writeByte(ControlMessage.TYPE_INJECT_TEXT);
+        dos.writeInt(5);
+        dos.write("hello".getBytes(StandardCharsets.UTF_8));
+
+        dos.writeByte(ControlMessage.TYPE_EXPAND_NOTIFICATION_PANEL);
+
+        byte[] packet = bos.toByteArray();
+
+        reader.readFrom(new ByteArrayInputStream(packet));
+
+        ControlMessage touch = reader.next();
+        Assert.assertEquals(ControlMessage.TYPE_INJECT_TOUCH_EVENT, touch.getType());
+        Assert.assertEquals(-42, touch.getPointerId());
+        Assert.assertEquals(100, touch.getX());
+        Assert.assertEquals(200, touch.getY());
+        Assert.assertEquals(1080, touch.getScreenWidth());
+        Assert.assertEquals(1920, touch.getScreenHeight());
+        Assert.assertEquals(1f, touch.getPressure(), 0f);
+
+        // the same instance is refilled
+        ControlMessage scroll = reader.next();
+        Assert.assertSame(touch, scroll);
+        Assert.assertEquals(ControlMessage.TYPE_INJECT_SCROLL_EVENT, scroll.getType());
+        Assert.assertEquals(260, scroll.getX());
+        Assert.assertEquals(1026, scroll.getY());
+        Assert.assertEquals(-1f, scroll.getVScroll(), 0f);
+        // nothing leaks from the previous event
+        Assert.assertEquals(0, scroll.getPointerId());
+        Assert.assertEquals(0f, scroll.getPressure(), 0f);
+        Assert.assertEquals(0, scroll.getActionButton());
+
+        ControlMessage text = reader.next();
+        Assert.assertSame(touch, text);
+        Assert.assertEquals(ControlMessage.TYPE_INJECT_TEXT, text.getType());
+        Assert.assertEquals("hello", text.getText());
+        Assert.assertEquals(0, text.getX());
+
+        ControlMessage empty = reader.next();
+        Assert.assertEquals(ControlMessage.TYPE_EXPAND_NOTIFICATION_PANEL, empty.getType());
+        Assert.assertNull(empty.getText());
+
+        Assert.assertNull(reader.next());
+    }
+
     @Test
     public void testParseScrollEvent() throws IOException {
         ControlMessageReader reader = new ControlMessageReader();
@@ -322,6 +392,119 @@ public class ControlMessageReaderTest {
         Assert.assertEquals(ControlMessage.TYPE_ROTATE_DEVICE, event.getType());
     }
 
+    @Test
+    public void testParseRequestKeyFrame() throws IOException {
+        ControlMessageReader reader = new ControlMessageReader();
+
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        DataOutputStream dos = new DataOutputStream(bos);
+        dos.writeByte(ControlMessage.TYPE_REQUEST_KEY_FRAME);
+
+        byte[] packet = bos.toByteArray();
+
+        reader.readFrom(new ByteArrayInputStream(packet));
+        ControlMessage event = reader.next();
+
+        Assert.assertEquals(ControlMessage.TYPE_REQUEST_KEY_FRAME, event.getType());
+    }
+
+    @Test
+    public void testParseRequestKeyFrameFollowedByEvent() throws IOException {
+        ControlMessageReader reader = new ControlMessageReader();
+
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        DataOutputStream dos = new DataOutputStream(bos);
+        dos.writeByte(ControlMessage.TYPE_REQUEST_KEY_FRAME);
+        dos.writeByte(ControlMessage.TYPE_REQUEST_KEY_FRAME);
+        dos.writeByte(ControlMessage.TYPE_COLLAPSE_PANELS);
+
+        byte[] packet = bos.toByteArray();
+
+        reader.readFrom(new ByteArrayInputStream(packet));
+
+        // the message has no payload, it must not consume the following ones
+        Assert.assertEquals(ControlMessage.TYPE_REQUEST_KEY_FRAME, reader.next().getType());
+        Assert.assertEquals(ControlMessage.TYPE_REQUEST_KEY_FRAME, reader.next().getType());
+        Assert.assertEquals(ControlMessage.TYPE_COLLAPSE_PANELS, reader.next().getType());
+        Assert.assertNull(reader.next());
+    }
+
+    @Test
+    public void testParseSetVideoSettings() throws IOException {
+        ControlMessageReader reader = new ControlMessageReader();
+
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        DataOutputStream dos = new DataOutputStream(bos);
+        dos.writeByte(ControlMessage.TYPE_SET_VIDEO_SETTINGS);
+        dos.writeLong(0x0102030405060708L); // sequence
+        dos.writeInt(4_000_000); // bitrate
+        dos.writeShort(30); // max fps
+        dos.writeShort(0); // I-frame interval unchanged
+
+        byte[] packet = bos.toByteArray();
+
+        // The message type (1 byte) does not count
+        Assert.assertEquals(ControlMessageReader.SET_VIDEO_SETTINGS_PAYLOAD_LENGTH, packet.length - 1);
+
+        reader.readFrom(new ByteArrayInputStream(packet));
+        ControlMessage event = reader.next();
+
+        Assert.assertEquals(ControlMessage.TYPE_SET_VIDEO_SETTINGS, event.getType());
+        Assert.assertEquals(0x0102030405060708L, event.getSequence());
+        Assert.assertEquals(4_000_000, event.getBitRate());
+        Assert.assertEquals(30, event.getMaxFps());
+        Assert.assertEquals(0, event.getIFrameInterval());
+    }
+
+    @Test
+    public void testParseSetVideoSettingsUnsigned() throws IOException {
+        ControlMessageReader reader = new ControlMessageReader();
+
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        DataOutputStream dos = new DataOutputStream(bos);
+        dos.writeByte(ControlMessage.TYPE_SET_VIDEO_SETTINGS);
+        dos.writeLong(0);
+        dos.writeInt(0xFFFFFFFF); // saturated to Integer.MAX_VALUE
+        dos.writeShort(0xFFFF);
+        dos.writeShort(0xFFFF);
+
+        byte[] packet = bos.toByteArray();
+
+        reader.readFrom(new ByteArrayInputStream(packet));
+        ControlMessage event = reader.next();
+
+        Assert.assertEquals(Integer.MAX_VALUE, event.getBitRate());
+        Assert.assertEquals(0xFFFF, event.getMaxFps());
+        Assert.assertEquals(0xFFFF, event.getIFrameInterval());
+    }
+
+    @Test
+    public void testParseSetVideoSettingsPartial() throws IOException {
+        ControlMessageReader reader = new ControlMessageReader();
+
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        DataOutputStream dos = new DataOutputStream(bos);
+        dos.writeByte(ControlMessage.TYPE_SET_VIDEO_SETTINGS);
+        dos.writeLong(1);
+        dos.writeInt(4_000_000);
+
+        byte[] packet = bos.toByteArray();
+
+        reader.readFrom(new ByteArrayInputStream(packet));
+        Assert.assertNull(reader.next());
+
+        bos = new ByteArrayOutputStream();
+        dos = new DataOutputStream(bos);
+        dos.writeShort(60);
+        dos.writeShort(5);
+        reader.readFrom(new ByteArrayInputStream(bos.toByteArray()));
+
+        ControlMessage event = reader.next();
+        Assert.assertEquals(ControlMessage.TYPE_SET_VIDEO_SETTINGS, event.getType());
+        Assert.assertEquals(60, event.getMaxFps());
+        Assert.assertEquals(5, event.getIFrameInterval());
+    }
+
     @Test
     public void testMultiEvents() throws IOException {
         ControlMessageReader reader = new ControlMessageReader();
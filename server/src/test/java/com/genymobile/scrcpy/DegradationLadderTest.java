@@ -0,0 +1,178 @@
+package com.genymobile.scrcpy;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.List;
+
+public class DegradationLadderTest {
+
+    private static final long SECOND_NS = 1_000_000_000L;
+
+    /**
+     * Encode frames at the given rate during the given duration.
+     *
+     * @return the last level change, or {@link DegradationLadder#NO_CHANGE}
+     */
+    private static int run(DegradationLadder ladder, long[] now, int fps, int targetFps, long durationNs) {
+        long frameNs = SECOND_NS / fps;
+        long end = now[0] + durationNs;
+        int change = DegradationLadder.NO_CHANGE;
+        while (now[0] < end) {
+            now[0] += frameNs;
+            int level = ladder.onFrame(now[0], targetFps);
+            if (level != DegradationLadder.NO_CHANGE) {
+                change = level;
+            }
+        }
+        return change;
+    }
+
+    @Test
+    public void testRungs() {
+        List<DegradationLadder.Rung> rungs = DegradationLadder.buildRungs(2400, 60);
+
+        // size and frame rate reduced alternately
+        int[][] expected = {
+                {0, 0, 100},
+                {1920, 0, 64},
+                {1920, 30, 32},
+                {1600, 30, 22},
+                {1600, 20, 15},
+                {1280, 20, 10},
+                {1280, 15, 10},
+                {1024, 15, 10},
+                {800, 15, 10},
+        };
+        Assert.assertEquals(expected.length, rungs.size());
+        for (int i = 0; i < expected.length; ++i) {
+            DegradationLadder.Rung rung = rungs.get(i);
+            Assert.assertEquals(expected[i][0], rung.getMaxSize());
+            Assert.assertEquals(expected[i][1], rung.getMaxFps());
+            Assert.assertEquals(expected[i][2], rung.getBitRatePercent());
+        }
+    }
+
+    @Test
+    public void testRungsSmallVideo() {
+        // no smaller size, only the frame rate may be reduced
+        List<DegradationLadder.Rung> rungs = DegradationLadder.buildRungs(720, 24);
+        Assert.assertEquals(3, rungs.size());
+        Assert.assertEquals(0, rungs.get(1).getMaxSize());
+        Assert.assertEquals(20, rungs.get(1).getMaxFps());
+        Assert.assertEquals(15, rungs.get(2).getMaxFps());
+    }
+
+    @Test
+    public void testCapFps() {
+        DegradationLadder.Rung rung = DegradationLadder.buildRungs(2400, 0).get(2);
+        Assert.assertEquals(30, rung.getMaxFps());
+        Assert.assertEquals(30, rung.capFps(0));
+        Assert.assertEquals(30, rung.capFps(60));
+        Assert.assertEquals(24, rung.capFps(24));
+        Assert.assertEquals(60, DegradationLadder.Rung.FULL_QUALITY.capFps(60));
+        Assert.assertEquals(0, DegradationLadder.Rung.FULL_QUALITY.capFps(0));
+        Assert.assertEquals(8_000_000, DegradationLadder.Rung.FULL_QUALITY.scaleBitRate(8_000_000));
+    }
+
+    @Test
+    public void testStepDownOnStartupError() {
+        long[] now = {0};
+        DegradationLadder ladder = new DegradationLadder(2400, 60, now[0]);
+
+        // no frame has been produced, each error steps down
+        Assert.assertTrue(ladder.onError(now[0]));
+        Assert.assertEquals(1, ladder.getLevel());
+        Assert.assertTrue(ladder.onError(now[0]));
+        Assert.assertEquals(2, ladder.getLevel());
+
+        run(ladder, now, 30, 0, SECOND_NS);
+        Assert.assertEquals(2, ladder.getLevel());
+    }
+
+    @Test
+    public void testFailOnLowestRung() {
+        DegradationLadder ladder = new DegradationLadder(720, 15, 0);
+        Assert.assertEquals(1, ladder.getRungs().size());
+        Assert.assertFalse(ladder.onError(0));
+    }
+
+    @Test
+    public void testStepDownOnConsecutiveErrors() {
+        long[] now = {0};
+        DegradationLadder ladder = new DegradationLadder(2400, 60, now[0]);
+        run(ladder, now, 60, 0, SECOND_NS);
+
+        // transient errors, retried on the same rung
+        Assert.assertTrue(ladder.onError(now[0]));
+        Assert.assertTrue(ladder.onError(now[0]));
+        Assert.assertEquals(0, ladder.getLevel());
+
+        // a frame resets the consecutive errors
+        run(ladder, now, 60, 0, SECOND_NS);
+        Assert.assertTrue(ladder.onError(now[0]));
+        Assert.assertTrue(ladder.onError(now[0]));
+        Assert.assertEquals(0, ladder.getLevel());
+        Assert.assertTrue(ladder.onError(now[0]));
+        Assert.assertEquals(1, ladder.getLevel());
+    }
+
+    @Test
+    public void testStepDownOnSlowEncoding() {
+        long[] now = {0};
+        DegradationLadder ladder = new DegradationLadder(2400, 60, now[0]);
+
+        // slightly below the target, not slow
+        Assert.assertEquals(DegradationLadder.NO_CHANGE, run(ladder, now, 55, 60, 10 * SECOND_NS));
+
+        // a single slow window is tolerated
+        Assert.assertEquals(DegradationLadder.NO_CHANGE, run(ladder, now, 30, 60, SECOND_NS + SECOND_NS / 2));
+        Assert.assertEquals(DegradationLadder.NO_CHANGE, run(ladder, now, 60, 60, 2 * SECOND_NS));
+
+        Assert.assertEquals(1, run(ladder, now, 30, 60, 4 * SECOND_NS));
+        Assert.assertEquals(1, ladder.getLevel());
+    }
+
+    @Test
+    public void testNoRateCheckWithoutTarget() {
+        long[] now = {0};
+        DegradationLadder ladder = new DegradationLadder(2400, 60, now[0]);
+        // in direct mode, the capture only produces frames on changes
+        Assert.assertEquals(DegradationLadder.NO_CHANGE, run(ladder, now, 2, 0, 20 * SECOND_NS));
+    }
+
+    @Test
+    public void testStepUpAfterRecovery() {
+        long[] now = {0};
+        DegradationLadder ladder = new DegradationLadder(2400, 60, now[0]);
+        Assert.assertEquals(1, run(ladder, now, 20, 60, 4 * SECOND_NS));
+
+        // the target is reached again on the lower rung, step up after the hold period
+        Assert.assertEquals(DegradationLadder.NO_CHANGE, run(ladder, now, 60, 60, 29 * SECOND_NS));
+        Assert.assertEquals(0, run(ladder, now, 60, 60, 2 * SECOND_NS));
+    }
+
+    @Test
+    public void testHoldDoubledOnOscillation() {
+        long[] now = {0};
+        DegradationLadder ladder = new DegradationLadder(2400, 60, now[0]);
+        Assert.assertEquals(1, run(ladder, now, 20, 60, 4 * SECOND_NS));
+        Assert.assertEquals(0, run(ladder, now, 60, 60, 31 * SECOND_NS));
+
+        // the upper rung fails again quickly
+        Assert.assertEquals(1, run(ladder, now, 20, 60, 4 * SECOND_NS));
+
+        // wait twice as long before stepping up again
+        Assert.assertEquals(DegradationLadder.NO_CHANGE, run(ladder, now, 60, 60, 59 * SECOND_NS));
+        Assert.assertEquals(0, run(ladder, now, 60, 60, 2 * SECOND_NS));
+    }
+
+    @Test
+    public void testStayOnLowestRung() {
+        long[] now = {0};
+        DegradationLadder ladder = new DegradationLadder(720, 15, now[0]);
+        // the encoding is slow, but there is no lower rung: keep streaming
+        Assert.assertEquals(DegradationLadder.NO_CHANGE, run(ladder, now, 5, 15, 10 * SECOND_NS));
+        Assert.assertEquals(0, ladder.getLevel());
+    }
+}
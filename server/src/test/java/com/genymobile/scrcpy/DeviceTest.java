@@ -0,0 +1,54 @@
+package com.genymobile.scrcpy;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class DeviceTest {
+
+    private static final class FakeClipboard implements Device.Clipboard {
+        private String text;
+        private boolean fail;
+        private int setCount;
+
+        @Override
+        public String getText() {
+            return text;
+        }
+
+        @Override
+        public boolean setText(String text) {
+            ++setCount;
+            if (fail) {
+                return false;
+            }
+            this.text = text;
+            return true;
+        }
+    }
+
+    @Test
+    public void testSetClipboardText() {
+        FakeClipboard clipboard = new FakeClipboard();
+        Assert.assertEquals(Device.CLIPBOARD_SET, Device.setClipboardText(clipboard, "hello"));
+        Assert.assertEquals("hello", clipboard.text);
+        Assert.assertEquals(1, clipboard.setCount);
+    }
+
+    @Test
+    public void testSetClipboardTextAlreadyEqual() {
+        // a second paste of the same text (or a paste after a clipboard sync): the clipboard is not set again, but the text can be pasted
+        FakeClipboard clipboard = new FakeClipboard();
+        clipboard.text = "hello";
+        Assert.assertEquals(Device.CLIPBOARD_UNCHANGED, Device.setClipboardText(clipboard, "hello"));
+        Assert.assertEquals(0, clipboard.setCount);
+    }
+
+    @Test
+    public void testSetClipboardTextError() {
+        FakeClipboard clipboard = new FakeClipboard();
+        clipboard.text = "old";
+        clipboard.fail = true;
+        Assert.assertEquals(Device.CLIPBOARD_ERROR, Device.setClipboardText(clipboard, "hello"));
+        Assert.assertEquals("old", clipboard.text);
+    }
+}
@@ -0,0 +1,100 @@
+package com.genymobile.scrcpy;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class EncoderCapabilitiesTest {
+
+    private static final String FINGERPRINT = "google/sdk_gphone64_x86_64/emu64x:14/UE1A.230829.036/10749125:userdebug/dev-keys";
+
+    private static EncoderCapabilities createCapabilities() {
+        List<EncoderCapabilities.Encoder> encoders = new ArrayList<>();
+        encoders.add(new EncoderCapabilities.Encoder("c2.android.avc.encoder", "video/avc", 16, new int[]{1, 0x200, 2, 0x100},
+                new int[]{0x7f420888, 0x7f000789}, 2, 2048, 2, 2048, 120));
+        encoders.add(new EncoderCapabilities.Encoder("c2.android.opus.encoder", "audio/opus", 16, new int[0], new int[0], 0, 0, 0, 0, 0));
+        encoders.add(new EncoderCapabilities.Encoder("OMX.hw.avc.encoder", "video/avc", 4, new int[0], new int[]{0x7f000789}, 64, 4096, 64,
+                2176, 60));
+        return new EncoderCapabilities(FINGERPRINT, encoders);
+    }
+
+    private static byte[] serialize(EncoderCapabilities capabilities) throws IOException {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        capabilities.write(new DataOutputStream(bos));
+        return bos.toByteArray();
+    }
+
+    private static EncoderCapabilities deserialize(byte[] data, String fingerprint) throws IOException {
+        return EncoderCapabilities.read(new DataInputStream(new ByteArrayInputStream(data)), fingerprint);
+    }
+
+    @Test
+    public void testRoundTrip() throws IOException {
+        EncoderCapabilities capabilities = deserialize(serialize(createCapabilities()), FINGERPRINT);
+        Assert.assertNotNull(capabilities);
+        Assert.assertEquals(FINGERPRINT, capabilities.getFingerprint());
+        Assert.assertEquals(3, capabilities.getEncoders().size());
+
+        EncoderCapabilities.Encoder avc = capabilities.getEncoders().get(0);
+        Assert.assertEquals("c2.android.avc.encoder", avc.getName());
+        Assert.assertEquals("video/avc", avc.getMimeType());
+        Assert.assertEquals(16, avc.getMaxInstances());
+        Assert.assertArrayEquals(new int[]{1, 0x200, 2, 0x100}, avc.getProfileLevels());
+        Assert.assertArrayEquals(new int[]{0x7f420888, 0x7f000789}, avc.getColorFormats());
+        Assert.assertEquals(2, avc.getMinWidth());
+        Assert.assertEquals(2048, avc.getMaxWidth());
+        Assert.assertEquals(2, avc.getMinHeight());
+        Assert.assertEquals(2048, avc.getMaxHeight());
+        Assert.assertEquals(120, avc.getMaxFrameRate());
+
+        EncoderCapabilities.Encoder opus = capabilities.getEncoders().get(1);
+        Assert.assertEquals("c2.android.opus.encoder", opus.getName());
+        Assert.assertEquals(0, opus.getProfileLevels().length);
+        Assert.assertEquals(0, opus.getMaxWidth());
+    }
+
+    @Test
+    public void testEncodersByMimeType() {
+        EncoderCapabilities capabilities = createCapabilities();
+        List<EncoderCapabilities.Encoder> encoders = capabilities.getEncoders("video/avc");
+        Assert.assertEquals(2, encoders.size());
+        // in the order of the codec list
+        Assert.assertEquals("c2.android.avc.encoder", encoders.get(0).getName());
+        Assert.assertEquals("OMX.hw.avc.encoder", encoders.get(1).getName());
+        Assert.assertTrue(capabilities.getEncoders("video/av01").isEmpty());
+    }
+
+    @Test
+    public void testOtherFingerprint() throws IOException {
+        // the cache is outdated after a system update
+        Assert.assertNull(deserialize(serialize(createCapabilities()), FINGERPRINT + "-update"));
+    }
+
+    @Test
+    public void testCompact() throws IOException {
+        byte[] data = serialize(createCapabilities());
+        Assert.assertTrue("Size: " + data.length, data.length < 300);
+    }
+
+    @Test(expected = IOException.class)
+    public void testInvalidHeader() throws IOException {
+        byte[] data = serialize(createCapabilities());
+        data[0] = 'x';
+        deserialize(data, FINGERPRINT);
+    }
+
+    @Test(expected = EOFException.class)
+    public void testTruncated() throws IOException {
+        byte[] data = serialize(createCapabilities());
+        deserialize(Arrays.copyOf(data, data.length - 1), FINGERPRINT);
+    }
+}
@@ -0,0 +1,80 @@
+package com.genymobile.scrcpy;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+public class EncoderSelectorTest {
+
+    private static final String FINGERPRINT = "vendor/device/device:13/TQ3A.230901.001/10750268:user/release-keys";
+
+    @Test
+    public void testPickHighestFps() {
+        List<EncoderBenchmark.Result> results = Arrays.asList(
+                new EncoderBenchmark.Result("c2.android.avc.encoder", 45f, 20_000),
+                new EncoderBenchmark.Result("c2.vendor.avc.encoder", 240f, 12_000),
+                new EncoderBenchmark.Result("c2.vendor.avc.encoder.low_latency", 120f, 6_000));
+
+        Assert.assertEquals("c2.vendor.avc.encoder", EncoderSelector.pickFastest(results).getEncoderName());
+    }
+
+    @Test
+    public void testPickLowestLatencyForEquivalentFps() {
+        // within 5%, the latency decides
+        List<EncoderBenchmark.Result> results = Arrays.asList(
+                new EncoderBenchmark.Result("a", 200f, 15_000),
+                new EncoderBenchmark.Result("b", 196f, 8_000),
+                new EncoderBenchmark.Result("c", 150f, 2_000));
+
+        Assert.assertEquals("b", EncoderSelector.pickFastest(results).getEncoderName());
+    }
+
+    @Test
+    public void testPickNone() {
+        Assert.assertNull(EncoderSelector.pickFastest(Collections.<EncoderBenchmark.Result>emptyList()));
+    }
+
+    @Test
+    public void testCacheRoundTrip() throws IOException {
+        List<EncoderSelector.Selection> selections = new ArrayList<>();
+        selections.add(new EncoderSelector.Selection("video/avc", 1080, 2400, new EncoderBenchmark.Result("c2.vendor.avc.encoder", 240.5f,
+                12_000)));
+        selections.add(new EncoderSelector.Selection("video/hevc", 720, 1600, new EncoderBenchmark.Result("c2.vendor.hevc.encoder", 90f,
+                30_000)));
+
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        EncoderSelector.write(new DataOutputStream(bos), FINGERPRINT, selections);
+        byte[] data = bos.toByteArray();
+
+        List<EncoderSelector.Selection> read = EncoderSelector.read(new DataInputStream(new ByteArrayInputStream(data)), FINGERPRINT);
+        Assert.assertNotNull(read);
+        Assert.assertEquals(2, read.size());
+
+        EncoderSelector.Selection selection = EncoderSelector.find(read, "video/hevc", new Size(720, 1600));
+        Assert.assertNotNull(selection);
+        Assert.assertEquals("c2.vendor.hevc.encoder", selection.getResult().getEncoderName());
+        Assert.assertEquals(90f, selection.getResult().getFps(), 0f);
+        Assert.assertEquals(30_000, selection.getResult().getLatencyUs());
+
+        // another resolution must be benchmarked
+        Assert.assertNull(EncoderSelector.find(read, "video/avc", new Size(720, 1600)));
+
+        // the cache is outdated after a system update
+        Assert.assertNull(EncoderSelector.read(new DataInputStream(new ByteArrayInputStream(data)), FINGERPRINT + "-update"));
+    }
+
+    @Test(expected = IOException.class)
+    public void testInvalidHeader() throws IOException {
+        byte[] data = {'n', 'o', 'p', 'e', 0, 1};
+        EncoderSelector.read(new DataInputStream(new ByteArrayInputStream(data)), FINGERPRINT);
+    }
+}
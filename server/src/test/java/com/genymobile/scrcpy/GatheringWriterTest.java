@@ -0,0 +1,63 @@
+package com.genymobile.scrcpy;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.FileDescriptor;
+import java.nio.ByteBuffer;
+
+public class GatheringWriterTest {
+
+    @Test
+    public void testPrepare() {
+        GatheringWriter writer = new GatheringWriter(new FileDescriptor());
+
+        byte[] array = new byte[20];
+        ByteBuffer header = ByteBuffer.wrap(array, 4, 12).slice();
+        header.position(2);
+        ByteBuffer payload = ByteBuffer.allocateDirect(100);
+        payload.position(10).limit(50);
+
+        Assert.assertEquals(50, writer.prepare(new ByteBuffer[]{header, payload}));
+        Assert.assertSame(array, writer.getIovBuffers()[0]);
+        Assert.assertSame(payload, writer.getIovBuffers()[1]);
+        Assert.assertArrayEquals(new int[]{6, 10}, writer.getIovOffsets());
+        Assert.assertArrayEquals(new int[]{10, 40}, writer.getIovByteCounts());
+    }
+
+    @Test
+    public void testPrepareReusesArrays() {
+        GatheringWriter writer = new GatheringWriter(new FileDescriptor());
+        ByteBuffer[] buffers = {ByteBuffer.allocate(12), ByteBuffer.allocate(100)};
+
+        writer.prepare(buffers);
+        Object[] iovBuffers = writer.getIovBuffers();
+        int[] iovOffsets = writer.getIovOffsets();
+        int[] iovByteCounts = writer.getIovByteCounts();
+
+        // partial write, the header is fully written
+        IO.consume(buffers, 20);
+        Assert.assertEquals(92, writer.prepare(buffers));
+        Assert.assertSame(iovBuffers, writer.getIovBuffers());
+        Assert.assertSame(iovOffsets, writer.getIovOffsets());
+        Assert.assertSame(iovByteCounts, writer.getIovByteCounts());
+        // the empty header is passed with a byte count of 0
+        Assert.assertArrayEquals(new int[]{12, 8}, writer.getIovOffsets());
+        Assert.assertArrayEquals(new int[]{0, 92}, writer.getIovByteCounts());
+
+        // next packet, same number of buffers
+        buffers[0].clear();
+        buffers[1] = ByteBuffer.allocate(30);
+        Assert.assertEquals(42, writer.prepare(buffers));
+        Assert.assertSame(iovBuffers, writer.getIovBuffers());
+        Assert.assertArrayEquals(new int[]{12, 30}, writer.getIovByteCounts());
+    }
+
+    @Test
+    public void testPrepareNothingRemaining() {
+        GatheringWriter writer = new GatheringWriter(new FileDescriptor());
+        ByteBuffer[] buffers = {ByteBuffer.allocate(12), ByteBuffer.allocate(0)};
+        IO.consume(buffers, 12);
+        Assert.assertEquals(0, writer.prepare(buffers));
+    }
+}
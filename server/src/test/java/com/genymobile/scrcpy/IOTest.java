@@ -0,0 +1,65 @@
+package com.genymobile.scrcpy;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+
+public class IOTest {
+
+    private static ByteBuffer[] createBuffers() {
+        ByteBuffer header = ByteBuffer.allocate(12);
+        ByteBuffer payload = ByteBuffer.allocateDirect(100);
+        payload.limit(50);
+        return new ByteBuffer[]{header, payload};
+    }
+
+    @Test
+    public void testConsumeFullWrite() {
+        ByteBuffer[] buffers = createBuffers();
+        IO.consume(buffers, 62);
+
+        Assert.assertFalse(buffers[0].hasRemaining());
+        Assert.assertFalse(buffers[1].hasRemaining());
+    }
+
+    @Test
+    public void testConsumePartialHeader() {
+        ByteBuffer[] buffers = createBuffers();
+        IO.consume(buffers, 5);
+
+        Assert.assertEquals(5, buffers[0].position());
+        Assert.assertEquals(7, buffers[0].remaining());
+        Assert.assertEquals(0, buffers[1].position());
+        Assert.assertEquals(50, buffers[1].remaining());
+    }
+
+    @Test
+    public void testConsumePartialPayload() {
+        ByteBuffer[] buffers = createBuffers();
+        IO.consume(buffers, 20);
+
+        Assert.assertFalse(buffers[0].hasRemaining());
+        Assert.assertEquals(8, buffers[1].position());
+        Assert.assertEquals(42, buffers[1].remaining());
+
+        IO.consume(buffers, 42);
+        Assert.assertFalse(buffers[1].hasRemaining());
+    }
+
+    @Test
+    public void testConsumeSkipsEmptyBuffers() {
+        ByteBuffer empty = ByteBuffer.allocate(0);
+        ByteBuffer data = ByteBuffer.allocate(10);
+        ByteBuffer[] buffers = {empty, data};
+        IO.consume(buffers, 4);
+
+        Assert.assertEquals(4, data.position());
+    }
+
+    @Test(expected = AssertionError.class)
+    public void testConsumeTooMany() {
+        ByteBuffer[] buffers = createBuffers();
+        IO.consume(buffers, 63);
+    }
+}
@@ -0,0 +1,67 @@
+package com.genymobile.scrcpy;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class KeyStrokeCacheTest {
+
+    private static final class CountingLoader implements KeyStrokeCache.Loader {
+        private int count;
+
+        @Override
+        public int[] load(char c) {
+            ++count;
+            if (c == '\u2603') {
+                // cannot be typed
+                return null;
+            }
+            return new int[]{0, c, 0, 1, c, 0};
+        }
+    }
+
+    @Test
+    public void testLoadOnce() {
+        CountingLoader loader = new CountingLoader();
+        KeyStrokeCache cache = new KeyStrokeCache(loader);
+
+        int[] strokes = cache.get('a');
+        Assert.assertArrayEquals(new int[]{0, 'a', 0, 1, 'a', 0}, strokes);
+        Assert.assertSame(strokes, cache.get('a'));
+        Assert.assertEquals(1, loader.count);
+
+        cache.get('b');
+        cache.get('b');
+        Assert.assertEquals(2, loader.count);
+    }
+
+    @Test
+    public void testUntypableCached() {
+        CountingLoader loader = new CountingLoader();
+        KeyStrokeCache cache = new KeyStrokeCache(loader);
+
+        Assert.assertNull(cache.get('\u2603'));
+        Assert.assertNull(cache.get('\u2603'));
+        Assert.assertEquals(1, loader.count);
+    }
+
+    @Test
+    public void testAllPages() {
+        CountingLoader loader = new CountingLoader();
+        KeyStrokeCache cache = new KeyStrokeCache(loader);
+
+        char[] chars = {'\u0000', '\u00ff', '\u0100', '\u00e9', '\ufeff', '\uffff'};
+        for (char c : chars) {
+            Assert.assertEquals(c, cache.get(c)[1]);
+        }
+        for (char c : chars) {
+            Assert.assertEquals(c, cache.get(c)[1]);
+        }
+        Assert.assertEquals(chars.length, loader.count);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidStrokes() {
+        KeyStrokeCache cache = new KeyStrokeCache(c -> new int[]{0, c});
+        cache.get('a');
+    }
+}
@@ -0,0 +1,86 @@
+package com.genymobile.scrcpy;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class MediaClockTest {
+
+    private static final class FakeClock implements MediaClock.Clock {
+        private long nowNs;
+
+        @Override
+        public long nanoTime() {
+            return nowNs;
+        }
+
+        void setUs(long us) {
+            nowNs = us * 1000;
+        }
+    }
+
+    @Test
+    public void testNow() {
+        FakeClock clock = new FakeClock();
+        MediaClock mediaClock = new MediaClock(clock);
+        clock.setUs(123_456);
+        Assert.assertEquals(123_456, mediaClock.nowUs());
+    }
+
+    @Test
+    public void testDriftAndJitter() {
+        FakeClock clock = new FakeClock();
+        MediaClock mediaClock = new MediaClock(clock);
+
+        // over 1 second: video packets written 40ms to 60ms after their PTS, audio packets 10ms to 15ms after their PTS
+        for (int i = 0; i <= 50; ++i) {
+            long now = 1_000_000 + i * 20_000;
+            clock.setUs(now);
+            mediaClock.onPacket(MediaClock.STREAM_VIDEO, now - (i % 2 == 0 ? 40_000 : 60_000));
+            mediaClock.onPacket(MediaClock.STREAM_AUDIO, now - (i % 2 == 0 ? 10_000 : 15_000));
+        }
+
+        Assert.assertTrue(mediaClock.isDriftAvailable());
+        Assert.assertEquals(30_000, mediaClock.getDriftUs());
+        Assert.assertEquals(20_000, mediaClock.getJitterUs(MediaClock.STREAM_VIDEO));
+        Assert.assertEquals(5_000, mediaClock.getJitterUs(MediaClock.STREAM_AUDIO));
+    }
+
+    @Test
+    public void testNoDriftWithoutBothStreams() {
+        FakeClock clock = new FakeClock();
+        MediaClock mediaClock = new MediaClock(clock);
+
+        for (int i = 0; i <= 100; ++i) {
+            long now = i * 20_000;
+            clock.setUs(now);
+            mediaClock.onPacket(MediaClock.STREAM_VIDEO, now - 30_000);
+        }
+
+        Assert.assertFalse(mediaClock.isDriftAvailable());
+        Assert.assertEquals(0, mediaClock.getJitterUs(MediaClock.STREAM_VIDEO));
+    }
+
+    @Test
+    public void testDriftPerWindow() {
+        FakeClock clock = new FakeClock();
+        MediaClock mediaClock = new MediaClock(clock);
+
+        // first window: audio late
+        for (int i = 0; i <= 10; ++i) {
+            long now = i * 100_000;
+            clock.setUs(now);
+            mediaClock.onPacket(MediaClock.STREAM_VIDEO, now - 20_000);
+            mediaClock.onPacket(MediaClock.STREAM_AUDIO, now - 50_000);
+        }
+        Assert.assertEquals(-30_000, mediaClock.getDriftUs());
+
+        // second window: in sync, the previous window does not leak
+        for (int i = 11; i <= 20; ++i) {
+            long now = i * 100_000;
+            clock.setUs(now);
+            mediaClock.onPacket(MediaClock.STREAM_VIDEO, now - 20_000);
+            mediaClock.onPacket(MediaClock.STREAM_AUDIO, now - 20_000);
+        }
+        Assert.assertEquals(0, mediaClock.getDriftUs());
+    }
+}
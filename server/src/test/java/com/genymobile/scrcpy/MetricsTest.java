@@ -0,0 +1,96 @@
+package com.genymobile.scrcpy;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class MetricsTest {
+
+    @Test
+    public void testRegisterOnce() {
+        Metrics.Counter counter = Metrics.counter("test.register");
+        Assert.assertSame(counter, Metrics.counter("test.register"));
+
+        Metrics.Histogram histogram = Metrics.histogram("test.register_us");
+        Assert.assertSame(histogram, Metrics.histogram("test.register_us"));
+    }
+
+    @Test
+    public void testCounter() {
+        Metrics.Counter counter = Metrics.counter("test.counter");
+        counter.increment();
+        counter.add(41);
+        Assert.assertEquals(42, counter.get());
+    }
+
+    @Test
+    public void testGauge() {
+        Metrics.Gauge gauge = Metrics.gauge("test.gauge");
+        gauge.set(3);
+        gauge.set(12);
+        gauge.set(5);
+        Assert.assertEquals(5, gauge.get());
+        Assert.assertEquals(12, gauge.resetPeak());
+        // the peak restarts from the current value
+        Assert.assertEquals(5, gauge.resetPeak());
+    }
+
+    @Test
+    public void testFindBucket() {
+        Assert.assertEquals(0, Metrics.Histogram.findBucket(0));
+        Assert.assertEquals(0, Metrics.Histogram.findBucket(100));
+        Assert.assertEquals(1, Metrics.Histogram.findBucket(101));
+        Assert.assertEquals(3, Metrics.Histogram.findBucket(1_000));
+        int last = Metrics.Histogram.BOUNDS.length;
+        Assert.assertEquals(last - 1, Metrics.Histogram.findBucket(1_000_000));
+        Assert.assertEquals(last, Metrics.Histogram.findBucket(1_000_001));
+    }
+
+    @Test
+    public void testHistogramSnapshot() {
+        Metrics.Histogram histogram = Metrics.histogram("test.snapshot_us");
+        for (int i = 0; i < 90; ++i) {
+            histogram.record(150); // bucket <= 200
+        }
+        for (int i = 0; i < 9; ++i) {
+            histogram.record(4_000); // bucket <= 5000
+        }
+        histogram.record(3_000_000); // overflow
+        histogram.record(-1); // ignored
+
+        Metrics.Snapshot snapshot = histogram.snapshot();
+        Assert.assertEquals(100, snapshot.getCount());
+        Assert.assertEquals(3_000_000, snapshot.getMax());
+        Assert.assertEquals((90 * 150 + 9 * 4_000 + 3_000_000) / 100, snapshot.getMean());
+        Assert.assertEquals(200, snapshot.getPercentile(50));
+        Assert.assertEquals(200, snapshot.getPercentile(90));
+        Assert.assertEquals(5_000, snapshot.getPercentile(99));
+        Assert.assertEquals(3_000_000, snapshot.getPercentile(100));
+
+        // the snapshot resets the histogram
+        Metrics.Snapshot empty = histogram.snapshot();
+        Assert.assertEquals(0, empty.getCount());
+        Assert.assertEquals(0, empty.getPercentile(50));
+    }
+
+    @Test
+    public void testPercentileBoundedByMax() {
+        Metrics.Histogram histogram = Metrics.histogram("test.max_us");
+        histogram.record(600);
+
+        // the bucket upper bound (1000) is above the max
+        Assert.assertEquals(600, histogram.snapshot().getPercentile(50));
+    }
+
+    @Test
+    public void testDump() {
+        Metrics.counter("test.dump").add(7);
+        Metrics.histogram("test.dump_us").record(10);
+
+        Metrics.gauge("test.dump_depth").set(4);
+
+        String dump = Metrics.dump();
+        Assert.assertTrue(dump.contains("test.dump: 7"));
+        Assert.assertTrue(dump.contains("test.dump_us: n=1 mean=10"));
+        Assert.assertTrue(dump.contains("test.dump_depth: 4 (peak 4)"));
+    }
+}
@@ -0,0 +1,162 @@
+package com.genymobile.scrcpy;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+public class PendingVideoSettingsTest {
+
+    private static final class Request implements EncoderControl.VideoSettingsCallback {
+        private final List<EncoderControl.VideoSettingsResult> results = new ArrayList<>();
+
+        @Override
+        public synchronized void onResult(EncoderControl.VideoSettingsResult result) {
+            results.add(result);
+        }
+
+        synchronized List<EncoderControl.VideoSettingsResult> getResults() {
+            return new ArrayList<>(results);
+        }
+
+        synchronized EncoderControl.VideoSettingsResult getResult() {
+            Assert.assertEquals("Each request must be completed exactly once", 1, results.size());
+            return results.get(0);
+        }
+    }
+
+    // as done by ScreenEncoder.setVideoSettings()
+    private static void submit(PendingVideoSettings pending, Request request) {
+        if (!pending.add(request)) {
+            request.onResult(EncoderControl.VideoSettingsResult.DROPPED);
+        }
+    }
+
+    @Test
+    public void testRestarted() {
+        PendingVideoSettings pending = new PendingVideoSettings();
+        Assert.assertNull(pending.take());
+
+        Request request = new Request();
+        submit(pending, request);
+        List<EncoderControl.VideoSettingsCallback> taken = pending.take();
+        Assert.assertEquals(1, taken.size());
+        Assert.assertTrue(request.getResults().isEmpty());
+
+        PendingVideoSettings.complete(taken, EncoderControl.VideoSettingsResult.RESTARTED);
+        pending.end();
+        Assert.assertEquals(EncoderControl.VideoSettingsResult.RESTARTED, request.getResult());
+    }
+
+    @Test
+    public void testDroppedOnEnd() {
+        PendingVideoSettings pending = new PendingVideoSettings();
+        Request request1 = new Request();
+        Request request2 = new Request();
+        submit(pending, request1);
+        submit(pending, request2);
+
+        pending.end();
+        Assert.assertEquals(EncoderControl.VideoSettingsResult.DROPPED, request1.getResult());
+        Assert.assertEquals(EncoderControl.VideoSettingsResult.DROPPED, request2.getResult());
+        Assert.assertNull(pending.take());
+    }
+
+    @Test
+    public void testRejectedAfterEnd() {
+        PendingVideoSettings pending = new PendingVideoSettings();
+        pending.end();
+
+        Request request = new Request();
+        Assert.assertFalse(pending.add(request));
+        Assert.assertTrue(request.getResults().isEmpty());
+        Assert.assertNull(pending.take());
+    }
+
+    @Test
+    public void testRequeue() {
+        PendingVideoSettings pending = new PendingVideoSettings();
+        Request request1 = new Request();
+        Request request2 = new Request();
+        submit(pending, request1);
+        List<EncoderControl.VideoSettingsCallback> taken = pending.take();
+        submit(pending, request2);
+
+        // the encoder failed to start, the requests are completed by the retry, in order
+        pending.requeue(taken);
+        List<EncoderControl.VideoSettingsCallback> retried = pending.take();
+        Assert.assertEquals(2, retried.size());
+        Assert.assertSame(request1, retried.get(0));
+        Assert.assertSame(request2, retried.get(1));
+
+        // the retry failed too, and the stream has ended meanwhile
+        pending.end();
+        pending.requeue(retried);
+        Assert.assertEquals(EncoderControl.VideoSettingsResult.DROPPED, request1.getResult());
+        Assert.assertEquals(EncoderControl.VideoSettingsResult.DROPPED, request2.getResult());
+    }
+
+    @Test
+    public void testRaceWithEnd() throws InterruptedException {
+        final int threadCount = 4;
+        final int requestsPerThread = 2000;
+
+        for (int iteration = 0; iteration < 20; ++iteration) {
+            PendingVideoSettings pending = new PendingVideoSettings();
+            Request[][] requests = new Request[threadCount][requestsPerThread];
+            CountDownLatch start = new CountDownLatch(1);
+
+            List<Thread> threads = new ArrayList<>();
+            for (int t = 0; t < threadCount; ++t) {
+                Request[] threadRequests = requests[t];
+                threads.add(new Thread(() -> {
+                    awaitQuietly(start);
+                    for (int i = 0; i < threadRequests.length; ++i) {
+                        threadRequests[i] = new Request();
+                        submit(pending, threadRequests[i]);
+                    }
+                }));
+            }
+
+            // the encoder thread restarts a few times, then the stream ends while requests are still submitted
+            Thread encoder = new Thread(() -> {
+                awaitQuietly(start);
+                for (int i = 0; i < 50; ++i) {
+                    List<EncoderControl.VideoSettingsCallback> taken = pending.take();
+                    if (taken != null) {
+                        PendingVideoSettings.complete(taken, EncoderControl.VideoSettingsResult.RESTARTED);
+                    }
+                    Thread.yield();
+                }
+                pending.end();
+            });
+            threads.add(encoder);
+
+            for (Thread thread : threads) {
+                thread.start();
+            }
+            start.countDown();
+            for (Thread thread : threads) {
+                thread.join();
+            }
+
+            for (Request[] threadRequests : requests) {
+                for (Request request : threadRequests) {
+                    // every request, before or after the end, gets exactly one result
+                    EncoderControl.VideoSettingsResult result = request.getResult();
+                    Assert.assertNotEquals(EncoderControl.VideoSettingsResult.APPLIED, result);
+                }
+            }
+        }
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,186 @@
+package com.genymobile.scrcpy;
+
+import android.view.MotionEvent;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class PointersStateTest {
+
+    private static MotionEvent.PointerProperties[] createProps(int n) {
+        MotionEvent.PointerProperties[] props = new MotionEvent.PointerProperties[n];
+        for (int i = 0; i < n; ++i) {
+            props[i] = new MotionEvent.PointerProperties();
+        }
+        return props;
+    }
+
+    private static MotionEvent.PointerCoords[] createCoords(int n) {
+        MotionEvent.PointerCoords[] coords = new MotionEvent.PointerCoords[n];
+        for (int i = 0; i < n; ++i) {
+            coords[i] = new MotionEvent.PointerCoords();
+        }
+        return coords;
+    }
+
+    @Test
+    public void testGetPointerIndex() {
+        PointersState state = new PointersState();
+        Assert.assertEquals(0, state.getPointerIndex(42));
+        Assert.assertEquals(1, state.getPointerIndex(-1));
+        Assert.assertEquals(0, state.getPointerIndex(42));
+        Assert.assertEquals(1, state.getPointerIndex(-1));
+        Assert.assertEquals(2, state.getCount());
+
+        Assert.assertEquals(42, state.getId(0));
+        Assert.assertEquals(0, state.getLocalId(0));
+        Assert.assertEquals(-1, state.getId(1));
+        Assert.assertEquals(1, state.getLocalId(1));
+    }
+
+    @Test
+    public void testFull() {
+        PointersState state = new PointersState(3);
+        Assert.assertEquals(0, state.getPointerIndex(10));
+        Assert.assertEquals(1, state.getPointerIndex(11));
+        Assert.assertEquals(2, state.getPointerIndex(12));
+        Assert.assertEquals(-1, state.getPointerIndex(13));
+        // existing pointers are still found
+        Assert.assertEquals(2, state.getPointerIndex(12));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testTooManyPointers() {
+        new PointersState(PointersState.MAX_POINTERS_LIMIT + 1);
+    }
+
+    @Test
+    public void testMaxPointersLimit() {
+        PointersState state = new PointersState(PointersState.MAX_POINTERS_LIMIT);
+        for (int i = 0; i < PointersState.MAX_POINTERS_LIMIT; ++i) {
+            Assert.assertEquals(i, state.getPointerIndex(100 + i));
+            Assert.assertEquals(i, state.getLocalId(i));
+        }
+        Assert.assertEquals(-1, state.getPointerIndex(0));
+    }
+
+    @Test
+    public void testUpdate() {
+        PointersState state = new PointersState();
+        MotionEvent.PointerProperties[] props = createProps(state.getMaxPointers());
+        MotionEvent.PointerCoords[] coords = createCoords(state.getMaxPointers());
+
+        int index = state.getPointerIndex(42);
+        state.setPoint(index, 100, 200);
+        state.setPressure(index, 0.5f);
+        index = state.getPointerIndex(43);
+        state.setPoint(index, 300, 400);
+        state.setPressure(index, 1f);
+
+        Assert.assertEquals(2, state.update(props, coords));
+        Assert.assertEquals(0, props[0].id);
+        Assert.assertEquals(100, coords[0].x, 0);
+        Assert.assertEquals(200, coords[0].y, 0);
+        Assert.assertEquals(0.5f, coords[0].pressure, 0);
+        Assert.assertEquals(1, props[1].id);
+        Assert.assertEquals(300, coords[1].x, 0);
+        Assert.assertEquals(400, coords[1].y, 0);
+        Assert.assertEquals(1f, coords[1].pressure, 0);
+    }
+
+    @Test
+    public void testUpPointersRemovedAfterUpdate() {
+        PointersState state = new PointersState();
+        MotionEvent.PointerProperties[] props = createProps(state.getMaxPointers());
+        MotionEvent.PointerCoords[] coords = createCoords(state.getMaxPointers());
+
+        state.getPointerIndex(10);
+        state.getPointerIndex(11);
+        int index = state.getPointerIndex(12);
+        state.setPoint(index, 5, 6);
+
+        // release the middle pointer
+        index = state.getPointerIndex(11);
+        state.setUp(index, true);
+
+        // the UP pointer is still part of this event
+        Assert.assertEquals(3, state.update(props, coords));
+        Assert.assertEquals(1, props[1].id);
+
+        // then it is removed, the order of the others is kept
+        Assert.assertEquals(2, state.getCount());
+        Assert.assertEquals(10, state.getId(0));
+        Assert.assertEquals(12, state.getId(1));
+        Assert.assertEquals(2, state.getLocalId(1));
+        Assert.assertEquals(5, state.getX(1));
+        Assert.assertEquals(6, state.getY(1));
+        Assert.assertFalse(state.isUp(1));
+
+        // the lowest local id is reused, the new pointer gets the last index
+        index = state.getPointerIndex(13);
+        Assert.assertEquals(2, index);
+        Assert.assertEquals(1, state.getLocalId(index));
+        Assert.assertEquals(0, state.getX(index));
+        Assert.assertFalse(state.isUp(index));
+
+        Assert.assertEquals(3, state.update(props, coords));
+        Assert.assertEquals(0, props[0].id);
+        Assert.assertEquals(2, props[1].id);
+        Assert.assertEquals(1, props[2].id);
+    }
+
+    @Test
+    public void testAllUp() {
+        PointersState state = new PointersState(2);
+        MotionEvent.PointerProperties[] props = createProps(2);
+        MotionEvent.PointerCoords[] coords = createCoords(2);
+
+        for (int round = 0; round < 3; ++round) {
+            int a = state.getPointerIndex(round * 2);
+            int b = state.getPointerIndex(round * 2 + 1);
+            Assert.assertEquals(0, state.getLocalId(a));
+            Assert.assertEquals(1, state.getLocalId(b));
+            state.setUp(a, true);
+            state.setUp(b, true);
+            Assert.assertEquals(2, state.update(props, coords));
+            Assert.assertEquals(0, state.getCount());
+        }
+    }
+
+    @Test
+    public void testLookupAfterCompaction() {
+        PointersState state = new PointersState(PointersState.MAX_POINTERS_LIMIT);
+        MotionEvent.PointerProperties[] props = createProps(PointersState.MAX_POINTERS_LIMIT);
+        MotionEvent.PointerCoords[] coords = createCoords(PointersState.MAX_POINTERS_LIMIT);
+
+        // ids sharing their low bits, plus the special negative ids
+        long[] ids = new long[PointersState.MAX_POINTERS_LIMIT];
+        for (int i = 0; i < ids.length - 2; ++i) {
+            ids[i] = (long) i << 32;
+        }
+        ids[ids.length - 2] = -1;
+        ids[ids.length - 1] = -3;
+        for (int i = 0; i < ids.length; ++i) {
+            Assert.assertEquals(i, state.getPointerIndex(ids[i]));
+        }
+
+        // release every other pointer
+        for (int i = 0; i < ids.length; i += 2) {
+            state.setUp(state.getPointerIndex(ids[i]), true);
+        }
+        state.update(props, coords);
+        Assert.assertEquals(ids.length / 2, state.getCount());
+
+        // the remaining pointers are found at their new index, the released ones are new pointers
+        for (int i = 1; i < ids.length; i += 2) {
+            int index = state.getPointerIndex(ids[i]);
+            Assert.assertEquals(i / 2, index);
+            Assert.assertEquals(ids[i], state.getId(index));
+        }
+        Assert.assertEquals(ids.length / 2, state.getCount());
+        Assert.assertEquals(ids.length / 2, state.getPointerIndex(ids[0]));
+        Assert.assertEquals(ids[0], state.getId(ids.length / 2));
+        // and found again
+        Assert.assertEquals(ids.length / 2, state.getPointerIndex(ids[0]));
+    }
+}
@@ -0,0 +1,23 @@
+package com.genymobile.scrcpy;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ProcStatsTest {
+
+    @Test
+    public void testParseContextSwitches() {
+        String status = "Name:\taudio-encoder\n"
+                + "State:\tS (sleeping)\n"
+                + "Tgid:\t12345\n"
+                + "Cpus_allowed_list:\t0-7\n"
+                + "voluntary_ctxt_switches:\t1200\n"
+                + "nonvoluntary_ctxt_switches:\t34\n";
+        Assert.assertEquals(1234, ProcStats.parseContextSwitches(status));
+    }
+
+    @Test
+    public void testParseContextSwitchesMissing() {
+        Assert.assertEquals(0, ProcStats.parseContextSwitches("Name:\tmain\n"));
+    }
+}
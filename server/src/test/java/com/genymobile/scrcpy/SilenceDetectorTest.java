@@ -0,0 +1,89 @@
+package com.genymobile.scrcpy;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+public class SilenceDetectorTest {
+
+    private static ByteBuffer createPcm(int samples) {
+        return ByteBuffer.allocate(samples * 2).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    @Test
+    public void testDigitalSilence() {
+        ByteBuffer buffer = createPcm(960);
+        Assert.assertTrue(SilenceDetector.isSilent(buffer, 0));
+    }
+
+    @Test
+    public void testDigitalSilenceDetectsAnyNonZeroByte() {
+        // including in the trailing bytes, not aligned on 8 bytes
+        ByteBuffer buffer = createPcm(963);
+        for (int i = 0; i < buffer.capacity(); ++i) {
+            buffer.put(i, (byte) 1);
+            Assert.assertFalse("byte " + i, SilenceDetector.isSilent(buffer, 0));
+            buffer.put(i, (byte) 0);
+        }
+        Assert.assertTrue(SilenceDetector.isSilent(buffer, 0));
+    }
+
+    @Test
+    public void testOnlyRemainingBytes() {
+        ByteBuffer buffer = createPcm(100);
+        buffer.putShort(0, (short) 1000);
+        buffer.putShort(198, (short) 1000);
+        buffer.position(2);
+        buffer.limit(198);
+        Assert.assertTrue(SilenceDetector.isSilent(buffer, 0));
+        Assert.assertEquals(2, buffer.position());
+        Assert.assertEquals(198, buffer.limit());
+    }
+
+    @Test
+    public void testThreshold() {
+        ByteBuffer buffer = createPcm(960);
+        buffer.putShort(500, (short) 10);
+        buffer.putShort(700, (short) -10);
+        Assert.assertFalse(SilenceDetector.isSilent(buffer, 0));
+        Assert.assertFalse(SilenceDetector.isSilent(buffer, 9));
+        Assert.assertTrue(SilenceDetector.isSilent(buffer, 10));
+    }
+
+    @Test
+    public void testThresholdNegativeSample() {
+        ByteBuffer buffer = createPcm(960);
+        buffer.putShort(1918, (short) -11);
+        Assert.assertFalse(SilenceDetector.isSilent(buffer, 10));
+        Assert.assertTrue(SilenceDetector.isSilent(buffer, 11));
+    }
+
+    @Test
+    public void testThresholdExtremeSamples() {
+        ByteBuffer buffer = createPcm(4);
+        buffer.putShort(0, Short.MIN_VALUE);
+        buffer.putShort(2, Short.MAX_VALUE);
+        Assert.assertFalse(SilenceDetector.isSilent(buffer, Short.MAX_VALUE - 1));
+        // -32768 is out of [-32767, 32767]
+        Assert.assertFalse(SilenceDetector.isSilent(buffer, Short.MAX_VALUE));
+
+        buffer.putShort(0, (short) -Short.MAX_VALUE);
+        Assert.assertTrue(SilenceDetector.isSilent(buffer, Short.MAX_VALUE));
+    }
+
+    @Test
+    public void testThresholdIsLittleEndian() {
+        ByteBuffer buffer = createPcm(2);
+        // sample 0x0100 (256) in little-endian
+        buffer.put(1, (byte) 1);
+        Assert.assertFalse(SilenceDetector.isSilent(buffer, 255));
+        Assert.assertTrue(SilenceDetector.isSilent(buffer, 256));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testThresholdRequiresLittleEndian() {
+        SilenceDetector.isSilent(ByteBuffer.allocate(16), 10);
+    }
+}
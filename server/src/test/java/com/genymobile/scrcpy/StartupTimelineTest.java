@@ -0,0 +1,78 @@
+package com.genymobile.scrcpy;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class StartupTimelineTest {
+
+    private static final class FakeClock implements MediaClock.Clock {
+        private long timeNs = 1_000_000_000;
+
+        @Override
+        public long nanoTime() {
+            return timeNs;
+        }
+
+        void advanceMs(long ms) {
+            timeNs += ms * 1_000_000;
+        }
+    }
+
+    @Test
+    public void testFormat() {
+        FakeClock clock = new FakeClock();
+        StartupTimeline timeline = new StartupTimeline(clock);
+
+        timeline.markAt("process", clock.nanoTime() - 250_500_000);
+        clock.advanceMs(2);
+        timeline.mark("options");
+        clock.advanceMs(30);
+        timeline.mark("device");
+
+        Assert.assertEquals("process -250.5ms, options +2.0ms, device +32.0ms", timeline.format());
+    }
+
+    @Test
+    public void testOnlyFirstMarkKept() {
+        FakeClock clock = new FakeClock();
+        StartupTimeline timeline = new StartupTimeline(clock);
+
+        clock.advanceMs(10);
+        timeline.mark("egl ready");
+        clock.advanceMs(10);
+        timeline.mark("egl ready");
+
+        Assert.assertEquals("egl ready +10.0ms", timeline.format());
+    }
+
+    @Test
+    public void testCompleteWhenAllStreamsStarted() {
+        FakeClock clock = new FakeClock();
+        StartupTimeline timeline = new StartupTimeline(clock);
+
+        Assert.assertFalse(timeline.expectStreams(2));
+        clock.advanceMs(100);
+        Assert.assertFalse(timeline.markStreamStarted("audio first packet"));
+        // a second mark of the same stream does not count
+        Assert.assertFalse(timeline.markStreamStarted("audio first packet"));
+        clock.advanceMs(50);
+        Assert.assertTrue(timeline.markStreamStarted("video first packet"));
+
+        Assert.assertEquals("audio first packet +100.0ms, video first packet +150.0ms", timeline.format());
+    }
+
+    @Test
+    public void testStreamsStartedBeforeExpected() {
+        StartupTimeline timeline = new StartupTimeline(new FakeClock());
+
+        // the streams are started before the expected count is known
+        Assert.assertFalse(timeline.markStreamStarted("video first packet"));
+        Assert.assertTrue(timeline.expectStreams(1));
+    }
+
+    @Test
+    public void testNoStream() {
+        StartupTimeline timeline = new StartupTimeline(new FakeClock());
+        Assert.assertTrue(timeline.expectStreams(0));
+    }
+}
@@ -0,0 +1,107 @@
+package com.genymobile.scrcpy.glec;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class FrameSchedulerTest {
+
+    private static final long START = 123_456_789_000L;
+
+    @Test
+    public void testDeadlinesDoNotDrift() {
+        FrameScheduler scheduler = new FrameScheduler(60);
+        scheduler.start(START);
+
+        // 1000 / 60 is not an integer, the deadlines must not accumulate the truncation error
+        Assert.assertEquals(START + 1_000_000_000L, scheduler.getDeadline(60));
+        Assert.assertEquals(START + 10_000_000_000L, scheduler.getDeadline(600));
+
+        FrameScheduler scheduler30 = new FrameScheduler(30);
+        scheduler30.start(START);
+        Assert.assertEquals(START + 1_000_000_000L, scheduler30.getDeadline(30));
+    }
+
+    @Test
+    public void testTickOnTime() {
+        FrameScheduler scheduler = new FrameScheduler(60);
+        scheduler.start(START);
+
+        for (int i = 0; i < 600; ++i) {
+            long deadline = scheduler.getNextDeadline();
+            // simulate a wake-up slightly after the deadline, with a drawing time
+            long pts = scheduler.tick(deadline + 300_000);
+            Assert.assertEquals(deadline - START, pts);
+        }
+
+        Assert.assertEquals(600, scheduler.getRenderedFrames());
+        Assert.assertEquals(0, scheduler.getLateFrames());
+        Assert.assertEquals(0, scheduler.getSkippedSlots());
+        // 599 intervals of 1/60 s between the first and the last frame
+        Assert.assertEquals(60f, scheduler.getAchievedFps(), 0.01f);
+    }
+
+    @Test
+    public void testTickTooEarly() {
+        FrameScheduler scheduler = new FrameScheduler(30);
+        scheduler.start(START);
+
+        Assert.assertEquals(0, scheduler.tick(START));
+        // the next slot is due at START + 33.33ms
+        Assert.assertEquals(FrameScheduler.NO_FRAME, scheduler.tick(START + 33_000_000));
+        Assert.assertEquals(1, scheduler.getRenderedFrames());
+
+        Assert.assertEquals(33_333_333, scheduler.tick(START + 33_400_000));
+        Assert.assertEquals(2, scheduler.getRenderedFrames());
+    }
+
+    @Test
+    public void testSkipMissedSlots() {
+        FrameScheduler scheduler = new FrameScheduler(50); // 20ms period
+        scheduler.start(START);
+
+        Assert.assertEquals(0, scheduler.tick(START));
+        // the render thread was stalled for 75ms: slots 1 and 2 are missed, slot 3 is rendered
+        long pts = scheduler.tick(START + 75_000_000);
+        Assert.assertEquals(60_000_000, pts);
+        Assert.assertEquals(2, scheduler.getSkippedSlots());
+        Assert.assertEquals(1, scheduler.getLateFrames());
+        Assert.assertEquals(START + 80_000_000, scheduler.getNextDeadline());
+
+        // back on schedule
+        Assert.assertEquals(80_000_000, scheduler.tick(START + 80_500_000));
+        Assert.assertEquals(2, scheduler.getSkippedSlots());
+        Assert.assertEquals(1, scheduler.getLateFrames());
+        Assert.assertEquals(3, scheduler.getRenderedFrames());
+        Assert.assertEquals(40, scheduler.getSkippedPercent());
+    }
+
+    @Test
+    public void testLateWithoutSkip() {
+        FrameScheduler scheduler = new FrameScheduler(50); // 20ms period
+        scheduler.start(START);
+
+        scheduler.tick(START);
+        // 15ms late for slot 1, but slot 2 is not due yet
+        Assert.assertEquals(20_000_000, scheduler.tick(START + 35_000_000));
+        Assert.assertEquals(1, scheduler.getLateFrames());
+        Assert.assertEquals(0, scheduler.getSkippedSlots());
+    }
+
+    @Test
+    public void testRestart() {
+        FrameScheduler scheduler = new FrameScheduler(50);
+        scheduler.start(START);
+        scheduler.tick(START);
+        scheduler.tick(START + 100_000_000);
+
+        scheduler.start(START + 200_000_000);
+        Assert.assertEquals(0, scheduler.getRenderedFrames());
+        Assert.assertEquals(0, scheduler.getSkippedSlots());
+        Assert.assertEquals(0, scheduler.tick(START + 200_000_000));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidFps() {
+        new FrameScheduler(0);
+    }
+}
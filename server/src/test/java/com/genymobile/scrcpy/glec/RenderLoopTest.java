@@ -0,0 +1,326 @@
+package com.genymobile.scrcpy.glec;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class RenderLoopTest {
+
+    private static final int FPS = 1000;
+    private static final long PERIOD_NS = 1_000_000;
+
+    /**
+     * Fake clock: every read advances the time by one frame period, so that a deadline is always reached without waiting.
+     */
+    private static final class FakeClock implements RenderLoop.Clock {
+        private final AtomicLong now = new AtomicLong();
+
+        @Override
+        public long nanoTime() {
+            return now.addAndGet(PERIOD_NS);
+        }
+
+        void advance(long durationNs) {
+            now.addAndGet(durationNs);
+        }
+    }
+
+    /**
+     * Fake GL backend: records the calls and the threads they are made from.
+     */
+    private static final class FakeRenderer implements RenderLoop.Renderer {
+        private final AtomicInteger inits = new AtomicInteger();
+        private final AtomicInteger releases = new AtomicInteger();
+        private final AtomicInteger newFrames = new AtomicInteger();
+        private final AtomicInteger latchedFrames = new AtomicInteger();
+        private final AtomicInteger repeatedFrames = new AtomicInteger();
+        private final AtomicInteger foreignCalls = new AtomicInteger();
+        private final AtomicLong firstPtsNs = new AtomicLong(-1);
+        private volatile Thread owner;
+        private volatile boolean initialized;
+
+        void init() {
+            owner = Thread.currentThread();
+            initialized = true;
+            inits.incrementAndGet();
+        }
+
+        void release() {
+            check();
+            initialized = false;
+            releases.incrementAndGet();
+        }
+
+        private void check() {
+            if (Thread.currentThread() != owner) {
+                foreignCalls.incrementAndGet();
+            }
+        }
+
+        @Override
+        public void render(int newFrames, long ptsNs) {
+            check();
+            if (!initialized) {
+                throw new AssertionError("Render after release");
+            }
+            firstPtsNs.compareAndSet(-1, ptsNs);
+            if (newFrames > 0) {
+                this.newFrames.incrementAndGet();
+                latchedFrames.addAndGet(newFrames);
+            } else {
+                repeatedFrames.incrementAndGet();
+            }
+        }
+
+        @Override
+        public void onUnderrun() {
+            check();
+        }
+    }
+
+    private static RenderLoop createLoop(FakeRenderer renderer, IdleFrameMode idleFrameMode) {
+        return createLoop(renderer, idleFrameMode, new FakeClock());
+    }
+
+    private static RenderLoop createLoop(FakeRenderer renderer, IdleFrameMode idleFrameMode, FakeClock clock) {
+        return new RenderLoop(new FrameScheduler(FPS), idleFrameMode, renderer, clock);
+    }
+
+    private static void waitForIdleFrames(RenderLoop loop, long count) throws InterruptedException {
+        while (loop.getIdleFrames() < count) {
+            Thread.sleep(1);
+        }
+    }
+
+    @Test(timeout = 5000)
+    public void testRenderOnRenderThread() throws InterruptedException {
+        FakeRenderer renderer = new FakeRenderer();
+        RenderLoop loop = createLoop(renderer, IdleFrameMode.REPEAT);
+        loop.start();
+        loop.invoke(renderer::init);
+        Assert.assertNotSame(Thread.currentThread(), renderer.owner);
+
+        loop.setRunning(true);
+        loop.notifyFrameAvailable();
+        waitForIdleFrames(loop, 10);
+
+        loop.setRunning(false);
+        loop.post(renderer::release);
+        loop.quit();
+
+        Assert.assertFalse(loop.isAlive());
+        Assert.assertEquals(1, renderer.releases.get());
+        Assert.assertEquals(0, renderer.foreignCalls.get());
+        Assert.assertEquals(1, renderer.newFrames.get());
+        Assert.assertTrue(renderer.repeatedFrames.get() >= 10);
+    }
+
+    @Test(timeout = 5000)
+    public void testLatchBurstThenIdle() throws InterruptedException {
+        FakeRenderer renderer = new FakeRenderer();
+        RenderLoop loop = createLoop(renderer, IdleFrameMode.SKIP);
+        loop.start();
+        loop.invoke(renderer::init);
+        loop.setRunning(true);
+        loop.notifyFrameAvailable();
+        waitForIdleFrames(loop, 1);
+
+        // the display produces several frames between two ticks, then becomes idle
+        loop.invoke(() -> {
+            for (int i = 0; i < 5; ++i) {
+                loop.notifyFrameAvailable();
+            }
+        });
+        long idleFrames = loop.getIdleFrames();
+        waitForIdleFrames(loop, idleFrames + 10);
+
+        loop.setRunning(false);
+        loop.post(renderer::release);
+        loop.quit();
+
+        // all the queued buffers have been latched, so the last image is drawn
+        Assert.assertEquals(2, renderer.newFrames.get());
+        Assert.assertEquals(6, renderer.latchedFrames.get());
+    }
+
+    @Test(timeout = 5000)
+    public void testRestartOnStaticScreen() throws InterruptedException {
+        FakeRenderer renderer = new FakeRenderer();
+        RenderLoop loop = createLoop(renderer, IdleFrameMode.SKIP);
+        loop.start();
+        loop.invoke(renderer::init);
+        loop.setRunning(true);
+        loop.notifyFrameAvailable();
+        waitForIdleFrames(loop, 1);
+
+        // restart (for example on a settings change) while the display does not produce any new frame
+        loop.setRunning(false);
+        loop.setRunning(true);
+        while (renderer.repeatedFrames.get() == 0) {
+            Thread.sleep(1);
+        }
+
+        loop.setRunning(false);
+        loop.post(renderer::release);
+        loop.quit();
+
+        // the last latched image has been rendered again once (even in SKIP mode), so that the encoder produces a frame
+        Assert.assertEquals(1, renderer.newFrames.get());
+        Assert.assertEquals(1, renderer.repeatedFrames.get());
+    }
+
+    @Test(timeout = 5000)
+    public void testPtsOnClockTimeBase() throws InterruptedException {
+        FakeClock clock = new FakeClock();
+        FakeRenderer renderer = new FakeRenderer();
+        RenderLoop loop = createLoop(renderer, IdleFrameMode.REPEAT, clock);
+        loop.start();
+        loop.invoke(renderer::init);
+        loop.setRunning(true);
+
+        // the first frame is produced a long time after the capture started (static screen)
+        clock.advance(5_000_000_000L);
+        long frameTimeNs = clock.nanoTime();
+        loop.notifyFrameAvailable();
+        waitForIdleFrames(loop, 1);
+
+        loop.setRunning(false);
+        loop.post(renderer::release);
+        loop.quit();
+
+        // the PTS are on the clock time base, starting when the schedule actually starts (not when the capture started)
+        long firstPtsNs = renderer.firstPtsNs.get();
+        Assert.assertTrue(firstPtsNs > frameTimeNs);
+        Assert.assertTrue(firstPtsNs - frameTimeNs < 100 * PERIOD_NS);
+    }
+
+    @Test(timeout = 5000)
+    public void testNoRenderBeforeFirstFrame() throws InterruptedException {
+        FakeRenderer renderer = new FakeRenderer();
+        RenderLoop loop = createLoop(renderer, IdleFrameMode.REPEAT);
+        loop.start();
+        loop.invoke(renderer::init);
+        loop.setRunning(true);
+        Thread.sleep(20);
+        loop.post(renderer::release);
+        loop.quit();
+
+        Assert.assertEquals(0, renderer.newFrames.get());
+        Assert.assertEquals(0, renderer.repeatedFrames.get());
+        Assert.assertFalse(loop.getScheduler().isStarted());
+    }
+
+    @Test(timeout = 5000)
+    public void testSkipIdleFrames() throws InterruptedException {
+        FakeRenderer renderer = new FakeRenderer();
+        RenderLoop loop = createLoop(renderer, IdleFrameMode.SKIP);
+        loop.start();
+        loop.invoke(renderer::init);
+        loop.setRunning(true);
+        loop.notifyFrameAvailable();
+        waitForIdleFrames(loop, 10);
+        loop.setRunning(false);
+        loop.post(renderer::release);
+        loop.quit();
+
+        Assert.assertEquals(1, renderer.newFrames.get());
+        Assert.assertEquals(0, renderer.repeatedFrames.get());
+    }
+
+    @Test(timeout = 5000)
+    public void testInvokeRethrows() {
+        FakeRenderer renderer = new FakeRenderer();
+        RenderLoop loop = createLoop(renderer, IdleFrameMode.REPEAT);
+        loop.start();
+        try {
+            loop.invoke(() -> {
+                throw new IllegalStateException("eglSetup failed");
+            });
+            Assert.fail("The exception must be rethrown");
+        } catch (IllegalStateException e) {
+            Assert.assertEquals("eglSetup failed", e.getMessage());
+        } finally {
+            loop.quit();
+        }
+        Assert.assertFalse(loop.isAlive());
+    }
+
+    @Test(timeout = 5000)
+    public void testSetFps() {
+        FakeRenderer renderer = new FakeRenderer();
+        RenderLoop loop = createLoop(renderer, IdleFrameMode.REPEAT);
+        loop.start();
+        try {
+            loop.setRunning(true);
+            try {
+                loop.setFps(30);
+                Assert.fail("Changing the frame rate while running must fail");
+            } catch (IllegalStateException e) {
+                // expected
+            }
+
+            loop.setRunning(false);
+            loop.setFps(30);
+            Assert.assertEquals(30, loop.getScheduler().getFps());
+        } finally {
+            loop.quit();
+        }
+    }
+
+    @Test(timeout = 5000)
+    public void testPostAfterQuit() {
+        FakeRenderer renderer = new FakeRenderer();
+        RenderLoop loop = createLoop(renderer, IdleFrameMode.REPEAT);
+        loop.start();
+        loop.quit();
+        // quitting twice has no effect
+        loop.quit();
+
+        try {
+            loop.post(renderer::release);
+            Assert.fail("Posting after quit must fail");
+        } catch (IllegalStateException e) {
+            // expected
+        }
+        Assert.assertEquals(0, renderer.releases.get());
+    }
+
+    @Test(timeout = 60000)
+    public void testStartStopStress() throws InterruptedException {
+        final int cycles = 2000;
+        FakeRenderer renderer = new FakeRenderer();
+        for (int i = 0; i < cycles; ++i) {
+            RenderLoop loop = createLoop(renderer, i % 2 == 0 ? IdleFrameMode.REPEAT : IdleFrameMode.SKIP);
+            loop.start();
+            loop.invoke(renderer::init);
+            loop.setRunning(true);
+
+            // frames are notified concurrently, like the SurfaceTexture listener thread
+            Thread notifier = new Thread(() -> {
+                for (int j = 0; j < 10; ++j) {
+                    loop.notifyFrameAvailable();
+                    Thread.yield();
+                }
+            });
+            notifier.start();
+
+            if (i % 3 == 0) {
+                // stop only after some frames have been rendered
+                waitForIdleFrames(loop, 1);
+            }
+            loop.setRunning(false);
+            loop.post(renderer::release);
+            loop.quit();
+            notifier.join();
+
+            Assert.assertFalse(loop.isAlive());
+            Assert.assertEquals(i + 1, renderer.releases.get());
+        }
+
+        Assert.assertEquals(cycles, renderer.inits.get());
+        Assert.assertEquals(cycles, renderer.releases.get());
+        Assert.assertEquals(0, renderer.foreignCalls.get());
+    }
+}
@@ -0,0 +1,74 @@
+package com.genymobile.scrcpy.wrappers;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.lang.reflect.InvocationTargetException;
+
+public class MethodBindingTest {
+
+    // stand-in for a hidden API (a binder proxy class is not public either)
+    static final class Target {
+        private int lastMode = -1;
+        private int rotation = 3;
+
+        public boolean inject(Object event, int mode) {
+            lastMode = mode;
+            return event != null;
+        }
+
+        public int getRotation() {
+            return rotation;
+        }
+
+        public boolean isFrozen() {
+            return rotation != 0;
+        }
+
+        public void freeze(int value) {
+            rotation = value;
+        }
+
+        public void fail() {
+            throw new IllegalStateException("failure");
+        }
+    }
+
+    private static MethodBinding bind(String name, boolean useMethodHandle, Class<?>... parameterTypes) throws NoSuchMethodException {
+        return MethodBinding.bind(Target.class.getMethod(name, parameterTypes), useMethodHandle);
+    }
+
+    private static void testInvoke(boolean useMethodHandle) throws Exception {
+        Target target = new Target();
+
+        MethodBinding inject = bind("inject", useMethodHandle, Object.class, int.class);
+        Assert.assertTrue(inject.invokeBoolean(target, "event", 2));
+        Assert.assertEquals(2, target.lastMode);
+        Assert.assertFalse(inject.invokeBoolean(target, null, 1));
+
+        Assert.assertEquals(3, bind("getRotation", useMethodHandle).invokeInt(target));
+        bind("freeze", useMethodHandle, int.class).invokeVoid(target, 0);
+        Assert.assertEquals(0, target.rotation);
+        Assert.assertFalse(bind("isFrozen", useMethodHandle).invokeBoolean(target));
+
+        // generic invocation
+        Assert.assertEquals(Boolean.TRUE, inject.invoke(target, "event", 1));
+
+        try {
+            bind("fail", useMethodHandle).invokeVoid(target);
+            Assert.fail("The exception must be wrapped");
+        } catch (InvocationTargetException e) {
+            Assert.assertTrue(e.getCause() instanceof IllegalStateException);
+        }
+    }
+
+    @Test
+    public void testInvokeWithReflection() throws Exception {
+        testInvoke(false);
+    }
+
+    @Test
+    public void testInvokeWithMethodHandle() throws Exception {
+        testInvoke(true);
+    }
+}